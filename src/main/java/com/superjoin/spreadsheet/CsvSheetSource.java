@@ -0,0 +1,151 @@
+package com.superjoin.spreadsheet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads CSV files as sheets: a single file is one sheet, a directory is one sheet
+ * per {@code .csv} file in name order. Sheets are named after their file without
+ * the extension.
+ *
+ * Files are parsed as RFC 4180 (quoted fields, doubled quotes, line breaks inside
+ * quotes, CRLF, LF or CR) in UTF-8, one character at a time, so only the current chunk
+ * is held in memory. Empty fields are not cells. A field starting with '=' is a
+ * formula; CSV carries no computed value for it.
+ */
+public class CsvSheetSource implements SheetSource {
+    private static final Logger logger = LoggerFactory.getLogger(CsvSheetSource.class);
+
+    private static final String EXTENSION = ".csv";
+
+    @Override
+    public List<String> streamAllSheets(String workbook, ChunkSink sink) throws Exception {
+        List<Path> files = files(Path.of(workbook));
+        List<String> sheetNames = new ArrayList<>();
+        for (Path file : files) {
+            String sheetName = sheetName(file);
+            sheetNames.add(sheetName);
+            try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                int cells = read(in, new SheetChunker(sheetName, sink));
+                logger.info("Read sheet {} from {}: {} cells", sheetName, file, cells);
+            }
+        }
+        return sheetNames;
+    }
+
+    @Override
+    public long getLastModifiedTime(String workbook) throws IOException {
+        long latest = -1;
+        for (Path file : files(Path.of(workbook))) {
+            latest = Math.max(latest, Files.getLastModifiedTime(file).toMillis());
+        }
+        return latest;
+    }
+
+    private static List<Path> files(Path workbook) throws IOException {
+        if (!Files.isDirectory(workbook)) {
+            return List.of(workbook);
+        }
+        try (Stream<Path> entries = Files.list(workbook)) {
+            return entries
+                    .filter(Files::isRegularFile)
+                    .filter(file -> file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(EXTENSION))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static String sheetName(Path file) {
+        String name = file.getFileName().toString();
+        return name.toLowerCase(Locale.ROOT).endsWith(EXTENSION)
+                ? name.substring(0, name.length() - EXTENSION.length()) : name;
+    }
+
+    /**
+     * Parses one file into the chunker
+     *
+     * @return the number of cells read
+     */
+    static int read(BufferedReader in, SheetChunker chunker) throws Exception {
+        StringBuilder field = new StringBuilder();
+        int row = 1;
+        int column = 1;
+        int cells = 0;
+        boolean quoted = false;
+        boolean rowHasContent = false;
+        int c = in.read();
+        if (c == '\uFEFF') {
+            c = in.read();
+        }
+        for (; c != -1; c = in.read()) {
+            if (quoted) {
+                if (c != '"') {
+                    field.append((char) c);
+                    continue;
+                }
+                in.mark(1);
+                if (in.read() == '"') {
+                    field.append('"');
+                } else {
+                    in.reset();
+                    quoted = false;
+                }
+                continue;
+            }
+            switch (c) {
+                case '"':
+                    quoted = true;
+                    rowHasContent = true;
+                    break;
+                case ',':
+                    cells += emit(chunker, row, column++, field);
+                    rowHasContent = true;
+                    break;
+                case '\r':
+                    // CRLF ends one row; a lone CR (classic Mac) ends a row too
+                    in.mark(1);
+                    if (in.read() != '\n') {
+                        in.reset();
+                    }
+                    // fall through
+                case '\n':
+                    cells += emit(chunker, row++, column, field);
+                    chunker.endRow();
+                    column = 1;
+                    rowHasContent = false;
+                    break;
+                default:
+                    field.append((char) c);
+                    rowHasContent = true;
+            }
+        }
+        if (rowHasContent) {
+            cells += emit(chunker, row, column, field);
+            chunker.endRow();
+        }
+        chunker.finish();
+        return cells;
+    }
+
+    private static int emit(SheetChunker chunker, int row, int column, StringBuilder field) {
+        if (field.length() == 0) {
+            return 0;
+        }
+        String text = field.toString();
+        field.setLength(0);
+        boolean isFormula = text.startsWith("=") && text.length() > 1;
+        chunker.add(new Cell(row, column, isFormula ? null : text, isFormula ? text : null));
+        return 1;
+    }
+}
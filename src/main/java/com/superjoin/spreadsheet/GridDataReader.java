@@ -0,0 +1,182 @@
+package com.superjoin.spreadsheet;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Decodes the cells of a field-masked {@code spreadsheets.get} response straight
+ * off the response stream, without building the client library's
+ * {@code Spreadsheet}/{@code GridData}/{@code RowData}/{@code CellData} tree.
+ *
+ * Only {@code sheets[].data[]} is read: {@code startRow}, {@code startColumn} and
+ * {@code rowData[].values[]} with their {@code formattedValue} and
+ * {@code userEnteredValue.formulaValue}. Everything else is skipped, so the same
+ * reader works whatever else the field mask lets through. The API writes
+ * {@code startRow} and {@code startColumn} before {@code rowData}; the offsets
+ * passed in are used when it leaves them out.
+ */
+final class GridDataReader {
+
+    /**
+     * Receives cells in response order, with 1-based positions
+     */
+    interface CellSink {
+        void accept(int row, int column, String value, String formula) throws IOException;
+    }
+
+    private GridDataReader() {
+    }
+
+    /**
+     * Reads a response and hands every cell, including empty ones, to the sink
+     *
+     * @param startRow    0-based first row of the requested range
+     * @param startColumn 0-based first column of the requested range
+     * @return the number of cells read
+     */
+    static int read(Reader source, int startRow, int startColumn, CellSink sink) throws IOException {
+        JsonReader in = new JsonReader(source);
+        int cells = 0;
+        in.beginObject();
+        while (in.hasNext()) {
+            if (!in.nextName().equals("sheets")) {
+                in.skipValue();
+                continue;
+            }
+            if (!beginArray(in)) continue;
+            while (in.hasNext()) {
+                cells += readSheet(in, startRow, startColumn, sink);
+            }
+            in.endArray();
+        }
+        in.endObject();
+        return cells;
+    }
+
+    private static int readSheet(JsonReader in, int startRow, int startColumn, CellSink sink) throws IOException {
+        int cells = 0;
+        in.beginObject();
+        while (in.hasNext()) {
+            if (!in.nextName().equals("data")) {
+                in.skipValue();
+                continue;
+            }
+            if (!beginArray(in)) continue;
+            while (in.hasNext()) {
+                cells += readGrid(in, startRow, startColumn, sink);
+            }
+            in.endArray();
+        }
+        in.endObject();
+        return cells;
+    }
+
+    private static int readGrid(JsonReader in, int startRow, int startColumn, CellSink sink) throws IOException {
+        int cells = 0;
+        int row = startRow;
+        int firstColumn = startColumn;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "startRow":
+                    row = in.nextInt();
+                    break;
+                case "startColumn":
+                    firstColumn = in.nextInt();
+                    break;
+                case "rowData":
+                    if (!beginArray(in)) break;
+                    while (in.hasNext()) {
+                        cells += readRow(in, row + 1, firstColumn, sink);
+                        row++;
+                    }
+                    in.endArray();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return cells;
+    }
+
+    private static int readRow(JsonReader in, int row, int firstColumn, CellSink sink) throws IOException {
+        int column = firstColumn;
+        in.beginObject();
+        while (in.hasNext()) {
+            if (!in.nextName().equals("values")) {
+                in.skipValue();
+                continue;
+            }
+            if (!beginArray(in)) continue;
+            while (in.hasNext()) {
+                column++;
+                readCell(in, row, column, sink);
+            }
+            in.endArray();
+        }
+        in.endObject();
+        return column - firstColumn;
+    }
+
+    private static void readCell(JsonReader in, int row, int column, CellSink sink) throws IOException {
+        String value = null;
+        String formula = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "formattedValue":
+                    value = nextString(in);
+                    break;
+                case "userEnteredValue":
+                    formula = readFormula(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        sink.accept(row, column, value, formula);
+    }
+
+    private static String readFormula(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String formula = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            if (in.nextName().equals("formulaValue")) {
+                formula = nextString(in);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return formula;
+    }
+
+    private static String nextString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    /**
+     * Opens an array, or consumes a null in its place and returns false
+     */
+    private static boolean beginArray(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return false;
+        }
+        in.beginArray();
+        return true;
+    }
+}
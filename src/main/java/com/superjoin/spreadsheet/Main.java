@@ -1,6 +1,7 @@
 package com.superjoin.spreadsheet;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.security.GeneralSecurityException;
 import java.util.Scanner;
 import java.util.Set;
@@ -22,6 +23,9 @@ public class Main {
     private static boolean liveSync = false;
     private static volatile long lastModifiedTime = -1;
     private static Thread liveSyncThread;
+    private static Path snapshotPath;
+    // Local XLSX/CSV workbook, read instead of Google Sheets when given
+    private static Path workbookFile;
 
     private static SpreadsheetGraph graph;
     private static GeminiQueryService queryService;
@@ -30,7 +34,9 @@ public class Main {
         try {
             parseArguments(args);
             initializeServices();
-            loadSpreadsheet();
+            if (!loadSnapshot()) {
+                loadSpreadsheet();
+            }
             startInteractiveMode();
         } catch (Exception e) {
             System.err.println("Error: " + e.getMessage());
@@ -94,6 +100,23 @@ public class Main {
                 case "--live-sync":
                     liveSync = true;
                     break;
+                case "--file":
+                    if (i + 1 < args.length) {
+                        workbookFile = Path.of(args[++i]);
+                        spreadsheetId = workbookFile.toAbsolutePath().normalize().toString();
+                    } else {
+                        System.err.println("Error: Missing workbook file");
+                        System.exit(1);
+                    }
+                    break;
+                case "--snapshot":
+                    if (i + 1 < args.length) {
+                        snapshotPath = Path.of(args[++i]);
+                    } else {
+                        System.err.println("Error: Missing snapshot file");
+                        System.exit(1);
+                    }
+                    break;
                 case "-h":
                 case "--help":
                     showUsage();
@@ -107,7 +130,7 @@ public class Main {
         }
         
         if (spreadsheetId == null || projectId == null) {
-            System.err.println("Error: Spreadsheet ID and Project ID are required");
+            System.err.println("Error: Spreadsheet ID (or workbook file) and Project ID are required");
             showUsage();
             System.exit(1);
         }
@@ -127,11 +150,13 @@ public class Main {
         System.out.println();
         System.out.println("Options:");
         System.out.println("  -s, --spreadsheet <id>    Google Spreadsheet ID (required)");
+        System.out.println("  --file <path>             Local .xlsx file, .csv file or directory of .csv files (instead of -s)");
         System.out.println("  --sheet <name>            Sheet name (default: Sheet1)");
         System.out.println("  --project-id <id>         Google Cloud Project ID (required)");
         System.out.println("  --location <location>     Google Cloud location (default: us-central1)");
         System.out.println("  --gemini-api-key <key>     Gemini API key (required)");
         System.out.println("  --live-sync               Enable live sync mode");
+        System.out.println("  --snapshot <file>         Start from a graph snapshot and keep it up to date");
         System.out.println("  -h, --help                Show this help message");
         System.out.println();
         System.out.println("Example:");
@@ -146,7 +171,7 @@ public class Main {
         logger.info("Initializing Spreadsheet Brain services");
         
         // Initialize the graph service
-        graph = new SpreadsheetGraph();
+        graph = workbookFile != null ? new SpreadsheetGraph(SheetSource.forFile(workbookFile)) : new SpreadsheetGraph();
         
         // Initialize the query service
         if (geminiApiKey != null) {
@@ -172,12 +197,67 @@ public class Main {
         
         // Update last modified time
         lastModifiedTime = getSpreadsheetLastModifiedTime();
+        saveSnapshot();
         
         System.out.println("Spreadsheet loaded successfully!");
         System.out.println(graph.getGraphSummary());
         logger.info("Spreadsheet loaded successfully");
     }
 
+    /**
+     * Starts from the snapshot file, if one was given and matches the spreadsheet,
+     * and checks in the background whether the spreadsheet changed since it was taken
+     */
+    private static boolean loadSnapshot() {
+        if (snapshotPath == null) {
+            return false;
+        }
+        long snapshotModifiedTime;
+        try {
+            snapshotModifiedTime = graph.loadSnapshot(snapshotPath, spreadsheetId);
+        } catch (IOException e) {
+            System.err.println("Could not read snapshot, loading from Google Sheets: " + e.getMessage());
+            logger.warn("Could not read snapshot {}", snapshotPath, e);
+            return false;
+        }
+        if (snapshotModifiedTime < 0) {
+            return false;
+        }
+        lastModifiedTime = snapshotModifiedTime;
+        System.out.println("Loaded graph snapshot: " + snapshotPath);
+        System.out.println(graph.getGraphSummary());
+
+        Thread refresh = new Thread(() -> {
+            try {
+                long modifiedTime = getSpreadsheetLastModifiedTime();
+                if (modifiedTime > snapshotModifiedTime) {
+                    System.out.println("\n[Snapshot] Spreadsheet changed since the snapshot. Reloading...");
+                    logger.info("Snapshot is stale, reloading spreadsheet");
+                    loadSpreadsheet();
+                    System.out.print("spreadsheet-brain> ");
+                }
+            } catch (Exception e) {
+                System.err.println("[Snapshot] Refresh failed: " + e.getMessage());
+                logger.error("Snapshot refresh error", e);
+            }
+        });
+        refresh.setDaemon(true);
+        refresh.start();
+        return true;
+    }
+
+    private static void saveSnapshot() {
+        if (snapshotPath == null) {
+            return;
+        }
+        try {
+            graph.saveSnapshot(snapshotPath, lastModifiedTime);
+        } catch (IOException e) {
+            System.err.println("Could not write snapshot: " + e.getMessage());
+            logger.warn("Could not write snapshot {}", snapshotPath, e);
+        }
+    }
+
     /**
      * Starts the interactive command mode
      */
@@ -407,8 +487,7 @@ public class Main {
 
     private static long getSpreadsheetLastModifiedTime() {
         try {
-            // Use SheetsReader to get spreadsheet metadata
-            return SheetsReader.getSpreadsheetLastModifiedTime(spreadsheetId);
+            return graph.getSource().getLastModifiedTime(spreadsheetId);
         } catch (Exception e) {
             System.err.println("[Live Sync] Could not fetch last modified time: " + e.getMessage());
             logger.error("Could not fetch last modified time", e);
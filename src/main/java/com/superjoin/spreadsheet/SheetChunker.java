@@ -0,0 +1,51 @@
+package com.superjoin.spreadsheet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Groups the cells of a sheet read row by row into {@link SheetSource#CHUNK_ROWS}-row
+ * chunks and hands them to a sink, numbered in reading order.
+ */
+final class SheetChunker {
+    private final String sheetName;
+    private final SheetSource.ChunkSink sink;
+    private List<Cell> cells = new ArrayList<>();
+    private int rows;
+    private int chunks;
+
+    SheetChunker(String sheetName, SheetSource.ChunkSink sink) {
+        this.sheetName = sheetName;
+        this.sink = sink;
+    }
+
+    void add(Cell cell) {
+        cell.setSheetName(sheetName);
+        cells.add(cell);
+    }
+
+    /**
+     * Marks the end of a row, delivering the chunk once it is full
+     */
+    void endRow() throws Exception {
+        if (++rows == SheetSource.CHUNK_ROWS) {
+            flush();
+        }
+    }
+
+    /**
+     * Delivers the last, partial chunk
+     */
+    void finish() throws Exception {
+        if (!cells.isEmpty()) {
+            flush();
+        }
+    }
+
+    private void flush() throws Exception {
+        List<Cell> chunk = cells;
+        cells = new ArrayList<>();
+        rows = 0;
+        sink.accept(sheetName, chunks++, chunk);
+    }
+}
@@ -0,0 +1,374 @@
+package com.superjoin.spreadsheet;
+
+import com.superjoin.spreadsheet.formula.FormulaCache;
+import com.superjoin.spreadsheet.formula.FormulaParseException;
+import com.superjoin.spreadsheet.formula.ReferenceNode;
+import com.superjoin.spreadsheet.graph.EdgeTypes;
+import com.superjoin.spreadsheet.graph.GraphStore;
+import com.superjoin.spreadsheet.graph.IntList;
+import com.superjoin.spreadsheet.model.A1Notation;
+import com.superjoin.spreadsheet.model.CellColumns;
+import com.superjoin.spreadsheet.model.CellNode;
+import com.superjoin.spreadsheet.model.RangeNode;
+import com.superjoin.spreadsheet.model.SheetNode;
+import com.superjoin.spreadsheet.services.KnowledgeGraphService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The nodes and edges of one sheet, built without touching the shared graph so
+ * that sheets can be processed in parallel.
+ *
+ * Loading happens in four steps:
+ * <ol>
+ *   <li>{@link #build} (parallel): store the sheet's cells, parse its formulas and
+ *       resolve same-sheet references to block-local indices. When cells arrive in
+ *       row chunks, {@link #addChunk} does the storing and parsing per chunk as it
+ *       arrives and {@link #finish} the rest.</li>
+ *   <li>{@link #merge} (sequential, in sheet order): add the block to the graph</li>
+ *   <li>{@link #resolveCrossSheet} (parallel): resolve references into other sheets
+ *       against the merged graph</li>
+ *   <li>{@link #mergeCrossSheet} (sequential, in sheet order): add those edges</li>
+ * </ol>
+ * Because both sequential steps run in sheet order, and chunks are laid out in
+ * chunk order, node indices and edges come out the same regardless of how the
+ * parallel steps were scheduled or in which order chunks arrived.
+ *
+ * Cells are not held as objects while a load is in flight. Each chunk goes
+ * straight into block-local {@link CellColumns} (packed keys, unboxed numbers and
+ * dictionary codes) under a contiguous run of slots in arrival order, and its
+ * formulas are kept as flat reference records rather than parsed trees. The
+ * columns are released once the block has been merged.
+ */
+final class SheetGraphBlock {
+    private static final Logger logger = LoggerFactory.getLogger(SheetGraphBlock.class);
+
+    // Reference records of a chunk: CELL row column, RANGE firstRow firstColumn lastRow lastColumn,
+    // OTHER_SHEET index into the chunk's cross-sheet references
+    private static final int CELL = 0;
+    private static final int RANGE = 1;
+    private static final int OTHER_SHEET = 2;
+
+    private final String sheetName;
+    // Cells by slot, in arrival order; released by merge
+    private CellColumns cells = new CellColumns();
+    private int slotCount;
+    // Local index 0 is the sheet, then cells in chunk order, then ranges
+    private int cellCount;
+    private final List<RangeNode> ranges = new ArrayList<>();
+    private final Map<String, Integer> rangeIndex = new HashMap<>();
+    // (source, target) DEPENDS_ON pairs over local indices
+    private final IntList edges = new IntList();
+    // (source, row, column) of same-sheet references to positions without a cell
+    private final IntList unresolved = new IntList();
+    private final List<CrossSheetReference> crossSheet = new ArrayList<>();
+    private int formulaCount;
+    private int[] global;
+
+    // Filled by resolveCrossSheet, in global indices
+    private final IntList crossSheetCellEdges = new IntList();
+    private final IntList crossSheetRangeSources = new IntList();
+    private final List<RangeNode> crossSheetRangeTargets = new ArrayList<>();
+    // References to positions without a cell, with the formula cell's global index
+    private final List<CrossSheetReference> crossSheetUnresolved = new ArrayList<>();
+
+    // Chunks received but not yet laid out, by chunk number
+    private final Map<Integer, Chunk> chunks = new TreeMap<>();
+    // Received chunks in chunk order, and the non-empty ones by first slot; set by finish
+    private Chunk[] layout;
+    private Chunk[] bySlot;
+
+    private SheetGraphBlock(String sheetName) {
+        this.sheetName = sheetName;
+    }
+
+    /**
+     * Builds the nodes and same-sheet edges of a sheet. Touches no shared state
+     * other than the (thread-safe) formula cache.
+     */
+    static SheetGraphBlock build(String sheetName, List<Cell> cells, FormulaCache formulaCache) {
+        SheetGraphBlock block = start(sheetName);
+        block.addChunk(0, cells, formulaCache);
+        return block.finish();
+    }
+
+    /**
+     * Starts a block whose cells will arrive through {@link #addChunk}
+     */
+    static SheetGraphBlock start(String sheetName) {
+        return new SheetGraphBlock(sheetName);
+    }
+
+    /**
+     * Stores one chunk of cells and parses their formulas. Chunks may arrive in any
+     * order and from several threads; the cells are not retained.
+     */
+    void addChunk(int number, List<Cell> cells, FormulaCache formulaCache) {
+        Chunk chunk = new Chunk(cells.size());
+        for (int i = 0; i < cells.size(); i++) {
+            Cell cell = cells.get(i);
+            if (cell.hasFormula()) {
+                chunk.addFormula(i, parseReferences(cell, formulaCache), sheetName);
+            }
+        }
+        synchronized (chunks) {
+            if (chunks.putIfAbsent(number, chunk) != null) {
+                throw new IllegalStateException("Chunk " + number + " of sheet " + sheetName + " added twice");
+            }
+            chunk.firstSlot = slotCount;
+            slotCount += chunk.size;
+            for (int i = 0; i < chunk.size; i++) {
+                Cell cell = cells.get(i);
+                this.cells.put(chunk.firstSlot + i,
+                        new CellNode(sheetName, cell.getRow(), cell.getColumn(), cell.getValue(), cell.getFormula()));
+            }
+        }
+    }
+
+    /**
+     * Lays out the received chunks in order and resolves same-sheet references
+     */
+    SheetGraphBlock finish() {
+        synchronized (chunks) {
+            layout = chunks.values().toArray(new Chunk[0]);
+            chunks.clear();
+        }
+        int next = 1;
+        for (Chunk chunk : layout) {
+            chunk.firstLocal = next;
+            next += chunk.size;
+        }
+        cellCount = next - 1;
+        // Empty chunks own no slot, and would share a first slot with their successor
+        bySlot = Arrays.stream(layout)
+                .filter(chunk -> chunk.size > 0)
+                .sorted(Comparator.comparingInt(chunk -> chunk.firstSlot))
+                .toArray(Chunk[]::new);
+
+        // Every cell exists before references are resolved, so forward references work
+        for (Chunk chunk : layout) {
+            IntList records = chunk.references;
+            for (int r = 0; r < records.size(); ) {
+                int local = chunk.firstLocal + records.get(r);
+                int count = records.get(r + 1);
+                r += 2;
+                for (int k = 0; k < count; k++) {
+                    switch (records.get(r)) {
+                        case CELL:
+                            int slot = cells.indexOf(sheetName, records.get(r + 1), records.get(r + 2));
+                            if (slot >= 0) {
+                                addEdge(local, localOf(slot));
+                            } else {
+                                unresolved.add(local);
+                                unresolved.add(records.get(r + 1));
+                                unresolved.add(records.get(r + 2));
+                            }
+                            r += 3;
+                            break;
+                        case RANGE:
+                            addEdge(local, localRange(new RangeNode(sheetName, records.get(r + 1), records.get(r + 2),
+                                    records.get(r + 3), records.get(r + 4))));
+                            r += 5;
+                            break;
+                        default:
+                            crossSheet.add(new CrossSheetReference(local, chunk.crossSheet.get(records.get(r + 1))));
+                            r += 2;
+                    }
+                }
+                formulaCount++;
+            }
+            chunk.references = null;
+            chunk.crossSheet = null;
+        }
+        logger.info("Built sheet: {} - {} cells, {} formulas, {} ranges, {} cross-sheet references",
+                sheetName, cellCount, formulaCount, ranges.size(), crossSheet.size());
+        return this;
+    }
+
+    /**
+     * Adds this block's nodes and edges to the graph, recording their global indices.
+     * The block's copy of the cells is dropped afterwards.
+     */
+    void merge(KnowledgeGraphService graph) {
+        global = new int[1 + cellCount + ranges.size()];
+        global[0] = graph.addNode(new SheetNode(sheetName, sheetName));
+        for (Chunk chunk : layout) {
+            for (int i = 0; i < chunk.size; i++) {
+                global[chunk.firstLocal + i] = graph.addNode(cells.view(chunk.firstSlot + i));
+            }
+        }
+        for (int r = 0; r < ranges.size(); r++) {
+            global[1 + cellCount + r] = graph.addNode(ranges.get(r));
+        }
+        for (int local = 1; local <= cellCount; local++) {
+            graph.addEdge(global[0], global[local], EdgeTypes.CONTAINS);
+        }
+        for (int e = 0; e < edges.size(); e += 2) {
+            graph.addEdge(global[edges.get(e)], global[edges.get(e + 1)], EdgeTypes.DEPENDS_ON);
+        }
+        for (int u = 0; u < unresolved.size(); u += 3) {
+            graph.addUnresolvedReference(global[unresolved.get(u)], sheetName, unresolved.get(u + 1), unresolved.get(u + 2));
+        }
+        cells = null;
+        layout = null;
+        bySlot = null;
+    }
+
+    /**
+     * Resolves this block's references into other sheets. Only reads the graph,
+     * into which every block must have been merged; safe to run for all blocks in parallel.
+     */
+    void resolveCrossSheet(KnowledgeGraphService graph) {
+        for (CrossSheetReference pending : crossSheet) {
+            int source = global[pending.cell];
+            ReferenceNode reference = pending.reference;
+            if (reference.isRange()) {
+                RangeNode range = reference.toRangeNode(sheetName);
+                int target = graph.getStore().indexOf(range.getId());
+                if (target != GraphStore.NO_NODE) {
+                    crossSheetCellEdges.add(source);
+                    crossSheetCellEdges.add(target);
+                } else {
+                    crossSheetRangeSources.add(source);
+                    crossSheetRangeTargets.add(range);
+                }
+                continue;
+            }
+            int target = graph.cellIndex(reference.getSheet(), reference.getFirstRow(), reference.getFirstColumn());
+            if (target != GraphStore.NO_NODE) {
+                crossSheetCellEdges.add(source);
+                crossSheetCellEdges.add(target);
+            } else {
+                logger.debug("Cross-sheet reference to an empty cell: {}", reference);
+                crossSheetUnresolved.add(new CrossSheetReference(source, reference));
+            }
+        }
+    }
+
+    /**
+     * Adds the edges found by {@link #resolveCrossSheet}, creating range nodes on
+     * other sheets that no formula there referenced, and records references to
+     * cells that do not exist so they are linked once the cell is created
+     */
+    void mergeCrossSheet(KnowledgeGraphService graph) {
+        for (int e = 0; e < crossSheetCellEdges.size(); e += 2) {
+            graph.addEdge(crossSheetCellEdges.get(e), crossSheetCellEdges.get(e + 1), EdgeTypes.DEPENDS_ON);
+        }
+        for (int i = 0; i < crossSheetRangeSources.size(); i++) {
+            RangeNode range = graph.getOrAddRange(crossSheetRangeTargets.get(i));
+            graph.addEdge(crossSheetRangeSources.get(i), graph.getStore().indexOf(range.getId()), EdgeTypes.DEPENDS_ON);
+        }
+        for (CrossSheetReference pending : crossSheetUnresolved) {
+            ReferenceNode reference = pending.reference;
+            graph.addUnresolvedReference(pending.cell, reference.getSheet(), reference.getFirstRow(), reference.getFirstColumn());
+        }
+    }
+
+    String getSheetName() { return sheetName; }
+    int getCellCount() { return cellCount; }
+    int getFormulaCount() { return formulaCount; }
+    int getCrossSheetCount() { return crossSheet.size(); }
+
+    private List<ReferenceNode> parseReferences(Cell cell, FormulaCache formulaCache) {
+        try {
+            return formulaCache.references(cell.getFormula(), cell.getRow(), cell.getColumn());
+        } catch (FormulaParseException e) {
+            logger.warn("Could not parse formula in {}!{}: {} ({})", sheetName,
+                    A1Notation.format(cell.getRow(), cell.getColumn()), cell.getFormula(), e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Local index of the cell stored at a slot
+     */
+    private int localOf(int slot) {
+        int low = 0;
+        int high = bySlot.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (bySlot[middle].firstSlot <= slot) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return bySlot[low].firstLocal + slot - bySlot[low].firstSlot;
+    }
+
+    private int localRange(RangeNode range) {
+        Integer existing = rangeIndex.get(range.getId());
+        if (existing != null) {
+            return existing;
+        }
+        int local = 1 + cellCount + ranges.size();
+        ranges.add(range);
+        rangeIndex.put(range.getId(), local);
+        return local;
+    }
+
+    private void addEdge(int source, int target) {
+        edges.add(source);
+        edges.add(target);
+    }
+
+    /**
+     * Where one chunk's cells are stored, and its formulas' references as flat
+     * records: position in the chunk, reference count, then one record per reference
+     */
+    private static final class Chunk {
+        final int size;
+        int firstSlot;
+        int firstLocal;
+        IntList references = new IntList();
+        List<ReferenceNode> crossSheet = new ArrayList<>(0);
+
+        Chunk(int size) {
+            this.size = size;
+        }
+
+        void addFormula(int position, List<ReferenceNode> parsed, String sheetName) {
+            references.add(position);
+            references.add(parsed.size());
+            for (ReferenceNode reference : parsed) {
+                if (!reference.resolveSheet(sheetName).equals(sheetName)) {
+                    references.add(OTHER_SHEET);
+                    references.add(crossSheet.size());
+                    crossSheet.add(reference);
+                } else if (reference.isRange()) {
+                    RangeNode range = reference.toRangeNode(sheetName);
+                    references.add(RANGE);
+                    references.add(range.getFirstRow());
+                    references.add(range.getFirstColumn());
+                    references.add(range.getLastRow());
+                    references.add(range.getLastColumn());
+                } else {
+                    references.add(CELL);
+                    references.add(reference.getFirstRow());
+                    references.add(reference.getFirstColumn());
+                }
+            }
+        }
+    }
+
+    /**
+     * A reference to another sheet, held until every sheet has been merged
+     */
+    private static final class CrossSheetReference {
+        final int cell;
+        final ReferenceNode reference;
+
+        CrossSheetReference(int cell, ReferenceNode reference) {
+            this.cell = cell;
+            this.reference = reference;
+        }
+    }
+}
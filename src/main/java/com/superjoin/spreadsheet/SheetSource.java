@@ -0,0 +1,96 @@
+package com.superjoin.spreadsheet;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Where a workbook's cells come from: Google Sheets ({@link SheetsReader}), a local
+ * XLSX file ({@link XlsxSheetSource}) or CSV files ({@link CsvSheetSource}).
+ *
+ * Sources deliver cells in row chunks so the graph can be built while the rest of
+ * the workbook is still being read; see {@link SpreadsheetGraph#loadAllSheets}.
+ */
+public interface SheetSource {
+
+    /** Rows per chunk handed to a {@link ChunkSink} */
+    int CHUNK_ROWS = 2_000;
+
+    /**
+     * Receives the cells of one row chunk of a sheet. Sources may call it from several
+     * threads, so chunks of a sheet can arrive concurrently and out of order.
+     */
+    interface ChunkSink {
+        void accept(String sheetName, int chunk, List<Cell> cells) throws Exception;
+    }
+
+    /**
+     * Reads every sheet and hands each chunk to the sink as soon as it is read.
+     * Returns once every chunk has been delivered.
+     *
+     * @param workbook spreadsheet id or file path, depending on the source
+     * @return sheet names in tab order
+     */
+    List<String> streamAllSheets(String workbook, ChunkSink sink) throws Exception;
+
+    /**
+     * Reads all sheets of a workbook, in tab order
+     */
+    default Map<String, List<Cell>> readAllSheets(String workbook) throws Exception {
+        Map<String, Map<Integer, List<Cell>>> chunks = new HashMap<>();
+        List<String> sheetNames = streamAllSheets(workbook, (sheetName, chunk, cells) -> {
+            synchronized (chunks) {
+                chunks.computeIfAbsent(sheetName, name -> new TreeMap<>()).put(chunk, cells);
+            }
+        });
+
+        // Keep tab order so the graph is built the same way on every load
+        Map<String, List<Cell>> allSheets = new LinkedHashMap<>();
+        for (String sheetName : sheetNames) {
+            List<Cell> cells = new ArrayList<>();
+            chunks.getOrDefault(sheetName, Map.of()).values().forEach(cells::addAll);
+            allSheets.put(sheetName, cells);
+        }
+        return allSheets;
+    }
+
+    /**
+     * Reads one sheet of a workbook; empty if the sheet does not exist
+     */
+    default List<Cell> readSheet(String workbook, String sheetName) throws Exception {
+        return readAllSheets(workbook).getOrDefault(sheetName, new ArrayList<>());
+    }
+
+    /**
+     * Writes an edited cell back to the workbook. Local files are read-only, so by
+     * default the edit is only applied to the graph.
+     *
+     * @return false if the write failed and the graph should not be patched
+     */
+    default boolean updateCell(String workbook, String sheetName, String cellReference, String newValue) {
+        return true;
+    }
+
+    /**
+     * Last modified time of the workbook in epoch millis
+     */
+    long getLastModifiedTime(String workbook) throws Exception;
+
+    /**
+     * Picks the local source for a file: XLSX for .xlsx/.xlsm files, CSV for anything
+     * else (a .csv file or a directory of them)
+     */
+    static SheetSource forFile(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (!Files.isDirectory(file) && (name.endsWith(".xlsx") || name.endsWith(".xlsm"))) {
+            return new XlsxSheetSource();
+        }
+        return new CsvSheetSource();
+    }
+}
@@ -6,13 +6,16 @@ import com.google.api.client.extensions.jetty.auth.oauth2.LocalServerReceiver;
 import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeFlow;
 import com.google.api.client.googleapis.auth.oauth2.GoogleClientSecrets;
 import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.gson.GsonFactory;
 import com.google.api.client.util.store.FileDataStoreFactory;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.DriveScopes;
 import com.google.api.services.sheets.v4.Sheets;
 import com.google.api.services.sheets.v4.SheetsScopes;
-import com.google.api.services.sheets.v4.model.CellData;
-import com.google.api.services.sheets.v4.model.GridData;
-import com.google.api.services.sheets.v4.model.RowData;
+import com.google.api.services.sheets.v4.model.GridProperties;
+import com.google.api.services.sheets.v4.model.Sheet;
 import com.google.api.services.sheets.v4.model.Spreadsheet;
 import com.google.api.services.sheets.v4.model.UpdateValuesResponse;
 import com.google.api.services.sheets.v4.model.ValueRange;
@@ -23,164 +26,193 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.Collections;
+import java.io.Reader;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
-import java.util.HashMap;
-
-public class SheetsReader {
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
+public class SheetsReader implements SheetSource {
     private static final Logger logger = LoggerFactory.getLogger(SheetsReader.class);
 
     private static final String APPLICATION_NAME = "Spreadsheet Brain";
     private static final GsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
     private static final String TOKENS_DIRECTORY_PATH = "tokens";
-    private static final List<String> SCOPES = Collections.singletonList(SheetsScopes.SPREADSHEETS);
     private static final String CREDENTIALS_FILE_PATH = "/credentials.json";
-    private static final List<String> DRIVE_SCOPES = Arrays.asList(SheetsScopes.SPREADSHEETS, com.google.api.services.drive.DriveScopes.DRIVE_METADATA_READONLY);
-
-    private Credential getCredentials() throws Exception {
-        InputStream in = SheetsReader.class.getResourceAsStream(CREDENTIALS_FILE_PATH);
-        GoogleClientSecrets clientSecrets = GoogleClientSecrets.load(JSON_FACTORY, new InputStreamReader(in));
-
-        GoogleAuthorizationCodeFlow flow = new GoogleAuthorizationCodeFlow.Builder(
-                GoogleNetHttpTransport.newTrustedTransport(), JSON_FACTORY, clientSecrets, SCOPES)
-                .setDataStoreFactory(new FileDataStoreFactory(new File(TOKENS_DIRECTORY_PATH)))
-                .setAccessType("offline")
-                .build();
-        LocalServerReceiver receiver = new LocalServerReceiver.Builder().setPort(8888).build();
-        return new AuthorizationCodeInstalledApp(flow, receiver).authorize("user");
+    private static final List<String> SCOPES = Arrays.asList(SheetsScopes.SPREADSHEETS, DriveScopes.DRIVE_METADATA_READONLY);
+
+    // Built on first use and shared by every reader; the transport keeps connections
+    // alive between requests and the credential refreshes its token in place
+    private static NetHttpTransport transport;
+    private static Credential credential;
+    private static Sheets sheetsClient;
+    private static Drive driveClient;
+
+    private static synchronized NetHttpTransport transport() throws Exception {
+        if (transport == null) {
+            transport = GoogleNetHttpTransport.newTrustedTransport();
+        }
+        return transport;
     }
 
-    private Credential getDriveCredentials() throws Exception {
-        InputStream in = SheetsReader.class.getResourceAsStream(CREDENTIALS_FILE_PATH);
-        GoogleClientSecrets clientSecrets = GoogleClientSecrets.load(JSON_FACTORY, new InputStreamReader(in));
-        GoogleAuthorizationCodeFlow flow = new GoogleAuthorizationCodeFlow.Builder(
-                GoogleNetHttpTransport.newTrustedTransport(), JSON_FACTORY, clientSecrets, DRIVE_SCOPES)
-                .setDataStoreFactory(new FileDataStoreFactory(new java.io.File(TOKENS_DIRECTORY_PATH)))
-                .setAccessType("offline")
-                .build();
-        LocalServerReceiver receiver = new LocalServerReceiver.Builder().setPort(8888).build();
-        return new AuthorizationCodeInstalledApp(flow, receiver).authorize("user");
+    /**
+     * Authorizes once for both the Sheets and the Drive metadata scopes
+     */
+    private static synchronized Credential credential() throws Exception {
+        if (credential == null) {
+            InputStream in = SheetsReader.class.getResourceAsStream(CREDENTIALS_FILE_PATH);
+            GoogleClientSecrets clientSecrets = GoogleClientSecrets.load(JSON_FACTORY, new InputStreamReader(in));
+            GoogleAuthorizationCodeFlow flow = new GoogleAuthorizationCodeFlow.Builder(
+                    transport(), JSON_FACTORY, clientSecrets, SCOPES)
+                    .setDataStoreFactory(new FileDataStoreFactory(new File(TOKENS_DIRECTORY_PATH)))
+                    .setAccessType("offline")
+                    .build();
+            LocalServerReceiver receiver = new LocalServerReceiver.Builder().setPort(8888).build();
+            credential = new AuthorizationCodeInstalledApp(flow, receiver).authorize("user");
+        }
+        return credential;
     }
 
-    public List<Cell> readSheet(String spreadsheetId, String sheetName) throws Exception {
-        Sheets service = new Sheets.Builder(GoogleNetHttpTransport.newTrustedTransport(), JSON_FACTORY, getCredentials())
-                .setApplicationName(APPLICATION_NAME)
-                .build();
+    private static synchronized Sheets sheets() throws Exception {
+        if (sheetsClient == null) {
+            sheetsClient = new Sheets.Builder(transport(), JSON_FACTORY, credential())
+                    .setApplicationName(APPLICATION_NAME)
+                    .build();
+        }
+        return sheetsClient;
+    }
 
-        Spreadsheet response = service.spreadsheets().get(spreadsheetId)
-                .setIncludeGridData(true)
-                .execute();
+    private static synchronized Drive drive() throws Exception {
+        if (driveClient == null) {
+            driveClient = new Drive.Builder(transport(), JSON_FACTORY, credential())
+                    .setApplicationName(APPLICATION_NAME)
+                    .build();
+        }
+        return driveClient;
+    }
 
-        List<Cell> cells = new ArrayList<>();
+    /** Ranges fetched at the same time */
+    static final int FETCH_THREADS = 4;
 
-        response.getSheets().forEach(sheet -> {
-            String currentSheetName = sheet.getProperties().getTitle();
-            if (!currentSheetName.equals(sheetName)) return;
-            for (GridData gridData : sheet.getData()) {
-                int rowIndex = 0;
-                if (gridData.getRowData() == null) continue;
-                for (RowData rowData : gridData.getRowData()) {
-                    int colIndex = 0;
-                    if (rowData.getValues() != null) {
-                        for (CellData cellData : rowData.getValues()) {
-                            String value = cellData.getFormattedValue() != null ? cellData.getFormattedValue() : null;
-                            String formula = (cellData.getUserEnteredValue() != null && cellData.getUserEnteredValue().getFormulaValue() != null)
-                                ? cellData.getUserEnteredValue().getFormulaValue() : null;
-                            Cell cell = new Cell(rowIndex + 1, colIndex + 1, value, formula);
-                            cells.add(cell);
-                            colIndex++;
-                        }
-                    }
-                    rowIndex++;
-                }
+    // Only what the graph uses; the default response also carries formatting,
+    // borders, validation and other metadata for every cell
+    private static final String SHEET_FIELDS = "sheets.properties(title,gridProperties.rowCount)";
+    private static final String CELL_FIELDS =
+            "sheets.data(startRow,startColumn,rowData.values(formattedValue,userEnteredValue.formulaValue))";
+
+    @Override
+    public List<Cell> readSheet(String spreadsheetId, String sheetName) throws Exception {
+        Map<Integer, List<Cell>> chunks = new TreeMap<>();
+        stream(spreadsheetId, sheetName::equals, (sheet, chunk, cells) -> {
+            synchronized (chunks) {
+                chunks.put(chunk, cells);
             }
         });
+        List<Cell> cells = new ArrayList<>();
+        chunks.values().forEach(cells::addAll);
         return cells;
     }
 
     /**
-     * Reads all sheets from a spreadsheet
+     * Fetches every sheet in ranges of {@link #CHUNK_ROWS} rows, {@link #FETCH_THREADS}
+     * at a time, and hands each range to the sink as soon as it arrives
      */
-    public Map<String, List<Cell>> readAllSheets(String spreadsheetId) throws Exception {
-        Sheets service = new Sheets.Builder(GoogleNetHttpTransport.newTrustedTransport(), JSON_FACTORY, getCredentials())
-                .setApplicationName(APPLICATION_NAME)
-                .build();
+    @Override
+    public List<String> streamAllSheets(String spreadsheetId, ChunkSink sink) throws Exception {
+        return stream(spreadsheetId, sheetName -> true, sink);
+    }
+
+    private List<String> stream(String spreadsheetId, Predicate<String> sheetFilter, ChunkSink sink) throws Exception {
+        Sheets service = sheets();
 
         logger.info("Fetching spreadsheet: {}", spreadsheetId);
-        Spreadsheet response = service.spreadsheets().get(spreadsheetId)
-                .setIncludeGridData(true)
+        Spreadsheet metadata = service.spreadsheets().get(spreadsheetId)
+                .setFields(SHEET_FIELDS)
                 .execute();
 
-        Map<String, List<Cell>> allSheets = new HashMap<>();
-        
-        logger.info("Found {} sheets in spreadsheet", response.getSheets().size());
-        response.getSheets().forEach(sheet -> {
+        List<String> sheetNames = new ArrayList<>();
+        List<Callable<Void>> fetches = new ArrayList<>();
+        for (Sheet sheet : metadata.getSheets()) {
             String sheetName = sheet.getProperties().getTitle();
-            logger.info("Processing sheet: {}", sheetName);
-        });
+            if (!sheetFilter.test(sheetName)) continue;
+            sheetNames.add(sheetName);
+            GridProperties grid = sheet.getProperties().getGridProperties();
+            int rowCount = grid != null && grid.getRowCount() != null ? grid.getRowCount() : 0;
+            for (int chunk = 0; chunk * CHUNK_ROWS < rowCount; chunk++) {
+                int index = chunk;
+                int firstRow = chunk * CHUNK_ROWS + 1;
+                String range = quote(sheetName) + "!" + firstRow + ":" + Math.min(rowCount, firstRow + CHUNK_ROWS - 1);
+                fetches.add(() -> {
+                    sink.accept(sheetName, index, fetchChunk(service, spreadsheetId, range, firstRow, sheetName));
+                    return null;
+                });
+            }
+        }
+        logger.info("Found {} sheets, fetching {} row chunks", sheetNames.size(), fetches.size());
 
-        response.getSheets().forEach(sheet -> {
-            String sheetName = sheet.getProperties().getTitle();
-            List<Cell> cells = new ArrayList<>();
-            logger.info("Fetching range for sheet: {}", sheetName);
-            
-            try {
-                logger.info("Sheet {} has {} grid data sections", sheetName, sheet.getData().size());
-                for (GridData gridData : sheet.getData()) {
-                    int rowIndex = 0;
-                    if (gridData.getRowData() == null) {
-                        logger.info("Sheet {} grid data has no row data", sheetName);
-                        continue;
-                    }
-                    logger.info("Sheet {} has {} rows", sheetName, gridData.getRowData().size());
-                    for (RowData rowData : gridData.getRowData()) {
-                        int colIndex = 0;
-                        if (rowData.getValues() != null) {
-                            for (CellData cellData : rowData.getValues()) {
-                                String value = cellData.getFormattedValue() != null ? cellData.getFormattedValue() : null;
-                                String formula = (cellData.getUserEnteredValue() != null && cellData.getUserEnteredValue().getFormulaValue() != null)
-                                    ? cellData.getUserEnteredValue().getFormulaValue() : null;
-                                
-                                Cell cell = new Cell(rowIndex + 1, colIndex + 1, value, formula);
-                                cell.setSheetName(sheetName);
-                                cells.add(cell);
-                                colIndex++;
-                            }
-                        }
-                        rowIndex++;
-                    }
-                }
-                logger.info("Loaded {} cells for sheet: {}", cells.size(), sheetName);
-                for (int i = 0; i < Math.min(5, cells.size()); i++) {
-                    Cell c = cells.get(i);
-                    logger.info("Cell {}{}: value='{}' formula='{}'", (char)('A'+c.getColumn()-1), c.getRow(), c.getValue(), c.getFormula());
+        ExecutorService pool = Executors.newFixedThreadPool(FETCH_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "sheets-fetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (Future<Void> fetch : pool.invokeAll(fetches)) {
+                try {
+                    fetch.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
                 }
-            } catch (Exception e) {
-                logger.error("Error fetching data for sheet {}: {}", sheetName, e.getMessage());
-                e.printStackTrace();
             }
-            allSheets.put(sheetName, cells);
-        });
-        
-        logger.info("Total sheets loaded: {}", allSheets.size());
-        allSheets.keySet().forEach(sheetName -> {
-            logger.info("Sheet '{}': {} cells", sheetName, allSheets.get(sheetName).size());
-        });
-        
-        return allSheets;
+        } finally {
+            pool.shutdownNow();
+        }
+        return sheetNames;
+    }
+
+    /**
+     * Fetches one range and decodes the response as it streams in, so the only copy
+     * of its cells is the returned chunk
+     */
+    private static List<Cell> fetchChunk(Sheets service, String spreadsheetId, String range, int firstRow,
+                                         String sheetName) throws Exception {
+        HttpResponse response = service.spreadsheets().get(spreadsheetId)
+                .setRanges(List.of(range))
+                .setIncludeGridData(true)
+                .setFields(CELL_FIELDS)
+                .executeUnparsed();
+
+        List<Cell> cells = new ArrayList<>();
+        try (Reader in = new InputStreamReader(response.getContent(), response.getContentCharset())) {
+            GridDataReader.read(in, firstRow - 1, 0, (row, column, value, formula) -> {
+                Cell cell = new Cell(row, column, value, formula);
+                cell.setSheetName(sheetName);
+                cells.add(cell);
+            });
+        } finally {
+            response.disconnect();
+        }
+        logger.debug("Fetched {}: {} cells", range, cells.size());
+        return cells;
+    }
+
+    private static String quote(String sheetName) {
+        return "'" + sheetName.replace("'", "''") + "'";
     }
 
     /**
      * Updates a cell's value in the Google Sheet
      */
+    @Override
     public boolean updateCell(String spreadsheetId, String sheetName, String cellReference, String newValue) {
         try {
-            Sheets service = new Sheets.Builder(GoogleNetHttpTransport.newTrustedTransport(), JSON_FACTORY, getCredentials())
-                    .setApplicationName(APPLICATION_NAME)
-                    .build();
+            Sheets service = sheets();
 
             // Create the value range for the update
             List<List<Object>> values = Arrays.asList(Arrays.asList(newValue));
@@ -200,16 +232,16 @@ public class SheetsReader {
         }
     }
 
+    @Override
+    public long getLastModifiedTime(String spreadsheetId) throws Exception {
+        return getSpreadsheetLastModifiedTime(spreadsheetId);
+    }
+
     /**
      * Returns the last modified time of the spreadsheet (epoch millis)
      */
     public static long getSpreadsheetLastModifiedTime(String spreadsheetId) throws Exception {
-        SheetsReader reader = new SheetsReader();
-        com.google.api.services.drive.Drive driveService = new com.google.api.services.drive.Drive.Builder(
-                GoogleNetHttpTransport.newTrustedTransport(), JSON_FACTORY, reader.getDriveCredentials())
-                .setApplicationName(APPLICATION_NAME)
-                .build();
-        com.google.api.services.drive.model.File file = driveService.files().get(spreadsheetId)
+        com.google.api.services.drive.model.File file = drive().files().get(spreadsheetId)
                 .setFields("modifiedTime")
                 .execute();
         return file.getModifiedTime().getValue(); // returns epoch millis
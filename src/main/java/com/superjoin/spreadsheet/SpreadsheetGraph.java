@@ -1,91 +1,103 @@
 package com.superjoin.spreadsheet;
 
+import com.superjoin.spreadsheet.formula.FormulaCache;
+import com.superjoin.spreadsheet.formula.FormulaParseException;
+import com.superjoin.spreadsheet.formula.ReferenceNode;
+import com.superjoin.spreadsheet.graph.GraphStore;
+import com.superjoin.spreadsheet.graph.NodeIdSet;
+import com.superjoin.spreadsheet.model.A1Notation;
 import com.superjoin.spreadsheet.model.CellNode;
-import com.superjoin.spreadsheet.model.GraphNode;
+import com.superjoin.spreadsheet.model.RangeNode;
 import com.superjoin.spreadsheet.model.SheetNode;
+import com.superjoin.spreadsheet.services.GraphSnapshot;
 import com.superjoin.spreadsheet.services.KnowledgeGraphService;
+import com.superjoin.spreadsheet.services.MutationLog;
+import com.superjoin.spreadsheet.services.RecalculationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.GeneralSecurityException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 /**
- * Main class that coordinates between the SheetsReader and KnowledgeGraphService.
+ * Main class that coordinates between a {@link SheetSource} and KnowledgeGraphService.
  * This class builds the knowledge graph from spreadsheet data and handles formula parsing.
  */
 public class SpreadsheetGraph {
     private static final Logger logger = LoggerFactory.getLogger(SpreadsheetGraph.class);
     
-    private final SheetsReader reader;
+    private final SheetSource source;
     private final KnowledgeGraphService graphService;
     private String currentSpreadsheetId;
     private String currentSheetName;
     private Map<String, String> sheetNames = new HashMap<>(); // Track all loaded sheets
+    // Filled-down formulas share one parse per relative (R1C1) shape
+    private final FormulaCache formulaCache = new FormulaCache();
+    private final RecalculationService recalculationService;
+    // Checkpoint file and write-ahead log of edits made since, once a snapshot exists
+    private Path snapshotFile;
+    private long snapshotSourceModifiedTime;
+    private MutationLog mutationLog;
 
-    // Regex pattern to match cell references in formulas (e.g., A1, B2, Sheet1!A1, C:C, D:D)
-    private static final Pattern CELL_REFERENCE_PATTERN = Pattern.compile(
-        "([A-Za-z]+[0-9]+)|([A-Za-z]+![A-Za-z]+[0-9]+)|([A-Za-z]+![A-Za-z]+:[A-Za-z]+)|([A-Za-z]+:[A-Za-z]+)"
-    );
-    
-    // Simpler pattern for cross-sheet references
-    private static final Pattern CROSS_SHEET_PATTERN = Pattern.compile("([A-Za-z0-9_]+)!([A-Za-z0-9:]+)");
+    /** Logged mutations after which an edit triggers a new checkpoint */
+    static final long CHECKPOINT_RECORDS = 10_000;
 
     public SpreadsheetGraph() throws IOException, GeneralSecurityException {
-        this.reader = new SheetsReader();
+        this(new SheetsReader());
+    }
+
+    public SpreadsheetGraph(SheetSource source) {
+        this.source = source;
         this.graphService = new KnowledgeGraphService();
+        this.recalculationService = new RecalculationService(graphService, formulaCache);
     }
 
     /**
      * Loads all sheets from a spreadsheet
+     *
+     * @param spreadsheetId spreadsheet id or file path, depending on the source
      */
     public void loadAllSheets(String spreadsheetId) throws IOException {
         logger.info("Loading all sheets from spreadsheet: {}", spreadsheetId);
         
         this.currentSpreadsheetId = spreadsheetId;
         
+        // A full load is not logged; the next checkpoint covers it
+        closeMutationLog();
         // Clear existing graph
         graphService.clear();
         
         try {
-            Map<String, List<Cell>> allSheets = reader.readAllSheets(spreadsheetId);
-            logger.info("Retrieved {} sheets from reader", allSheets.size());
+            // Chunks are turned into nodes as they arrive, so no sheet is held whole
+            Map<String, SheetGraphBlock> building = new ConcurrentHashMap<>();
+            List<String> sheetOrder = source.streamAllSheets(spreadsheetId, (sheetName, chunk, cells) ->
+                    building.computeIfAbsent(sheetName, SheetGraphBlock::start).addChunk(chunk, cells, formulaCache));
+            logger.info("Retrieved {} sheets from reader", sheetOrder.size());
             
-            boolean firstSheet = true;
-            for (Map.Entry<String, List<Cell>> entry : allSheets.entrySet()) {
-                String sheetName = entry.getKey();
-                List<Cell> cells = entry.getValue();
-                
-                logger.info("Starting to process sheet: {} with {} cells", sheetName, cells.size());
-                
-                // Set the first sheet as the current sheet for backward compatibility
-                if (firstSheet) {
-                    this.currentSheetName = sheetName;
-                    firstSheet = false;
-                    logger.info("Set current sheet to: {}", sheetName);
-                }
-                
-                logger.info("Processing sheet: {} with {} cells", sheetName, cells.size());
-                loadSheetData(sheetName, cells);
-                
-                // Show progress after each sheet
-                var totalCells = graphService.getCellNodes().size();
-                logger.info("After processing sheet '{}': total cells in graph = {}", sheetName, totalCells);
+            if (!sheetOrder.isEmpty()) {
+                // The first sheet is the current sheet for backward compatibility
+                this.currentSheetName = sheetOrder.get(0);
+                logger.info("Set current sheet to: {}", currentSheetName);
             }
+            List<SheetGraphBlock> blocks = sheetOrder.parallelStream()
+                    .map(name -> building.computeIfAbsent(name, SheetGraphBlock::start).finish())
+                    .collect(Collectors.toList());
+            mergeBlocks(blocks);
             
-            // Build cross-sheet dependencies
-            logger.info("Building cross-sheet dependencies...");
-            buildCrossSheetDependencies();
-            
-            logger.info("Successfully loaded {} sheets", allSheets.size());
-            logger.info("Final graph state: {} total cells", graphService.getCellNodes().size());
+            logger.info("Successfully loaded {} sheets", sheetOrder.size());
+            logger.info("Final graph state: {} nodes, {} edges", graphService.getNodeCount(), graphService.getEdgeCount());
             
         } catch (Exception e) {
             throw new IOException("Failed to read sheets: " + e.getMessage(), e);
@@ -101,214 +113,156 @@ public class SpreadsheetGraph {
         this.currentSpreadsheetId = spreadsheetId;
         this.currentSheetName = sheetName;
         
+        closeMutationLog();
         // Clear existing graph
         graphService.clear();
         
-        // Create sheet node
-        SheetNode sheetNode = new SheetNode(sheetName, sheetName);
-        graphService.addNode(sheetNode);
-        
         // Read spreadsheet data as a list of cells
         List<Cell> cells;
         try {
-            cells = reader.readSheet(spreadsheetId, sheetName);
+            cells = source.readSheet(spreadsheetId, sheetName);
         } catch (Exception e) {
             throw new IOException("Failed to read sheet: " + e.getMessage(), e);
         }
         
-        loadSheetData(sheetName, cells);
+        buildGraph(Map.of(sheetName, cells));
     }
 
     /**
-     * Loads data for a specific sheet
+     * Builds the graph for a set of sheets.
+     * Each sheet's nodes and same-sheet edges are built in parallel into a
+     * {@link SheetGraphBlock}; blocks are merged in sheet order, then cross-sheet
+     * references are resolved in parallel and merged in sheet order again, so the
+     * resulting graph does not depend on thread scheduling.
      */
-    private void loadSheetData(String sheetName, List<Cell> cells) {
-        SheetNode sheetNode = new SheetNode(sheetName, sheetName);
-        graphService.addNode(sheetNode);
-        sheetNames.put(sheetName, sheetName);
-        logger.info("Loading {} cells for sheet: {}", cells.size(), sheetName);
-        int processedCells = 0;
-        int addedCells = 0;
-        int logged = 0;
-        for (Cell cell : cells) {
-            processedCells++;
-            // Add ALL cells for debugging
-            CellNode cellNode = new CellNode(sheetName, cell.getRow(), cell.getColumn(), cell.getValue(), cell.getFormula());
-            graphService.addNode(cellNode);
-            addedCells++;
-            if (logged < 10) {
-                logger.info("Added cell: {} with ID: {} (value='{}' formula='{}')", cellNode.getA1Notation(), cellNode.getId(), cellNode.getValue(), cellNode.getFormula());
-                logged++;
-            }
-            graphService.addEdge(sheetName, cellNode.getId(), KnowledgeGraphService.CONTAINS_EDGE);
-            if (cell.hasFormula()) {
-                Set<String> dependencies = parseFormulaDependencies(cell.getFormula(), sheetName);
-                for (String dependency : dependencies) {
-                    CellNode dependentCell = graphService.findCellByA1Notation(sheetName, dependency);
-                    if (dependentCell != null) {
-                        graphService.addEdge(cellNode.getId(), dependentCell.getId(), KnowledgeGraphService.DEPENDS_ON_EDGE);
-                    }
-                }
-            }
+    void buildGraph(Map<String, List<Cell>> sheets) {
+        mergeBlocks(sheets.entrySet().parallelStream()
+                .map(entry -> SheetGraphBlock.build(entry.getKey(), entry.getValue(), formulaCache))
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Merges built blocks into the graph in list order and indexes the result
+     */
+    private void mergeBlocks(List<SheetGraphBlock> blocks) {
+        int crossSheetReferences = 0;
+        for (SheetGraphBlock block : blocks) {
+            block.merge(graphService);
+            sheetNames.put(block.getSheetName(), block.getSheetName());
+            crossSheetReferences += block.getCrossSheetCount();
         }
-        logger.info("Finished loading sheet: {} - processed {} cells, added {} cells to graph", sheetName, processedCells, addedCells);
         
-        // Debug: Show some cell IDs that should be searchable
-        var allCells = graphService.getCellNodes();
-        logger.info("Total cells in graph: {}", allCells.size());
-        if (allCells.size() > 0) {
-            logger.info("Sample cell IDs (first 10):");
-            allCells.stream().limit(10).forEach(c -> 
-                logger.info("  Cell ID: '{}' (A1: {})", c.getId(), c.getA1Notation()));
+        logger.info("Building cross-sheet dependencies for {} references", crossSheetReferences);
+        blocks.parallelStream().forEach(block -> block.resolveCrossSheet(graphService));
+        for (SheetGraphBlock block : blocks) {
+            block.mergeCrossSheet(graphService);
         }
+        indexGraph();
+        logger.info("Built graph for {} sheets ({} distinct formula shapes cached)", blocks.size(), formulaCache.size());
+    }
+
+    private void indexGraph() {
+        graphService.indexRanges();
+        graphService.indexComponents();
+        graphService.indexTopology();
+        graphService.indexReachability();
     }
 
     /**
-     * Builds cross-sheet dependencies by analyzing formulas that reference other sheets
+     * Writes the loaded graph to a snapshot file as a checkpoint and starts a
+     * write-ahead log next to it for the edits that follow
+     *
+     * @param sourceModifiedTime modified time of the spreadsheet the graph was loaded from
      */
-    private void buildCrossSheetDependencies() {
-        List<CellNode> formulaCells = graphService.getFormulaCells();
-        logger.info("Building cross-sheet dependencies for {} formula cells", formulaCells.size());
-        
-        for (CellNode cellNode : formulaCells) {
-            if (cellNode.getFormula() != null) {
-                logger.info("Processing formula cell: {} with formula: {}", cellNode.getId(), cellNode.getFormula());
-                parseCrossSheetDependencies(cellNode, cellNode.getFormula());
-            }
-        }
-        logger.info("Finished building cross-sheet dependencies");
+    public synchronized void saveSnapshot(Path file, long sourceModifiedTime) throws IOException {
+        closeMutationLog();
+        long checkpoint = GraphSnapshot.write(graphService, file, currentSpreadsheetId, currentSheetName, sourceModifiedTime);
+        attachMutationLog(file, sourceModifiedTime, MutationLog.create(logFileOf(file), checkpoint));
+        logger.info("Saved graph snapshot to {}", file);
     }
 
     /**
-     * Parses cross-sheet dependencies in formulas (e.g., Sheet2!A1, Sheet2!A:B)
+     * Replaces the graph with a snapshot of the given spreadsheet, if the file exists
+     * and was taken from that spreadsheet.
+     *
+     * @return the source modified time recorded in the snapshot, or -1 if it was not loaded
      */
-    private void parseCrossSheetDependencies(CellNode cellNode, String formula) {
-        // Use the simpler pattern for cross-sheet references
-        Matcher matcher = CROSS_SHEET_PATTERN.matcher(formula);
-        
-        logger.info("Parsing cross-sheet dependencies for {} with formula: {}", cellNode.getId(), formula);
-        
-        boolean foundAny = false;
-        while (matcher.find()) {
-            foundAny = true;
-            String referencedSheet = matcher.group(1);
-            String referencedRange = matcher.group(2);
-            
-            logger.info("Found cross-sheet reference: {}!{}", referencedSheet, referencedRange);
-            
-            // Handle column ranges like A:B or C:C
-            if (referencedRange.contains(":")) {
-                // This is a column range, find all cells in that range
-                String[] parts = referencedRange.split(":");
-                if (parts.length == 2) {
-                    String startCol = parts[0];
-                    String endCol = parts[1];
-                    
-                    logger.info("Processing column range: {} to {}", startCol, endCol);
-                    
-                    // Find all cells in the referenced sheet that are in this column range
-                    List<CellNode> allCellsInSheet = graphService.getCellNodes().stream()
-                        .filter(cell -> cell.getSheetId().equals(referencedSheet))
-                        .filter(cell -> {
-                            String cellCol = cell.getA1Notation().replaceAll("[0-9]+", "");
-                            boolean inRange = cellCol.compareTo(startCol) >= 0 && cellCol.compareTo(endCol) <= 0;
-                            logger.info("Cell {} column {} in range {} to {}: {}", cell.getId(), cellCol, startCol, endCol, inRange);
-                            return inRange;
-                        })
-                        .collect(java.util.stream.Collectors.toList());
-                    
-                    logger.info("Found {} cells in column range {}:{} for sheet {}", allCellsInSheet.size(), startCol, endCol, referencedSheet);
-                    
-                    for (CellNode referencedCell : allCellsInSheet) {
-                        graphService.addEdge(cellNode.getId(), referencedCell.getId(), KnowledgeGraphService.DEPENDS_ON_EDGE);
-                        logger.info("Cross-sheet dependency: {} depends on {} (column range)", cellNode.getId(), referencedCell.getId());
-                    }
-                }
-            } else {
-                // This is a single cell reference
-                CellNode referencedCellNode = graphService.findCellByA1Notation(referencedSheet, referencedRange);
-                
-                if (referencedCellNode != null) {
-                    // Add dependency edge
-                    graphService.addEdge(cellNode.getId(), referencedCellNode.getId(), KnowledgeGraphService.DEPENDS_ON_EDGE);
-                    logger.info("Cross-sheet dependency: {} depends on {}", cellNode.getId(), referencedCellNode.getId());
-                } else {
-                    logger.warn("Cross-sheet reference not found: {}!{}", referencedSheet, referencedRange);
-                }
-            }
+    public synchronized long loadSnapshot(Path file, String spreadsheetId) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return -1;
         }
-        
-        if (!foundAny) {
-            logger.info("No cross-sheet references found in formula: {}", formula);
+        long start = System.nanoTime();
+        GraphSnapshot snapshot = GraphSnapshot.open(file);
+        if (!spreadsheetId.equals(snapshot.getSpreadsheetId())) {
+            logger.info("Ignoring snapshot {} of spreadsheet {}", file, snapshot.getSpreadsheetId());
+            return -1;
+        }
+        closeMutationLog();
+        graphService.clear();
+        sheetNames.clear();
+        snapshot.loadInto(graphService);
+        // Edits made after the snapshot was taken
+        MutationLog log = MutationLog.open(logFileOf(file), snapshot.getCreatedAt(), graphService);
+        for (SheetNode sheet : graphService.getSheetNodes()) {
+            sheetNames.put(sheet.getSheetId(), sheet.getName());
         }
+        indexGraph();
+        this.currentSpreadsheetId = spreadsheetId;
+        this.currentSheetName = snapshot.getCurrentSheetName();
+        attachMutationLog(file, snapshot.getSourceModifiedTime(), log);
+        logger.info("Loaded snapshot {} ({} nodes, {} edges, {} logged edits) in {} ms", file, snapshot.getNodeCount(),
+                snapshot.getEdgeCount(), log.replayed(), (System.nanoTime() - start) / 1_000_000);
+        return snapshot.getSourceModifiedTime();
     }
 
     /**
-     * Builds dependency edges by parsing formulas
+     * Write-ahead log next to a snapshot file
      */
-    private void buildFormulaDependencies() {
-        List<CellNode> formulaCells = graphService.getFormulaCells();
-        
-        for (CellNode cellNode : formulaCells) {
-            String formula = cellNode.getFormula();
-            if (formula != null && !formula.trim().isEmpty()) {
-                Set<String> dependencies = parseFormulaDependencies(formula, cellNode.getSheetId());
-                
-                for (String dependency : dependencies) {
-                    // Find the dependent cell node
-                    CellNode dependentCell = graphService.findCellByA1Notation(
-                        cellNode.getSheetId(), dependency);
-                    
-                    if (dependentCell != null) {
-                        // Add DEPENDS_ON edge from formula cell to dependent cell
-                        graphService.addEdge(
-                            cellNode.getId(),
-                            dependentCell.getId(),
-                            KnowledgeGraphService.DEPENDS_ON_EDGE
-                        );
-                    }
-                }
-            }
+    static Path logFileOf(Path snapshot) {
+        return snapshot.resolveSibling(snapshot.getFileName() + ".wal");
+    }
+
+    private void attachMutationLog(Path file, long sourceModifiedTime, MutationLog log) {
+        this.snapshotFile = file;
+        this.snapshotSourceModifiedTime = sourceModifiedTime;
+        this.mutationLog = log;
+        graphService.setMutationLog(log);
+    }
+
+    private synchronized void closeMutationLog() {
+        if (mutationLog == null) {
+            return;
+        }
+        graphService.setMutationLog(null);
+        try {
+            mutationLog.close();
+        } catch (IOException e) {
+            logger.warn("Could not close write-ahead log: {}", e.getMessage());
         }
+        mutationLog = null;
     }
 
     /**
-     * Parses a formula to extract cell references
+     * Makes the logged edits durable, checkpointing once the log has grown long
      */
-    private Set<String> parseFormulaDependencies(String formula, String sheetName) {
-        Set<String> dependencies = new java.util.HashSet<>();
-        Matcher matcher = CELL_REFERENCE_PATTERN.matcher(formula);
-        
-        logger.info("Parsing formula dependencies for sheet '{}': {}", sheetName, formula);
-        
-        while (matcher.find()) {
-            String reference = matcher.group();
-            logger.info("Found reference: {}", reference);
-            
-            // Handle different reference formats
-            if (reference.contains("!")) {
-                // Cross-sheet reference (e.g., Sheet1!A1) - skip for now, handled by parseCrossSheetDependencies
-                logger.info("Skipping cross-sheet reference in parseFormulaDependencies: {}", reference);
+    private synchronized void syncMutationLog() {
+        if (mutationLog == null) {
+            return;
+        }
+        try {
+            if (mutationLog.records() >= CHECKPOINT_RECORDS) {
+                saveSnapshot(snapshotFile, snapshotSourceModifiedTime);
             } else {
-                // Same sheet reference (e.g., A1, C:C, D:D)
-                if (reference.contains(":")) {
-                    // Column range like C:C or D:D
-                    logger.info("Found column range reference: {}", reference);
-                    // For now, just add the range as a dependency - the cross-sheet parser will handle it
-                    dependencies.add(reference);
-                } else {
-                    // Single cell reference like A1
-                    dependencies.add(reference);
-                }
+                mutationLog.sync();
             }
+        } catch (IOException e) {
+            logger.warn("Could not persist graph edits: {}", e.getMessage());
         }
-        
-        logger.info("Parsed dependencies for sheet '{}': {}", sheetName, dependencies);
-        return dependencies;
     }
 
     /**
-     * Performs impact analysis on a cell
+     * Performs impact analysis on a cell, returning the ids of the cells that
+     * transitively depend on it
      */
     public Set<String> analyzeImpact(String cellReference) {
         // Parse cell reference
@@ -317,56 +271,105 @@ public class SpreadsheetGraph {
         String a1Notation = parts.length > 1 ? parts[1] : parts[0];
         
         logger.info("Looking for cell: sheetName='{}', a1Notation='{}'", sheetName, a1Notation);
-        logger.info("Current sheet name: '{}'", currentSheetName);
-        
-        // Debug: List some available cells
-        var allCells = graphService.getCellNodes();
-        logger.info("Total cells in graph: {}", allCells.size());
-        
-        // Debug: Show cells from the specific sheet we're looking for
-        var sheetCells = allCells.stream()
-            .filter(cell -> cell.getSheetId().equals(sheetName))
-            .collect(java.util.stream.Collectors.toList());
-        logger.info("Cells in sheet '{}': {} cells", sheetName, sheetCells.size());
-        
-        if (sheetCells.size() > 0) {
-            logger.info("First 5 cells in sheet '{}': {}", sheetName, 
-                sheetCells.stream()
-                    .limit(5)
-                    .map(c -> c.getId())
-                    .collect(java.util.stream.Collectors.toList()));
-        }
-        
-        if (allCells.size() > 0) {
-            logger.info("First 5 cells: {}", allCells.stream()
-                .limit(5)
-                .map(c -> c.getId())
-                .collect(java.util.stream.Collectors.toList()));
-        }
-        
-        // Debug: Show what we're searching for
-        String searchId = sheetName + "!" + a1Notation;
-        logger.info("Searching for cell ID: '{}'", searchId);
         
         CellNode cell = graphService.findCellByA1Notation(sheetName, a1Notation);
         if (cell == null) {
             logger.warn("Cell not found: {}", cellReference);
-            logger.info("Available cell nodes (first 10): {}", graphService.getCellNodes().stream()
-                .map(CellNode::getId)
-                .limit(10)
-                .collect(java.util.stream.Collectors.toList()));
+            if (logger.isDebugEnabled()) {
+                logger.debug("Available cell nodes (first 10): {}", graphService.getCellNodes().stream()
+                    .map(CellNode::getId)
+                    .limit(10)
+                    .collect(java.util.stream.Collectors.toList()));
+            }
             return new java.util.HashSet<>();
         }
         
         // Find all cells that depend on this cell (transitive dependents)
-        Set<String> dependents = graphService.getTransitiveDependents(cell.getId());
-        logger.info("Dependents set for {}: {}", cell.getId(), dependents);
-        logger.info("Direct dependents (reverse edges) for {}: {}", cell.getId(), graphService.getDependents(cell.getId()));
+        Set<String> dependents = cellIds(graphService.transitiveDependents(graphService.getStore().indexOf(cell.getId())));
         logger.info("Impact analysis for {}: {} direct dependents, {} total affected cells", 
                 cellReference, graphService.getDependents(cell.getId()).size(), dependents.size());
         return dependents;
     }
 
+    /**
+     * Performs impact analysis on a block of cells in one traversal.
+     * Returns the union of {@link #analyzeImpact(String)} over the references;
+     * references to cells that do not exist are skipped.
+     */
+    public Set<String> analyzeImpact(Collection<String> cellReferences) {
+        int[] seeds = resolveCells(cellReferences).values().stream().mapToInt(Integer::intValue).toArray();
+        NodeIdSet affected = graphService.transitiveDependents(seeds);
+        logger.info("Impact analysis for {} cells: {} total affected cells", seeds.length, affected.size());
+        return cellIds(affected);
+    }
+
+    /**
+     * Like {@link #analyzeImpact(Collection)}, additionally attributing every
+     * affected cell to the cells of the block that reach it.
+     *
+     * @return affected cell ids mapped to the ids of the input cells they depend on
+     */
+    public Map<String, Set<String>> attributeImpact(Collection<String> cellReferences) {
+        Map<String, Integer> cells = resolveCells(cellReferences);
+        String[] inputs = cells.keySet().toArray(new String[0]);
+        int[] seeds = cells.values().stream().mapToInt(Integer::intValue).toArray();
+        NodeIdSet affected = graphService.transitiveDependents(seeds);
+        long[][] attribution = graphService.attributeDependents(seeds, affected);
+
+        Map<String, Set<String>> result = new LinkedHashMap<>();
+        for (int i = 0; i < affected.size(); i++) {
+            if (!(graphService.getStore().nodeAt(affected.get(i)) instanceof CellNode)) {
+                continue;
+            }
+            Set<String> sources = new LinkedHashSet<>();
+            long[] bits = attribution[i];
+            for (int w = 0; w < bits.length; w++) {
+                for (long word = bits[w]; word != 0; word &= word - 1) {
+                    sources.add(inputs[w * 64 + Long.numberOfTrailingZeros(word)]);
+                }
+            }
+            result.put(graphService.getStore().idAt(affected.get(i)), sources);
+        }
+        logger.info("Attributed impact of {} cells to {} affected nodes", seeds.length, result.size());
+        return result;
+    }
+
+    /**
+     * Ids of the cells among traversed nodes. Ranges and sheets the traversal
+     * passes through are graph internals and are left out.
+     */
+    private Set<String> cellIds(NodeIdSet nodes) {
+        GraphStore store = graphService.getStore();
+        Set<String> ids = new LinkedHashSet<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            if (store.nodeAt(nodes.get(i)) instanceof CellNode) {
+                ids.add(store.idAt(nodes.get(i)));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Resolves cell references to node indices, keyed by cell id in input order.
+     * Unqualified references use the current sheet.
+     */
+    private Map<String, Integer> resolveCells(Collection<String> cellReferences) {
+        Map<String, Integer> cells = new LinkedHashMap<>();
+        for (String reference : cellReferences) {
+            String[] parts = reference.split("!");
+            String sheetName = parts.length > 1 ? parts[0] : currentSheetName;
+            String a1Notation = parts.length > 1 ? parts[1] : parts[0];
+            int[] position = A1Notation.parseCell(a1Notation);
+            int index = position != null ? graphService.cellIndex(sheetName, position[0], position[1]) : GraphStore.NO_NODE;
+            if (index == GraphStore.NO_NODE) {
+                logger.warn("Cell not found: {}", reference);
+                continue;
+            }
+            cells.put(graphService.getStore().idAt(index), index);
+        }
+        return cells;
+    }
+
     /**
      * Finds all cells that depend on a given cell
      */
@@ -390,7 +393,7 @@ public class SpreadsheetGraph {
         }
         
         // Find all cells that this cell depends on (transitive dependencies)
-        Set<String> dependencies = graphService.getTransitiveDependencies(cell.getId());
+        Set<String> dependencies = cellIds(graphService.transitiveDependencies(graphService.getStore().indexOf(cell.getId())));
         
         logger.info("Dependency analysis for {}: {} direct dependencies, {} total dependency cells", 
                 cellReference, graphService.getDependencies(cell.getId()).size(), dependencies.size());
@@ -433,6 +436,13 @@ public class SpreadsheetGraph {
         return new ArrayList<>(sheetNames.keySet());
     }
 
+    /**
+     * Gets the source sheets are loaded from
+     */
+    public SheetSource getSource() {
+        return source;
+    }
+
     /**
      * Gets the knowledge graph service for advanced operations
      */
@@ -452,13 +462,13 @@ public class SpreadsheetGraph {
             
             logger.info("Updating cell {} to: {}", cellReference, newValue);
             
-            // Update the cell in Google Sheets
-            boolean success = reader.updateCell(currentSpreadsheetId, sheetName, a1Notation, newValue);
+            // Write the cell back to the source
+            boolean success = source.updateCell(currentSpreadsheetId, sheetName, a1Notation, newValue);
             
             if (success) {
-                // Reload the graph to reflect changes
-                loadAllSheets(currentSpreadsheetId);
-                logger.info("Successfully updated cell {} and refreshed graph", cellReference);
+                // Patch the edited cell rather than reloading the whole spreadsheet
+                applyCellUpdate(sheetName, a1Notation, newValue);
+                logger.info("Successfully updated cell {} and patched graph", cellReference);
                 return true;
             } else {
                 logger.error("Failed to update cell {}", cellReference);
@@ -470,6 +480,87 @@ public class SpreadsheetGraph {
         }
     }
 
+    /**
+     * Applies an edit of one cell to the graph.
+     * The cell node keeps its index, so edges from its dependents stay valid; only
+     * its own DEPENDS_ON edges are dropped and rebuilt from the new formula.
+     * Input starting with '=' is a formula, anything else a plain value.
+     */
+    void applyCellUpdate(String sheetName, String a1Notation, String input) {
+        int[] position = A1Notation.parseCell(a1Notation);
+        if (position == null) {
+            logger.warn("Cannot apply update to invalid cell reference: {}!{}", sheetName, a1Notation);
+            return;
+        }
+        boolean isFormula = input != null && input.startsWith("=");
+        CellNode cell = graphService.findCellByA1Notation(sheetName, A1Notation.format(position[0], position[1]));
+        // A formula's result is only known after the next read, so keep the last one until then
+        String value = isFormula ? (cell != null ? cell.getValue() : null) : input;
+        String formula = isFormula ? input : null;
+        
+        if (cell == null) {
+            cell = new CellNode(sheetName, position[0], position[1], value, formula);
+            if (graphService.getNode(sheetName) == null) {
+                graphService.addNode(new SheetNode(sheetName, sheetName));
+                sheetNames.put(sheetName, sheetName);
+            }
+            graphService.addNode(cell);
+            graphService.addEdge(sheetName, cell.getId(), KnowledgeGraphService.CONTAINS_EDGE);
+        } else {
+            // Re-adding replaces the contents in place and goes through the mutation log
+            cell = new CellNode(sheetName, position[0], position[1], value, formula);
+            graphService.addNode(cell);
+            graphService.removeOutgoingEdges(cell.getId(), KnowledgeGraphService.DEPENDS_ON_EDGE);
+        }
+        
+        if (cell.hasFormula()) {
+            try {
+                for (ReferenceNode reference : formulaCache.references(formula, cell.getRow(), cell.getColumn())) {
+                    addReferenceDependency(cell, reference);
+                }
+            } catch (FormulaParseException e) {
+                logger.warn("Could not parse formula in {}: {} ({})", cell.getId(), formula, e.getMessage());
+            }
+        }
+        syncMutationLog();
+        logger.info("Patched {} ({} dependencies)", cell.getId(), graphService.getDependencies(cell.getId()).size());
+    }
+
+    /**
+     * Adds the DEPENDS_ON edge for one reference of an edited formula cell
+     */
+    private void addReferenceDependency(CellNode cell, ReferenceNode reference) {
+        String referencedSheet = reference.resolveSheet(cell.getSheetId());
+        if (reference.isRange()) {
+            RangeNode range = graphService.getOrAddRange(reference.toRangeNode(cell.getSheetId()));
+            graphService.addEdge(cell.getId(), range.getId(), KnowledgeGraphService.DEPENDS_ON_EDGE);
+            return;
+        }
+        int referenced = graphService.cellIndex(referencedSheet, reference.getFirstRow(), reference.getFirstColumn());
+        if (referenced != GraphStore.NO_NODE) {
+            graphService.addEdge(cell.getId(), graphService.getStore().idAt(referenced), KnowledgeGraphService.DEPENDS_ON_EDGE);
+        } else {
+            graphService.addUnresolvedReference(graphService.cellIndex(cell.getSheetId(), cell.getRow(), cell.getColumn()),
+                    referencedSheet, reference.getFirstRow(), reference.getFirstColumn());
+        }
+    }
+
+    /**
+     * What-if analysis: recalculates locally as if the given cells held the given
+     * values or formulas, without writing to Google Sheets or changing the graph.
+     * References without a sheet name refer to the current sheet.
+     *
+     * @return new values of the edited cells and every formula cell depending on them
+     */
+    public Map<String, Object> whatIf(Map<String, String> edits) {
+        Map<String, String> qualified = new LinkedHashMap<>();
+        for (Map.Entry<String, String> edit : edits.entrySet()) {
+            String reference = edit.getKey().contains("!") ? edit.getKey() : currentSheetName + "!" + edit.getKey();
+            qualified.put(reference, edit.getValue());
+        }
+        return recalculationService.recalculate(qualified);
+    }
+
     /**
      * Gets all cells in the graph
      */
@@ -0,0 +1,392 @@
+package com.superjoin.spreadsheet;
+
+import com.superjoin.spreadsheet.formula.FormulaCache;
+import com.superjoin.spreadsheet.formula.FormulaParseException;
+import com.superjoin.spreadsheet.model.A1Notation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads a local XLSX workbook without Excel or POI: the package is opened as a zip
+ * and each part is read with a SAX parser, so a sheet's XML streams through and
+ * only the current chunk of cells is held in memory.
+ *
+ * Cells carry the values and formulas Excel cached in the file. Values are stored
+ * unformatted (numbers and dates as Excel wrote them, booleans as TRUE/FALSE), since
+ * applying number formats would mean reading the styles part. Shared formulas are
+ * expanded by moving the anchor cell's formula to each cell of the group. The shared
+ * string table is the one part held whole, as any cell may point into it.
+ */
+public class XlsxSheetSource implements SheetSource {
+    private static final Logger logger = LoggerFactory.getLogger(XlsxSheetSource.class);
+
+    private static final String ROOT_RELATIONSHIPS = "_rels/.rels";
+    private static final String OFFICE_DOCUMENT = "/officeDocument";
+    private static final String SHARED_STRINGS = "/sharedStrings";
+
+    @Override
+    public List<String> streamAllSheets(String workbook, ChunkSink sink) throws Exception {
+        try (ZipFile zip = new ZipFile(workbook)) {
+            SAXParser parser = parser();
+            String workbookPart = relationships(zip, parser, ROOT_RELATIONSHIPS, "")
+                    .getOrDefault(OFFICE_DOCUMENT, "xl/workbook.xml");
+            Map<String, String> parts = relationships(zip, parser, relationshipsOf(workbookPart), directoryOf(workbookPart));
+
+            String sharedStringsPart = parts.get(SHARED_STRINGS);
+            List<String> sharedStrings = sharedStringsPart != null
+                    ? sharedStrings(zip, parser, sharedStringsPart) : List.of();
+
+            WorkbookHandler sheets = new WorkbookHandler();
+            parse(zip, parser, workbookPart, sheets);
+            List<String> sheetNames = new ArrayList<>();
+            for (String[] sheet : sheets.sheets) {
+                String part = parts.get(sheet[1]);
+                if (part == null) {
+                    throw new IOException("Workbook has no part for sheet " + sheet[0]);
+                }
+                sheetNames.add(sheet[0]);
+                SheetHandler handler = new SheetHandler(new SheetChunker(sheet[0], sink), sharedStrings);
+                parse(zip, parser, part, handler);
+                handler.chunker.finish();
+                logger.info("Read sheet {} from {}: {} cells, {} formulas", sheet[0], part, handler.cells, handler.formulas);
+            }
+            return sheetNames;
+        }
+    }
+
+    @Override
+    public long getLastModifiedTime(String workbook) throws IOException {
+        return Files.getLastModifiedTime(Path.of(workbook)).toMillis();
+    }
+
+    private static SAXParser parser() throws ParserConfigurationException, SAXException {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        // Package parts never need a DTD; refusing them rules out external entities
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        return factory.newSAXParser();
+    }
+
+    private static void parse(ZipFile zip, SAXParser parser, String part, DefaultHandler handler) throws Exception {
+        ZipEntry entry = zip.getEntry(part);
+        if (entry == null) {
+            throw new IOException("Workbook part missing: " + part);
+        }
+        try (InputStream in = zip.getInputStream(entry)) {
+            parser.reset();
+            parser.parse(in, handler);
+        } catch (SAXException e) {
+            // Sink failures are tunnelled through the parser
+            throw e.getException() != null ? e.getException() : e;
+        }
+    }
+
+    /**
+     * Reads a relationships part. Ids map to target parts, and so do relationship
+     * types, by the last segment of the type URI (first of each type wins).
+     */
+    private static Map<String, String> relationships(ZipFile zip, SAXParser parser, String part, String directory)
+            throws Exception {
+        Map<String, String> targets = new HashMap<>();
+        if (zip.getEntry(part) == null) {
+            return targets;
+        }
+        parse(zip, parser, part, new DefaultHandler() {
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                if (!localName.equals("Relationship") || "External".equals(attributes.getValue("TargetMode"))) {
+                    return;
+                }
+                String target = resolve(directory, attributes.getValue("Target"));
+                targets.put(attributes.getValue("Id"), target);
+                String type = attributes.getValue("Type");
+                if (type != null) {
+                    targets.putIfAbsent(type.substring(type.lastIndexOf('/')), target);
+                }
+            }
+        });
+        return targets;
+    }
+
+    private static List<String> sharedStrings(ZipFile zip, SAXParser parser, String part) throws Exception {
+        List<String> strings = new ArrayList<>();
+        parse(zip, parser, part, new TextHandler() {
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                if (localName.equals("si")) {
+                    startText();
+                } else {
+                    super.startElement(uri, localName, qName, attributes);
+                }
+            }
+
+            @Override
+            public void endElement(String uri, String localName, String qName) throws SAXException {
+                if (localName.equals("si")) {
+                    strings.add(endText());
+                } else {
+                    super.endElement(uri, localName, qName);
+                }
+            }
+        });
+        return strings;
+    }
+
+    private static String relationshipsOf(String part) {
+        int slash = part.lastIndexOf('/');
+        return part.substring(0, slash + 1) + "_rels/" + part.substring(slash + 1) + ".rels";
+    }
+
+    private static String directoryOf(String part) {
+        return part.substring(0, part.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Resolves a relationship target against the directory of its source part
+     */
+    static String resolve(String directory, String target) {
+        String path = target.startsWith("/") ? target.substring(1) : directory + target;
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.split("/")) {
+            if (segment.equals("..")) {
+                if (!segments.isEmpty()) {
+                    segments.remove(segments.size() - 1);
+                }
+            } else if (!segment.isEmpty() && !segment.equals(".")) {
+                segments.add(segment);
+            }
+        }
+        return String.join("/", segments);
+    }
+
+    /**
+     * Collects the text of {@code <t>} elements between {@link #startText} and
+     * {@link #endText}, skipping phonetic runs ({@code <rPh>})
+     */
+    private static class TextHandler extends DefaultHandler {
+        private final StringBuilder text = new StringBuilder();
+        private boolean collecting;
+        private boolean inText;
+        private int phoneticDepth;
+
+        void startText() {
+            text.setLength(0);
+            collecting = true;
+        }
+
+        String endText() {
+            collecting = false;
+            return text.toString();
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if (localName.equals("rPh")) {
+                phoneticDepth++;
+            } else if (localName.equals("t")) {
+                inText = collecting && phoneticDepth == 0;
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            if (localName.equals("rPh")) {
+                phoneticDepth--;
+            } else if (localName.equals("t")) {
+                inText = false;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inText) {
+                text.append(ch, start, length);
+            }
+        }
+    }
+
+    /**
+     * Lists the sheets of {@code workbook.xml} as {name, relationship id}, in tab order
+     */
+    private static final class WorkbookHandler extends DefaultHandler {
+        final List<String[]> sheets = new ArrayList<>();
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if (!localName.equals("sheet")) {
+                return;
+            }
+            String id = null;
+            for (int i = 0; i < attributes.getLength(); i++) {
+                // r:id, under either the transitional or the strict namespace
+                if (attributes.getLocalName(i).equals("id") && !attributes.getURI(i).isEmpty()) {
+                    id = attributes.getValue(i);
+                }
+            }
+            sheets.add(new String[]{attributes.getValue("name"), id});
+        }
+    }
+
+    /**
+     * Turns a worksheet part into cells as it streams past
+     */
+    private static final class SheetHandler extends TextHandler {
+        final SheetChunker chunker;
+        private final List<String> sharedStrings;
+        // Anchor formula and position of each shared formula group, by group index
+        private final Map<String, Object[]> sharedFormulas = new HashMap<>();
+        private final StringBuilder content = new StringBuilder();
+        int cells;
+        int formulas;
+
+        private int row;
+        private int column;
+        private String type;
+        private String value;
+        private String formula;
+        private String sharedIndex;
+        private boolean inCell;
+        private boolean inContent;
+
+        SheetHandler(SheetChunker chunker, List<String> sharedStrings) {
+            this.chunker = chunker;
+            this.sharedStrings = sharedStrings;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "row":
+                    String r = attributes.getValue("r");
+                    row = r != null ? Integer.parseInt(r) : row + 1;
+                    column = 0;
+                    break;
+                case "c":
+                    int[] position = reference(attributes.getValue("r"));
+                    column = position != null ? position[1] : column + 1;
+                    type = attributes.getValue("t");
+                    value = null;
+                    formula = null;
+                    inCell = true;
+                    break;
+                case "f":
+                    sharedIndex = "shared".equals(attributes.getValue("t")) ? attributes.getValue("si") : null;
+                    startContent();
+                    break;
+                case "v":
+                    startContent();
+                    break;
+                case "is":
+                    startText();
+                    break;
+                default:
+                    super.startElement(uri, localName, qName, attributes);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            switch (localName) {
+                case "f":
+                    formula = formula(endContent());
+                    break;
+                case "v":
+                    value = endContent();
+                    break;
+                case "is":
+                    value = endText();
+                    break;
+                case "c":
+                    inCell = false;
+                    chunker.add(new Cell(row, column, value(), formula));
+                    cells++;
+                    if (formula != null) {
+                        formulas++;
+                    }
+                    break;
+                case "row":
+                    try {
+                        chunker.endRow();
+                    } catch (Exception e) {
+                        throw new SAXException(e);
+                    }
+                    break;
+                default:
+                    super.endElement(uri, localName, qName);
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inContent) {
+                content.append(ch, start, length);
+            } else {
+                super.characters(ch, start, length);
+            }
+        }
+
+        private void startContent() {
+            content.setLength(0);
+            inContent = inCell;
+        }
+
+        private String endContent() {
+            inContent = false;
+            return content.toString();
+        }
+
+        private String formula(String text) {
+            if (sharedIndex != null) {
+                Object[] anchor = sharedFormulas.get(sharedIndex);
+                if (!text.isEmpty() || anchor == null) {
+                    sharedFormulas.put(sharedIndex, new Object[]{text, row, column});
+                } else {
+                    try {
+                        text = FormulaCache.move((String) anchor[0], row - (int) anchor[1], column - (int) anchor[2]);
+                    } catch (FormulaParseException e) {
+                        // Structured and external references cannot be moved; keep the cached value only
+                        logger.warn("Cannot expand shared formula {} into {}: {}",
+                                anchor[0], A1Notation.format(row, column), e.getMessage());
+                        return null;
+                    }
+                }
+            }
+            return text.isEmpty() ? null : "=" + text;
+        }
+
+        private String value() {
+            if (value == null || value.isEmpty()) {
+                return null;
+            }
+            if ("s".equals(type)) {
+                int index = Integer.parseInt(value.trim());
+                return index >= 0 && index < sharedStrings.size() ? sharedStrings.get(index) : null;
+            }
+            if ("b".equals(type)) {
+                return value.trim().equals("1") ? "TRUE" : "FALSE";
+            }
+            return value;
+        }
+
+        private static int[] reference(String a1) {
+            return a1 != null ? A1Notation.parseCell(a1) : null;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.superjoin.spreadsheet.formula;
+
+/**
+ * Supplies cell values to a {@link FormulaEvaluator}.
+ * Values are Double, String, Boolean, {@link FormulaError} or null for a blank cell.
+ */
+public interface EvaluationContext {
+
+    Object cellValue(String sheet, int row, int column);
+
+    /**
+     * Values of a rectangle; bounds may be {@link com.superjoin.spreadsheet.model.RangeNode#UNBOUNDED}
+     */
+    ValueGrid rangeValues(String sheet, int firstRow, int firstColumn, int lastRow, int lastColumn);
+}
@@ -0,0 +1,211 @@
+package com.superjoin.spreadsheet.formula;
+
+import com.superjoin.spreadsheet.model.A1Notation;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Parse cache keyed by the relative (R1C1) form of a formula.
+ *
+ * Filling a formula down a column produces =B2*C2, =B3*C3, ... which all normalize to
+ * R[0]C[-2]*R[0]C[-1]; that shape is parsed once and every other cell reuses the tree
+ * with its references offset. Formulas are still tokenized per cell to build the key,
+ * but parsing and AST allocation happen once per distinct shape.
+ *
+ * Safe for concurrent use. Once {@code maxShapes} shapes are cached, new shapes are
+ * parsed without being stored.
+ */
+public final class FormulaCache {
+    public static final int DEFAULT_MAX_SHAPES = 100_000;
+
+    private final Map<String, FormulaShape> shapes = new ConcurrentHashMap<>();
+    private final int maxShapes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public FormulaCache() {
+        this(DEFAULT_MAX_SHAPES);
+    }
+
+    public FormulaCache(int maxShapes) {
+        this.maxShapes = maxShapes;
+    }
+
+    /**
+     * Returns the shape of a formula held in the given cell, parsing it only if no
+     * formula with the same relative form has been seen.
+     *
+     * @throws FormulaParseException if the formula is malformed
+     */
+    public FormulaShape lookup(String formula, int row, int column) {
+        List<Token> tokens = FormulaLexer.tokenize(formula);
+        String key = relativeKey(tokens, row, column);
+        FormulaShape shape = shapes.get(key);
+        if (shape != null) {
+            hits.increment();
+            return shape;
+        }
+        misses.increment();
+        shape = new FormulaShape(FormulaParser.parse(tokens), row, column);
+        if (shapes.size() < maxShapes) {
+            FormulaShape existing = shapes.putIfAbsent(key, shape);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        return shape;
+    }
+
+    /**
+     * Convenience for {@code lookup(formula, row, column).references(row, column)}
+     */
+    public List<ReferenceNode> references(String formula, int row, int column) {
+        return lookup(formula, row, column).references(row, column);
+    }
+
+    public int size() { return shapes.size(); }
+    public long hits() { return hits.sum(); }
+    public long misses() { return misses.sum(); }
+
+    public void clear() {
+        shapes.clear();
+        hits.reset();
+        misses.reset();
+    }
+
+    /**
+     * Builds the cache key: the token stream with every reference part rewritten
+     * relative to the formula's cell. Only tokens the parser would read as reference
+     * parts are rewritten (see {@link #isReferencePart}), so two formulas share a key
+     * exactly when one is the other moved by a fixed row and column offset.
+     */
+    static String relativeKey(List<Token> tokens, int row, int column) {
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            if (i > 0) {
+                key.append(' ');
+            }
+            switch (token.getType()) {
+                case STRING:
+                    quote(key, '"', token.getText());
+                    continue;
+                case SHEET:
+                    quote(key, '\'', token.getText());
+                    key.append('!');
+                    continue;
+                case WORD:
+                case NUMBER:
+                    int[] part = isReferencePart(tokens, i);
+                    if (part != null) {
+                        appendRelative(key, part, row, column);
+                        continue;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            key.append(token.getText());
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns the parsed part ({row, column, rowAbsolute, columnAbsolute}) if the token at
+     * {@code i} is read by the parser as part of a reference. Complete cells count unless
+     * they name a function; lone columns or rows count only next to a ':'.
+     */
+    private static int[] isReferencePart(List<Token> tokens, int i) {
+        Token token = tokens.get(i);
+        TokenType next = i + 1 < tokens.size() ? tokens.get(i + 1).getType() : TokenType.END;
+        if (next == TokenType.LPAREN) {
+            return null;
+        }
+        int[] part = FormulaParser.referencePart(token);
+        if (part == null) {
+            return null;
+        }
+        if (part[0] > 0 && part[1] > 0 && token.getType() == TokenType.WORD) {
+            return part;
+        }
+        boolean besideColon = next == TokenType.COLON
+                || (i > 0 && tokens.get(i - 1).getType() == TokenType.COLON)
+                || (i > 1 && tokens.get(i - 1).getType() == TokenType.SHEET && tokens.get(i - 2).getType() == TokenType.COLON);
+        return besideColon ? part : null;
+    }
+
+    private static void appendRelative(StringBuilder key, int[] part, int row, int column) {
+        key.append('@');
+        if (part[0] > 0) {
+            key.append('R');
+            if (part[2] == 1) {
+                key.append(part[0]);
+            } else {
+                key.append('[').append(part[0] - row).append(']');
+            }
+        }
+        if (part[1] > 0) {
+            key.append('C');
+            if (part[3] == 1) {
+                key.append(part[1]);
+            } else {
+                key.append('[').append(part[1] - column).append(']');
+            }
+        }
+    }
+
+    /**
+     * Moves a formula by a row and column offset, as filling it from one cell into
+     * another does: relative reference parts shift, absolute parts and all other text
+     * stay as written. A part moved off the sheet becomes #REF!.
+     */
+    public static String move(String formula, int rows, int columns) {
+        List<Token> tokens = FormulaLexer.tokenize(formula);
+        StringBuilder moved = new StringBuilder(formula.length() + 8);
+        int copied = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            if (token.getType() != TokenType.WORD && token.getType() != TokenType.NUMBER) {
+                continue;
+            }
+            int[] part = isReferencePart(tokens, i);
+            if (part == null) {
+                continue;
+            }
+            moved.append(formula, copied, token.getPosition());
+            appendMoved(moved, part, rows, columns);
+            copied = token.getPosition() + token.getText().length();
+        }
+        return moved.append(formula, copied, formula.length()).toString();
+    }
+
+    private static void appendMoved(StringBuilder out, int[] part, int rows, int columns) {
+        int row = part[0] > 0 && part[2] == 0 ? part[0] + rows : part[0];
+        int column = part[1] > 0 && part[3] == 0 ? part[1] + columns : part[1];
+        if ((part[0] > 0 && row < 1) || (part[1] > 0 && column < 1)) {
+            out.append("#REF!");
+            return;
+        }
+        if (part[1] > 0) {
+            out.append(part[3] == 1 ? "$" : "").append(A1Notation.columnLetters(column));
+        }
+        if (part[0] > 0) {
+            out.append(part[2] == 1 ? "$" : "").append(row);
+        }
+    }
+
+    private static void quote(StringBuilder key, char quote, String text) {
+        key.append(quote);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == quote) {
+                key.append(quote);
+            }
+            key.append(c);
+        }
+        key.append(quote);
+    }
+}
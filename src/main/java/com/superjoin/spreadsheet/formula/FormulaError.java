@@ -0,0 +1,70 @@
+package com.superjoin.spreadsheet.formula;
+
+/**
+ * An error value such as #DIV/0! produced or propagated during evaluation.
+ * Errors compare by code.
+ */
+public final class FormulaError {
+    public static final FormulaError DIV0 = new FormulaError("#DIV/0!");
+    public static final FormulaError VALUE = new FormulaError("#VALUE!");
+    public static final FormulaError REF = new FormulaError("#REF!");
+    public static final FormulaError NAME = new FormulaError("#NAME?");
+    public static final FormulaError NUM = new FormulaError("#NUM!");
+    public static final FormulaError NA = new FormulaError("#N/A");
+    public static final FormulaError NULL = new FormulaError("#NULL!");
+    public static final FormulaError ERROR = new FormulaError("#ERROR!");
+
+    private static final FormulaError[] ALL = {DIV0, VALUE, REF, NAME, NUM, NA, NULL, ERROR};
+
+    private final String code;
+
+    private FormulaError(String code) {
+        this.code = code;
+    }
+
+    /**
+     * Returns the error for a literal like "#REF!" (case-insensitive), or null if it is not one
+     */
+    public static FormulaError of(String code) {
+        for (FormulaError error : ALL) {
+            if (error.code.equalsIgnoreCase(code)) {
+                return error;
+            }
+        }
+        return null;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof FormulaError && ((FormulaError) o).code.equals(code);
+    }
+
+    @Override
+    public int hashCode() {
+        return code.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return code;
+    }
+
+    /**
+     * Unwinds evaluation when a coercion hits an error value; caught where the
+     * error becomes the result (the formula root, or IFERROR)
+     */
+    static final class Signal extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final FormulaError error;
+
+        Signal(FormulaError error) {
+            super(error.code, null, false, false);
+            this.error = error;
+        }
+    }
+}
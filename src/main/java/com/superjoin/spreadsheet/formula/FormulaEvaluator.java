@@ -0,0 +1,656 @@
+package com.superjoin.spreadsheet.formula;
+
+import com.superjoin.spreadsheet.model.RangeNode;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+/**
+ * Evaluates formula trees against an {@link EvaluationContext}.
+ *
+ * Covers arithmetic, comparison and concatenation operators plus a common
+ * function set: SUM, AVERAGE, MIN, MAX, COUNT, COUNTA, SUMIF, COUNTIF, IF,
+ * IFERROR, AND, OR, NOT, ABS, ROUND, VLOOKUP, INDEX, MATCH, ISBLANK, ISERROR,
+ * CONCATENATE/CONCAT, LEN, LEFT, RIGHT, MID, UPPER, LOWER and TRIM. Anything
+ * else evaluates to #NAME?.
+ *
+ * Not thread-safe; use one evaluator per thread.
+ */
+public final class FormulaEvaluator implements FormulaVisitor<Object> {
+    private final EvaluationContext context;
+    private String sheet;
+    private int rowOffset;
+    private int columnOffset;
+
+    public FormulaEvaluator(EvaluationContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Evaluates a cached shape as it appears in the given cell.
+     * A range result (an array formula) yields its top-left value.
+     */
+    public Object evaluate(FormulaShape shape, String sheet, int row, int column) {
+        return evaluate(shape.getRoot(), sheet, row - shape.getAnchorRow(), column - shape.getAnchorColumn());
+    }
+
+    /**
+     * Evaluates a tree whose unqualified references point at the given sheet
+     */
+    public Object evaluate(FormulaNode root, String sheet) {
+        return evaluate(root, sheet, 0, 0);
+    }
+
+    private Object evaluate(FormulaNode root, String sheet, int rowOffset, int columnOffset) {
+        this.sheet = sheet;
+        this.rowOffset = rowOffset;
+        this.columnOffset = columnOffset;
+        try {
+            Object result = root.accept(this);
+            if (result instanceof ValueGrid) {
+                ValueGrid grid = (ValueGrid) result;
+                return grid.size() > 0 ? grid.get(0) : null;
+            }
+            return result;
+        } catch (FormulaError.Signal signal) {
+            return signal.error;
+        }
+    }
+
+    @Override
+    public Object visitNumber(FormulaNode.NumberNode node) {
+        return node.getValue();
+    }
+
+    @Override
+    public Object visitString(FormulaNode.StringNode node) {
+        return node.getValue();
+    }
+
+    @Override
+    public Object visitBoolean(FormulaNode.BooleanNode node) {
+        return node.getValue();
+    }
+
+    @Override
+    public Object visitError(FormulaNode.ErrorNode node) {
+        return FormulaError.of(node.getCode());
+    }
+
+    @Override
+    public Object visitBlank(FormulaNode.BlankNode node) {
+        return null;
+    }
+
+    @Override
+    public Object visitName(FormulaNode.NameNode node) {
+        return FormulaError.NAME;
+    }
+
+    @Override
+    public Object visitReference(ReferenceNode node) {
+        ReferenceNode reference = node.offset(rowOffset, columnOffset);
+        if (!reference.isRange()) {
+            if (reference.getFirstRow() < 1 || reference.getFirstColumn() < 1) {
+                return FormulaError.REF;
+            }
+            return context.cellValue(reference.resolveSheet(sheet), reference.getFirstRow(), reference.getFirstColumn());
+        }
+        RangeNode range = reference.toRangeNode(sheet);
+        return context.rangeValues(range.getSheetId(),
+                range.getFirstRow(), range.getFirstColumn(), range.getLastRow(), range.getLastColumn());
+    }
+
+    @Override
+    public Object visitUnary(FormulaNode.UnaryNode node) {
+        double operand = Values.toNumber(scalar(node.getOperand()));
+        switch (node.getOperator()) {
+            case "-":
+                return -operand;
+            case "%":
+                return operand / 100;
+            default:
+                return operand;
+        }
+    }
+
+    @Override
+    public Object visitBinary(FormulaNode.BinaryNode node) {
+        Object left = scalar(node.getLeft());
+        Object right = scalar(node.getRight());
+        switch (node.getOperator()) {
+            case "&":
+                return Values.toString(left) + Values.toString(right);
+            case "=":
+                return Values.compare(left, right) == 0;
+            case "<>":
+                return Values.compare(left, right) != 0;
+            case "<":
+                return Values.compare(left, right) < 0;
+            case ">":
+                return Values.compare(left, right) > 0;
+            case "<=":
+                return Values.compare(left, right) <= 0;
+            case ">=":
+                return Values.compare(left, right) >= 0;
+            default:
+                return arithmetic(node.getOperator(), Values.toNumber(left), Values.toNumber(right));
+        }
+    }
+
+    private static Object arithmetic(String operator, double a, double b) {
+        double result;
+        switch (operator) {
+            case "+":
+                result = a + b;
+                break;
+            case "-":
+                result = a - b;
+                break;
+            case "*":
+                result = a * b;
+                break;
+            case "/":
+                if (b == 0) {
+                    return FormulaError.DIV0;
+                }
+                result = a / b;
+                break;
+            case "^":
+                result = Math.pow(a, b);
+                break;
+            default:
+                return FormulaError.ERROR;
+        }
+        return Double.isNaN(result) || Double.isInfinite(result) ? FormulaError.NUM : result;
+    }
+
+    @Override
+    public Object visitArray(FormulaNode.ArrayNode node) {
+        List<List<FormulaNode>> rows = node.getRows();
+        int columns = rows.get(0).size();
+        ValueGrid grid = new ValueGrid(rows.size(), columns);
+        for (int r = 0; r < rows.size(); r++) {
+            if (rows.get(r).size() != columns) {
+                return FormulaError.VALUE;
+            }
+            for (int c = 0; c < columns; c++) {
+                grid.set(r, c, scalar(rows.get(r).get(c)));
+            }
+        }
+        return grid;
+    }
+
+    @Override
+    public Object visitFunction(FormulaNode.FunctionNode node) {
+        List<FormulaNode> args = node.getArguments();
+        switch (node.getName()) {
+            case "SUM":
+                return aggregate(args).sum;
+            case "AVERAGE": {
+                Aggregate aggregate = aggregate(args);
+                return aggregate.count == 0 ? FormulaError.DIV0 : aggregate.sum / aggregate.count;
+            }
+            case "MIN": {
+                Aggregate aggregate = aggregate(args);
+                return aggregate.count == 0 ? 0.0 : aggregate.min;
+            }
+            case "MAX": {
+                Aggregate aggregate = aggregate(args);
+                return aggregate.count == 0 ? 0.0 : aggregate.max;
+            }
+            case "COUNT":
+                return (double) count(args, false);
+            case "COUNTA":
+                return (double) count(args, true);
+            case "SUMIF":
+                return conditional(args, true);
+            case "COUNTIF":
+                return conditional(args, false);
+            case "IF": {
+                arity(args, 2, 3);
+                if (Values.toBoolean(scalar(args.get(0)))) {
+                    return args.get(1).accept(this);
+                }
+                return args.size() > 2 ? args.get(2).accept(this) : Boolean.FALSE;
+            }
+            case "IFERROR": {
+                arity(args, 1, 2);
+                Object value;
+                try {
+                    value = scalar(args.get(0));
+                } catch (FormulaError.Signal signal) {
+                    value = signal.error;
+                }
+                if (value instanceof FormulaError) {
+                    return args.size() > 1 ? args.get(1).accept(this) : "";
+                }
+                return value;
+            }
+            case "AND":
+            case "OR":
+                return logical(args, node.getName().equals("AND"));
+            case "NOT":
+                arity(args, 1, 1);
+                return !Values.toBoolean(scalar(args.get(0)));
+            case "ABS":
+                arity(args, 1, 1);
+                return Math.abs(number(args, 0));
+            case "ROUND": {
+                arity(args, 1, 2);
+                int digits = args.size() > 1 ? (int) number(args, 1) : 0;
+                return BigDecimal.valueOf(number(args, 0)).setScale(digits, RoundingMode.HALF_UP).doubleValue();
+            }
+            case "VLOOKUP":
+                return vlookup(args);
+            case "INDEX":
+                return index(args);
+            case "MATCH":
+                return match(args);
+            case "ISBLANK":
+                arity(args, 1, 1);
+                return scalarOrError(args.get(0)) == null;
+            case "ISERROR":
+                arity(args, 1, 1);
+                return scalarOrError(args.get(0)) instanceof FormulaError;
+            case "CONCATENATE":
+            case "CONCAT":
+                return concatenate(args);
+            case "LEN":
+                arity(args, 1, 1);
+                return (double) text(args, 0).length();
+            case "LEFT": {
+                arity(args, 1, 2);
+                String text = text(args, 0);
+                return text.substring(0, count(args, 1, text.length()));
+            }
+            case "RIGHT": {
+                arity(args, 1, 2);
+                String text = text(args, 0);
+                return text.substring(text.length() - count(args, 1, text.length()));
+            }
+            case "MID": {
+                arity(args, 3, 3);
+                String text = text(args, 0);
+                int start = (int) number(args, 1);
+                int length = (int) number(args, 2);
+                if (start < 1 || length < 0) {
+                    return FormulaError.VALUE;
+                }
+                int from = Math.min(start - 1, text.length());
+                return text.substring(from, Math.min(text.length(), from + length));
+            }
+            case "UPPER":
+                arity(args, 1, 1);
+                return text(args, 0).toUpperCase();
+            case "LOWER":
+                arity(args, 1, 1);
+                return text(args, 0).toLowerCase();
+            case "TRIM":
+                arity(args, 1, 1);
+                return text(args, 0).trim().replaceAll(" +", " ");
+            default:
+                return FormulaError.NAME;
+        }
+    }
+
+    private static final class Aggregate {
+        double sum;
+        int count;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+
+        void add(double value) {
+            sum += value;
+            count++;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+    }
+
+    /**
+     * Numbers for SUM-like functions: inside ranges only numeric cells count,
+     * direct arguments are coerced; errors propagate either way
+     */
+    private Aggregate aggregate(List<FormulaNode> args) {
+        Aggregate aggregate = new Aggregate();
+        for (FormulaNode arg : args) {
+            if (arg instanceof FormulaNode.BlankNode) {
+                continue;
+            }
+            Object value = arg.accept(this);
+            if (value instanceof ValueGrid) {
+                ValueGrid grid = (ValueGrid) value;
+                for (int i = 0; i < grid.size(); i++) {
+                    Object cell = grid.get(i);
+                    if (cell instanceof FormulaError) {
+                        throw new FormulaError.Signal((FormulaError) cell);
+                    }
+                    if (cell instanceof Double) {
+                        aggregate.add((Double) cell);
+                    }
+                }
+            } else if (value != null) {
+                aggregate.add(Values.toNumber(value));
+            }
+        }
+        return aggregate;
+    }
+
+    private int count(List<FormulaNode> args, boolean nonBlank) {
+        int count = 0;
+        for (FormulaNode arg : args) {
+            Object value = arg.accept(this);
+            if (value instanceof ValueGrid) {
+                ValueGrid grid = (ValueGrid) value;
+                for (int i = 0; i < grid.size(); i++) {
+                    count += counts(grid.get(i), nonBlank) ? 1 : 0;
+                }
+            } else if (!(arg instanceof FormulaNode.BlankNode)) {
+                count += counts(value, nonBlank) ? 1 : 0;
+            }
+        }
+        return count;
+    }
+
+    private static boolean counts(Object value, boolean nonBlank) {
+        return nonBlank ? value != null : value instanceof Double;
+    }
+
+    private Object logical(List<FormulaNode> args, boolean and) {
+        boolean seen = false;
+        boolean result = and;
+        for (FormulaNode arg : args) {
+            Object value = arg.accept(this);
+            if (value instanceof ValueGrid) {
+                ValueGrid grid = (ValueGrid) value;
+                for (int i = 0; i < grid.size(); i++) {
+                    Object cell = grid.get(i);
+                    if (cell instanceof Boolean || cell instanceof Double || cell instanceof FormulaError) {
+                        boolean b = Values.toBoolean(cell);
+                        result = and ? result && b : result || b;
+                        seen = true;
+                    }
+                }
+            } else if (value != null) {
+                boolean b = Values.toBoolean(value);
+                result = and ? result && b : result || b;
+                seen = true;
+            }
+        }
+        return seen ? result : FormulaError.VALUE;
+    }
+
+    /**
+     * SUMIF(range, criterion, [sum_range]) and COUNTIF(range, criterion)
+     */
+    private Object conditional(List<FormulaNode> args, boolean sum) {
+        arity(args, 2, sum ? 3 : 2);
+        ValueGrid range = grid(args.get(0));
+        Criterion criterion = new Criterion(scalar(args.get(1)));
+        ValueGrid sumRange = sum && args.size() > 2 ? grid(args.get(2)) : range;
+        double total = 0;
+        int matched = 0;
+        for (int r = 0; r < range.rows(); r++) {
+            for (int c = 0; c < range.columns(); c++) {
+                if (!criterion.matches(range.get(r, c))) {
+                    continue;
+                }
+                matched++;
+                if (sum && r < sumRange.rows() && c < sumRange.columns()) {
+                    Object value = sumRange.get(r, c);
+                    if (value instanceof FormulaError) {
+                        throw new FormulaError.Signal((FormulaError) value);
+                    }
+                    if (value instanceof Double) {
+                        total += (Double) value;
+                    }
+                }
+            }
+        }
+        return sum ? total : (double) matched;
+    }
+
+    /**
+     * A SUMIF/COUNTIF criterion such as 5, "apples", ">10" or "<>x"
+     */
+    private static final class Criterion {
+        private final String operator;
+        private final Object operand;
+
+        Criterion(Object criterion) {
+            if (criterion instanceof String) {
+                String text = (String) criterion;
+                String op = "=";
+                for (String candidate : new String[]{"<=", ">=", "<>", "<", ">", "="}) {
+                    if (text.startsWith(candidate)) {
+                        op = candidate;
+                        text = text.substring(candidate.length());
+                        break;
+                    }
+                }
+                this.operator = op;
+                this.operand = Values.parse(text);
+            } else {
+                this.operator = "=";
+                this.operand = criterion;
+            }
+        }
+
+        boolean matches(Object value) {
+            if (value instanceof FormulaError) {
+                return false;
+            }
+            boolean comparable = operand == null || value == null
+                    || (operand instanceof Double) == (value instanceof Double);
+            if (!comparable) {
+                return operator.equals("<>");
+            }
+            int cmp = Values.compare(value, operand);
+            switch (operator) {
+                case "<":
+                    return cmp < 0;
+                case ">":
+                    return cmp > 0;
+                case "<=":
+                    return cmp <= 0;
+                case ">=":
+                    return cmp >= 0;
+                case "<>":
+                    return cmp != 0;
+                default:
+                    return cmp == 0 && (value != null || operand == null || "".equals(operand));
+            }
+        }
+    }
+
+    /**
+     * VLOOKUP(key, range, column, [is_sorted])
+     */
+    private Object vlookup(List<FormulaNode> args) {
+        arity(args, 3, 4);
+        Object key = scalar(args.get(0));
+        ValueGrid table = grid(args.get(1));
+        int column = (int) number(args, 2);
+        boolean sorted = args.size() < 4 || Values.toBoolean(scalar(args.get(3)));
+        if (column < 1) {
+            return FormulaError.VALUE;
+        }
+        if (column > table.spanColumns()) {
+            return FormulaError.REF;
+        }
+        int row = sorted ? approximateMatch(table, key, true) : exactMatch(table, key);
+        if (row < 0) {
+            return FormulaError.NA;
+        }
+        return column <= table.columns() ? table.get(row, column - 1) : null;
+    }
+
+    /**
+     * INDEX(range, row, [column]); for a single row or column one index suffices
+     */
+    private Object index(List<FormulaNode> args) {
+        arity(args, 2, 3);
+        ValueGrid grid = grid(args.get(0));
+        int row = (int) number(args, 1);
+        int column = args.size() > 2 ? (int) number(args, 2) : 1;
+        if (args.size() == 2 && grid.spanRows() == 1) {
+            column = row;
+            row = 1;
+        }
+        if (row < 1 || column < 1) {
+            return FormulaError.VALUE;
+        }
+        if (row > grid.spanRows() || column > grid.spanColumns()) {
+            return FormulaError.REF;
+        }
+        return row <= grid.rows() && column <= grid.columns() ? grid.get(row - 1, column - 1) : null;
+    }
+
+    /**
+     * MATCH(key, range, [type]) over a single row or column
+     */
+    private Object match(List<FormulaNode> args) {
+        arity(args, 2, 3);
+        Object key = scalar(args.get(0));
+        ValueGrid grid = grid(args.get(1));
+        int type = args.size() > 2 ? (int) Math.signum(number(args, 2)) : 1;
+        boolean vertical = grid.columns() <= 1;
+        if (!vertical && grid.rows() > 1) {
+            return FormulaError.NA;
+        }
+        ValueGrid line = vertical ? grid : transpose(grid);
+        int position;
+        if (type == 0) {
+            position = exactMatch(line, key);
+        } else {
+            position = approximateMatch(line, key, type > 0);
+        }
+        return position < 0 ? FormulaError.NA : (double) (position + 1);
+    }
+
+    private static ValueGrid transpose(ValueGrid grid) {
+        ValueGrid result = new ValueGrid(grid.columns(), grid.rows());
+        for (int r = 0; r < grid.rows(); r++) {
+            for (int c = 0; c < grid.columns(); c++) {
+                result.set(c, r, grid.get(r, c));
+            }
+        }
+        return result;
+    }
+
+    private static int exactMatch(ValueGrid grid, Object key) {
+        for (int r = 0; r < grid.rows(); r++) {
+            Object value = grid.get(r, 0);
+            if (value != null && !(value instanceof FormulaError) && sameKind(value, key) && Values.compare(value, key) == 0) {
+                return r;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * For ascending data the last row not greater than the key; for descending
+     * data the last row not less than it
+     */
+    private static int approximateMatch(ValueGrid grid, Object key, boolean ascending) {
+        int found = -1;
+        for (int r = 0; r < grid.rows(); r++) {
+            Object value = grid.get(r, 0);
+            if (value == null || value instanceof FormulaError || !sameKind(value, key)) {
+                continue;
+            }
+            int cmp = Values.compare(value, key);
+            if (ascending ? cmp > 0 : cmp < 0) {
+                break;
+            }
+            found = r;
+        }
+        return found;
+    }
+
+    private static boolean sameKind(Object a, Object b) {
+        return b == null || a.getClass() == b.getClass();
+    }
+
+    private Object concatenate(List<FormulaNode> args) {
+        StringBuilder result = new StringBuilder();
+        for (FormulaNode arg : args) {
+            Object value = arg.accept(this);
+            if (value instanceof ValueGrid) {
+                ValueGrid grid = (ValueGrid) value;
+                for (int i = 0; i < grid.size(); i++) {
+                    result.append(Values.toString(grid.get(i)));
+                }
+            } else {
+                result.append(Values.toString(value));
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Evaluates an argument to a single value; a one-cell range counts as a value
+     */
+    private Object scalar(FormulaNode node) {
+        Object value = node.accept(this);
+        if (value instanceof ValueGrid) {
+            ValueGrid grid = (ValueGrid) value;
+            if (grid.spanRows() == 1 && grid.spanColumns() == 1) {
+                return grid.size() > 0 ? grid.get(0) : null;
+            }
+            throw new FormulaError.Signal(FormulaError.VALUE);
+        }
+        return value;
+    }
+
+    private Object scalarOrError(FormulaNode node) {
+        try {
+            return scalar(node);
+        } catch (FormulaError.Signal signal) {
+            return signal.error;
+        }
+    }
+
+    private ValueGrid grid(FormulaNode node) {
+        Object value = node.accept(this);
+        if (value instanceof ValueGrid) {
+            return (ValueGrid) value;
+        }
+        if (value instanceof FormulaError) {
+            throw new FormulaError.Signal((FormulaError) value);
+        }
+        ValueGrid single = new ValueGrid(1, 1);
+        single.set(0, 0, value);
+        return single;
+    }
+
+    private double number(List<FormulaNode> args, int i) {
+        return Values.toNumber(scalar(args.get(i)));
+    }
+
+    private String text(List<FormulaNode> args, int i) {
+        return Values.toString(scalar(args.get(i)));
+    }
+
+    /**
+     * Character count argument of LEFT/RIGHT: defaults to 1, clamped to the text length
+     */
+    private int count(List<FormulaNode> args, int i, int length) {
+        if (args.size() <= i) {
+            return Math.min(1, length);
+        }
+        int n = (int) number(args, i);
+        if (n < 0) {
+            throw new FormulaError.Signal(FormulaError.VALUE);
+        }
+        return Math.min(n, length);
+    }
+
+    private static void arity(List<FormulaNode> args, int min, int max) {
+        if (args.size() < min || args.size() > max) {
+            throw new FormulaError.Signal(FormulaError.NA);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.superjoin.spreadsheet.formula;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single-pass tokenizer for spreadsheet formulas.
+ * Handles quoted sheet names ('Q1 Data'!A1), '$' absolute markers, string
+ * literals with doubled-quote escapes, error literals (#REF!) and the usual
+ * arithmetic, comparison and concatenation operators. A leading '=' is skipped.
+ */
+public final class FormulaLexer {
+    private static final String[] ERROR_LITERALS = {
+        "#DIV/0!", "#VALUE!", "#REF!", "#NAME?", "#NUM!", "#N/A", "#NULL!", "#ERROR!"
+    };
+
+    private final String text;
+    private int pos;
+
+    private FormulaLexer(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Tokenizes a formula. The returned list always ends with an {@link TokenType#END} token.
+     */
+    public static List<Token> tokenize(String formula) {
+        return new FormulaLexer(formula).run();
+    }
+
+    private List<Token> run() {
+        List<Token> tokens = new ArrayList<>();
+        skipWhitespace();
+        if (pos < text.length() && text.charAt(pos) == '=') {
+            pos++;
+        }
+        while (true) {
+            skipWhitespace();
+            if (pos >= text.length()) {
+                tokens.add(new Token(TokenType.END, "", pos));
+                return tokens;
+            }
+            tokens.add(next());
+        }
+    }
+
+    private Token next() {
+        int start = pos;
+        char c = text.charAt(pos);
+        switch (c) {
+            case '"':
+                return readString();
+            case '\'':
+                return readQuotedSheet();
+            case '#':
+                return readError();
+            case '(':
+                pos++;
+                return new Token(TokenType.LPAREN, "(", start);
+            case ')':
+                pos++;
+                return new Token(TokenType.RPAREN, ")", start);
+            case '{':
+                pos++;
+                return new Token(TokenType.LBRACE, "{", start);
+            case '}':
+                pos++;
+                return new Token(TokenType.RBRACE, "}", start);
+            case ',':
+                pos++;
+                return new Token(TokenType.COMMA, ",", start);
+            case ';':
+                pos++;
+                return new Token(TokenType.SEMICOLON, ";", start);
+            case ':':
+                pos++;
+                return new Token(TokenType.COLON, ":", start);
+            case '<':
+                if (peek(1) == '>' || peek(1) == '=') {
+                    pos += 2;
+                    return new Token(TokenType.OPERATOR, text.substring(start, pos), start);
+                }
+                pos++;
+                return new Token(TokenType.OPERATOR, "<", start);
+            case '>':
+                if (peek(1) == '=') {
+                    pos += 2;
+                    return new Token(TokenType.OPERATOR, ">=", start);
+                }
+                pos++;
+                return new Token(TokenType.OPERATOR, ">", start);
+            case '+':
+            case '-':
+            case '*':
+            case '/':
+            case '^':
+            case '&':
+            case '=':
+            case '%':
+                pos++;
+                return new Token(TokenType.OPERATOR, String.valueOf(c), start);
+            default:
+                break;
+        }
+        if (isDigit(c) && isSheetPrefix()) {
+            // Unquoted sheet names may start with a digit, e.g. 2024!A1
+            return readWord();
+        }
+        if (isDigit(c) || (c == '.' && isDigit(peek(1)))) {
+            return readNumber();
+        }
+        if (isWordStart(c)) {
+            return readWord();
+        }
+        throw new FormulaParseException("Unexpected character '" + c + "'", start);
+    }
+
+    private Token readString() {
+        int start = pos;
+        pos++;
+        StringBuilder value = new StringBuilder();
+        while (pos < text.length()) {
+            char c = text.charAt(pos++);
+            if (c == '"') {
+                if (peek(0) == '"') {
+                    value.append('"');
+                    pos++;
+                } else {
+                    return new Token(TokenType.STRING, value.toString(), start);
+                }
+            } else {
+                value.append(c);
+            }
+        }
+        throw new FormulaParseException("Unterminated string literal", start);
+    }
+
+    private Token readQuotedSheet() {
+        int start = pos;
+        pos++;
+        StringBuilder name = new StringBuilder();
+        while (pos < text.length()) {
+            char c = text.charAt(pos++);
+            if (c == '\'') {
+                if (peek(0) == '\'') {
+                    name.append('\'');
+                    pos++;
+                } else {
+                    if (peek(0) != '!') {
+                        throw new FormulaParseException("Quoted sheet name must be followed by '!'", pos);
+                    }
+                    pos++;
+                    return new Token(TokenType.SHEET, name.toString(), start);
+                }
+            } else {
+                name.append(c);
+            }
+        }
+        throw new FormulaParseException("Unterminated quoted sheet name", start);
+    }
+
+    private Token readError() {
+        int start = pos;
+        for (String literal : ERROR_LITERALS) {
+            if (text.regionMatches(true, pos, literal, 0, literal.length())) {
+                pos += literal.length();
+                return new Token(TokenType.ERROR, literal, start);
+            }
+        }
+        throw new FormulaParseException("Unknown error literal", start);
+    }
+
+    private Token readNumber() {
+        int start = pos;
+        while (isDigit(peek(0))) {
+            pos++;
+        }
+        if (peek(0) == '.') {
+            pos++;
+            while (isDigit(peek(0))) {
+                pos++;
+            }
+        }
+        if ((peek(0) == 'e' || peek(0) == 'E')
+                && (isDigit(peek(1)) || ((peek(1) == '+' || peek(1) == '-') && isDigit(peek(2))))) {
+            pos += 2;
+            while (isDigit(peek(0))) {
+                pos++;
+            }
+        }
+        return new Token(TokenType.NUMBER, text.substring(start, pos), start);
+    }
+
+    private Token readWord() {
+        int start = pos;
+        while (pos < text.length() && isWordPart(text.charAt(pos))) {
+            pos++;
+        }
+        if (peek(0) == '!') {
+            String sheet = text.substring(start, pos);
+            pos++;
+            return new Token(TokenType.SHEET, sheet, start);
+        }
+        return new Token(TokenType.WORD, text.substring(start, pos), start);
+    }
+
+    private boolean isSheetPrefix() {
+        int end = pos;
+        while (end < text.length() && isWordPart(text.charAt(end))) {
+            end++;
+        }
+        return end < text.length() && text.charAt(end) == '!';
+    }
+
+    private void skipWhitespace() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private char peek(int offset) {
+        int index = pos + offset;
+        return index < text.length() ? text.charAt(index) : '\0';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWordStart(char c) {
+        return Character.isLetter(c) || c == '_' || c == '$';
+    }
+
+    private static boolean isWordPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '.';
+    }
+}
@@ -0,0 +1,240 @@
+package com.superjoin.spreadsheet.formula;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Node of a parsed formula's abstract syntax tree.
+ * The concrete node types are nested here; callers dispatch on them with a
+ * {@link FormulaVisitor}. Nodes are immutable.
+ */
+public abstract class FormulaNode {
+
+    public abstract <T> T accept(FormulaVisitor<T> visitor);
+
+    /**
+     * Direct sub-expressions of this node, in source order
+     */
+    public List<FormulaNode> children() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Collects every reference in the tree, in source order
+     */
+    public List<ReferenceNode> references() {
+        List<ReferenceNode> result = new ArrayList<>();
+        List<FormulaNode> stack = new ArrayList<>();
+        stack.add(this);
+        while (!stack.isEmpty()) {
+            FormulaNode node = stack.remove(stack.size() - 1);
+            if (node instanceof ReferenceNode) {
+                result.add((ReferenceNode) node);
+            }
+            List<FormulaNode> children = node.children();
+            for (int i = children.size() - 1; i >= 0; i--) {
+                stack.add(children.get(i));
+            }
+        }
+        return result;
+    }
+
+    public static final class NumberNode extends FormulaNode {
+        private final double value;
+
+        public NumberNode(double value) {
+            this.value = value;
+        }
+
+        public double getValue() { return value; }
+
+        @Override
+        public <T> T accept(FormulaVisitor<T> visitor) {
+            return visitor.visitNumber(this);
+        }
+    }
+
+    public static final class StringNode extends FormulaNode {
+        private final String value;
+
+        public StringNode(String value) {
+            this.value = value;
+        }
+
+        public String getValue() { return value; }
+
+        @Override
+        public <T> T accept(FormulaVisitor<T> visitor) {
+            return visitor.visitString(this);
+        }
+    }
+
+    public static final class BooleanNode extends FormulaNode {
+        private final boolean value;
+
+        public BooleanNode(boolean value) {
+            this.value = value;
+        }
+
+        public boolean getValue() { return value; }
+
+        @Override
+        public <T> T accept(FormulaVisitor<T> visitor) {
+            return visitor.visitBoolean(this);
+        }
+    }
+
+    public static final class ErrorNode extends FormulaNode {
+        private final String code;
+
+        public ErrorNode(String code) {
+            this.code = code;
+        }
+
+        /**
+         * The error literal, e.g. "#REF!"
+         */
+        public String getCode() { return code; }
+
+        @Override
+        public <T> T accept(FormulaVisitor<T> visitor) {
+            return visitor.visitError(this);
+        }
+    }
+
+    /**
+     * An omitted function argument, as in IF(A1,,0)
+     */
+    public static final class BlankNode extends FormulaNode {
+        @Override
+        public <T> T accept(FormulaVisitor<T> visitor) {
+            return visitor.visitBlank(this);
+        }
+    }
+
+    /**
+     * A bare identifier that is not a cell reference, typically a named range
+     */
+    public static final class NameNode extends FormulaNode {
+        private final String name;
+
+        public NameNode(String name) {
+            this.name = name;
+        }
+
+        public String getName() { return name; }
+
+        @Override
+        public <T> T accept(FormulaVisitor<T> visitor) {
+            return visitor.visitName(this);
+        }
+    }
+
+    /**
+     * Prefix "+"/"-" or postfix "%" applied to an operand
+     */
+    public static final class UnaryNode extends FormulaNode {
+        private final String operator;
+        private final FormulaNode operand;
+
+        public UnaryNode(String operator, FormulaNode operand) {
+            this.operator = operator;
+            this.operand = operand;
+        }
+
+        public String getOperator() { return operator; }
+        public FormulaNode getOperand() { return operand; }
+
+        @Override
+        public List<FormulaNode> children() {
+            return List.of(operand);
+        }
+
+        @Override
+        public <T> T accept(FormulaVisitor<T> visitor) {
+            return visitor.visitUnary(this);
+        }
+    }
+
+    public static final class BinaryNode extends FormulaNode {
+        private final String operator;
+        private final FormulaNode left;
+        private final FormulaNode right;
+
+        public BinaryNode(String operator, FormulaNode left, FormulaNode right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        public String getOperator() { return operator; }
+        public FormulaNode getLeft() { return left; }
+        public FormulaNode getRight() { return right; }
+
+        @Override
+        public List<FormulaNode> children() {
+            return List.of(left, right);
+        }
+
+        @Override
+        public <T> T accept(FormulaVisitor<T> visitor) {
+            return visitor.visitBinary(this);
+        }
+    }
+
+    public static final class FunctionNode extends FormulaNode {
+        private final String name;
+        private final List<FormulaNode> arguments;
+
+        public FunctionNode(String name, List<FormulaNode> arguments) {
+            this.name = name;
+            this.arguments = List.copyOf(arguments);
+        }
+
+        /**
+         * Upper-cased function name, e.g. "SUM"
+         */
+        public String getName() { return name; }
+        public List<FormulaNode> getArguments() { return arguments; }
+
+        @Override
+        public List<FormulaNode> children() {
+            return arguments;
+        }
+
+        @Override
+        public <T> T accept(FormulaVisitor<T> visitor) {
+            return visitor.visitFunction(this);
+        }
+    }
+
+    /**
+     * Inline array such as {1,2;3,4}; rows are separated by ';'
+     */
+    public static final class ArrayNode extends FormulaNode {
+        private final List<List<FormulaNode>> rows;
+
+        public ArrayNode(List<List<FormulaNode>> rows) {
+            List<List<FormulaNode>> copy = new ArrayList<>();
+            for (List<FormulaNode> row : rows) {
+                copy.add(List.copyOf(row));
+            }
+            this.rows = Collections.unmodifiableList(copy);
+        }
+
+        public List<List<FormulaNode>> getRows() { return rows; }
+
+        @Override
+        public List<FormulaNode> children() {
+            List<FormulaNode> all = new ArrayList<>();
+            rows.forEach(all::addAll);
+            return all;
+        }
+
+        @Override
+        public <T> T accept(FormulaVisitor<T> visitor) {
+            return visitor.visitArray(this);
+        }
+    }
+}
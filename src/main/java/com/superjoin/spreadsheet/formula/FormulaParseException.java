@@ -0,0 +1,22 @@
+package com.superjoin.spreadsheet.formula;
+
+/**
+ * Thrown when a formula cannot be tokenized or parsed.
+ */
+public class FormulaParseException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final int position;
+
+    public FormulaParseException(String message, int position) {
+        super(message + " at position " + position);
+        this.position = position;
+    }
+
+    /**
+     * Offset in the formula text where the problem was detected
+     */
+    public int getPosition() {
+        return position;
+    }
+}
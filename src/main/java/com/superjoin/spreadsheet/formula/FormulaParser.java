@@ -0,0 +1,344 @@
+package com.superjoin.spreadsheet.formula;
+
+import com.superjoin.spreadsheet.model.A1Notation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recursive-descent parser turning formula tokens into a {@link FormulaNode} tree.
+ *
+ * Precedence, lowest first: comparison, '&', '+' '-', '*' '/', '^', prefix sign,
+ * postfix '%', and finally the ':' range operator inside references. A word
+ * followed by '(' is always a function call, so names like LOG10 or ATAN2 are
+ * never mistaken for cell references.
+ */
+public final class FormulaParser {
+    // Google Sheets allows at most 18278 columns (ZZZ)
+    private static final int MAX_COLUMN_LETTERS = 3;
+
+    private final List<Token> tokens;
+    private int pos;
+
+    private FormulaParser(List<Token> tokens) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * Parses formula text (with or without the leading '=')
+     */
+    public static FormulaNode parse(String formula) {
+        return parse(FormulaLexer.tokenize(formula));
+    }
+
+    /**
+     * Parses an already tokenized formula
+     */
+    public static FormulaNode parse(List<Token> tokens) {
+        FormulaParser parser = new FormulaParser(tokens);
+        FormulaNode root = parser.comparison();
+        if (parser.peek().getType() != TokenType.END) {
+            throw new FormulaParseException("Unexpected token '" + parser.peek().getText() + "'", parser.peek().getPosition());
+        }
+        return root;
+    }
+
+    private FormulaNode comparison() {
+        FormulaNode left = concatenation();
+        while (peekOperator("=", "<>", "<", ">", "<=", ">=")) {
+            String operator = advance().getText();
+            left = new FormulaNode.BinaryNode(operator, left, concatenation());
+        }
+        return left;
+    }
+
+    private FormulaNode concatenation() {
+        FormulaNode left = additive();
+        while (peekOperator("&")) {
+            advance();
+            left = new FormulaNode.BinaryNode("&", left, additive());
+        }
+        return left;
+    }
+
+    private FormulaNode additive() {
+        FormulaNode left = multiplicative();
+        while (peekOperator("+", "-")) {
+            String operator = advance().getText();
+            left = new FormulaNode.BinaryNode(operator, left, multiplicative());
+        }
+        return left;
+    }
+
+    private FormulaNode multiplicative() {
+        FormulaNode left = power();
+        while (peekOperator("*", "/")) {
+            String operator = advance().getText();
+            left = new FormulaNode.BinaryNode(operator, left, power());
+        }
+        return left;
+    }
+
+    private FormulaNode power() {
+        FormulaNode left = unary();
+        while (peekOperator("^")) {
+            advance();
+            left = new FormulaNode.BinaryNode("^", left, unary());
+        }
+        return left;
+    }
+
+    private FormulaNode unary() {
+        if (peekOperator("+", "-")) {
+            String operator = advance().getText();
+            return new FormulaNode.UnaryNode(operator, unary());
+        }
+        FormulaNode operand = primary();
+        while (peekOperator("%")) {
+            advance();
+            operand = new FormulaNode.UnaryNode("%", operand);
+        }
+        return operand;
+    }
+
+    private FormulaNode primary() {
+        Token token = peek();
+        switch (token.getType()) {
+            case NUMBER:
+                if (isRowRangeAhead()) {
+                    return reference(null);
+                }
+                advance();
+                return new FormulaNode.NumberNode(Double.parseDouble(token.getText()));
+            case STRING:
+                advance();
+                return new FormulaNode.StringNode(token.getText());
+            case ERROR:
+                advance();
+                return new FormulaNode.ErrorNode(token.getText());
+            case SHEET:
+                advance();
+                return reference(token.getText());
+            case LPAREN: {
+                advance();
+                FormulaNode inner = comparison();
+                expect(TokenType.RPAREN);
+                return inner;
+            }
+            case LBRACE:
+                return array();
+            case WORD:
+                return word();
+            default:
+                throw new FormulaParseException("Unexpected token '" + token.getText() + "'", token.getPosition());
+        }
+    }
+
+    private FormulaNode word() {
+        Token token = peek();
+        String text = token.getText();
+        if (peekAt(1).getType() == TokenType.LPAREN) {
+            advance();
+            return functionCall(text.toUpperCase());
+        }
+        if (parsePart(text) != null) {
+            return reference(null);
+        }
+        advance();
+        if (text.equalsIgnoreCase("TRUE") || text.equalsIgnoreCase("FALSE")) {
+            return new FormulaNode.BooleanNode(text.equalsIgnoreCase("TRUE"));
+        }
+        return new FormulaNode.NameNode(text);
+    }
+
+    private FormulaNode functionCall(String name) {
+        expect(TokenType.LPAREN);
+        List<FormulaNode> arguments = new ArrayList<>();
+        if (peek().getType() == TokenType.RPAREN) {
+            advance();
+            return new FormulaNode.FunctionNode(name, arguments);
+        }
+        while (true) {
+            TokenType next = peek().getType();
+            if (next == TokenType.COMMA || next == TokenType.SEMICOLON || next == TokenType.RPAREN) {
+                arguments.add(new FormulaNode.BlankNode());
+            } else {
+                arguments.add(comparison());
+            }
+            Token separator = advance();
+            if (separator.getType() == TokenType.RPAREN) {
+                return new FormulaNode.FunctionNode(name, arguments);
+            }
+            if (separator.getType() != TokenType.COMMA && separator.getType() != TokenType.SEMICOLON) {
+                throw new FormulaParseException("Expected ',' or ')' in call to " + name, separator.getPosition());
+            }
+        }
+    }
+
+    private FormulaNode array() {
+        expect(TokenType.LBRACE);
+        List<List<FormulaNode>> rows = new ArrayList<>();
+        List<FormulaNode> row = new ArrayList<>();
+        while (true) {
+            row.add(comparison());
+            Token separator = advance();
+            if (separator.getType() == TokenType.COMMA) {
+                continue;
+            }
+            rows.add(row);
+            if (separator.getType() == TokenType.RBRACE) {
+                return new FormulaNode.ArrayNode(rows);
+            }
+            if (separator.getType() != TokenType.SEMICOLON) {
+                throw new FormulaParseException("Expected ',', ';' or '}' in array literal", separator.getPosition());
+            }
+            row = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Parses a reference starting at the current token: a cell, a column or row
+     * range, or a rectangle. A lone column or row (without ':') is not a reference.
+     */
+    private FormulaNode reference(String sheet) {
+        Token first = advance();
+        int[] start = referencePart(first);
+        if (start == null) {
+            if (sheet != null) {
+                throw new FormulaParseException("Invalid reference after sheet '" + sheet + "'", first.getPosition());
+            }
+            return new FormulaNode.NameNode(first.getText());
+        }
+        if (peek().getType() != TokenType.COLON) {
+            if (start[0] == 0 || start[1] == 0) {
+                if (sheet == null) {
+                    // A bare "ABC" is a name, not half of a column range
+                    return new FormulaNode.NameNode(first.getText());
+                }
+                throw new FormulaParseException("Incomplete cell reference '" + first.getText() + "'", first.getPosition());
+            }
+            return new ReferenceNode(sheet, start[0], start[1], start[2] == 1, start[3] == 1);
+        }
+        advance();
+        Token second = advance();
+        if (second.getType() == TokenType.SHEET) {
+            // Sheet1!A1:Sheet1!B2 - the second qualifier must name the same sheet
+            second = advance();
+        }
+        int[] end = referencePart(second);
+        if (end == null) {
+            throw new FormulaParseException("Invalid range end '" + second.getText() + "'", second.getPosition());
+        }
+        return new ReferenceNode(sheet,
+                start[0], start[1], start[2] == 1, start[3] == 1,
+                end[0], end[1], end[2] == 1, end[3] == 1,
+                true);
+    }
+
+    static int[] referencePart(Token token) {
+        if (token.getType() == TokenType.WORD) {
+            return parsePart(token.getText());
+        }
+        if (token.getType() == TokenType.NUMBER) {
+            return parseRow(token.getText(), false);
+        }
+        return null;
+    }
+
+    /**
+     * Parses "A1", "$A$1", "A" or "$A" into {row, column, rowAbsolute, columnAbsolute}.
+     * Row-only parts come in as NUMBER tokens; "$3" lexes as a word and is handled here.
+     */
+    static int[] parsePart(String text) {
+        int i = 0;
+        boolean columnAbsolute = false;
+        if (i < text.length() && text.charAt(i) == '$') {
+            columnAbsolute = true;
+            i++;
+        }
+        int lettersStart = i;
+        while (i < text.length() && isAsciiLetter(text.charAt(i))) {
+            i++;
+        }
+        int letters = i - lettersStart;
+        if (letters == 0) {
+            return columnAbsolute ? parseRow(text.substring(1), true) : null;
+        }
+        if (letters > MAX_COLUMN_LETTERS) {
+            return null;
+        }
+        int column = A1Notation.columnNumber(text.substring(lettersStart, i));
+        if (i == text.length()) {
+            return new int[]{0, column, 0, columnAbsolute ? 1 : 0};
+        }
+        boolean rowAbsolute = false;
+        if (text.charAt(i) == '$') {
+            rowAbsolute = true;
+            i++;
+        }
+        int[] row = parseRow(text.substring(i), rowAbsolute);
+        if (row == null) {
+            return null;
+        }
+        return new int[]{row[0], column, row[2], columnAbsolute ? 1 : 0};
+    }
+
+    private static int[] parseRow(String digits, boolean absolute) {
+        if (digits.isEmpty() || digits.length() > 9) {
+            return null;
+        }
+        int row = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            char c = digits.charAt(i);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+            row = row * 10 + (c - '0');
+        }
+        return row > 0 ? new int[]{row, 0, absolute ? 1 : 0, 0} : null;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    private boolean isRowRangeAhead() {
+        return peekAt(1).getType() == TokenType.COLON && parseRow(peek().getText(), false) != null;
+    }
+
+    private boolean peekOperator(String... operators) {
+        Token token = peek();
+        if (token.getType() != TokenType.OPERATOR) {
+            return false;
+        }
+        for (String operator : operators) {
+            if (token.getText().equals(operator)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Token peek() {
+        return tokens.get(pos);
+    }
+
+    private Token peekAt(int offset) {
+        return tokens.get(Math.min(pos + offset, tokens.size() - 1));
+    }
+
+    private Token advance() {
+        Token token = tokens.get(pos);
+        if (token.getType() != TokenType.END) {
+            pos++;
+        }
+        return token;
+    }
+
+    private void expect(TokenType type) {
+        Token token = advance();
+        if (token.getType() != type) {
+            throw new FormulaParseException("Expected " + type + " but found '" + token.getText() + "'", token.getPosition());
+        }
+    }
+}
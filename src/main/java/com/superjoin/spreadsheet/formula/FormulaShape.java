@@ -0,0 +1,46 @@
+package com.superjoin.spreadsheet.formula;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A parsed formula shared by every cell whose formula has the same relative (R1C1) form.
+ * The tree is the one parsed at the anchor cell; references for any other cell are the
+ * anchor's references offset by the distance between the two cells.
+ */
+public final class FormulaShape {
+    private final FormulaNode root;
+    private final int anchorRow;
+    private final int anchorColumn;
+    private final List<ReferenceNode> references;
+
+    FormulaShape(FormulaNode root, int anchorRow, int anchorColumn) {
+        this.root = root;
+        this.anchorRow = anchorRow;
+        this.anchorColumn = anchorColumn;
+        this.references = List.copyOf(root.references());
+    }
+
+    /**
+     * The tree as parsed at the anchor cell
+     */
+    public FormulaNode getRoot() { return root; }
+    public int getAnchorRow() { return anchorRow; }
+    public int getAnchorColumn() { return anchorColumn; }
+
+    /**
+     * Returns the references of the formula as it appears in the given cell, in source order
+     */
+    public List<ReferenceNode> references(int row, int column) {
+        int rows = row - anchorRow;
+        int columns = column - anchorColumn;
+        if (rows == 0 && columns == 0) {
+            return references;
+        }
+        List<ReferenceNode> shifted = new ArrayList<>(references.size());
+        for (ReferenceNode reference : references) {
+            shifted.add(reference.offset(rows, columns));
+        }
+        return shifted;
+    }
+}
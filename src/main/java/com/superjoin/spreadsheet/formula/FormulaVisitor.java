@@ -0,0 +1,28 @@
+package com.superjoin.spreadsheet.formula;
+
+/**
+ * Typed dispatch over the node types of a formula AST.
+ */
+public interface FormulaVisitor<T> {
+    T visitNumber(FormulaNode.NumberNode node);
+
+    T visitString(FormulaNode.StringNode node);
+
+    T visitBoolean(FormulaNode.BooleanNode node);
+
+    T visitError(FormulaNode.ErrorNode node);
+
+    T visitBlank(FormulaNode.BlankNode node);
+
+    T visitName(FormulaNode.NameNode node);
+
+    T visitReference(ReferenceNode node);
+
+    T visitUnary(FormulaNode.UnaryNode node);
+
+    T visitBinary(FormulaNode.BinaryNode node);
+
+    T visitFunction(FormulaNode.FunctionNode node);
+
+    T visitArray(FormulaNode.ArrayNode node);
+}
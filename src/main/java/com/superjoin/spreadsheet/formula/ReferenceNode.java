@@ -0,0 +1,131 @@
+package com.superjoin.spreadsheet.formula;
+
+import com.superjoin.spreadsheet.model.A1Notation;
+import com.superjoin.spreadsheet.model.RangeNode;
+
+/**
+ * A cell or range reference inside a formula, e.g. {@code A1}, {@code $B$2},
+ * {@code 'Q1 Data'!A1:C10}, {@code Data!C:C} or {@code 3:3}.
+ *
+ * A row or column of 0 means that part was omitted in the source, which is how
+ * whole-column ({@code C:C}) and whole-row ({@code 3:3}) ranges are represented.
+ * The absolute flags record the '$' markers.
+ */
+public final class ReferenceNode extends FormulaNode {
+    private final String sheet;
+    private final int firstRow;
+    private final int firstColumn;
+    private final int lastRow;
+    private final int lastColumn;
+    private final boolean range;
+    private final boolean firstRowAbsolute;
+    private final boolean firstColumnAbsolute;
+    private final boolean lastRowAbsolute;
+    private final boolean lastColumnAbsolute;
+
+    /**
+     * Creates a single-cell reference
+     */
+    public ReferenceNode(String sheet, int row, int column, boolean rowAbsolute, boolean columnAbsolute) {
+        this(sheet, row, column, rowAbsolute, columnAbsolute, row, column, rowAbsolute, columnAbsolute, false);
+    }
+
+    /**
+     * Creates a reference from its two corners; {@code range} is false for single cells
+     */
+    public ReferenceNode(String sheet,
+                         int firstRow, int firstColumn, boolean firstRowAbsolute, boolean firstColumnAbsolute,
+                         int lastRow, int lastColumn, boolean lastRowAbsolute, boolean lastColumnAbsolute,
+                         boolean range) {
+        this.sheet = sheet;
+        this.firstRow = firstRow;
+        this.firstColumn = firstColumn;
+        this.lastRow = lastRow;
+        this.lastColumn = lastColumn;
+        this.range = range;
+        this.firstRowAbsolute = firstRowAbsolute;
+        this.firstColumnAbsolute = firstColumnAbsolute;
+        this.lastRowAbsolute = lastRowAbsolute;
+        this.lastColumnAbsolute = lastColumnAbsolute;
+    }
+
+    /**
+     * The sheet named in the reference, or null for an unqualified reference
+     */
+    public String getSheet() { return sheet; }
+    public int getFirstRow() { return firstRow; }
+    public int getFirstColumn() { return firstColumn; }
+    public int getLastRow() { return lastRow; }
+    public int getLastColumn() { return lastColumn; }
+    public boolean isFirstRowAbsolute() { return firstRowAbsolute; }
+    public boolean isFirstColumnAbsolute() { return firstColumnAbsolute; }
+    public boolean isLastRowAbsolute() { return lastRowAbsolute; }
+    public boolean isLastColumnAbsolute() { return lastColumnAbsolute; }
+
+    /**
+     * True for A1:B2, C:C or 3:3 style references, false for a single cell
+     */
+    public boolean isRange() {
+        return range;
+    }
+
+    /**
+     * Returns the referenced sheet, falling back to the sheet holding the formula
+     */
+    public String resolveSheet(String formulaSheet) {
+        return sheet != null ? sheet : formulaSheet;
+    }
+
+    /**
+     * Returns the cell part in A1 notation without '$' markers, e.g. "A1" or "A:C"
+     */
+    public String getA1Notation() {
+        String first = part(firstRow, firstColumn);
+        return range ? first + ":" + part(lastRow, lastColumn) : first;
+    }
+
+    /**
+     * Converts a range reference into a range node on the resolved sheet
+     */
+    public RangeNode toRangeNode(String formulaSheet) {
+        return new RangeNode(resolveSheet(formulaSheet),
+                firstRow > 0 ? firstRow : 1,
+                firstColumn > 0 ? firstColumn : 1,
+                lastRow > 0 ? lastRow : RangeNode.UNBOUNDED,
+                lastColumn > 0 ? lastColumn : RangeNode.UNBOUNDED);
+    }
+
+    /**
+     * Returns this reference moved by the given number of rows and columns, as when
+     * a formula is filled down or across. Absolute and omitted parts stay put.
+     */
+    public ReferenceNode offset(int rows, int columns) {
+        if (rows == 0 && columns == 0) {
+            return this;
+        }
+        return new ReferenceNode(sheet,
+                shift(firstRow, firstRowAbsolute, rows), shift(firstColumn, firstColumnAbsolute, columns),
+                firstRowAbsolute, firstColumnAbsolute,
+                shift(lastRow, lastRowAbsolute, rows), shift(lastColumn, lastColumnAbsolute, columns),
+                lastRowAbsolute, lastColumnAbsolute,
+                range);
+    }
+
+    private static int shift(int value, boolean absolute, int delta) {
+        return value == 0 || absolute ? value : value + delta;
+    }
+
+    private static String part(int row, int column) {
+        return (column > 0 ? A1Notation.columnLetters(column) : "") + (row > 0 ? String.valueOf(row) : "");
+    }
+
+    @Override
+    public <T> T accept(FormulaVisitor<T> visitor) {
+        return visitor.visitReference(this);
+    }
+
+    @Override
+    public String toString() {
+        return (sheet != null ? sheet + "!" : "") + getA1Notation();
+    }
+}
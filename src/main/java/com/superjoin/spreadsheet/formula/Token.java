@@ -0,0 +1,31 @@
+package com.superjoin.spreadsheet.formula;
+
+/**
+ * A single lexical token of a formula.
+ * For {@link TokenType#STRING} and {@link TokenType#SHEET} tokens the text is the
+ * unquoted, unescaped content.
+ */
+public final class Token {
+    private final TokenType type;
+    private final String text;
+    private final int position;
+
+    public Token(TokenType type, String text, int position) {
+        this.type = type;
+        this.text = text;
+        this.position = position;
+    }
+
+    public TokenType getType() { return type; }
+    public String getText() { return text; }
+    public int getPosition() { return position; }
+
+    public boolean is(TokenType type, String text) {
+        return this.type == type && this.text.equals(text);
+    }
+
+    @Override
+    public String toString() {
+        return type + "(" + text + ")@" + position;
+    }
+}
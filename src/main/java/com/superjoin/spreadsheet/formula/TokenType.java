@@ -0,0 +1,23 @@
+package com.superjoin.spreadsheet.formula;
+
+/**
+ * Kinds of tokens produced by {@link FormulaLexer}.
+ */
+public enum TokenType {
+    NUMBER,
+    STRING,
+    /** Identifier-like word: cell reference, column letters, function or range name, TRUE/FALSE */
+    WORD,
+    /** Sheet qualifier including the trailing '!', e.g. {@code Data!} or {@code 'Q1 Data'!} */
+    SHEET,
+    ERROR,
+    OPERATOR,
+    COLON,
+    COMMA,
+    SEMICOLON,
+    LPAREN,
+    RPAREN,
+    LBRACE,
+    RBRACE,
+    END
+}
@@ -0,0 +1,59 @@
+package com.superjoin.spreadsheet.formula;
+
+/**
+ * The values of a range (or array literal) during evaluation, row-major.
+ * Each value is a Double, String, Boolean, {@link FormulaError} or null for blank.
+ * Whole-column and whole-row ranges are trimmed to the populated extent, but the
+ * grid always starts at the range's first row and column so positions used by
+ * INDEX and MATCH line up with the sheet.
+ */
+public final class ValueGrid {
+    private final int rows;
+    private final int columns;
+    private final int spanRows;
+    private final int spanColumns;
+    private final Object[] values;
+
+    public ValueGrid(int rows, int columns) {
+        this(rows, columns, rows, columns);
+    }
+
+    /**
+     * A grid holding {@code rows x columns} values out of a range spanning
+     * {@code spanRows x spanColumns}; positions past the held values are blank
+     */
+    public ValueGrid(int rows, int columns, int spanRows, int spanColumns) {
+        this.rows = rows;
+        this.columns = columns;
+        this.spanRows = spanRows;
+        this.spanColumns = spanColumns;
+        this.values = new Object[rows * columns];
+    }
+
+    public int rows() { return rows; }
+    public int columns() { return columns; }
+    public int spanRows() { return spanRows; }
+    public int spanColumns() { return spanColumns; }
+
+    /**
+     * Value at a 0-based position
+     */
+    public Object get(int row, int column) {
+        return values[row * columns + column];
+    }
+
+    public void set(int row, int column, Object value) {
+        values[row * columns + column] = value;
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Value at a 0-based row-major position
+     */
+    public Object get(int index) {
+        return values[index];
+    }
+}
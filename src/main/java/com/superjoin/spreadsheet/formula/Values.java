@@ -0,0 +1,197 @@
+package com.superjoin.spreadsheet.formula;
+
+import java.math.BigDecimal;
+
+/**
+ * Conversions between evaluation values and the strings held by cells.
+ * Values are Double, String, Boolean, {@link FormulaError} or null for blank.
+ * Coercions that fail raise {@link FormulaError#VALUE}; error operands propagate.
+ */
+public final class Values {
+
+    private Values() {
+    }
+
+    /**
+     * Interprets a cell's displayed value: numbers (including "1,234", "$5" and "12%"),
+     * TRUE/FALSE, error literals, blank, or else text
+     */
+    public static Object parse(String text) {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        if (text.equalsIgnoreCase("TRUE") || text.equalsIgnoreCase("FALSE")) {
+            return Boolean.valueOf(text.equalsIgnoreCase("TRUE"));
+        }
+        if (text.charAt(0) == '#') {
+            FormulaError error = FormulaError.of(text);
+            if (error != null) {
+                return error;
+            }
+        }
+        Double number = parseNumber(text);
+        return number != null ? number : text;
+    }
+
+    /**
+     * Formats a value the way it is stored on a cell
+     */
+    public static String toText(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof Double) {
+            double d = (Double) value;
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                return FormulaError.NUM.getCode();
+            }
+            if (d == Math.rint(d) && Math.abs(d) < 1e15) {
+                return Long.toString((long) d);
+            }
+            return BigDecimal.valueOf(d).stripTrailingZeros().toPlainString();
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? "TRUE" : "FALSE";
+        }
+        return value.toString();
+    }
+
+    static double toNumber(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof Double) {
+            return (Double) value;
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        }
+        if (value instanceof FormulaError) {
+            throw new FormulaError.Signal((FormulaError) value);
+        }
+        if (value instanceof String) {
+            Double number = parseNumber(((String) value).trim());
+            if (number != null) {
+                return number;
+            }
+        }
+        throw new FormulaError.Signal(FormulaError.VALUE);
+    }
+
+    static String toString(Object value) {
+        if (value instanceof FormulaError) {
+            throw new FormulaError.Signal((FormulaError) value);
+        }
+        if (value instanceof ValueGrid) {
+            throw new FormulaError.Signal(FormulaError.VALUE);
+        }
+        return toText(value);
+    }
+
+    static boolean toBoolean(Object value) {
+        if (value == null) {
+            return false;
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof Double) {
+            return (Double) value != 0;
+        }
+        if (value instanceof String) {
+            if (((String) value).equalsIgnoreCase("TRUE")) {
+                return true;
+            }
+            if (((String) value).equalsIgnoreCase("FALSE")) {
+                return false;
+            }
+        }
+        if (value instanceof FormulaError) {
+            throw new FormulaError.Signal((FormulaError) value);
+        }
+        throw new FormulaError.Signal(FormulaError.VALUE);
+    }
+
+    /**
+     * Orders values the way comparisons and lookups do: numbers before text before
+     * booleans, text case-insensitively. Blank compares as 0, "" or FALSE as needed.
+     */
+    static int compare(Object a, Object b) {
+        if (a instanceof FormulaError) {
+            throw new FormulaError.Signal((FormulaError) a);
+        }
+        if (b instanceof FormulaError) {
+            throw new FormulaError.Signal((FormulaError) b);
+        }
+        if (a == null) {
+            a = blankLike(b);
+        }
+        if (b == null) {
+            b = blankLike(a);
+        }
+        int rankA = rank(a);
+        int rankB = rank(b);
+        if (rankA != rankB) {
+            return Integer.compare(rankA, rankB);
+        }
+        if (a instanceof Double) {
+            return Double.compare((Double) a, (Double) b);
+        }
+        if (a instanceof Boolean) {
+            return Boolean.compare((Boolean) a, (Boolean) b);
+        }
+        return ((String) a).compareToIgnoreCase((String) b);
+    }
+
+    private static Object blankLike(Object other) {
+        if (other instanceof String) {
+            return "";
+        }
+        if (other instanceof Boolean) {
+            return Boolean.FALSE;
+        }
+        return 0.0;
+    }
+
+    private static int rank(Object value) {
+        if (value instanceof Double) {
+            return 0;
+        }
+        return value instanceof String ? 1 : 2;
+    }
+
+    private static Double parseNumber(String text) {
+        if (text.isEmpty()) {
+            return null;
+        }
+        String s = text;
+        double scale = 1;
+        if (s.endsWith("%")) {
+            s = s.substring(0, s.length() - 1);
+            scale = 0.01;
+        }
+        boolean negative = false;
+        if (s.startsWith("-")) {
+            negative = true;
+            s = s.substring(1);
+        }
+        if (s.startsWith("$")) {
+            s = s.substring(1);
+        }
+        s = s.replace(",", "");
+        if (s.isEmpty() || !isNumberEdge(s.charAt(0)) || !isNumberEdge(s.charAt(s.length() - 1))) {
+            // Also rejects Java-only forms such as "1d" or "Infinity"
+            return null;
+        }
+        try {
+            double d = Double.parseDouble(s) * scale;
+            return negative ? -d : d;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean isNumberEdge(char c) {
+        return (c >= '0' && c <= '9') || c == '.';
+    }
+}
@@ -0,0 +1,74 @@
+package com.superjoin.spreadsheet.graph;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Cells of one sheet grouped by column, each column sorted by row.
+ * Finding the cells of a range is a walk over the columns it spans plus a
+ * binary search per column, instead of a scan over every cell of the sheet.
+ *
+ * Entries are packed as {@code row << 32 | node} so sorting by the packed value
+ * sorts by row. Columns are appended to unsorted and sorted on the next query.
+ * All methods are synchronized.
+ */
+public final class ColumnIndex {
+    private final TreeMap<Integer, Column> columns = new TreeMap<>();
+    private int size;
+
+    /**
+     * Adds a cell; callers add each node at most once
+     */
+    public synchronized void add(int row, int column, int node) {
+        columns.computeIfAbsent(column, k -> new Column()).add(pack(row, node));
+        size++;
+    }
+
+    /**
+     * Appends the nodes of all cells inside the rectangle, column by column, rows ascending
+     */
+    public synchronized void cellsIn(int firstRow, int lastRow, int firstColumn, int lastColumn, IntList out) {
+        for (Map.Entry<Integer, Column> entry : columns.subMap(firstColumn, true, lastColumn, true).entrySet()) {
+            entry.getValue().rows(firstRow, lastRow, out);
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private static long pack(int row, int node) {
+        return ((long) row << 32) | (node & 0xFFFFFFFFL);
+    }
+
+    private static final class Column {
+        private long[] entries = new long[8];
+        private int count;
+        private boolean sorted = true;
+
+        void add(long entry) {
+            if (count == entries.length) {
+                entries = Arrays.copyOf(entries, count * 2);
+            }
+            if (count > 0 && entry < entries[count - 1]) {
+                sorted = false;
+            }
+            entries[count++] = entry;
+        }
+
+        void rows(int firstRow, int lastRow, IntList out) {
+            if (!sorted) {
+                Arrays.sort(entries, 0, count);
+                sorted = true;
+            }
+            int i = Arrays.binarySearch(entries, 0, count, pack(firstRow, 0));
+            if (i < 0) {
+                i = -i - 1;
+            }
+            for (; i < count && (int) (entries[i] >>> 32) <= lastRow; i++) {
+                out.add((int) entries[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.superjoin.spreadsheet.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Strongly connected components of the dependency graph and its condensation.
+ *
+ * Built with an iterative Tarjan pass (explicit frame stack, no recursion) over
+ * the edges of one type plus optional implicit edges. Components are numbered in
+ * the order Tarjan completes them, which for dependency edges means every
+ * component is numbered after all components it depends on: ascending component
+ * ids are a valid evaluation order.
+ *
+ * A component is cyclic when it has more than one node or a node that depends on
+ * itself; those are the circular references of the sheet. Nodes added after the
+ * index was built are not covered; callers rebuild when {@link #version()} no
+ * longer matches the store.
+ */
+public final class ComponentIndex {
+    private final int nodeCount;
+    private final long version;
+    private final int[] componentOf;
+    private final int[] memberStart;
+    private final int[] members;
+    private final boolean[] cyclic;
+    // Component -> components it depends on, and the reverse
+    private final CsrAdjacency condensed;
+    private final CsrAdjacency condensedReverse;
+
+    private ComponentIndex(int nodeCount, long version, int[] componentOf, int[] memberStart, int[] members,
+                           boolean[] cyclic, CsrAdjacency condensed) {
+        this.nodeCount = nodeCount;
+        this.version = version;
+        this.componentOf = componentOf;
+        this.memberStart = memberStart;
+        this.members = members;
+        this.cyclic = cyclic;
+        this.condensed = condensed;
+        this.condensedReverse = condensed.transpose(cyclic.length);
+    }
+
+    /**
+     * Computes the components over the edges of {@code edgeType} in {@code adjacency}
+     * plus the edges produced by {@code extra}, which may be null.
+     *
+     * @param version store version the index reflects, see {@link GraphStore#version()}
+     */
+    public static ComponentIndex build(CsrAdjacency adjacency, byte edgeType, ImplicitEdges extra,
+                                       int nodeCount, long version) {
+        // Materialize the combined edges once so the Tarjan frames can hold plain cursors
+        int[] offsets = new int[nodeCount + 1];
+        IntList targets = new IntList();
+        IntList implicit = new IntList();
+        for (int node = 0; node < nodeCount; node++) {
+            offsets[node] = targets.size();
+            for (int e = adjacency.start(node); e < adjacency.end(node); e++) {
+                if (adjacency.type(e) == edgeType) {
+                    targets.add(adjacency.target(e));
+                }
+            }
+            if (extra != null) {
+                implicit.clear();
+                extra.appendNeighbors(node, implicit);
+                for (int i = 0; i < implicit.size(); i++) {
+                    if (implicit.get(i) < nodeCount) {
+                        targets.add(implicit.get(i));
+                    }
+                }
+            }
+        }
+        offsets[nodeCount] = targets.size();
+        int[] edges = targets.toArray();
+
+        int[] order = new int[nodeCount];
+        int[] low = new int[nodeCount];
+        int[] componentOf = new int[nodeCount];
+        Arrays.fill(componentOf, -1);
+        int[] cursor = new int[nodeCount];
+        IntList frames = new IntList();
+        IntList tarjanStack = new IntList();
+        IntList componentNodes = new IntList(nodeCount);
+        IntList componentStart = new IntList();
+        IntList selfLoops = new IntList();
+        int counter = 0;
+
+        for (int root = 0; root < nodeCount; root++) {
+            if (order[root] != 0) {
+                continue;
+            }
+            order[root] = low[root] = ++counter;
+            cursor[root] = offsets[root];
+            tarjanStack.add(root);
+            frames.add(root);
+            while (!frames.isEmpty()) {
+                int node = frames.get(frames.size() - 1);
+                if (cursor[node] < offsets[node + 1]) {
+                    int next = edges[cursor[node]++];
+                    if (order[next] == 0) {
+                        order[next] = low[next] = ++counter;
+                        cursor[next] = offsets[next];
+                        tarjanStack.add(next);
+                        frames.add(next);
+                    } else if (componentOf[next] < 0) {
+                        // Still on the Tarjan stack
+                        low[node] = Math.min(low[node], order[next]);
+                        if (next == node) {
+                            selfLoops.add(node);
+                        }
+                    }
+                    continue;
+                }
+                frames.pop();
+                if (!frames.isEmpty()) {
+                    int parent = frames.get(frames.size() - 1);
+                    low[parent] = Math.min(low[parent], low[node]);
+                }
+                if (low[node] == order[node]) {
+                    int component = componentStart.size();
+                    int start = componentNodes.size();
+                    componentStart.add(start);
+                    int member;
+                    do {
+                        member = tarjanStack.pop();
+                        componentOf[member] = component;
+                        componentNodes.add(member);
+                    } while (member != node);
+                }
+            }
+        }
+
+        int componentCount = componentStart.size();
+        componentStart.add(componentNodes.size());
+        int[] memberStart = componentStart.toArray();
+        int[] members = componentNodes.toArray();
+        for (int c = 0; c < componentCount; c++) {
+            Arrays.sort(members, memberStart[c], memberStart[c + 1]);
+        }
+        boolean[] cyclic = new boolean[componentCount];
+        for (int c = 0; c < componentCount; c++) {
+            cyclic[c] = memberStart[c + 1] - memberStart[c] > 1;
+        }
+        for (int i = 0; i < selfLoops.size(); i++) {
+            cyclic[componentOf[selfLoops.get(i)]] = true;
+        }
+
+        return new ComponentIndex(nodeCount, version, componentOf, memberStart, members, cyclic,
+                condense(offsets, edges, componentOf, memberStart, members, componentCount));
+    }
+
+    /**
+     * Builds component -> dependency component edges, deduplicated and without self edges
+     */
+    private static CsrAdjacency condense(int[] offsets, int[] edges, int[] componentOf, int[] memberStart,
+                                         int[] members, int componentCount) {
+        int[] newOffsets = new int[componentCount + 1];
+        IntList targets = new IntList();
+        IntList row = new IntList();
+        for (int c = 0; c < componentCount; c++) {
+            newOffsets[c] = targets.size();
+            row.clear();
+            for (int m = memberStart[c]; m < memberStart[c + 1]; m++) {
+                int node = members[m];
+                for (int e = offsets[node]; e < offsets[node + 1]; e++) {
+                    int target = componentOf[edges[e]];
+                    if (target != c) {
+                        row.add(target);
+                    }
+                }
+            }
+            int[] sorted = row.toArray();
+            Arrays.sort(sorted);
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    targets.add(sorted[i]);
+                }
+            }
+        }
+        newOffsets[componentCount] = targets.size();
+        int[] newTargets = targets.toArray();
+        byte[] types = new byte[newTargets.length];
+        Arrays.fill(types, EdgeTypes.DEPENDS_ON);
+        return new CsrAdjacency(newOffsets, newTargets, types);
+    }
+
+    /**
+     * Store version this index was built from
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Number of nodes covered by the index
+     */
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    public int componentCount() {
+        return cyclic.length;
+    }
+
+    /**
+     * Component of a node; ascending component ids are a valid evaluation order
+     */
+    public int componentOf(int node) {
+        return componentOf[node];
+    }
+
+    /**
+     * Members of a component, ascending
+     */
+    public int[] members(int component) {
+        return Arrays.copyOfRange(members, memberStart[component], memberStart[component + 1]);
+    }
+
+    public boolean isCyclic(int component) {
+        return cyclic[component];
+    }
+
+    /**
+     * Returns true if the node is part of a circular reference
+     */
+    public boolean inCycle(int node) {
+        return node < nodeCount && cyclic[componentOf[node]];
+    }
+
+    /**
+     * Members of every cyclic component, in component order
+     */
+    public List<int[]> cycles() {
+        List<int[]> cycles = new ArrayList<>();
+        for (int c = 0; c < cyclic.length; c++) {
+            if (cyclic[c]) {
+                cycles.add(members(c));
+            }
+        }
+        return cycles;
+    }
+
+    /**
+     * The condensed DAG: each component leads to the components it depends on
+     */
+    public CsrAdjacency condensed() {
+        return condensed;
+    }
+
+    /**
+     * The condensed DAG with edges reversed: each component leads to its dependents
+     */
+    public CsrAdjacency condensedReverse() {
+        return condensedReverse;
+    }
+
+    /**
+     * Every node that transitively depends on {@code node}, found by walking the
+     * condensation and expanding the reached components. As with
+     * {@link Traversal#reachableFrom}, the node itself is included only when it
+     * lies on a cycle.
+     */
+    public NodeIdSet dependentsOf(int node, Traversal traversal) {
+        return expand(node, traversal.reachableFrom(condensedReverse, componentOf[node], cyclic.length));
+    }
+
+    /**
+     * Every node that {@code node} transitively depends on, via the condensation
+     */
+    public NodeIdSet dependenciesOf(int node, Traversal traversal) {
+        return expand(node, traversal.reachableFrom(condensed, componentOf[node], cyclic.length));
+    }
+
+    private NodeIdSet expand(int node, NodeIdSet components) {
+        int own = componentOf[node];
+        IntList result = new IntList();
+        if (cyclic[own]) {
+            for (int m = memberStart[own]; m < memberStart[own + 1]; m++) {
+                result.add(members[m]);
+            }
+        }
+        for (int i = 0; i < components.size(); i++) {
+            int c = components.get(i);
+            for (int m = memberStart[c]; m < memberStart[c + 1]; m++) {
+                result.add(members[m]);
+            }
+        }
+        int[] ids = result.toArray();
+        Arrays.sort(ids);
+        return NodeIdSet.of(ids);
+    }
+}
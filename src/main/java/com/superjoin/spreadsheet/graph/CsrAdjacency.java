@@ -0,0 +1,126 @@
+package com.superjoin.spreadsheet.graph;
+
+import java.util.Arrays;
+
+/**
+ * Immutable adjacency in compressed sparse row form.
+ * The neighbours of node {@code n} are {@code targets[offsets[n] .. offsets[n + 1])},
+ * sorted ascending, with the edge type of each entry in the parallel {@code types} array.
+ *
+ * Nodes registered after the adjacency was built simply have no neighbours here.
+ */
+public final class CsrAdjacency {
+    static final CsrAdjacency EMPTY = new CsrAdjacency(new int[]{0}, new int[0], new byte[0]);
+
+    private final int[] offsets;
+    private final int[] targets;
+    private final byte[] types;
+
+    CsrAdjacency(int[] offsets, int[] targets, byte[] types) {
+        this.offsets = offsets;
+        this.targets = targets;
+        this.types = types;
+    }
+
+    /**
+     * Number of node rows covered by this adjacency
+     */
+    public int nodeCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Total number of edges
+     */
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * Index of the first edge of a node
+     */
+    public int start(int node) {
+        return node < nodeCount() ? offsets[node] : targets.length;
+    }
+
+    /**
+     * Index one past the last edge of a node
+     */
+    public int end(int node) {
+        return node < nodeCount() ? offsets[node + 1] : targets.length;
+    }
+
+    public int degree(int node) {
+        return end(node) - start(node);
+    }
+
+    public int target(int edge) {
+        return targets[edge];
+    }
+
+    public byte type(int edge) {
+        return types[edge];
+    }
+
+    /**
+     * Returns true if the edge source -> target exists
+     */
+    public boolean hasEdge(int source, int target) {
+        return Arrays.binarySearch(targets, start(source), end(source), target) >= 0;
+    }
+
+    /**
+     * Returns a copy containing only the edges of the given type
+     */
+    public CsrAdjacency filter(byte type) {
+        int n = nodeCount();
+        int[] newOffsets = new int[n + 1];
+        int kept = 0;
+        for (int i = 0; i < targets.length; i++) {
+            if (types[i] == type) {
+                kept++;
+            }
+        }
+        int[] newTargets = new int[kept];
+        byte[] newTypes = new byte[kept];
+        int out = 0;
+        for (int node = 0; node < n; node++) {
+            newOffsets[node] = out;
+            for (int e = offsets[node]; e < offsets[node + 1]; e++) {
+                if (types[e] == type) {
+                    newTargets[out] = targets[e];
+                    newTypes[out] = type;
+                    out++;
+                }
+            }
+        }
+        newOffsets[n] = out;
+        return new CsrAdjacency(newOffsets, newTargets, newTypes);
+    }
+
+    /**
+     * Returns the adjacency with every edge reversed, over the given number of nodes.
+     * Rows of the result are sorted because sources are visited in ascending order.
+     */
+    public CsrAdjacency transpose(int nodeCount) {
+        int n = Math.max(nodeCount, nodeCount());
+        int[] newOffsets = new int[n + 1];
+        for (int target : targets) {
+            newOffsets[target + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            newOffsets[i + 1] += newOffsets[i];
+        }
+        int[] cursor = Arrays.copyOf(newOffsets, n);
+        int[] newTargets = new int[targets.length];
+        byte[] newTypes = new byte[targets.length];
+        for (int source = 0; source < nodeCount(); source++) {
+            for (int e = offsets[source]; e < offsets[source + 1]; e++) {
+                int slot = cursor[targets[e]]++;
+                newTargets[slot] = source;
+                newTypes[slot] = types[e];
+            }
+        }
+        return new CsrAdjacency(newOffsets, newTargets, newTypes);
+    }
+}
@@ -0,0 +1,295 @@
+package com.superjoin.spreadsheet.graph;
+
+import com.superjoin.spreadsheet.model.CellColumns;
+import com.superjoin.spreadsheet.model.CellNode;
+import com.superjoin.spreadsheet.model.GraphNode;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Graph store keeping forward and reverse edges as compressed sparse row arrays.
+ *
+ * Mutations are buffered: added edges go to a pending list and removed edges to a
+ * tombstone list, and both are folded into fresh CSR arrays the next time an
+ * adjacency is read. Bulk loads therefore pay for one O(V + E) compaction instead
+ * of per-edge set insertions, and steady-state reads touch only flat int arrays.
+ *
+ * Cells are not kept as objects: their data goes into {@link CellColumns} under
+ * the node index and {@link #nodeAt} returns a view. Only sheets and ranges are
+ * stored as node objects and looked up through the id map.
+ */
+public class CsrGraphStore implements GraphStore {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Map<String, Integer> indexById = new HashMap<>();
+    private final CellColumns cells = new CellColumns();
+    // Non-cell nodes by index; null where the node is a cell
+    private GraphNode[] nodes = new GraphNode[INITIAL_CAPACITY];
+    private int nodeCount;
+
+    private CsrAdjacency forward = CsrAdjacency.EMPTY;
+    private CsrAdjacency reverse = CsrAdjacency.EMPTY;
+
+    // Edges added since the last compaction, packed as (source << 32 | target)
+    private long[] pending = new long[INITIAL_CAPACITY];
+    private byte[] pendingTypes = new byte[INITIAL_CAPACITY];
+    private int pendingCount;
+
+    // Edges of the compacted arrays removed since the last compaction
+    private long[] removed = new long[INITIAL_CAPACITY];
+    private int removedCount;
+
+    private long version;
+
+    @Override
+    public synchronized int addNode(GraphNode node) {
+        if (node instanceof CellNode) {
+            return addCell((CellNode) node);
+        }
+        Integer existing = indexById.get(node.getId());
+        if (existing != null) {
+            nodes[existing] = node;
+            return existing;
+        }
+        if (nodeCount == nodes.length) {
+            nodes = Arrays.copyOf(nodes, nodes.length * 2);
+        }
+        int index = nodeCount++;
+        nodes[index] = node;
+        indexById.put(node.getId(), index);
+        version++;
+        return index;
+    }
+
+    private int addCell(CellNode cell) {
+        int existing = cells.indexOf(cell.getSheetId(), cell.getRow(), cell.getColumn());
+        if (existing >= 0) {
+            cells.put(existing, cell);
+            return existing;
+        }
+        if (nodeCount == nodes.length) {
+            nodes = Arrays.copyOf(nodes, nodes.length * 2);
+        }
+        int index = nodeCount++;
+        cells.put(index, cell);
+        version++;
+        return index;
+    }
+
+    @Override
+    public synchronized int indexOf(String nodeId) {
+        Integer index = indexById.get(nodeId);
+        if (index != null) {
+            return index;
+        }
+        int cell = cells.indexOf(nodeId);
+        return cell >= 0 ? cell : NO_NODE;
+    }
+
+    @Override
+    public synchronized GraphNode nodeAt(int index) {
+        if (index < 0 || index >= nodeCount) {
+            throw new IndexOutOfBoundsException("No node at index " + index);
+        }
+        return nodes[index] != null ? nodes[index] : cells.view(index);
+    }
+
+    @Override
+    public synchronized String idAt(int index) {
+        if (index < 0 || index >= nodeCount) {
+            throw new IndexOutOfBoundsException("No node at index " + index);
+        }
+        return nodes[index] != null ? nodes[index].getId() : cells.format(cells.keyAt(index));
+    }
+
+    @Override
+    public int indexOfCell(String sheetId, int row, int column) {
+        int index = cells.indexOf(sheetId, row, column);
+        return index >= 0 ? index : NO_NODE;
+    }
+
+    @Override
+    public long cellKey(int index) {
+        return cells.keyAt(index);
+    }
+
+    @Override
+    public String sheetOf(long cellKey) {
+        return cells.sheetName(cellKey);
+    }
+
+    @Override
+    public synchronized int nodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public synchronized void addEdge(int source, int target, byte edgeType) {
+        checkIndex(source);
+        checkIndex(target);
+        if (pendingCount == pending.length) {
+            pending = Arrays.copyOf(pending, pending.length * 2);
+            pendingTypes = Arrays.copyOf(pendingTypes, pendingTypes.length * 2);
+        }
+        pending[pendingCount] = pack(source, target);
+        pendingTypes[pendingCount] = edgeType;
+        pendingCount++;
+        version++;
+    }
+
+    @Override
+    public synchronized void removeEdge(int source, int target) {
+        long key = pack(source, target);
+        // Cancel any not-yet-compacted additions of the same pair
+        for (int i = pendingCount - 1; i >= 0; i--) {
+            if (pending[i] == key) {
+                pendingCount--;
+                pending[i] = pending[pendingCount];
+                pendingTypes[i] = pendingTypes[pendingCount];
+            }
+        }
+        if (forward.hasEdge(source, target)) {
+            if (removedCount == removed.length) {
+                removed = Arrays.copyOf(removed, removed.length * 2);
+            }
+            removed[removedCount++] = key;
+        }
+        version++;
+    }
+
+    @Override
+    public synchronized int edgeCount() {
+        compact();
+        return forward.edgeCount();
+    }
+
+    @Override
+    public synchronized CsrAdjacency forward() {
+        compact();
+        return forward;
+    }
+
+    @Override
+    public synchronized CsrAdjacency reverse() {
+        compact();
+        return reverse;
+    }
+
+    @Override
+    public synchronized long version() {
+        return version;
+    }
+
+    @Override
+    public synchronized void clear() {
+        indexById.clear();
+        cells.clear();
+        nodes = new GraphNode[INITIAL_CAPACITY];
+        nodeCount = 0;
+        forward = CsrAdjacency.EMPTY;
+        reverse = CsrAdjacency.EMPTY;
+        pending = new long[INITIAL_CAPACITY];
+        pendingTypes = new byte[INITIAL_CAPACITY];
+        pendingCount = 0;
+        removedCount = 0;
+        version++;
+    }
+
+    /**
+     * Folds pending additions and removals into new CSR arrays.
+     * Edges are bucketed by source with a counting sort, each row is sorted by
+     * target, and duplicate pairs are dropped (the lowest edge type code wins).
+     */
+    private void compact() {
+        if (pendingCount == 0 && removedCount == 0) {
+            return;
+        }
+        Arrays.sort(removed, 0, removedCount);
+
+        int n = nodeCount;
+        int[] rowStart = new int[n + 1];
+        int total = 0;
+        for (int source = 0; source < forward.nodeCount(); source++) {
+            for (int e = forward.start(source); e < forward.end(source); e++) {
+                if (!isRemoved(source, forward.target(e))) {
+                    rowStart[source + 1]++;
+                    total++;
+                }
+            }
+        }
+        for (int i = 0; i < pendingCount; i++) {
+            rowStart[(int) (pending[i] >>> 32) + 1]++;
+            total++;
+        }
+        for (int i = 0; i < n; i++) {
+            rowStart[i + 1] += rowStart[i];
+        }
+
+        // Row-local sort keys: target in the high bits, edge type in the low byte
+        long[] keys = new long[total];
+        int[] cursor = Arrays.copyOf(rowStart, n);
+        for (int source = 0; source < forward.nodeCount(); source++) {
+            for (int e = forward.start(source); e < forward.end(source); e++) {
+                int target = forward.target(e);
+                if (!isRemoved(source, target)) {
+                    keys[cursor[source]++] = sortKey(target, forward.type(e));
+                }
+            }
+        }
+        for (int i = 0; i < pendingCount; i++) {
+            int source = (int) (pending[i] >>> 32);
+            keys[cursor[source]++] = sortKey((int) pending[i], pendingTypes[i]);
+        }
+
+        int[] offsets = new int[n + 1];
+        int[] targets = new int[total];
+        byte[] types = new byte[total];
+        int out = 0;
+        for (int source = 0; source < n; source++) {
+            offsets[source] = out;
+            int from = rowStart[source];
+            int to = rowStart[source + 1];
+            Arrays.sort(keys, from, to);
+            int previous = -1;
+            for (int k = from; k < to; k++) {
+                int target = (int) (keys[k] >>> 8);
+                if (target != previous) {
+                    targets[out] = target;
+                    types[out] = (byte) keys[k];
+                    out++;
+                    previous = target;
+                }
+            }
+        }
+        offsets[n] = out;
+        if (out < total) {
+            targets = Arrays.copyOf(targets, out);
+            types = Arrays.copyOf(types, out);
+        }
+
+        forward = new CsrAdjacency(offsets, targets, types);
+        reverse = forward.transpose(n);
+        pendingCount = 0;
+        removedCount = 0;
+    }
+
+    private boolean isRemoved(int source, int target) {
+        return removedCount > 0 && Arrays.binarySearch(removed, 0, removedCount, pack(source, target)) >= 0;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= nodeCount) {
+            throw new IndexOutOfBoundsException("No node at index " + index);
+        }
+    }
+
+    private static long pack(int source, int target) {
+        return ((long) source << 32) | (target & 0xFFFFFFFFL);
+    }
+
+    private static long sortKey(int target, byte type) {
+        return ((long) target << 8) | (type & 0xFF);
+    }
+}
@@ -0,0 +1,36 @@
+package com.superjoin.spreadsheet.graph;
+
+/**
+ * Compact byte codes for the edge types stored in a {@link GraphStore}.
+ * The public API of the knowledge graph still speaks in edge type names
+ * ("CONTAINS", "DEPENDS_ON"); these codes are what the adjacency arrays hold.
+ */
+public final class EdgeTypes {
+    public static final byte UNKNOWN = 0;
+    public static final byte CONTAINS = 1;
+    public static final byte DEPENDS_ON = 2;
+
+    private static final String[] NAMES = {"UNKNOWN", "CONTAINS", "DEPENDS_ON"};
+
+    private EdgeTypes() {
+    }
+
+    /**
+     * Maps an edge type name to its byte code, or {@link #UNKNOWN} for unrecognised names.
+     */
+    public static byte of(String name) {
+        for (int i = 1; i < NAMES.length; i++) {
+            if (NAMES[i].equals(name)) {
+                return (byte) i;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Maps a byte code back to the edge type name.
+     */
+    public static String nameOf(byte code) {
+        return code >= 0 && code < NAMES.length ? NAMES[code] : NAMES[UNKNOWN];
+    }
+}
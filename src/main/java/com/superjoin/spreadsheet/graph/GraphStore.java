@@ -0,0 +1,94 @@
+package com.superjoin.spreadsheet.graph;
+
+import com.superjoin.spreadsheet.model.A1Notation;
+import com.superjoin.spreadsheet.model.CellKey;
+import com.superjoin.spreadsheet.model.GraphNode;
+
+/**
+ * Storage backend for the knowledge graph.
+ * Every node is assigned a dense int index on insertion, and edges are
+ * addressed by those indices so the backing structure never has to hash
+ * string ids on the traversal path.
+ */
+public interface GraphStore {
+
+    /** Index returned by {@link #indexOf(String)} for unknown ids */
+    int NO_NODE = -1;
+
+    /**
+     * Adds a node, or replaces the node object if one with the same id exists.
+     * Returns the node's index; an existing node keeps its index and edges.
+     */
+    int addNode(GraphNode node);
+
+    /**
+     * Looks up the index of a node id, or {@link #NO_NODE}
+     */
+    int indexOf(String nodeId);
+
+    /**
+     * Returns the node stored at an index
+     */
+    GraphNode nodeAt(int index);
+
+    /**
+     * Returns the id of the node at an index. Stores that do not keep cells as
+     * objects override this to format the id without creating a node.
+     */
+    default String idAt(int index) {
+        return nodeAt(index).getId();
+    }
+
+    /**
+     * Looks up the index of the cell at a position, or {@link #NO_NODE}
+     */
+    default int indexOfCell(String sheetId, int row, int column) {
+        return indexOf(sheetId + "!" + A1Notation.format(row, column));
+    }
+
+    /**
+     * Packed key of the cell at an index, or {@link CellKey#NONE} if the node is not
+     * a cell or the store does not issue keys
+     */
+    default long cellKey(int index) {
+        return CellKey.NONE;
+    }
+
+    /**
+     * Sheet name of a key returned by {@link #cellKey}
+     */
+    String sheetOf(long cellKey);
+
+    int nodeCount();
+
+    /**
+     * Adds a typed edge. Adding an existing source/target pair again is a no-op.
+     */
+    void addEdge(int source, int target, byte edgeType);
+
+    /**
+     * Removes the edge between two nodes, whatever its type
+     */
+    void removeEdge(int source, int target);
+
+    int edgeCount();
+
+    /**
+     * Outgoing edges of every node
+     */
+    CsrAdjacency forward();
+
+    /**
+     * Incoming edges of every node
+     */
+    CsrAdjacency reverse();
+
+    /**
+     * Counter bumped whenever a node is added or an edge changes, for callers that
+     * cache structures derived from the graph's shape. Replacing the contents of an
+     * existing node leaves it unchanged.
+     */
+    long version();
+
+    void clear();
+}
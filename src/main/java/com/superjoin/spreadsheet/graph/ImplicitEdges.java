@@ -0,0 +1,14 @@
+package com.superjoin.spreadsheet.graph;
+
+/**
+ * Source of edges that are derived on demand instead of being stored in the
+ * adjacency arrays, such as the membership of a cell in a referenced range.
+ */
+@FunctionalInterface
+public interface ImplicitEdges {
+
+    /**
+     * Appends the implicit neighbours of {@code node} to {@code out}
+     */
+    void appendNeighbors(int node, IntList out);
+}
@@ -0,0 +1,122 @@
+package com.superjoin.spreadsheet.graph;
+
+import java.util.Arrays;
+
+/**
+ * Static centered interval tree answering "which intervals contain point p"
+ * in O(log n + k). Intervals are closed, [lo, hi] with non-negative bounds,
+ * and carry an int payload.
+ */
+public final class IntervalTree {
+    private final Node root;
+
+    private static final class Node {
+        int center;
+        // Intervals crossing the center, sorted by lo ascending and by hi descending
+        int[] lows;
+        int[] byLow;
+        int[] highs;
+        int[] byHigh;
+        Node left;
+        Node right;
+    }
+
+    /**
+     * Builds a tree over {@code count} intervals given as parallel arrays
+     */
+    public IntervalTree(int[] lo, int[] hi, int[] payload, int count) {
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        this.root = build(lo, hi, payload, order, count);
+    }
+
+    private static Node build(int[] lo, int[] hi, int[] payload, int[] members, int count) {
+        if (count == 0) {
+            return null;
+        }
+        int[] endpoints = new int[count * 2];
+        for (int i = 0; i < count; i++) {
+            endpoints[2 * i] = lo[members[i]];
+            endpoints[2 * i + 1] = hi[members[i]];
+        }
+        Arrays.sort(endpoints);
+
+        Node node = new Node();
+        node.center = endpoints[count];
+        int[] leftMembers = new int[count];
+        int[] rightMembers = new int[count];
+        int[] crossing = new int[count];
+        int leftCount = 0;
+        int rightCount = 0;
+        int crossingCount = 0;
+        for (int i = 0; i < count; i++) {
+            int m = members[i];
+            if (hi[m] < node.center) {
+                leftMembers[leftCount++] = m;
+            } else if (lo[m] > node.center) {
+                rightMembers[rightCount++] = m;
+            } else {
+                crossing[crossingCount++] = m;
+            }
+        }
+
+        node.byLow = sortBy(crossing, crossingCount, lo, true);
+        node.byHigh = sortBy(crossing, crossingCount, hi, false);
+        node.lows = new int[crossingCount];
+        node.highs = new int[crossingCount];
+        for (int i = 0; i < crossingCount; i++) {
+            node.lows[i] = lo[node.byLow[i]];
+            node.highs[i] = hi[node.byHigh[i]];
+            node.byLow[i] = payload[node.byLow[i]];
+            node.byHigh[i] = payload[node.byHigh[i]];
+        }
+
+        node.left = build(lo, hi, payload, leftMembers, leftCount);
+        node.right = build(lo, hi, payload, rightMembers, rightCount);
+        return node;
+    }
+
+    /**
+     * Sorts members by a non-negative int key by packing (key, position) into longs
+     */
+    private static int[] sortBy(int[] members, int count, int[] key, boolean ascending) {
+        long[] packed = new long[count];
+        for (int i = 0; i < count; i++) {
+            long k = ascending ? key[members[i]] : Integer.MAX_VALUE - key[members[i]];
+            packed[i] = (k << 32) | i;
+        }
+        Arrays.sort(packed);
+        int[] sorted = new int[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = members[(int) packed[i]];
+        }
+        return sorted;
+    }
+
+    /**
+     * Appends the payload of every interval containing {@code point} to {@code out}
+     */
+    public void stab(int point, IntList out) {
+        Node node = root;
+        while (node != null) {
+            if (point < node.center) {
+                for (int i = 0; i < node.lows.length && node.lows[i] <= point; i++) {
+                    out.add(node.byLow[i]);
+                }
+                node = node.left;
+            } else if (point > node.center) {
+                for (int i = 0; i < node.highs.length && node.highs[i] >= point; i++) {
+                    out.add(node.byHigh[i]);
+                }
+                node = node.right;
+            } else {
+                for (int payload : node.byLow) {
+                    out.add(payload);
+                }
+                return;
+            }
+        }
+    }
+}
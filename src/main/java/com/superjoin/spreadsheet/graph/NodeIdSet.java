@@ -0,0 +1,94 @@
+package com.superjoin.spreadsheet.graph;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable set of node indices backed by a sorted int array.
+ * Traversal results are returned in this form so that no per-node objects
+ * are created until a caller actually needs the string ids.
+ */
+public final class NodeIdSet {
+    public static final NodeIdSet EMPTY = new NodeIdSet(new int[0]);
+
+    private final int[] ids;
+
+    private NodeIdSet(int[] sortedIds) {
+        this.ids = sortedIds;
+    }
+
+    /**
+     * Creates a set from unsorted, duplicate-free indices. The array is sorted in place.
+     */
+    public static NodeIdSet of(int[] ids) {
+        Arrays.sort(ids);
+        return new NodeIdSet(ids);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public boolean isEmpty() {
+        return ids.length == 0;
+    }
+
+    /**
+     * Returns the i-th smallest index in the set
+     */
+    public int get(int i) {
+        return ids[i];
+    }
+
+    public boolean contains(int id) {
+        return Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    public int[] toArray() {
+        return ids.clone();
+    }
+
+    /**
+     * Returns a read-only view of the set as node id strings, resolved lazily through the store
+     */
+    public Set<String> asNodeIds(GraphStore store) {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new Iterator<>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < ids.length;
+                    }
+
+                    @Override
+                    public String next() {
+                        if (next >= ids.length) {
+                            throw new NoSuchElementException();
+                        }
+                        return store.idAt(ids[next++]);
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof String)) {
+                    return false;
+                }
+                int index = store.indexOf((String) o);
+                return index != GraphStore.NO_NODE && NodeIdSet.this.contains(index);
+            }
+
+            @Override
+            public int size() {
+                return ids.length;
+            }
+        };
+    }
+}
@@ -0,0 +1,131 @@
+package com.superjoin.spreadsheet.graph;
+
+import java.util.Arrays;
+
+/**
+ * Static 2D index answering "which ranges of one sheet contain cell (row, column)".
+ *
+ * Column bounds are compressed into elementary segments and the ranges are
+ * inserted into a segment tree over those segments; every tree node keeps an
+ * {@link IntervalTree} over the row bounds of the ranges stored at it. A column
+ * query walks a single root-to-leaf path, and every range stored on that path
+ * already covers the column, so the row stabbing at each node only reports real
+ * hits: O(log^2 n + k) per query, without any duplicates.
+ */
+public final class RangeIndex {
+    private final int[] boundaries;
+    private final IntervalTree[] trees;
+    private final int leaves;
+    private final int size;
+
+    /**
+     * Builds the index over {@code count} ranges. Each range is the closed rectangle
+     * [firstRow..lastRow] x [firstColumn..lastColumn] and is reported by its id.
+     */
+    public RangeIndex(int[] firstRow, int[] lastRow, int[] firstColumn, int[] lastColumn, int[] ids, int count) {
+        this.size = count;
+        // Elementary segment i covers columns [boundaries[i], boundaries[i + 1])
+        long[] edges = new long[count * 2];
+        for (int i = 0; i < count; i++) {
+            edges[2 * i] = firstColumn[i];
+            edges[2 * i + 1] = (long) lastColumn[i] + 1;
+        }
+        Arrays.sort(edges);
+        int distinct = 0;
+        for (int i = 0; i < edges.length; i++) {
+            if (i == 0 || edges[i] != edges[i - 1]) {
+                edges[distinct++] = edges[i];
+            }
+        }
+        this.boundaries = new int[distinct];
+        for (int i = 0; i < distinct; i++) {
+            boundaries[i] = (int) Math.min(edges[i], Integer.MAX_VALUE);
+        }
+        this.leaves = Math.max(distinct - 1, 1);
+
+        // Assign each range to its canonical segment tree nodes
+        IntList[] members = new IntList[4 * leaves];
+        for (int i = 0; i < count; i++) {
+            int from = Arrays.binarySearch(boundaries, firstColumn[i]);
+            int to = lastColumn[i] == Integer.MAX_VALUE
+                    ? distinct - 1
+                    : Arrays.binarySearch(boundaries, lastColumn[i] + 1);
+            insert(members, 1, 0, leaves - 1, from, to - 1, i);
+        }
+
+        this.trees = new IntervalTree[members.length];
+        for (int node = 0; node < members.length; node++) {
+            IntList list = members[node];
+            if (list == null) {
+                continue;
+            }
+            int n = list.size();
+            int[] lo = new int[n];
+            int[] hi = new int[n];
+            int[] payload = new int[n];
+            for (int k = 0; k < n; k++) {
+                int range = list.get(k);
+                lo[k] = firstRow[range];
+                hi[k] = lastRow[range];
+                payload[k] = ids[range];
+            }
+            trees[node] = new IntervalTree(lo, hi, payload, n);
+        }
+    }
+
+    private static void insert(IntList[] members, int node, int lo, int hi, int from, int to, int range) {
+        if (to < lo || from > hi) {
+            return;
+        }
+        if (from <= lo && hi <= to) {
+            if (members[node] == null) {
+                members[node] = new IntList(4);
+            }
+            members[node].add(range);
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        insert(members, 2 * node, lo, mid, from, to, range);
+        insert(members, 2 * node + 1, mid + 1, hi, from, to, range);
+    }
+
+    /**
+     * Number of ranges in the index
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Appends the id of every range containing (row, column) to {@code out}
+     */
+    public void containing(int row, int column, IntList out) {
+        if (size == 0 || column < boundaries[0]) {
+            return;
+        }
+        int position = Arrays.binarySearch(boundaries, column);
+        int segment = position >= 0 ? position : -position - 2;
+        if (segment >= leaves) {
+            return;
+        }
+        int node = 1;
+        int lo = 0;
+        int hi = leaves - 1;
+        while (true) {
+            if (trees[node] != null) {
+                trees[node].stab(row, out);
+            }
+            if (lo == hi) {
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            if (segment <= mid) {
+                node = 2 * node;
+                hi = mid;
+            } else {
+                node = 2 * node + 1;
+                lo = mid + 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.superjoin.spreadsheet.graph;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Answers "does a change to X reach Y" over the condensed component DAG of a
+ * {@link ComponentIndex} without walking the graph in the common case.
+ *
+ * Uses GRAIL interval labels: each of {@link #LABELINGS} post-order traversals of
+ * the DAG, with a different child order, gives every component an interval
+ * [lowest post rank below it, its own post rank]. If X reaches Y, Y's interval
+ * lies inside X's in every labeling, so a single non-contained interval proves
+ * that Y is unaffected. Component ids add a second cheap filter, since the
+ * dependents of a component always have higher ids. Only pairs that pass both
+ * filters fall back to a depth-first search, pruned by the same two tests.
+ */
+public final class ReachabilityIndex {
+    /** Number of independent interval labelings */
+    public static final int LABELINGS = 3;
+
+    private final ComponentIndex components;
+    private final int[][] low;
+    private final int[][] rank;
+    private final ThreadLocal<Search> search = ThreadLocal.withInitial(Search::new);
+
+    private ReachabilityIndex(ComponentIndex components, int[][] low, int[][] rank) {
+        this.components = components;
+        this.low = low;
+        this.rank = rank;
+    }
+
+    /**
+     * Labels the condensation of the given components
+     */
+    public static ReachabilityIndex build(ComponentIndex components) {
+        CsrAdjacency dag = components.condensedReverse();
+        int n = components.componentCount();
+        int[][] low = new int[LABELINGS][];
+        int[][] rank = new int[LABELINGS][];
+        Random random = new Random(n);
+        for (int k = 0; k < LABELINGS; k++) {
+            low[k] = new int[n];
+            rank[k] = new int[n];
+            label(dag, n, k, random, low[k], rank[k]);
+        }
+        return new ReachabilityIndex(components, low, rank);
+    }
+
+    /**
+     * One iterative post-order pass. Labeling 0 visits children in ascending order,
+     * labeling 1 in descending order, the others in a random rotation.
+     */
+    private static void label(CsrAdjacency dag, int n, int labeling, Random random, int[] low, int[] rank) {
+        int[] cursor = new int[n];
+        int[] visited = new int[n];
+        int[] shift = new int[n];
+        IntList frames = new IntList();
+        int next = 0;
+        for (int i = 0; i < n; i++) {
+            int root = labeling == 1 ? n - 1 - i : i;
+            if (visited[root] != 0) {
+                continue;
+            }
+            visited[root] = 1;
+            low[root] = Integer.MAX_VALUE;
+            shift[root] = labeling >= 2 ? random.nextInt(Math.max(1, dag.degree(root))) : 0;
+            frames.add(root);
+            while (!frames.isEmpty()) {
+                int c = frames.get(frames.size() - 1);
+                int degree = dag.degree(c);
+                if (cursor[c] < degree) {
+                    int step = cursor[c]++;
+                    int offset = labeling == 1 ? degree - 1 - step : (step + shift[c]) % degree;
+                    int child = dag.target(dag.start(c) + offset);
+                    if (visited[child] == 0) {
+                        visited[child] = 1;
+                        low[child] = Integer.MAX_VALUE;
+                        shift[child] = labeling >= 2 ? random.nextInt(Math.max(1, dag.degree(child))) : 0;
+                        frames.add(child);
+                    } else {
+                        low[c] = Math.min(low[c], low[child]);
+                    }
+                    continue;
+                }
+                frames.pop();
+                rank[c] = ++next;
+                low[c] = Math.min(low[c], rank[c]);
+                if (!frames.isEmpty()) {
+                    int parent = frames.get(frames.size() - 1);
+                    low[parent] = Math.min(low[parent], low[c]);
+                }
+            }
+        }
+    }
+
+    /**
+     * The components this index was built from
+     */
+    public ComponentIndex components() {
+        return components;
+    }
+
+    /**
+     * Returns true if the value of {@code to} transitively depends on {@code from}.
+     * As with transitive dependents, a node only reaches itself when it lies on a cycle.
+     */
+    public boolean reaches(int from, int to) {
+        if (from >= components.nodeCount() || to >= components.nodeCount()) {
+            return false;
+        }
+        int source = components.componentOf(from);
+        int target = components.componentOf(to);
+        if (source == target) {
+            return components.isCyclic(source);
+        }
+        if (!mayReach(source, target)) {
+            return false;
+        }
+        return search.get().run(source, target);
+    }
+
+    /**
+     * Cheap necessary condition for component {@code source} to reach {@code target}
+     */
+    private boolean mayReach(int source, int target) {
+        if (source > target) {
+            return false;
+        }
+        for (int k = 0; k < LABELINGS; k++) {
+            if (low[k][target] < low[k][source] || rank[k][target] > rank[k][source]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Per-thread pruned depth-first search for the pairs the labels cannot decide
+     */
+    private final class Search {
+        private int[] mark = new int[0];
+        private int stamp;
+        private final IntList stack = new IntList();
+
+        boolean run(int source, int target) {
+            CsrAdjacency dag = components.condensedReverse();
+            if (mark.length < components.componentCount()) {
+                mark = new int[components.componentCount()];
+            }
+            if (++stamp == 0) {
+                Arrays.fill(mark, 0);
+                stamp = 1;
+            }
+            stack.clear();
+            stack.add(source);
+            mark[source] = stamp;
+            while (!stack.isEmpty()) {
+                int c = stack.pop();
+                for (int e = dag.start(c); e < dag.end(c); e++) {
+                    int child = dag.target(e);
+                    if (child == target) {
+                        return true;
+                    }
+                    if (mark[child] != stamp && mayReach(child, target)) {
+                        mark[child] = stamp;
+                        stack.add(child);
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.superjoin.spreadsheet.graph;
+
+import java.util.Arrays;
+
+/**
+ * A topological order of the value dependency graph (precedents before
+ * dependents) with per-node depth and height, kept up to date as edges are added.
+ *
+ * The initial order comes from a {@link ComponentIndex}: components in id order,
+ * members ascending. Afterwards {@link #addEdge} applies the Pearce–Kelly dynamic
+ * topological sort: when a new edge contradicts the order, only the nodes between
+ * the two endpoints that are reachable from them are shifted, reusing the
+ * positions they already occupied. Removing an edge leaves a valid order valid,
+ * but members of a circular reference are placed in index order, so once such a
+ * loop is broken the order has to be rebuilt by the caller.
+ *
+ * Depth is the length of the longest chain of precedents behind a node, height
+ * the longest chain of dependents in front of it. Both are recomputed lazily in
+ * one pass over the order after the edges changed. Edges running against the
+ * order, which only exist inside a circular reference, are ignored.
+ *
+ * Instances are not thread-safe.
+ */
+public final class TopologicalOrder {
+    private final ImplicitEdges precedents;
+    private final ImplicitEdges dependents;
+    private int size;
+    private int[] positionOf;
+    private int[] nodeAt;
+    private int[] depth;
+    private int[] height;
+    private boolean levelsStale = true;
+
+    // Scratch state for the bounded searches of addEdge
+    private int[] mark;
+    private int stamp;
+    private final IntList stack = new IntList();
+    private final IntList forward = new IntList();
+    private final IntList backward = new IntList();
+    private final IntList scratch = new IntList();
+
+    private TopologicalOrder(int[] order, ImplicitEdges precedents, ImplicitEdges dependents) {
+        this.precedents = precedents;
+        this.dependents = dependents;
+        this.size = order.length;
+        this.nodeAt = Arrays.copyOf(order, Math.max(16, order.length));
+        this.positionOf = new int[nodeAt.length];
+        for (int i = 0; i < size; i++) {
+            positionOf[order[i]] = i;
+        }
+        this.mark = new int[nodeAt.length];
+    }
+
+    /**
+     * Builds the order from precomputed components.
+     *
+     * @param precedents for each node, the nodes whose value it is computed from
+     * @param dependents for each node, the nodes computed from its value
+     */
+    public static TopologicalOrder build(ComponentIndex components, ImplicitEdges precedents, ImplicitEdges dependents) {
+        int[] order = new int[components.nodeCount()];
+        int next = 0;
+        for (int c = 0; c < components.componentCount(); c++) {
+            for (int member : components.members(c)) {
+                order[next++] = member;
+            }
+        }
+        return new TopologicalOrder(order, precedents, dependents);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Position of a node in the order
+     */
+    public int positionOf(int node) {
+        return positionOf[node];
+    }
+
+    /**
+     * Node at a position of the order
+     */
+    public int nodeAt(int position) {
+        return nodeAt[position];
+    }
+
+    /**
+     * Returns true if the node has been placed in the order
+     */
+    public boolean contains(int node) {
+        return node < size;
+    }
+
+    /**
+     * Length of the longest chain of precedents behind the node; 0 for inputs
+     */
+    public int depth(int node) {
+        ensureLevels();
+        return depth[node];
+    }
+
+    /**
+     * Length of the longest chain of dependents in front of the node; 0 for outputs
+     */
+    public int height(int node) {
+        ensureLevels();
+        return height[node];
+    }
+
+    /**
+     * Returns the given nodes sorted by their position in the order
+     */
+    public int[] sort(NodeIdSet nodes) {
+        return sortByPosition(nodes.toArray());
+    }
+
+    /**
+     * Places a new node at the end of the order. Nodes must be added in index order,
+     * so {@code node} is expected to equal {@link #size()}.
+     */
+    public void addNode(int node) {
+        if (node < size) {
+            return;
+        }
+        if (node >= nodeAt.length) {
+            int capacity = Math.max(node + 1, nodeAt.length * 2);
+            nodeAt = Arrays.copyOf(nodeAt, capacity);
+            positionOf = Arrays.copyOf(positionOf, capacity);
+            mark = Arrays.copyOf(mark, capacity);
+        }
+        while (size <= node) {
+            nodeAt[size] = size;
+            positionOf[size] = size;
+            size++;
+        }
+        levelsStale = true;
+    }
+
+    /**
+     * Records that {@code dependent} is now computed from {@code precedent},
+     * reordering the affected region if needed. The edge itself must already be
+     * visible through the edge functions given at build time.
+     *
+     * @return false if the edge closes a cycle; the order is then left unchanged
+     *         and no longer describes the graph
+     */
+    public boolean addEdge(int precedent, int dependent) {
+        levelsStale = true;
+        if (precedent == dependent) {
+            return false;
+        }
+        int lower = positionOf[dependent];
+        int upper = positionOf[precedent];
+        if (upper < lower) {
+            return true;
+        }
+
+        nextStamp();
+        forward.clear();
+        if (!search(dependent, dependents, lower, upper, precedent, forward)) {
+            return false;
+        }
+        backward.clear();
+        search(precedent, precedents, lower, upper, -1, backward);
+
+        // Reuse the positions of both regions: precedents' side first, each in its old relative order
+        int[] back = sortByPosition(backward.toArray());
+        int[] front = sortByPosition(forward.toArray());
+        int[] slots = new int[back.length + front.length];
+        for (int i = 0; i < back.length; i++) {
+            slots[i] = positionOf[back[i]];
+        }
+        for (int i = 0; i < front.length; i++) {
+            slots[back.length + i] = positionOf[front[i]];
+        }
+        Arrays.sort(slots);
+        for (int i = 0; i < slots.length; i++) {
+            int node = i < back.length ? back[i] : front[i - back.length];
+            nodeAt[slots[i]] = node;
+            positionOf[node] = slots[i];
+        }
+        return true;
+    }
+
+    /**
+     * Marks the depth and height as outdated, e.g. after edges were removed
+     */
+    public void invalidateLevels() {
+        levelsStale = true;
+    }
+
+    /**
+     * Collects the nodes reachable from {@code start} whose position lies within
+     * [lower, upper]. Returns false if {@code target} is among them.
+     */
+    private boolean search(int start, ImplicitEdges edges, int lower, int upper, int target, IntList out) {
+        stack.clear();
+        stack.add(start);
+        mark[start] = stamp;
+        while (!stack.isEmpty()) {
+            int node = stack.pop();
+            out.add(node);
+            scratch.clear();
+            edges.appendNeighbors(node, scratch);
+            for (int i = 0; i < scratch.size(); i++) {
+                int next = scratch.get(i);
+                if (next == target) {
+                    return false;
+                }
+                if (next < size && mark[next] != stamp && positionOf[next] >= lower && positionOf[next] <= upper) {
+                    mark[next] = stamp;
+                    stack.add(next);
+                }
+            }
+        }
+        return true;
+    }
+
+    private int[] sortByPosition(int[] nodes) {
+        long[] keys = new long[nodes.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = (long) positionOf[nodes[i]] << 32 | nodes[i];
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < keys.length; i++) {
+            nodes[i] = (int) keys[i];
+        }
+        return nodes;
+    }
+
+    private void nextStamp() {
+        if (++stamp == 0) {
+            Arrays.fill(mark, 0);
+            stamp = 1;
+        }
+    }
+
+    private void ensureLevels() {
+        if (!levelsStale) {
+            return;
+        }
+        depth = new int[size];
+        height = new int[size];
+        for (int p = 0; p < size; p++) {
+            int node = nodeAt[p];
+            scratch.clear();
+            precedents.appendNeighbors(node, scratch);
+            int d = 0;
+            for (int i = 0; i < scratch.size(); i++) {
+                int precedent = scratch.get(i);
+                if (precedent < size && positionOf[precedent] < p) {
+                    d = Math.max(d, depth[precedent] + 1);
+                }
+            }
+            depth[node] = d;
+        }
+        for (int p = size - 1; p >= 0; p--) {
+            int node = nodeAt[p];
+            scratch.clear();
+            dependents.appendNeighbors(node, scratch);
+            int h = 0;
+            for (int i = 0; i < scratch.size(); i++) {
+                int dependent = scratch.get(i);
+                if (dependent < size && positionOf[dependent] > p) {
+                    h = Math.max(h, height[dependent] + 1);
+                }
+            }
+            height[node] = h;
+        }
+        levelsStale = false;
+    }
+}
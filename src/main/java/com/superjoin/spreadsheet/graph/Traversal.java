@@ -0,0 +1,152 @@
+package com.superjoin.spreadsheet.graph;
+
+/**
+ * Iterative reachability engine over a {@link CsrAdjacency}.
+ *
+ * Uses an explicit int stack instead of recursion, so arbitrarily long
+ * dependency chains cannot overflow the call stack, and marks visited nodes in
+ * a {@code long[]} bitset that is kept between calls. Only the words touched by
+ * a traversal are cleared afterwards, so repeated queries on a large graph do
+ * not pay for zeroing the whole bitset.
+ *
+ * Instances are not thread-safe; keep one per thread.
+ */
+public final class Traversal {
+    private long[] visited = new long[0];
+    private long[] seeds = new long[0];
+    private final IntList stack = new IntList(64);
+    private final IntList found = new IntList(64);
+    private final IntList implicit = new IntList(16);
+
+    /**
+     * Returns every node reachable from {@code start} by following at least one edge.
+     * The start node itself is only included when it lies on a cycle.
+     */
+    public NodeIdSet reachableFrom(CsrAdjacency adjacency, int start, int nodeCount) {
+        return reachableFrom(adjacency, null, start, nodeCount);
+    }
+
+    /**
+     * Like {@link #reachableFrom(CsrAdjacency, int, int)}, additionally following
+     * the edges produced by {@code extra} for every expanded node.
+     */
+    public NodeIdSet reachableFrom(CsrAdjacency adjacency, ImplicitEdges extra, int start, int nodeCount) {
+        ensureCapacity(nodeCount);
+        stack.clear();
+        found.clear();
+
+        mark(start);
+        stack.add(start);
+        boolean startFound = false;
+        while (!stack.isEmpty()) {
+            int node = stack.pop();
+            for (int e = adjacency.start(node); e < adjacency.end(node); e++) {
+                startFound |= visit(adjacency.target(e), start, startFound);
+            }
+            if (extra != null) {
+                implicit.clear();
+                extra.appendNeighbors(node, implicit);
+                for (int i = 0; i < implicit.size(); i++) {
+                    startFound |= visit(implicit.get(i), start, startFound);
+                }
+            }
+        }
+
+        unmark(start);
+        for (int i = 0; i < found.size(); i++) {
+            unmark(found.get(i));
+        }
+        return NodeIdSet.of(found.toArray());
+    }
+
+    /**
+     * Multi-source form of {@link #reachableFrom(CsrAdjacency, ImplicitEdges, int, int)}:
+     * the union of the nodes reachable from each start, found in a single pass so
+     * nodes downstream of several starts are expanded once. A start is included
+     * only when it is reachable from some start, itself included, by at least one edge.
+     */
+    public NodeIdSet reachableFromAll(CsrAdjacency adjacency, ImplicitEdges extra, int[] starts, int nodeCount) {
+        ensureCapacity(nodeCount);
+        stack.clear();
+        found.clear();
+
+        for (int start : starts) {
+            if (!isMarked(start)) {
+                mark(start);
+                seeds[start >>> 6] |= 1L << start;
+                stack.add(start);
+            }
+        }
+        while (!stack.isEmpty()) {
+            int node = stack.pop();
+            for (int e = adjacency.start(node); e < adjacency.end(node); e++) {
+                visitFromSeeds(adjacency.target(e));
+            }
+            if (extra != null) {
+                implicit.clear();
+                extra.appendNeighbors(node, implicit);
+                for (int i = 0; i < implicit.size(); i++) {
+                    visitFromSeeds(implicit.get(i));
+                }
+            }
+        }
+
+        for (int start : starts) {
+            unmark(start);
+            seeds[start >>> 6] &= ~(1L << start);
+        }
+        for (int i = 0; i < found.size(); i++) {
+            unmark(found.get(i));
+        }
+        return NodeIdSet.of(found.toArray());
+    }
+
+    /**
+     * Multi-source counterpart of {@link #visit}: a start reached again is reported once
+     */
+    private void visitFromSeeds(int neighbor) {
+        if (!isMarked(neighbor)) {
+            mark(neighbor);
+            found.add(neighbor);
+            stack.add(neighbor);
+        } else if ((seeds[neighbor >>> 6] & (1L << neighbor)) != 0) {
+            seeds[neighbor >>> 6] &= ~(1L << neighbor);
+            found.add(neighbor);
+        }
+    }
+
+    /**
+     * Records a newly discovered neighbour; returns true if it closed a cycle back to the start
+     */
+    private boolean visit(int neighbor, int start, boolean startFound) {
+        if (!isMarked(neighbor)) {
+            mark(neighbor);
+            found.add(neighbor);
+            stack.add(neighbor);
+        } else if (neighbor == start && !startFound) {
+            found.add(start);
+            return true;
+        }
+        return false;
+    }
+
+    private void ensureCapacity(int nodeCount) {
+        int words = (nodeCount + 63) >>> 6;
+        if (visited.length < words) {
+            visited = new long[Math.max(words, visited.length * 2)];
+            seeds = new long[visited.length];
+        }
+    }
+
+    private boolean isMarked(int node) {
+        return (visited[node >>> 6] & (1L << node)) != 0;
+    }
+
+    private void mark(int node) {
+        visited[node >>> 6] |= 1L << node;
+    }
+
+    private void unmark(int node) {
+        visited[node >>> 6] &= ~(1L << node);
+    }
+}
@@ -0,0 +1,73 @@
+package com.superjoin.spreadsheet.model;
+
+/**
+ * Helpers for converting between A1 notation and row/column numbers.
+ * Rows and columns are 1-based, matching the rest of the model.
+ */
+public final class A1Notation {
+
+    private A1Notation() {
+    }
+
+    /**
+     * Converts a column number to letters (1=A, 2=B, 27=AA, etc.)
+     */
+    public static String columnLetters(int column) {
+        StringBuilder result = new StringBuilder();
+        int col = column;
+        while (col > 0) {
+            col--;
+            result.append((char) ('A' + col % 26));
+            col /= 26;
+        }
+        return result.reverse().toString();
+    }
+
+    /**
+     * Converts column letters to a column number (A=1, Z=26, AA=27), case-insensitive.
+     * Returns 0 if the string contains anything other than letters.
+     */
+    public static int columnNumber(CharSequence letters) {
+        int column = 0;
+        for (int i = 0; i < letters.length(); i++) {
+            char c = Character.toUpperCase(letters.charAt(i));
+            if (c < 'A' || c > 'Z') {
+                return 0;
+            }
+            column = column * 26 + (c - 'A' + 1);
+        }
+        return column;
+    }
+
+    /**
+     * Formats a row and column as a cell reference (e.g., row 2, column 3 -> "C2")
+     */
+    public static String format(int row, int column) {
+        return columnLetters(column) + row;
+    }
+
+    /**
+     * Parses a cell reference such as "C2" or "$C$2" into {row, column}.
+     * Returns null if the text is not a single cell.
+     */
+    public static int[] parseCell(String reference) {
+        String text = reference.replace("$", "");
+        int split = 0;
+        while (split < text.length() && Character.isLetter(text.charAt(split))) {
+            split++;
+        }
+        int column = columnNumber(text.substring(0, split));
+        if (column == 0 || split == text.length()) {
+            return null;
+        }
+        int row = 0;
+        for (int i = split; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9' || row > (Integer.MAX_VALUE - 9) / 10) {
+                return null;
+            }
+            row = row * 10 + (c - '0');
+        }
+        return row > 0 ? new int[]{row, column} : null;
+    }
+}
@@ -0,0 +1,353 @@
+package com.superjoin.spreadsheet.model;
+
+import java.util.Arrays;
+
+/**
+ * Columnar storage for the cells of a graph, indexed by node index.
+ *
+ * Instead of one {@link CellNode} object per cell (sheet name, A1 string, value
+ * and formula strings plus the object headers, around 200 bytes), each cell is a
+ * row across flat arrays: a packed {@link CellKey}, a value tag, a double for
+ * numeric values and dictionary codes for text values and formulas. Values are
+ * only stored as numbers when the number prints back to exactly the same text,
+ * so {@link #valueAt} always returns what was stored. Cells are looked up by
+ * key through an open-addressing table.
+ * Text values and formulas share one {@link StringDictionary}; sheet names get a
+ * dictionary of their own.
+ *
+ * {@link #view} returns a {@link CellNode} that reads and writes through to these
+ * arrays; views are cheap and created on demand. Indices without a cell are
+ * simply absent. Safe for concurrent use.
+ */
+public final class CellColumns {
+    private static final byte ABSENT = 0;
+    private static final byte NULL_VALUE = 1;
+    private static final byte NUMBER = 2;
+    private static final byte TEXT = 3;
+    private static final int NO_STRING = StringDictionary.NO_ID;
+
+    private long[] cellKey = new long[0];
+    private byte[] tag = new byte[0];
+    private double[] number = new double[0];
+    private int[] text = new int[0];
+    private int[] formula = new int[0];
+    private int count;
+
+    private final StringDictionary sheetNames = new StringDictionary();
+    private final StringDictionary strings = new StringDictionary();
+
+    // Open-addressing key table; CellKey.NONE marks a free slot
+    private long[] keys = new long[16];
+    private int[] indices = new int[16];
+    private int used;
+
+    /**
+     * Stores the data of a cell at a node index, replacing whatever was there
+     */
+    public synchronized void put(int index, CellNode cell) {
+        ensureCapacity(index + 1);
+        long key = CellKey.of(sheetCode(cell.getSheetId()), cell.getRow(), cell.getColumn());
+        if (tag[index] != ABSENT) {
+            remove(cellKey[index]);
+        }
+        cellKey[index] = key;
+        writeValue(index, cell.getValue());
+        formula[index] = encode(cell.getFormula());
+        insert(key, index);
+        count = Math.max(count, index + 1);
+    }
+
+    /**
+     * Node index of the cell at a position, or -1
+     */
+    public synchronized int indexOf(String sheetId, int row, int column) {
+        long key = keyOf(sheetId, row, column);
+        return key == CellKey.NONE ? -1 : find(key);
+    }
+
+    /**
+     * Node index of the cell with a key issued by these columns, or -1
+     */
+    public synchronized int indexOf(long key) {
+        return key == CellKey.NONE ? -1 : find(key);
+    }
+
+    /**
+     * Key of a position, or {@link CellKey#NONE} if the sheet has no cells here or
+     * the position is out of range. The position itself need not hold a cell.
+     */
+    public synchronized long keyOf(String sheetId, int row, int column) {
+        int code = sheetNames.find(sheetId);
+        if (code == NO_STRING || row < 1 || column < 1 || column > CellKey.MAX_COLUMN) {
+            return CellKey.NONE;
+        }
+        return CellKey.of(code, row, column);
+    }
+
+    /**
+     * Key of the cell at a node index, or {@link CellKey#NONE}
+     */
+    public synchronized long keyAt(int index) {
+        return isCell(index) ? cellKey[index] : CellKey.NONE;
+    }
+
+    /**
+     * Sheet name of a key issued by these columns
+     */
+    public String sheetName(long key) {
+        return sheetNames.get(CellKey.sheet(key));
+    }
+
+    /**
+     * Full reference of a key, e.g. "Sheet1!B2"
+     */
+    public String format(long key) {
+        return sheetName(key) + "!" + CellKey.toA1(key);
+    }
+
+    /**
+     * Node index of the cell with an id such as "Sheet1!B2", or -1 if the id does
+     * not name a stored cell in canonical form
+     */
+    public int indexOf(String cellId) {
+        int bang = cellId.lastIndexOf('!');
+        if (bang <= 0) {
+            return -1;
+        }
+        String a1 = cellId.substring(bang + 1);
+        int[] position = A1Notation.parseCell(a1);
+        if (position == null || !A1Notation.format(position[0], position[1]).equals(a1)) {
+            return -1;
+        }
+        return indexOf(cellId.substring(0, bang), position[0], position[1]);
+    }
+
+    public synchronized boolean isCell(int index) {
+        return index < count && tag[index] != ABSENT;
+    }
+
+    /**
+     * Returns a view of the cell at a node index
+     */
+    public synchronized CellNode view(int index) {
+        if (!isCell(index)) {
+            throw new IllegalArgumentException("No cell at index " + index);
+        }
+        long key = cellKey[index];
+        return new CellNode(this, index, sheetName(key), CellKey.row(key), CellKey.column(key));
+    }
+
+    synchronized String valueAt(int index) {
+        switch (tag[index]) {
+            case NUMBER:
+                return formatNumber(number[index]);
+            case TEXT:
+                return strings.get(text[index]);
+            default:
+                return null;
+        }
+    }
+
+    synchronized String formulaAt(int index) {
+        return strings.get(formula[index]);
+    }
+
+    /**
+     * Dictionary id of a text value; -1 for null and numeric values
+     */
+    synchronized int valueIdAt(int index) {
+        return tag[index] == TEXT ? text[index] : NO_STRING;
+    }
+
+    synchronized int formulaIdAt(int index) {
+        return formula[index];
+    }
+
+    /**
+     * Compares the values and formulas of two stored cells without decoding them
+     */
+    synchronized boolean sameContent(int a, int b) {
+        if (tag[a] != tag[b] || formula[a] != formula[b]) {
+            return false;
+        }
+        switch (tag[a]) {
+            case NUMBER:
+                return Double.compare(number[a], number[b]) == 0;
+            case TEXT:
+                return text[a] == text[b];
+            default:
+                return true;
+        }
+    }
+
+    synchronized void setValue(int index, String value) {
+        writeValue(index, value);
+    }
+
+    synchronized void setFormula(int index, String value) {
+        formula[index] = encode(value);
+    }
+
+    /**
+     * Number of stored cells
+     */
+    public synchronized int size() {
+        return used;
+    }
+
+    /**
+     * Number of distinct strings held by the dictionary
+     */
+    public int distinctStrings() {
+        return strings.size();
+    }
+
+    public synchronized void clear() {
+        cellKey = new long[0];
+        tag = new byte[0];
+        number = new double[0];
+        text = new int[0];
+        formula = new int[0];
+        count = 0;
+        sheetNames.clear();
+        strings.clear();
+        keys = new long[16];
+        indices = new int[16];
+        used = 0;
+    }
+
+    private void writeValue(int index, String value) {
+        if (value == null) {
+            tag[index] = NULL_VALUE;
+            return;
+        }
+        double parsed = parseNumber(value);
+        if (!Double.isNaN(parsed)) {
+            tag[index] = NUMBER;
+            number[index] = parsed;
+        } else {
+            tag[index] = TEXT;
+            text[index] = encode(value);
+        }
+    }
+
+    /**
+     * Parses plain decimal text that {@link #formatNumber} reproduces exactly; NaN otherwise
+     */
+    private static double parseNumber(String value) {
+        int length = value.length();
+        if (length == 0 || length > 17) {
+            return Double.NaN;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (!(c >= '0' && c <= '9' || c == '.' || c == '-' && i == 0)) {
+                return Double.NaN;
+            }
+        }
+        double parsed;
+        try {
+            parsed = Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+        return formatNumber(parsed).equals(value) ? parsed : Double.NaN;
+    }
+
+    private static String formatNumber(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    private int encode(String value) {
+        return strings.idOf(value);
+    }
+
+    private int sheetCode(String sheetId) {
+        int code = sheetNames.find(sheetId);
+        if (code == NO_STRING) {
+            if (sheetNames.size() == CellKey.MAX_SHEETS) {
+                throw new IllegalStateException("Too many sheets");
+            }
+            code = sheetNames.idOf(sheetId);
+        }
+        return code;
+    }
+
+    private void ensureCapacity(int size) {
+        if (size <= tag.length) {
+            return;
+        }
+        int capacity = Math.max(size, Math.max(16, tag.length * 2));
+        cellKey = Arrays.copyOf(cellKey, capacity);
+        tag = Arrays.copyOf(tag, capacity);
+        number = Arrays.copyOf(number, capacity);
+        text = Arrays.copyOf(text, capacity);
+        formula = Arrays.copyOf(formula, capacity);
+    }
+
+    private int slot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & (keys.length - 1);
+    }
+
+    private int find(long key) {
+        for (int slot = slot(key); keys[slot] != 0; slot = (slot + 1) & (keys.length - 1)) {
+            if (keys[slot] == key) {
+                return indices[slot];
+            }
+        }
+        return -1;
+    }
+
+    private void insert(long key, int index) {
+        if ((used + 1) * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        int slot = slot(key);
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        if (keys[slot] == 0) {
+            used++;
+        }
+        keys[slot] = key;
+        indices[slot] = index;
+    }
+
+    /**
+     * Removes a key, shifting later entries of its probe run back (no tombstones)
+     */
+    private void remove(long key) {
+        int slot = slot(key);
+        while (keys[slot] != key) {
+            if (keys[slot] == 0) {
+                return;
+            }
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        keys[slot] = 0;
+        used--;
+        for (int next = (slot + 1) & (keys.length - 1); keys[next] != 0; next = (next + 1) & (keys.length - 1)) {
+            long moved = keys[next];
+            int movedIndex = indices[next];
+            keys[next] = 0;
+            used--;
+            insert(moved, movedIndex);
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldIndices = indices;
+        keys = new long[capacity];
+        indices = new int[capacity];
+        used = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                insert(oldKeys[i], oldIndices[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.superjoin.spreadsheet.model;
+
+/**
+ * Packed 64-bit cell identifiers: sheet code in the top 16 bits, row in the next
+ * 32 and column in the low 16.
+ *
+ * The graph addresses cells by these keys instead of "Sheet1!B2" strings, so
+ * lookups and traversals never build or hash an id; the A1 form is only produced
+ * when a result is shown. Sheet codes are assigned by the store that issued the
+ * key, so keys from different stores are not comparable. Rows start at 1, so a
+ * valid key is never {@link #NONE}.
+ */
+public final class CellKey {
+    /** Key standing for "no cell" */
+    public static final long NONE = 0L;
+    public static final int MAX_SHEETS = 1 << 16;
+    public static final int MAX_COLUMN = (1 << 16) - 1;
+
+    private CellKey() {
+    }
+
+    /**
+     * Packs a sheet code and a 1-based position
+     */
+    public static long of(int sheet, int row, int column) {
+        if (sheet < 0 || sheet >= MAX_SHEETS) {
+            throw new IllegalArgumentException("Sheet code out of range: " + sheet);
+        }
+        if (row < 1 || column < 1 || column > MAX_COLUMN) {
+            throw new IllegalArgumentException("Cell position out of range: row " + row + ", column " + column);
+        }
+        return (long) sheet << 48 | (long) row << 16 | column;
+    }
+
+    public static int sheet(long key) {
+        return (int) (key >>> 48);
+    }
+
+    public static int row(long key) {
+        return (int) (key >>> 16);
+    }
+
+    public static int column(long key) {
+        return (int) (key & MAX_COLUMN);
+    }
+
+    /**
+     * A1 notation of the position in a key, e.g. "B2"
+     */
+    public static String toA1(long key) {
+        return A1Notation.format(row(key), column(key));
+    }
+}
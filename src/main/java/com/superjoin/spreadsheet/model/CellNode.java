@@ -6,6 +6,10 @@ import java.util.Objects;
  * Represents a cell node in the spreadsheet knowledge graph.
  * This class encapsulates all the properties of a single cell including
  * its position, value, formula, and A1 notation.
+ *
+ * A cell is either detached, holding its own value and formula, or a view of a
+ * row of {@link CellColumns}, in which case value and formula are read from and
+ * written to the columns. The graph store keeps cells in columns and hands out views.
  */
 public class CellNode implements GraphNode {
     private final String sheetId;
@@ -13,7 +17,8 @@ public class CellNode implements GraphNode {
     private final int column;
     private String value;
     private String formula;
-    private final String a1Notation;
+    private final CellColumns columns;
+    private final int index;
 
     public CellNode(String sheetId, int row, int column, String value, String formula) {
         this.sheetId = sheetId;
@@ -21,27 +26,16 @@ public class CellNode implements GraphNode {
         this.column = column;
         this.value = value;
         this.formula = formula;
-        this.a1Notation = convertToA1Notation(row, column);
+        this.columns = null;
+        this.index = -1;
     }
 
-    /**
-     * Converts row and column numbers to A1 notation (e.g., A1, B2, etc.)
-     * This is the standard way to reference cells in spreadsheets.
-     */
-    private String convertToA1Notation(int row, int column) {
-        StringBuilder result = new StringBuilder();
-        
-        // Convert column number to letter (1=A, 2=B, 27=AA, etc.)
-        int col = column;
-        while (col > 0) {
-            col--;
-            result.insert(0, (char) ('A' + col % 26));
-            col /= 26;
-        }
-        
-        // Add row number
-        result.append(row);
-        return result.toString();
+    CellNode(CellColumns columns, int index, String sheetId, int row, int column) {
+        this.sheetId = sheetId;
+        this.row = row;
+        this.column = column;
+        this.columns = columns;
+        this.index = index;
     }
 
     // GraphNode interface implementation
@@ -64,28 +58,69 @@ public class CellNode implements GraphNode {
     public String getSheetId() { return sheetId; }
     public int getRow() { return row; }
     public int getColumn() { return column; }
-    public String getValue() { return value; }
-    public String getFormula() { return formula; }
-    public String getA1Notation() { return a1Notation; }
+    public String getValue() { return columns != null ? columns.valueAt(index) : value; }
+    public String getFormula() { return columns != null ? columns.formulaAt(index) : formula; }
 
-    // Setters for mutable properties
-    public void setValue(String value) { this.value = value; }
-    public void setFormula(String formula) { this.formula = formula; }
+    /**
+     * Dictionary id of a text value, or {@link StringDictionary#NO_ID} for null,
+     * numeric and detached values
+     */
+    public int getValueId() { return columns != null ? columns.valueIdAt(index) : StringDictionary.NO_ID; }
+
+    /**
+     * Dictionary id of the formula, or {@link StringDictionary#NO_ID} for none or a detached cell
+     */
+    public int getFormulaId() { return columns != null ? columns.formulaIdAt(index) : StringDictionary.NO_ID; }
+
+    /**
+     * Converts row and column numbers to A1 notation (e.g., A1, B2, etc.)
+     * This is the standard way to reference cells in spreadsheets.
+     */
+    public String getA1Notation() { return A1Notation.format(row, column); }
+
+    // Setters for mutable properties; a view writes through to its columns
+    public void setValue(String value) {
+        if (columns != null) {
+            columns.setValue(index, value);
+        } else {
+            this.value = value;
+        }
+    }
+
+    public void setFormula(String formula) {
+        if (columns != null) {
+            columns.setFormula(index, formula);
+        } else {
+            this.formula = formula;
+        }
+    }
 
     /**
      * Returns the full cell reference including sheet name (e.g., "Sheet1!A1")
      */
     public String getFullReference() {
-        return sheetId + "!" + a1Notation;
+        return sheetId + "!" + getA1Notation();
     }
 
     /**
      * Checks if this cell contains a formula
      */
     public boolean hasFormula() {
+        String formula = getFormula();
         return formula != null && !formula.trim().isEmpty();
     }
 
+    /**
+     * Checks whether two cells hold the same value and formula. Views of the same
+     * columns compare dictionary codes instead of strings.
+     */
+    public boolean sameContent(CellNode other) {
+        if (columns != null && columns == other.columns) {
+            return columns.sameContent(index, other.index);
+        }
+        return Objects.equals(getValue(), other.getValue()) && Objects.equals(getFormula(), other.getFormula());
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -105,9 +140,9 @@ public class CellNode implements GraphNode {
     public String toString() {
         return "CellNode{" +
                 "sheetId='" + sheetId + '\'' +
-                ", a1Notation='" + a1Notation + '\'' +
-                ", value='" + value + '\'' +
-                ", formula='" + formula + '\'' +
+                ", a1Notation='" + getA1Notation() + '\'' +
+                ", value='" + getValue() + '\'' +
+                ", formula='" + getFormula() + '\'' +
                 '}';
     }
 }
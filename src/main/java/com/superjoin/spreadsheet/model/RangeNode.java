@@ -0,0 +1,160 @@
+package com.superjoin.spreadsheet.model;
+
+import java.util.Objects;
+
+/**
+ * Represents a referenced range in the spreadsheet knowledge graph.
+ * A range such as "Data!A:Z" or "Sheet1!B2:D10" is stored once, no matter how
+ * many formulas reference it. Formulas depend on the range node, and the range
+ * node is connected to the cells it covers, so the edge count grows with the
+ * number of formulas rather than with formulas times range size.
+ */
+public class RangeNode implements GraphNode {
+    /** Bound used for the open end of whole-column and whole-row ranges */
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    private final String sheetId;
+    private final int firstRow;
+    private final int lastRow;
+    private final int firstColumn;
+    private final int lastColumn;
+    private final String a1Notation;
+
+    public RangeNode(String sheetId, int firstRow, int firstColumn, int lastRow, int lastColumn) {
+        this.sheetId = sheetId;
+        this.firstRow = Math.min(firstRow, lastRow);
+        this.lastRow = Math.max(firstRow, lastRow);
+        this.firstColumn = Math.min(firstColumn, lastColumn);
+        this.lastColumn = Math.max(firstColumn, lastColumn);
+        this.a1Notation = convertToA1Notation();
+    }
+
+    /**
+     * Parses a range such as "A:C", "3:5", "A1:B10" or "$A$1:B" into a range node.
+     * Returns null if the text is not a two-ended range.
+     */
+    public static RangeNode parse(String sheetId, String range) {
+        int colon = range.indexOf(':');
+        if (colon < 0 || range.indexOf(':', colon + 1) >= 0) {
+            return null;
+        }
+        int[] start = parseEndpoint(range.substring(0, colon));
+        int[] end = parseEndpoint(range.substring(colon + 1));
+        if (start == null || end == null) {
+            return null;
+        }
+        int startRow = start[0] > 0 ? start[0] : 1;
+        int startCol = start[1] > 0 ? start[1] : 1;
+        int endRow = end[0] > 0 ? end[0] : UNBOUNDED;
+        int endCol = end[1] > 0 ? end[1] : UNBOUNDED;
+        return new RangeNode(sheetId, startRow, startCol, endRow, endCol);
+    }
+
+    /**
+     * Parses "A1", "A", "1" (with optional '$' markers) into {row, column}, using 0 for a missing part
+     */
+    private static int[] parseEndpoint(String text) {
+        String letters = text.replace("$", "");
+        int split = 0;
+        while (split < letters.length() && Character.isLetter(letters.charAt(split))) {
+            split++;
+        }
+        String columnPart = letters.substring(0, split);
+        String rowPart = letters.substring(split);
+        if (columnPart.isEmpty() && rowPart.isEmpty()) {
+            return null;
+        }
+        int column = columnPart.isEmpty() ? 0 : A1Notation.columnNumber(columnPart);
+        int row = 0;
+        if (!rowPart.isEmpty()) {
+            for (int i = 0; i < rowPart.length(); i++) {
+                if (!Character.isDigit(rowPart.charAt(i))) {
+                    return null;
+                }
+            }
+            row = Integer.parseInt(rowPart);
+        }
+        if ((!columnPart.isEmpty() && column == 0) || (!rowPart.isEmpty() && row == 0)) {
+            return null;
+        }
+        return new int[]{row, column};
+    }
+
+    private String convertToA1Notation() {
+        boolean allRows = firstRow == 1 && lastRow == UNBOUNDED;
+        boolean allColumns = firstColumn == 1 && lastColumn == UNBOUNDED;
+        if (allRows && lastColumn != UNBOUNDED) {
+            return A1Notation.columnLetters(firstColumn) + ":" + A1Notation.columnLetters(lastColumn);
+        }
+        if (allColumns && lastRow != UNBOUNDED) {
+            return firstRow + ":" + lastRow;
+        }
+        String start = A1Notation.format(firstRow, firstColumn);
+        String endColumn = lastColumn == UNBOUNDED ? "" : A1Notation.columnLetters(lastColumn);
+        String endRow = lastRow == UNBOUNDED ? "" : String.valueOf(lastRow);
+        return start + ":" + endColumn + endRow;
+    }
+
+    /**
+     * Checks whether the given cell position lies inside this range
+     */
+    public boolean contains(int row, int column) {
+        return row >= firstRow && row <= lastRow && column >= firstColumn && column <= lastColumn;
+    }
+
+    // GraphNode interface implementation
+    @Override
+    public String getId() {
+        return getFullReference();
+    }
+
+    @Override
+    public String getType() {
+        return "RANGE";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return getFullReference() + " (range)";
+    }
+
+    // Getters
+    public String getSheetId() { return sheetId; }
+    public int getFirstRow() { return firstRow; }
+    public int getLastRow() { return lastRow; }
+    public int getFirstColumn() { return firstColumn; }
+    public int getLastColumn() { return lastColumn; }
+    public String getA1Notation() { return a1Notation; }
+
+    /**
+     * Returns the full range reference including sheet name (e.g., "Sheet1!A:C")
+     */
+    public String getFullReference() {
+        return sheetId + "!" + a1Notation;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RangeNode rangeNode = (RangeNode) o;
+        return firstRow == rangeNode.firstRow &&
+               lastRow == rangeNode.lastRow &&
+               firstColumn == rangeNode.firstColumn &&
+               lastColumn == rangeNode.lastColumn &&
+               Objects.equals(sheetId, rangeNode.sheetId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(sheetId, firstRow, lastRow, firstColumn, lastColumn);
+    }
+
+    @Override
+    public String toString() {
+        return "RangeNode{" +
+                "sheetId='" + sheetId + '\'' +
+                ", a1Notation='" + a1Notation + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,79 @@
+package com.superjoin.spreadsheet.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary encoding for the strings of a load: values, formulas and sheet names.
+ *
+ * Spreadsheets repeat a small set of strings across many cells (status labels,
+ * blank-ish values, formulas filled down a column), so each distinct string is
+ * kept once and given a dense int id. Holders keep the id, or the canonical
+ * instance returned by {@link #intern}, and two strings from the same dictionary
+ * are equal exactly when their ids are. Ids are never reused until {@link #clear}.
+ *
+ * Entries are never reclaimed: a string replaced by an edit stays in the
+ * dictionary even when no cell holds it any more, so over a long editing
+ * session the dictionary grows with every distinct value ever written.
+ *
+ * Safe for concurrent use.
+ */
+public final class StringDictionary {
+    /** Id standing for a null string */
+    public static final int NO_ID = -1;
+
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    /**
+     * Returns the id of a string, adding it if it is new; {@link #NO_ID} for null
+     */
+    public synchronized int idOf(String value) {
+        if (value == null) {
+            return NO_ID;
+        }
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = strings.size();
+            strings.add(value);
+            ids.put(value, id);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the id of a string without adding it, or {@link #NO_ID}
+     */
+    public synchronized int find(String value) {
+        Integer id = value == null ? null : ids.get(value);
+        return id != null ? id : NO_ID;
+    }
+
+    /**
+     * Returns the string with an id; null for {@link #NO_ID}
+     */
+    public synchronized String get(int id) {
+        return id == NO_ID ? null : strings.get(id);
+    }
+
+    /**
+     * Returns the canonical instance of a string, adding it if it is new
+     */
+    public synchronized String intern(String value) {
+        return get(idOf(value));
+    }
+
+    /**
+     * Number of distinct strings
+     */
+    public synchronized int size() {
+        return strings.size();
+    }
+
+    public synchronized void clear() {
+        strings.clear();
+        ids.clear();
+    }
+}
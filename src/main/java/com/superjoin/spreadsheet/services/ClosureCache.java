@@ -0,0 +1,141 @@
+package com.superjoin.spreadsheet.services;
+
+import com.superjoin.spreadsheet.graph.NodeIdSet;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache of transitive dependent and dependency sets, keyed by node
+ * index and direction.
+ *
+ * Invalidation is tracked per sheet. Every edit bumps the epoch of the sheets of
+ * the nodes it touches, and each entry remembers the sheets its closure (and its
+ * start node) lies on together with the global epoch read before it was computed.
+ * An entry is only served while none of those sheets has moved past that epoch,
+ * so an edit on an unrelated sheet leaves it in place. Any edge that changes a
+ * closure has an endpoint inside it, so such an edit always bumps one of its sheets.
+ *
+ * Safe for concurrent use.
+ */
+public final class ClosureCache {
+    public static final int DEFAULT_MAX_ENTRIES = 1_024;
+
+    private final int maxEntries;
+    private final Map<Long, Entry> entries;
+    private final Map<String, Long> sheetEpochs = new ConcurrentHashMap<>();
+    private final AtomicLong epoch = new AtomicLong();
+    // Entries computed before the last clear refer to reused node indices
+    private volatile long clearedAt;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private static final class Entry {
+        final NodeIdSet closure;
+        final String[] sheets;
+        final long computedAt;
+
+        Entry(NodeIdSet closure, String[] sheets, long computedAt) {
+            this.closure = closure;
+            this.sheets = sheets;
+            this.computedAt = computedAt;
+        }
+    }
+
+    public ClosureCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public ClosureCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > ClosureCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Current global epoch; read it before computing a closure and pass it to {@link #put}
+     */
+    public long epoch() {
+        return epoch.get();
+    }
+
+    /**
+     * Records an edit touching a node on the given sheet
+     */
+    public void touch(String sheet) {
+        sheetEpochs.put(sheet, epoch.incrementAndGet());
+    }
+
+    /**
+     * Returns the cached closure, or null if absent or invalidated by a later edit
+     */
+    public NodeIdSet get(int node, boolean dependents) {
+        Long key = key(node, dependents);
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        boolean stale = entry.computedAt < clearedAt;
+        for (int i = 0; i < entry.sheets.length && !stale; i++) {
+            stale = sheetEpochs.getOrDefault(entry.sheets[i], 0L) > entry.computedAt;
+        }
+        if (stale) {
+            synchronized (entries) {
+                entries.remove(key, entry);
+            }
+            invalidations.increment();
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.closure;
+    }
+
+    /**
+     * Stores a closure computed at {@code computedAt} that spans the given sheets
+     */
+    public void put(int node, boolean dependents, NodeIdSet closure, String[] sheets, long computedAt) {
+        synchronized (entries) {
+            entries.put(key(node, dependents), new Entry(closure, sheets, computedAt));
+        }
+    }
+
+    private static Long key(int node, boolean dependents) {
+        return (long) node << 1 | (dependents ? 1 : 0);
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long hits() { return hits.sum(); }
+    public long misses() { return misses.sum(); }
+    public long invalidations() { return invalidations.sum(); }
+
+    /**
+     * Drops every entry, including ones still being computed, and resets the metrics
+     */
+    public void clear() {
+        clearedAt = epoch.incrementAndGet();
+        synchronized (entries) {
+            entries.clear();
+        }
+        hits.reset();
+        misses.reset();
+        invalidations.reset();
+    }
+}
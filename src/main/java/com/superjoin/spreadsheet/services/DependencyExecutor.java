@@ -0,0 +1,237 @@
+package com.superjoin.spreadsheet.services;
+
+import com.superjoin.spreadsheet.graph.IntList;
+import com.superjoin.spreadsheet.graph.NodeIdSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntFunction;
+
+/**
+ * Runs a task for every node of a set (typically the cells affected by an edit)
+ * such that a node's task starts only after the tasks of all its precedents in
+ * the set have finished.
+ *
+ * Precedence follows value edges: DEPENDS_ON edges and range membership, as in
+ * {@link KnowledgeGraphService#appendValueDependents}. Scheduling is counter
+ * based: each node holds the number of unfinished precedents, and the task that
+ * brings it to zero forks it on the pool, so independent chains never wait on
+ * each other the way level-by-level barriers would.
+ *
+ * Results are returned in {@link #order()}: topological levels, nodes ascending
+ * within a level. That order is fixed by the graph, so output is identical to a
+ * sequential run. Nodes on or behind a dependency cycle cannot be ordered; they
+ * are reported by {@link #cyclicNodes()} and not run.
+ */
+public final class DependencyExecutor {
+    private final int[] nodes;
+    // Dependents as a CSR over positions in nodes
+    private final int[] dependentStart;
+    private final int[] dependents;
+    private final int[] precedentCount;
+    private final int[] order;
+    private final int[] levelStart;
+    private final int[] cyclic;
+
+    private DependencyExecutor(int[] nodes, int[] dependentStart, int[] dependents, int[] precedentCount) {
+        this.nodes = nodes;
+        this.dependentStart = dependentStart;
+        this.dependents = dependents;
+        this.precedentCount = precedentCount;
+
+        // Level-by-level Kahn pass: fixes the sequential order and finds cycles
+        int n = nodes.length;
+        int[] remaining = precedentCount.clone();
+        int[] positions = new int[n];
+        IntList levels = new IntList();
+        int tail = 0;
+        for (int i = 0; i < n; i++) {
+            if (remaining[i] == 0) {
+                positions[tail++] = i;
+            }
+        }
+        int head = 0;
+        while (head < tail) {
+            levels.add(head);
+            int levelEnd = tail;
+            for (; head < levelEnd; head++) {
+                int position = positions[head];
+                for (int e = dependentStart[position]; e < dependentStart[position + 1]; e++) {
+                    if (--remaining[dependents[e]] == 0) {
+                        positions[tail++] = dependents[e];
+                    }
+                }
+            }
+            Arrays.sort(positions, levelEnd, tail);
+        }
+        levels.add(tail);
+        this.levelStart = levels.toArray();
+        this.order = new int[tail];
+        for (int i = 0; i < tail; i++) {
+            order[i] = nodes[positions[i]];
+        }
+        IntList stuck = new IntList();
+        for (int i = 0; i < n; i++) {
+            if (remaining[i] > 0) {
+                stuck.add(nodes[i]);
+            }
+        }
+        this.cyclic = stuck.toArray();
+    }
+
+    /**
+     * Plans execution over a set of nodes of the graph
+     */
+    public static DependencyExecutor plan(KnowledgeGraphService graph, NodeIdSet nodeSet) {
+        int[] nodes = nodeSet.toArray();
+        int n = nodes.length;
+        int[] dependentStart = new int[n + 1];
+        int[] precedentCount = new int[n];
+        IntList targets = new IntList();
+        IntList scratch = new IntList();
+        for (int i = 0; i < n; i++) {
+            dependentStart[i] = targets.size();
+            scratch.clear();
+            graph.appendValueDependents(nodes[i], scratch);
+            for (int k = 0; k < scratch.size(); k++) {
+                int position = Arrays.binarySearch(nodes, scratch.get(k));
+                if (position >= 0 && position != i) {
+                    targets.add(position);
+                    precedentCount[position]++;
+                }
+            }
+        }
+        dependentStart[n] = targets.size();
+        return new DependencyExecutor(nodes, dependentStart, targets.toArray(), precedentCount);
+    }
+
+    /**
+     * Nodes that will run, in sequential order: level by level, ascending within a level
+     */
+    public int[] order() {
+        return order.clone();
+    }
+
+    public int levelCount() {
+        return levelStart.length - 1;
+    }
+
+    /**
+     * Nodes of the given level, ascending; level 0 has no precedents in the set
+     */
+    public int[] level(int level) {
+        return Arrays.copyOfRange(order, levelStart[level], levelStart[level + 1]);
+    }
+
+    /**
+     * Nodes on a dependency cycle or depending on one; these are never run
+     */
+    public int[] cyclicNodes() {
+        return cyclic.clone();
+    }
+
+    /**
+     * Runs the task for each node in {@link #order()} on the calling thread
+     */
+    public <T> List<T> runSequential(IntFunction<T> task) {
+        List<T> results = new ArrayList<>(order.length);
+        for (int node : order) {
+            results.add(task.apply(node));
+        }
+        return results;
+    }
+
+    /**
+     * Runs the task for each node on the pool, each only after its precedents.
+     * Blocks until all tasks finished, so it must not be called from a task of the
+     * same pool. If a task throws, dependents of the failed node are skipped and
+     * the first failure is rethrown once the rest have settled.
+     *
+     * @return results in {@link #order()}
+     */
+    public <T> List<T> run(ForkJoinPool pool, IntFunction<T> task) {
+        Object[] results = new Object[nodes.length];
+        Execution<T> execution = new Execution<>(task, results);
+        for (int i = 0; i < nodes.length; i++) {
+            if (precedentCount[i] == 0) {
+                pool.execute(execution.new NodeTask(i));
+            }
+        }
+        try {
+            execution.done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for dependency tasks", e);
+        }
+        Throwable failure = execution.failure.get();
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Dependency task failed", failure);
+        }
+
+        List<T> ordered = new ArrayList<>(order.length);
+        for (int node : order) {
+            @SuppressWarnings("unchecked")
+            T result = (T) results[Arrays.binarySearch(nodes, node)];
+            ordered.add(result);
+        }
+        return ordered;
+    }
+
+    private final class Execution<T> {
+        final IntFunction<T> task;
+        final Object[] results;
+        final AtomicIntegerArray remaining = new AtomicIntegerArray(precedentCount);
+        // Set for a position once any of its precedents failed or was skipped
+        final AtomicIntegerArray skipped = new AtomicIntegerArray(nodes.length);
+        final CountDownLatch done = new CountDownLatch(order.length);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Execution(IntFunction<T> task, Object[] results) {
+            this.task = task;
+            this.results = results;
+        }
+
+        final class NodeTask extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+
+            private final int position;
+
+            NodeTask(int position) {
+                this.position = position;
+            }
+
+            @Override
+            protected void compute() {
+                boolean failed = skipped.get(position) != 0;
+                if (!failed) {
+                    try {
+                        results[position] = task.apply(nodes[position]);
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                        failed = true;
+                    }
+                }
+                for (int e = dependentStart[position]; e < dependentStart[position + 1]; e++) {
+                    // Flag before counting down, so whichever precedent finishes last sees it;
+                    // a skipped dependent still runs through here to release its own dependents
+                    if (failed) {
+                        skipped.set(dependents[e], 1);
+                    }
+                    if (remaining.decrementAndGet(dependents[e]) == 0) {
+                        new NodeTask(dependents[e]).fork();
+                    }
+                }
+                done.countDown();
+            }
+        }
+    }
+}
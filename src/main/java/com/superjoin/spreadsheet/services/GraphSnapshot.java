@@ -0,0 +1,252 @@
+package com.superjoin.spreadsheet.services;
+
+import com.superjoin.spreadsheet.graph.CsrAdjacency;
+import com.superjoin.spreadsheet.graph.GraphStore;
+import com.superjoin.spreadsheet.model.CellNode;
+import com.superjoin.spreadsheet.model.GraphNode;
+import com.superjoin.spreadsheet.model.RangeNode;
+import com.superjoin.spreadsheet.model.SheetNode;
+import com.superjoin.spreadsheet.model.StringDictionary;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Binary snapshot of a loaded graph, so a restart can skip the Sheets fetch and
+ * formula parsing.
+ *
+ * Layout (big-endian): a header (magic, format version, creation time, source
+ * modified time, node, edge and string counts), the string dictionary as
+ * length-prefixed UTF-8, the spreadsheet id and current sheet as string codes,
+ * then the nodes column by column (one kind byte and five int fields per node)
+ * and the forward CSR edge arrays. Cell values, formulas and sheet names are
+ * string codes, so every distinct string is stored and decoded once.
+ *
+ * {@link #open} maps the file read-only and decodes only the header and strings;
+ * {@link #loadInto} then streams nodes and edges out of the mapping into a graph
+ * in node index order, so indices match the graph the snapshot was taken from.
+ */
+public final class GraphSnapshot {
+    private static final int MAGIC = 0x53424753; // "SBGS"
+    private static final int FORMAT_VERSION = 1;
+
+    private static final byte SHEET = 0;
+    private static final byte RANGE = 1;
+    private static final byte CELL = 2;
+    private static final int FIELDS = 5;
+    // Creation times double as checkpoint ids for the write-ahead log, so keep them distinct
+    private static final AtomicLong lastCreatedAt = new AtomicLong();
+
+    private final MappedByteBuffer buffer;
+    private final long createdAt;
+    private final long sourceModifiedTime;
+    private final int nodeCount;
+    private final int edgeCount;
+    private final String[] strings;
+    private final String spreadsheetId;
+    private final String currentSheetName;
+    // Start of the node columns in the mapping
+    private final int nodesAt;
+
+    private GraphSnapshot(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a graph snapshot");
+            }
+            int version = buffer.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported snapshot format version " + version);
+            }
+            createdAt = buffer.getLong();
+            sourceModifiedTime = buffer.getLong();
+            nodeCount = buffer.getInt();
+            edgeCount = buffer.getInt();
+            strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            spreadsheetId = string(buffer.getInt());
+            currentSheetName = string(buffer.getInt());
+            nodesAt = buffer.position();
+            long expected = (long) nodesAt + (long) nodeCount * (1 + 4 * FIELDS) + 4L * (nodeCount + 1) + 5L * edgeCount;
+            if (nodeCount < 0 || edgeCount < 0 || expected != buffer.limit()) {
+                throw new IOException("Corrupt snapshot: unexpected length");
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt snapshot", e);
+        }
+    }
+
+    /**
+     * Maps a snapshot file and reads its header and string dictionary
+     */
+    public static GraphSnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot too large: " + channel.size() + " bytes");
+            }
+            return new GraphSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Writes a snapshot of a graph. The file is written next to its destination and
+     * moved into place, so readers never see a partial snapshot.
+     *
+     * @param sourceModifiedTime modified time of the spreadsheet the graph was loaded from
+     * @return the creation time recorded in the snapshot
+     */
+    public static long write(KnowledgeGraphService graph, Path file, String spreadsheetId,
+                             String currentSheetName, long sourceModifiedTime) throws IOException {
+        GraphStore store = graph.getStore();
+        CsrAdjacency forward = store.forward();
+        int n = store.nodeCount();
+        StringDictionary dictionary = new StringDictionary();
+        byte[] kinds = new byte[n];
+        int[][] fields = new int[FIELDS][n];
+        for (int i = 0; i < n; i++) {
+            GraphNode node = store.nodeAt(i);
+            if (node instanceof CellNode) {
+                CellNode cell = (CellNode) node;
+                kinds[i] = CELL;
+                set(fields, i, dictionary.idOf(cell.getSheetId()), cell.getRow(), cell.getColumn(),
+                        dictionary.idOf(cell.getValue()), dictionary.idOf(cell.getFormula()));
+            } else if (node instanceof RangeNode) {
+                RangeNode range = (RangeNode) node;
+                kinds[i] = RANGE;
+                set(fields, i, dictionary.idOf(range.getSheetId()), range.getFirstRow(), range.getFirstColumn(),
+                        range.getLastRow(), range.getLastColumn());
+            } else if (node instanceof SheetNode) {
+                SheetNode sheet = (SheetNode) node;
+                kinds[i] = SHEET;
+                set(fields, i, dictionary.idOf(sheet.getSheetId()), dictionary.idOf(sheet.getName()), 0, 0, 0);
+            } else {
+                throw new IOException("Cannot snapshot node type " + node.getType());
+            }
+        }
+        int spreadsheetCode = dictionary.idOf(spreadsheetId);
+        int sheetCode = dictionary.idOf(currentSheetName);
+
+        long now = System.currentTimeMillis();
+        long createdAt = lastCreatedAt.updateAndGet(last -> Math.max(last + 1, now));
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(createdAt);
+            out.writeLong(sourceModifiedTime);
+            out.writeInt(n);
+            out.writeInt(forward.edgeCount());
+            out.writeInt(dictionary.size());
+            for (int i = 0; i < dictionary.size(); i++) {
+                byte[] bytes = dictionary.get(i).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            out.writeInt(spreadsheetCode);
+            out.writeInt(sheetCode);
+            out.write(kinds);
+            for (int[] column : fields) {
+                for (int value : column) {
+                    out.writeInt(value);
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                out.writeInt(forward.start(i));
+            }
+            out.writeInt(forward.edgeCount());
+            for (int e = 0; e < forward.edgeCount(); e++) {
+                out.writeInt(forward.target(e));
+            }
+            for (int e = 0; e < forward.edgeCount(); e++) {
+                out.writeByte(forward.type(e));
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return createdAt;
+    }
+
+    private static void set(int[][] fields, int node, int a, int b, int c, int d, int e) {
+        fields[0][node] = a;
+        fields[1][node] = b;
+        fields[2][node] = c;
+        fields[3][node] = d;
+        fields[4][node] = e;
+    }
+
+    /**
+     * Adds the snapshot's nodes and edges to an empty graph. The caller rebuilds
+     * derived indexes (ranges, components, topology, reachability) afterwards.
+     */
+    public void loadInto(KnowledgeGraphService graph) throws IOException {
+        if (graph.getNodeCount() != 0) {
+            throw new IllegalStateException("Snapshots can only be loaded into an empty graph");
+        }
+        ByteBuffer view = buffer.duplicate();
+        int fieldsAt = nodesAt + nodeCount;
+        int offsetsAt = fieldsAt + 4 * FIELDS * nodeCount;
+        int targetsAt = offsetsAt + 4 * (nodeCount + 1);
+        int typesAt = targetsAt + 4 * edgeCount;
+        try {
+            int[] field = new int[FIELDS];
+            for (int i = 0; i < nodeCount; i++) {
+                for (int f = 0; f < FIELDS; f++) {
+                    field[f] = view.getInt(fieldsAt + 4 * (f * nodeCount + i));
+                }
+                if (graph.addNode(node(view.get(nodesAt + i), field)) != i) {
+                    throw new IOException("Corrupt snapshot: duplicate node at index " + i);
+                }
+            }
+            for (int source = 0; source < nodeCount; source++) {
+                int end = view.getInt(offsetsAt + 4 * (source + 1));
+                for (int e = view.getInt(offsetsAt + 4 * source); e < end; e++) {
+                    int target = view.getInt(targetsAt + 4 * e);
+                    if (target < 0 || target >= nodeCount) {
+                        throw new IOException("Corrupt snapshot: edge to missing node " + target);
+                    }
+                    graph.addEdge(source, target, view.get(typesAt + e));
+                }
+            }
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Corrupt snapshot", e);
+        }
+    }
+
+    private GraphNode node(byte kind, int[] field) throws IOException {
+        switch (kind) {
+            case CELL:
+                return new CellNode(string(field[0]), field[1], field[2], string(field[3]), string(field[4]));
+            case RANGE:
+                return new RangeNode(string(field[0]), field[1], field[2], field[3], field[4]);
+            case SHEET:
+                return new SheetNode(string(field[0]), string(field[1]));
+            default:
+                throw new IOException("Corrupt snapshot: unknown node kind " + kind);
+        }
+    }
+
+    private String string(int code) {
+        return code == StringDictionary.NO_ID ? null : strings[code];
+    }
+
+    public long getCreatedAt() { return createdAt; }
+    public long getSourceModifiedTime() { return sourceModifiedTime; }
+    public int getNodeCount() { return nodeCount; }
+    public int getEdgeCount() { return edgeCount; }
+    public String getSpreadsheetId() { return spreadsheetId; }
+    public String getCurrentSheetName() { return currentSheetName; }
+}
@@ -1,7 +1,23 @@
 package com.superjoin.spreadsheet.services;
 
+import com.superjoin.spreadsheet.graph.ColumnIndex;
+import com.superjoin.spreadsheet.graph.ComponentIndex;
+import com.superjoin.spreadsheet.graph.CsrAdjacency;
+import com.superjoin.spreadsheet.graph.CsrGraphStore;
+import com.superjoin.spreadsheet.graph.EdgeTypes;
+import com.superjoin.spreadsheet.graph.GraphStore;
+import com.superjoin.spreadsheet.graph.ImplicitEdges;
+import com.superjoin.spreadsheet.graph.IntList;
+import com.superjoin.spreadsheet.graph.NodeIdSet;
+import com.superjoin.spreadsheet.graph.RangeIndex;
+import com.superjoin.spreadsheet.graph.ReachabilityIndex;
+import com.superjoin.spreadsheet.graph.TopologicalOrder;
+import com.superjoin.spreadsheet.graph.Traversal;
+import com.superjoin.spreadsheet.model.A1Notation;
+import com.superjoin.spreadsheet.model.CellKey;
 import com.superjoin.spreadsheet.model.CellNode;
 import com.superjoin.spreadsheet.model.GraphNode;
+import com.superjoin.spreadsheet.model.RangeNode;
 import com.superjoin.spreadsheet.model.SheetNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,67 +29,287 @@ import java.util.stream.Collectors;
  * Service for managing the knowledge graph of the spreadsheet.
  * This service handles the graph structure, nodes, edges, and graph operations.
  * 
- * Note: This is a simplified implementation without JGraphT dependency for now.
- * In a full implementation, we would use JGraphT for more sophisticated graph operations.
+ * Nodes and edges live in a pluggable {@link GraphStore}; by default a
+ * {@link CsrGraphStore} that assigns every node a dense int index and keeps
+ * adjacency in compressed sparse row arrays. The string-id API below is a thin
+ * translation layer over those indices.
+ *
+ * Range membership is not stored as edges. A per-sheet {@link RangeIndex}
+ * answers which referenced ranges contain a cell, and traversals treat
+ * "range covers cell" as an implicit CONTAINS edge.
+ *
+ * Circular references are found by a {@link ComponentIndex} over DEPENDS_ON
+ * edges and range membership, computed after load and again whenever the store
+ * version moves on. A {@link TopologicalOrder} seeded from it is then kept in
+ * step with edits by adding each new dependency incrementally. The component and
+ * reachability indexes are not incremental: after an edit that adds or removes an
+ * edge or a node, the next query that needs them pays a full O(V + E) rebuild
+ * (store compaction, Tarjan and labelling). Edits that only change a cell's value
+ * or formula text in place keep them.
+ *
+ * A formula referencing a position that holds no cell yet has no edge for that
+ * reference. Such references are kept per sheet and position, and the edges are
+ * added once a cell is created there. They are not part of snapshots.
+ *
+ * Transitive dependents and dependencies are memoized in a {@link ClosureCache};
+ * every mutation below reports the sheets it touches so that only closures
+ * spanning those sheets are recomputed.
  */
 public class KnowledgeGraphService {
     private static final Logger logger = LoggerFactory.getLogger(KnowledgeGraphService.class);
     
-    // Graph structure using maps for simplicity
-    private final Map<String, GraphNode> nodes = new HashMap<>();
-    private final Map<String, Set<String>> edges = new HashMap<>(); // source -> set of targets
-    private final Map<String, Set<String>> reverseEdges = new HashMap<>(); // target -> set of sources
+    private final GraphStore store;
+    private final ThreadLocal<Traversal> traversal = ThreadLocal.withInitial(Traversal::new);
+    private final ClosureCache closureCache;
+    // Write-ahead log receiving every mutation, if persistence is enabled
+    private volatile MutationLog mutationLog;
+    
+    // Cells per sheet by column and row, used to enumerate the members of a range
+    private final Map<String, ColumnIndex> columnsBySheet = new HashMap<>();
+    // Spatial index of referenced ranges per sheet, rebuilt lazily when ranges are added
+    private Map<String, RangeIndex> rangeIndexes = new HashMap<>();
+    private boolean rangeIndexesStale;
+    // Strongly connected components of the value dependency graph, rebuilt when the store changes
+    private ComponentIndex components;
+    // Interval labels over the condensation, rebuilt together with the components
+    private ReachabilityIndex reachability;
+    // Maintained incrementally once built; null until first needed after a load
+    private TopologicalOrder topology;
+    // Components the order was seeded from; members of a cyclic one were placed in index order
+    private ComponentIndex topologyComponents;
+    private boolean topologyStale;
+    
+    // Formula cells referencing positions without a cell, by sheet and packed position
+    private final Map<String, Map<Long, IntList>> unresolved = new HashMap<>();
+    // The same references by formula cell, so an edited formula can withdraw them
+    private final Map<Integer, List<UnresolvedReference>> unresolvedByReferrer = new HashMap<>();
+    
+    private final ImplicitEdges rangeMembers = this::appendRangeMembers;
+    private final ImplicitEdges containingRanges = this::appendContainingRanges;
+    private final ImplicitEdges valueDependencies = this::appendValueDependencies;
+    private final ImplicitEdges valueDependents = this::appendValueDependents;
     
     // Edge types
     public static final String CONTAINS_EDGE = "CONTAINS";
     public static final String DEPENDS_ON_EDGE = "DEPENDS_ON";
 
     public KnowledgeGraphService() {
-        logger.info("Initializing Knowledge Graph Service");
+        this(new CsrGraphStore());
+    }
+
+    public KnowledgeGraphService(GraphStore store) {
+        this(store, new ClosureCache());
+    }
+
+    public KnowledgeGraphService(GraphStore store, ClosureCache closureCache) {
+        this.store = store;
+        this.closureCache = closureCache;
+        logger.info("Initializing Knowledge Graph Service with {}", store.getClass().getSimpleName());
     }
 
     /**
-     * Adds a node to the graph
+     * Adds a node to the graph and returns its index; re-adding an id keeps its index
      */
-    public void addNode(GraphNode node) {
-        nodes.put(node.getId(), node);
-        edges.putIfAbsent(node.getId(), new HashSet<>());
-        reverseEdges.putIfAbsent(node.getId(), new HashSet<>());
+    public int addNode(GraphNode node) {
+        int countBefore = store.nodeCount();
+        int index = store.addNode(node);
+        MutationLog log = mutationLog;
+        if (log != null) {
+            log.addNode(node);
+        }
+        if (index == countBefore) {
+            if (node instanceof CellNode) {
+                CellNode cell = (CellNode) node;
+                columnIndex(cell.getSheetId(), true).add(cell.getRow(), cell.getColumn(), index);
+            } else if (node instanceof RangeNode) {
+                synchronized (this) {
+                    rangeIndexesStale = true;
+                }
+            }
+            placeInTopology(node, index);
+            closureCache.touch(sheetOf(index));
+            if (node instanceof CellNode) {
+                CellNode cell = (CellNode) node;
+                linkUnresolvedReferrers(cell.getSheetId(), cell.getRow(), cell.getColumn(), index);
+            }
+        }
         logger.debug("Added node: {}", node.getId());
+        return index;
     }
 
     /**
      * Adds an edge between two nodes
      */
     public void addEdge(String sourceId, String targetId, String edgeType) {
-        if (!nodes.containsKey(sourceId) || !nodes.containsKey(targetId)) {
+        int source = store.indexOf(sourceId);
+        int target = store.indexOf(targetId);
+        if (source == GraphStore.NO_NODE || target == GraphStore.NO_NODE) {
             logger.warn("Cannot add edge: one or both nodes not found. Source: {}, Target: {}", sourceId, targetId);
             return;
         }
-        edges.get(sourceId).add(targetId);
-        reverseEdges.get(targetId).add(sourceId);
+        addEdge(source, target, EdgeTypes.of(edgeType));
         logger.debug("Added edge: {} -> {} ({})", sourceId, targetId, edgeType);
         logger.info("[EDGE] {} -> {} ({})", sourceId, targetId, edgeType);
     }
 
+    /**
+     * Adds an edge between two node indices, as returned by {@link #addNode}.
+     * The edge is logged like any other mutation; bulk loads stay out of the log
+     * because they run with no log attached.
+     */
+    public void addEdge(int source, int target, byte edgeType) {
+        store.addEdge(source, target, edgeType);
+        MutationLog log = mutationLog;
+        if (log != null) {
+            log.addEdge(source, target, edgeType);
+        }
+        touchEdge(source, target);
+        if (edgeType == EdgeTypes.DEPENDS_ON) {
+            addToTopology(target, source);
+        }
+    }
+
+    /**
+     * Removes every outgoing edge of the given type from a node
+     */
+    public void removeOutgoingEdges(String nodeId, String edgeType) {
+        int source = store.indexOf(nodeId);
+        if (source == GraphStore.NO_NODE) {
+            return;
+        }
+        byte type = EdgeTypes.of(edgeType);
+        CsrAdjacency forward = store.forward();
+        IntList targets = new IntList();
+        for (int e = forward.start(source); e < forward.end(source); e++) {
+            if (forward.type(e) == type) {
+                targets.add(forward.target(e));
+            }
+        }
+        for (int i = 0; i < targets.size(); i++) {
+            removeEdgeAt(source, targets.get(i));
+        }
+        if (type == EdgeTypes.DEPENDS_ON) {
+            withdrawUnresolvedReferences(source);
+        }
+        logger.debug("Removed {} {} edges from {}", targets.size(), edgeType, nodeId);
+    }
+
     /**
      * Removes an edge between two nodes
      */
     public void removeEdge(String sourceId, String targetId) {
-        if (edges.containsKey(sourceId)) {
-            edges.get(sourceId).remove(targetId);
-        }
-        if (reverseEdges.containsKey(targetId)) {
-            reverseEdges.get(targetId).remove(sourceId);
+        int source = store.indexOf(sourceId);
+        int target = store.indexOf(targetId);
+        if (source != GraphStore.NO_NODE && target != GraphStore.NO_NODE) {
+            removeEdge(source, target);
         }
         logger.debug("Removed edge: {} -> {}", sourceId, targetId);
     }
 
+    /**
+     * Removes the edge between two node indices, whatever its type
+     */
+    public void removeEdge(int source, int target) {
+        removeEdgeAt(source, target);
+    }
+
+    private void removeEdgeAt(int source, int target) {
+        store.removeEdge(source, target);
+        removeFromTopology(target, source);
+        MutationLog log = mutationLog;
+        if (log != null) {
+            log.removeEdge(source, target);
+        }
+        touchEdge(source, target);
+    }
+
+    /**
+     * Records that a formula cell references a position holding no cell. The
+     * DEPENDS_ON edge is added when a cell is created there.
+     */
+    public synchronized void addUnresolvedReference(int formula, String sheetId, int row, int column) {
+        if (row < 1 || column < 1) {
+            return;
+        }
+        long position = position(row, column);
+        unresolved.computeIfAbsent(sheetId, k -> new HashMap<>())
+                .computeIfAbsent(position, k -> new IntList(1)).add(formula);
+        unresolvedByReferrer.computeIfAbsent(formula, k -> new ArrayList<>(1))
+                .add(new UnresolvedReference(sheetId, position));
+    }
+
+    /**
+     * Appends the formula cells referencing a position that holds no cell
+     */
+    public synchronized void appendUnresolvedReferrers(String sheetId, int row, int column, IntList out) {
+        Map<Long, IntList> bySheet = unresolved.get(sheetId);
+        IntList referrers = bySheet != null ? bySheet.get(position(row, column)) : null;
+        if (referrers != null) {
+            for (int i = 0; i < referrers.size(); i++) {
+                out.add(referrers.get(i));
+            }
+        }
+    }
+
+    private void linkUnresolvedReferrers(String sheetId, int row, int column, int cell) {
+        IntList referrers;
+        synchronized (this) {
+            Map<Long, IntList> bySheet = unresolved.get(sheetId);
+            referrers = bySheet != null ? bySheet.remove(position(row, column)) : null;
+        }
+        if (referrers == null) {
+            return;
+        }
+        for (int i = 0; i < referrers.size(); i++) {
+            addEdge(referrers.get(i), cell, EdgeTypes.DEPENDS_ON);
+        }
+        logger.debug("Linked {} waiting references to {}", referrers.size(), store.idAt(cell));
+    }
+
+    private synchronized void withdrawUnresolvedReferences(int formula) {
+        List<UnresolvedReference> references = unresolvedByReferrer.remove(formula);
+        if (references == null) {
+            return;
+        }
+        for (UnresolvedReference reference : references) {
+            Map<Long, IntList> bySheet = unresolved.get(reference.sheetId);
+            IntList referrers = bySheet != null ? bySheet.get(reference.position) : null;
+            if (referrers == null) {
+                // Already linked to a cell created since
+                continue;
+            }
+            for (int i = referrers.size() - 1; i >= 0; i--) {
+                if (referrers.get(i) == formula) {
+                    referrers.set(i, referrers.get(referrers.size() - 1));
+                    referrers.truncate(referrers.size() - 1);
+                }
+            }
+            if (referrers.isEmpty()) {
+                bySheet.remove(reference.position);
+            }
+        }
+    }
+
+    private static long position(int row, int column) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Sends every following mutation to a write-ahead log; null stops logging
+     */
+    public void setMutationLog(MutationLog mutationLog) {
+        this.mutationLog = mutationLog;
+    }
+
+    public MutationLog getMutationLog() {
+        return mutationLog;
+    }
+
     /**
      * Gets all nodes of a specific type
      */
     public List<GraphNode> getNodesByType(String type) {
-        return nodes.values().stream()
+        return allNodes().stream()
                 .filter(node -> node.getType().equals(type))
                 .collect(Collectors.toList());
     }
@@ -82,7 +318,7 @@ public class KnowledgeGraphService {
      * Gets all cell nodes
      */
     public List<CellNode> getCellNodes() {
-        return nodes.values().stream()
+        return allNodes().stream()
                 .filter(node -> node instanceof CellNode)
                 .map(node -> (CellNode) node)
                 .collect(Collectors.toList());
@@ -92,31 +328,396 @@ public class KnowledgeGraphService {
      * Gets all sheet nodes
      */
     public List<SheetNode> getSheetNodes() {
-        return nodes.values().stream()
+        return allNodes().stream()
                 .filter(node -> node instanceof SheetNode)
                 .map(node -> (SheetNode) node)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Gets all range nodes
+     */
+    public List<RangeNode> getRangeNodes() {
+        return allNodes().stream()
+                .filter(node -> node instanceof RangeNode)
+                .map(node -> (RangeNode) node)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the range node with the same id as the given one, adding it if absent.
+     * Formulas referencing the same range therefore share a single node.
+     */
+    public RangeNode getOrAddRange(RangeNode range) {
+        GraphNode existing = getNode(range.getId());
+        if (existing instanceof RangeNode) {
+            return (RangeNode) existing;
+        }
+        addNode(range);
+        return range;
+    }
+
+    /**
+     * Builds the per-sheet range indexes now instead of on the first traversal.
+     */
+    public void indexRanges() {
+        Map<String, RangeIndex> indexes = rangeIndexes();
+        logger.info("Indexed {} ranges across {} sheets",
+                indexes.values().stream().mapToInt(RangeIndex::size).sum(), indexes.size());
+    }
+
+    /**
+     * Returns the range indexes, rebuilding them if ranges were added since the last build
+     */
+    private synchronized Map<String, RangeIndex> rangeIndexes() {
+        if (!rangeIndexesStale) {
+            return rangeIndexes;
+        }
+        Map<String, IntList> rangesBySheet = new HashMap<>();
+        int count = store.nodeCount();
+        for (int i = 0; i < count; i++) {
+            if (store.nodeAt(i) instanceof RangeNode) {
+                rangesBySheet.computeIfAbsent(((RangeNode) store.nodeAt(i)).getSheetId(), k -> new IntList()).add(i);
+            }
+        }
+        Map<String, RangeIndex> indexes = new HashMap<>();
+        for (Map.Entry<String, IntList> entry : rangesBySheet.entrySet()) {
+            IntList ranges = entry.getValue();
+            int n = ranges.size();
+            int[] firstRow = new int[n];
+            int[] lastRow = new int[n];
+            int[] firstColumn = new int[n];
+            int[] lastColumn = new int[n];
+            int[] ids = ranges.toArray();
+            for (int k = 0; k < n; k++) {
+                RangeNode range = (RangeNode) store.nodeAt(ids[k]);
+                firstRow[k] = range.getFirstRow();
+                lastRow[k] = range.getLastRow();
+                firstColumn[k] = range.getFirstColumn();
+                lastColumn[k] = range.getLastColumn();
+            }
+            indexes.put(entry.getKey(), new RangeIndex(firstRow, lastRow, firstColumn, lastColumn, ids, n));
+        }
+        rangeIndexes = indexes;
+        rangeIndexesStale = false;
+        return indexes;
+    }
+
+    /**
+     * Gets the cells covered by a range, column by column
+     */
+    public List<CellNode> getCellsInRange(RangeNode range) {
+        IntList members = new IntList();
+        appendRangeMembers(range, members);
+        List<CellNode> cells = new ArrayList<>(members.size());
+        for (int i = 0; i < members.size(); i++) {
+            cells.add((CellNode) store.nodeAt(members.get(i)));
+        }
+        return cells;
+    }
+
+    /**
+     * Implicit forward edges: a range node leads to every cell it covers
+     */
+    private void appendRangeMembers(int node, IntList out) {
+        GraphNode graphNode = store.nodeAt(node);
+        if (graphNode instanceof RangeNode) {
+            appendRangeMembers((RangeNode) graphNode, out);
+        }
+    }
+
+    private void appendRangeMembers(RangeNode range, IntList out) {
+        ColumnIndex columns = columnIndex(range.getSheetId(), false);
+        if (columns != null) {
+            columns.cellsIn(range.getFirstRow(), range.getLastRow(), range.getFirstColumn(), range.getLastColumn(), out);
+        }
+    }
+
+    private synchronized ColumnIndex columnIndex(String sheetId, boolean create) {
+        return create ? columnsBySheet.computeIfAbsent(sheetId, k -> new ColumnIndex()) : columnsBySheet.get(sheetId);
+    }
+
+    /**
+     * Implicit reverse edges: a cell leads to every range that contains it
+     */
+    private void appendContainingRanges(int node, IntList out) {
+        long key = store.cellKey(node);
+        if (key != CellKey.NONE) {
+            appendRangesContaining(store.sheetOf(key), CellKey.row(key), CellKey.column(key), out);
+            return;
+        }
+        GraphNode graphNode = store.nodeAt(node);
+        if (graphNode instanceof CellNode) {
+            CellNode cell = (CellNode) graphNode;
+            appendRangesContaining(cell.getSheetId(), cell.getRow(), cell.getColumn(), out);
+        }
+    }
+
+    /**
+     * Appends the nodes the value of the given node is computed from: the targets of
+     * its DEPENDS_ON edges, or the member cells of a range
+     */
+    private void appendValueDependencies(int node, IntList out) {
+        CsrAdjacency forward = store.forward();
+        for (int e = forward.start(node); e < forward.end(node); e++) {
+            if (forward.type(e) == EdgeTypes.DEPENDS_ON) {
+                out.add(forward.target(e));
+            }
+        }
+        appendRangeMembers(node, out);
+    }
+
+    /**
+     * Appends the nodes whose value is computed from the given node: formula cells
+     * with a DEPENDS_ON edge to it and ranges that contain it. Unlike
+     * {@link #getDependents}, the sheet a cell belongs to is not included.
+     */
+    public void appendValueDependents(int node, IntList out) {
+        CsrAdjacency reverse = store.reverse();
+        for (int e = reverse.start(node); e < reverse.end(node); e++) {
+            if (reverse.type(e) == EdgeTypes.DEPENDS_ON) {
+                out.add(reverse.target(e));
+            }
+        }
+        appendContainingRanges(node, out);
+    }
+
+    /**
+     * Appends the range nodes containing a position, whether or not a cell exists there
+     */
+    public void appendRangesContaining(String sheetId, int row, int column, IntList out) {
+        RangeIndex index = rangeIndexes().get(sheetId);
+        if (index != null) {
+            index.containing(row, column, out);
+        }
+    }
+
     /**
      * Gets a node by its ID
      */
     public GraphNode getNode(String nodeId) {
-        return nodes.get(nodeId);
+        int index = store.indexOf(nodeId);
+        return index != GraphStore.NO_NODE ? store.nodeAt(index) : null;
+    }
+
+    /**
+     * Gets the underlying graph store for index-based operations
+     */
+    public GraphStore getStore() {
+        return store;
+    }
+
+    /**
+     * Computes the strongly connected components now instead of on the first query.
+     */
+    public void indexComponents() {
+        ComponentIndex index = componentIndex();
+        logger.info("Indexed {} dependency components, {} circular references",
+                index.componentCount(), index.cycles().size());
+    }
+
+    /**
+     * Returns the component index, rebuilding it if the graph changed since the last
+     * build. A rebuild is a full O(V + E) pass, so after a formula edit the first
+     * cycle, reachability or value-dependent query costs as much as indexing a load.
+     */
+    public synchronized ComponentIndex componentIndex() {
+        long version = store.version();
+        if (components == null || components.version() != version || components.nodeCount() != store.nodeCount()) {
+            components = ComponentIndex.build(store.forward(), EdgeTypes.DEPENDS_ON, rangeMembers,
+                    store.nodeCount(), version);
+        }
+        return components;
+    }
+
+    /**
+     * Gets every circular reference as the ids of the nodes involved
+     */
+    public List<List<String>> getCycles() {
+        List<List<String>> cycles = new ArrayList<>();
+        for (int[] members : componentIndex().cycles()) {
+            List<String> ids = new ArrayList<>(members.length);
+            for (int member : members) {
+                ids.add(store.idAt(member));
+            }
+            cycles.add(ids);
+        }
+        return cycles;
+    }
+
+    /**
+     * Returns true if the node is part of a circular reference
+     */
+    public boolean isInCycle(String nodeId) {
+        int node = store.indexOf(nodeId);
+        return node != GraphStore.NO_NODE && componentIndex().inCycle(node);
+    }
+
+    /**
+     * Index-based transitive value dependents: the cells and ranges whose value is
+     * computed from the node, found by walking the condensed component graph.
+     * Unlike {@link #transitiveDependents(int)}, sheets are not included.
+     */
+    public NodeIdSet transitiveValueDependents(int node) {
+        return componentIndex().dependentsOf(node, traversal.get());
+    }
+
+    /**
+     * Builds the reachability labels now instead of on the first query.
+     */
+    public void indexReachability() {
+        ReachabilityIndex index = reachabilityIndex();
+        logger.info("Indexed reachability labels for {} components", index.components().componentCount());
+    }
+
+    /**
+     * Returns the reachability index for the current components, relabelling the
+     * whole condensation whenever {@link #componentIndex()} was rebuilt
+     */
+    public synchronized ReachabilityIndex reachabilityIndex() {
+        ComponentIndex current = componentIndex();
+        if (reachability == null || reachability.components() != current) {
+            reachability = ReachabilityIndex.build(current);
+        }
+        return reachability;
+    }
+
+    /**
+     * Returns true if a change to {@code fromId} affects the value of {@code toId}:
+     * whether {@code toId} is among the transitive value dependents of {@code fromId}.
+     * Sheets are never reached.
+     */
+    public boolean reaches(String fromId, String toId) {
+        int from = store.indexOf(fromId);
+        int to = store.indexOf(toId);
+        return from != GraphStore.NO_NODE && to != GraphStore.NO_NODE && reaches(from, to);
+    }
+
+    /**
+     * Index-based form of {@link #reaches(String, String)}
+     */
+    public boolean reaches(int from, int to) {
+        return reachabilityIndex().reaches(from, to);
+    }
+
+    /**
+     * Builds the topological order now instead of on the first query.
+     */
+    public void indexTopology() {
+        TopologicalOrder order = topologicalOrder();
+        logger.info("Indexed topological order of {} nodes", order.size());
+    }
+
+    /**
+     * Returns the topological order of the value dependency graph, precedents first.
+     * Built from the component index on first use and then updated edit by edit;
+     * it is only rebuilt when an edit closed or broke a circular reference. The returned
+     * object is shared, so callers must not hold it across edits from other threads.
+     */
+    public synchronized TopologicalOrder topologicalOrder() {
+        if (topology == null || topologyStale) {
+            topologyComponents = componentIndex();
+            topology = TopologicalOrder.build(topologyComponents, valueDependencies, valueDependents);
+            topologyStale = false;
+        }
+        return topology;
+    }
+
+    /**
+     * Length of the longest chain of cells and ranges feeding the node, or -1 if unknown
+     */
+    public synchronized int getDepth(String nodeId) {
+        int node = store.indexOf(nodeId);
+        return node != GraphStore.NO_NODE ? topologicalOrder().depth(node) : -1;
+    }
+
+    /**
+     * Length of the longest chain of cells and ranges fed by the node, or -1 if unknown
+     */
+    public synchronized int getHeight(String nodeId) {
+        int node = store.indexOf(nodeId);
+        return node != GraphStore.NO_NODE ? topologicalOrder().height(node) : -1;
+    }
+
+    /**
+     * Gets the cells and ranges whose value depends on a node, in the order they
+     * would be recalculated
+     */
+    public List<String> getOrderedDependents(String nodeId) {
+        int start = store.indexOf(nodeId);
+        if (start == GraphStore.NO_NODE) {
+            return new ArrayList<>();
+        }
+        NodeIdSet reached = transitiveDependents(start);
+        int[] sorted;
+        synchronized (this) {
+            sorted = topologicalOrder().sort(reached);
+        }
+        List<String> ids = new ArrayList<>(sorted.length);
+        for (int node : sorted) {
+            if (store.cellKey(node) != CellKey.NONE || !(store.nodeAt(node) instanceof SheetNode)) {
+                ids.add(store.idAt(node));
+            }
+        }
+        return ids;
+    }
+
+    private synchronized void placeInTopology(GraphNode node, int index) {
+        if (topology == null || topologyStale) {
+            return;
+        }
+        topology.addNode(index);
+        if (node instanceof CellNode) {
+            // The ranges covering a new cell now depend on it
+            CellNode cell = (CellNode) node;
+            IntList ranges = new IntList();
+            appendRangesContaining(cell.getSheetId(), cell.getRow(), cell.getColumn(), ranges);
+            for (int i = 0; i < ranges.size(); i++) {
+                addToTopology(index, ranges.get(i));
+            }
+        }
+    }
+
+    private synchronized void addToTopology(int precedent, int dependent) {
+        if (topology != null && !topologyStale && !topology.addEdge(precedent, dependent)) {
+            logger.debug("Edge {} -> {} closes a circular reference; topological order will be rebuilt",
+                    dependent, precedent);
+            topologyStale = true;
+        }
+    }
+
+    /**
+     * Keeps the order valid when an edge goes away. Inside a circular reference the
+     * order was arbitrary, so breaking the loop can leave the remaining edges running
+     * backwards; the order is then rebuilt from fresh components.
+     */
+    private synchronized void removeFromTopology(int precedent, int dependent) {
+        if (topology == null || topologyStale) {
+            return;
+        }
+        ComponentIndex built = topologyComponents;
+        if (precedent < built.nodeCount() && dependent < built.nodeCount() && built.inCycle(precedent)
+                && built.componentOf(precedent) == built.componentOf(dependent)) {
+            logger.debug("Edge {} -> {} was part of a circular reference; topological order will be rebuilt",
+                    dependent, precedent);
+            topologyStale = true;
+        } else {
+            topology.invalidateLevels();
+        }
     }
 
     /**
      * Gets all direct dependencies of a node (outgoing edges)
      */
     public Set<String> getDependencies(String nodeId) {
-        return edges.getOrDefault(nodeId, new HashSet<>());
+        return neighborIds(store.forward(), rangeMembers, store.indexOf(nodeId));
     }
 
     /**
      * Gets all nodes that depend on this node (incoming edges)
      */
     public Set<String> getDependents(String nodeId) {
-        Set<String> dependents = reverseEdges.getOrDefault(nodeId, new HashSet<>());
+        Set<String> dependents = neighborIds(store.reverse(), containingRanges, store.indexOf(nodeId));
         logger.info("getDependents for {}: {}", nodeId, dependents);
         return dependents;
     }
@@ -125,53 +726,215 @@ public class KnowledgeGraphService {
      * Finds all nodes that are reachable from the given node (transitive dependencies)
      */
     public Set<String> getTransitiveDependencies(String nodeId) {
-        Set<String> visited = new HashSet<>();
-        Set<String> result = new HashSet<>();
-        dfs(nodeId, visited, result);
-        return result;
+        int start = store.indexOf(nodeId);
+        if (start == GraphStore.NO_NODE) {
+            return new HashSet<>();
+        }
+        return transitiveDependencies(start).asNodeIds(store);
     }
 
     /**
      * Finds all nodes that can reach the given node (transitive dependents)
      */
     public Set<String> getTransitiveDependents(String nodeId) {
-        Set<String> visited = new HashSet<>();
-        Set<String> result = new HashSet<>();
-        reverseDfs(nodeId, visited, result);
-        logger.info("getTransitiveDependents for {}: {}", nodeId, result);
+        int start = store.indexOf(nodeId);
+        if (start == GraphStore.NO_NODE) {
+            return new HashSet<>();
+        }
+        NodeIdSet result = transitiveDependents(start);
+        logger.info("getTransitiveDependents for {}: {} nodes", nodeId, result.size());
+        return result.asNodeIds(store);
+    }
+
+    /**
+     * Index-based transitive dependencies of a node, served from the closure cache when possible
+     */
+    public NodeIdSet transitiveDependencies(int node) {
+        NodeIdSet cached = closureCache.get(node, false);
+        if (cached != null) {
+            return cached;
+        }
+        long epoch = closureCache.epoch();
+        NodeIdSet result = traversal.get().reachableFrom(store.forward(), rangeMembers, node, store.nodeCount());
+        closureCache.put(node, false, result, sheetsOf(node, result), epoch);
         return result;
     }
 
     /**
-     * Depth-first search for finding transitive dependencies
+     * Index-based transitive dependents of a node, served from the closure cache when possible
      */
-    private void dfs(String nodeId, Set<String> visited, Set<String> result) {
-        if (visited.contains(nodeId)) {
-            return;
+    public NodeIdSet transitiveDependents(int node) {
+        NodeIdSet cached = closureCache.get(node, true);
+        if (cached != null) {
+            return cached;
         }
-        visited.add(nodeId);
-        
-        Set<String> dependencies = edges.getOrDefault(nodeId, new HashSet<>());
-        for (String dependency : dependencies) {
-            result.add(dependency);
-            dfs(dependency, visited, result);
+        long epoch = closureCache.epoch();
+        NodeIdSet result = traversal.get().reachableFrom(store.reverse(), containingRanges, node, store.nodeCount());
+        closureCache.put(node, true, result, sheetsOf(node, result), epoch);
+        return result;
+    }
+
+    /**
+     * Index-based transitive dependents of several nodes at once: the union of
+     * {@link #transitiveDependents(int)} over {@code nodes}, computed in one traversal
+     */
+    public NodeIdSet transitiveDependents(int[] nodes) {
+        if (nodes.length == 1) {
+            return transitiveDependents(nodes[0]);
         }
+        return traversal.get().reachableFromAll(store.reverse(), containingRanges, nodes, store.nodeCount());
     }
 
     /**
-     * Reverse depth-first search for finding transitive dependents
+     * Attributes the result of {@link #transitiveDependents(int[])} to the seeds.
+     * For the i-th node of {@code affected}, returns a bitset over positions in
+     * {@code seeds} with a bit set for every seed that node depends on.
+     *
+     * Value dependents are attributed per strongly connected component, walking
+     * the condensation in dependency order so each component is visited once;
+     * a sheet gets the seeds of every affected cell it contains. Nodes of one
+     * component share a bitset, so the arrays must not be modified.
      */
-    private void reverseDfs(String nodeId, Set<String> visited, Set<String> result) {
-        if (visited.contains(nodeId)) {
-            return;
+    public long[][] attributeDependents(int[] seeds, NodeIdSet affected) {
+        ComponentIndex index = componentIndex();
+        int words = (seeds.length + 63) >>> 6;
+
+        // Components involved, ascending: dependencies come before their dependents
+        IntList involved = new IntList();
+        for (int seed : seeds) {
+            involved.add(index.componentOf(seed));
         }
-        visited.add(nodeId);
-        
-        Set<String> dependents = reverseEdges.getOrDefault(nodeId, new HashSet<>());
-        for (String dependent : dependents) {
-            result.add(dependent);
-            reverseDfs(dependent, visited, result);
+        for (int i = 0; i < affected.size(); i++) {
+            if (affected.get(i) < index.nodeCount()) {
+                involved.add(index.componentOf(affected.get(i)));
+            }
+        }
+        int[] components = involved.toArray();
+        Arrays.sort(components);
+        int distinct = 0;
+        for (int i = 0; i < components.length; i++) {
+            if (i == 0 || components[i] != components[i - 1]) {
+                components[distinct++] = components[i];
+            }
+        }
+        components = Arrays.copyOf(components, distinct);
+
+        long[][] own = new long[distinct][words];
+        for (int i = 0; i < seeds.length; i++) {
+            int slot = Arrays.binarySearch(components, index.componentOf(seeds[i]));
+            own[slot][i >>> 6] |= 1L << i;
+        }
+        long[][] reached = new long[distinct][];
+        CsrAdjacency condensed = index.condensed();
+        for (int slot = 0; slot < distinct; slot++) {
+            int component = components[slot];
+            long[] bits = index.isCyclic(component) ? own[slot].clone() : new long[words];
+            for (int e = condensed.start(component); e < condensed.end(component); e++) {
+                int dependency = Arrays.binarySearch(components, 0, slot, condensed.target(e));
+                if (dependency >= 0) {
+                    for (int w = 0; w < words; w++) {
+                        bits[w] |= reached[dependency][w] | own[dependency][w];
+                    }
+                }
+            }
+            reached[slot] = bits;
+        }
+
+        long[][] result = new long[affected.size()][];
+        Map<Integer, long[]> sheets = new HashMap<>();
+        CsrAdjacency reverse = store.reverse();
+        IntList members = new IntList();
+        for (int seed : seeds) {
+            members.add(seed);
+        }
+        for (int i = 0; i < affected.size(); i++) {
+            members.add(affected.get(i));
         }
+        for (int i = 0; i < members.size(); i++) {
+            int node = members.get(i);
+            for (int e = reverse.start(node); e < reverse.end(node); e++) {
+                if (reverse.type(e) == EdgeTypes.CONTAINS) {
+                    int slot = Arrays.binarySearch(components, index.componentOf(node));
+                    long[] bits = sheets.computeIfAbsent(reverse.target(e), k -> new long[words]);
+                    for (int w = 0; w < words; w++) {
+                        bits[w] |= reached[slot][w] | own[slot][w];
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < affected.size(); i++) {
+            int node = affected.get(i);
+            if (store.nodeAt(node) instanceof SheetNode) {
+                result[i] = sheets.getOrDefault(node, new long[words]);
+            } else {
+                result[i] = reached[Arrays.binarySearch(components, index.componentOf(node))];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the cache of transitive closures, e.g. for its hit and miss counts
+     */
+    public ClosureCache getClosureCache() {
+        return closureCache;
+    }
+
+    private void touchEdge(int source, int target) {
+        closureCache.touch(sheetOf(source));
+        closureCache.touch(sheetOf(target));
+    }
+
+    /**
+     * Distinct sheets of a node and of the members of its closure
+     */
+    private String[] sheetsOf(int node, NodeIdSet closure) {
+        Set<String> sheets = new HashSet<>();
+        sheets.add(sheetOf(node));
+        for (int i = 0; i < closure.size(); i++) {
+            sheets.add(sheetOf(closure.get(i)));
+        }
+        return sheets.toArray(new String[0]);
+    }
+
+    private String sheetOf(int node) {
+        long key = store.cellKey(node);
+        if (key != CellKey.NONE) {
+            return store.sheetOf(key);
+        }
+        GraphNode graphNode = store.nodeAt(node);
+        if (graphNode instanceof CellNode) {
+            return ((CellNode) graphNode).getSheetId();
+        }
+        if (graphNode instanceof RangeNode) {
+            return ((RangeNode) graphNode).getSheetId();
+        }
+        return graphNode.getId();
+    }
+
+    private Set<String> neighborIds(CsrAdjacency adjacency, ImplicitEdges extra, int node) {
+        Set<String> ids = new HashSet<>();
+        if (node == GraphStore.NO_NODE) {
+            return ids;
+        }
+        for (int e = adjacency.start(node); e < adjacency.end(node); e++) {
+            ids.add(store.idAt(adjacency.target(e)));
+        }
+        IntList implicit = new IntList();
+        extra.appendNeighbors(node, implicit);
+        for (int i = 0; i < implicit.size(); i++) {
+            ids.add(store.idAt(implicit.get(i)));
+        }
+        return ids;
+    }
+
+    private List<GraphNode> allNodes() {
+        int count = store.nodeCount();
+        List<GraphNode> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(store.nodeAt(i));
+        }
+        return result;
     }
 
     /**
@@ -187,32 +950,56 @@ public class KnowledgeGraphService {
      * Finds a cell node by its A1 notation
      */
     public CellNode findCellByA1Notation(String sheetName, String a1Notation) {
-        String fullReference = sheetName + "!" + a1Notation;
-        GraphNode node = nodes.get(fullReference);
-        return node instanceof CellNode ? (CellNode) node : null;
+        int[] position = A1Notation.parseCell(a1Notation);
+        if (position == null || !A1Notation.format(position[0], position[1]).equals(a1Notation)) {
+            return null;
+        }
+        int index = cellIndex(sheetName, position[0], position[1]);
+        return index != GraphStore.NO_NODE ? (CellNode) store.nodeAt(index) : null;
+    }
+
+    /**
+     * Index of the cell at a position, or {@link GraphStore#NO_NODE}
+     */
+    public int cellIndex(String sheetName, int row, int column) {
+        return store.indexOfCell(sheetName, row, column);
     }
 
     /**
      * Gets the total number of nodes in the graph
      */
     public int getNodeCount() {
-        return nodes.size();
+        return store.nodeCount();
     }
 
     /**
      * Gets the total number of edges in the graph
      */
     public int getEdgeCount() {
-        return edges.values().stream().mapToInt(Set::size).sum();
+        return store.edgeCount();
     }
 
     /**
      * Clears the entire graph
      */
     public void clear() {
-        nodes.clear();
-        edges.clear();
-        reverseEdges.clear();
+        store.clear();
+        MutationLog log = mutationLog;
+        if (log != null) {
+            log.clear();
+        }
+        synchronized (this) {
+            columnsBySheet.clear();
+            rangeIndexes = new HashMap<>();
+            rangeIndexesStale = false;
+            components = null;
+            reachability = null;
+            topology = null;
+            topologyStale = false;
+            unresolved.clear();
+            unresolvedByReferrer.clear();
+        }
+        closureCache.clear();
         logger.info("Cleared knowledge graph");
     }
 
@@ -222,10 +1009,24 @@ public class KnowledgeGraphService {
     public String getGraphSummary() {
         int cellCount = getCellNodes().size();
         int sheetCount = getSheetNodes().size();
+        int rangeCount = getRangeNodes().size();
         int formulaCount = getFormulaCells().size();
         int edgeCount = getEdgeCount();
         
-        return String.format("Graph Summary: %d cells, %d sheets, %d formulas, %d edges", 
-                cellCount, sheetCount, formulaCount, edgeCount);
+        return String.format("Graph Summary: %d cells, %d sheets, %d formulas, %d ranges, %d edges", 
+                cellCount, sheetCount, formulaCount, rangeCount, edgeCount);
+    }
+
+    /**
+     * A position a formula cell references while no cell exists there
+     */
+    private static final class UnresolvedReference {
+        final String sheetId;
+        final long position;
+
+        UnresolvedReference(String sheetId, long position) {
+            this.sheetId = sheetId;
+            this.position = position;
+        }
     }
 }
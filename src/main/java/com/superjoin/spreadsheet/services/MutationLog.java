@@ -0,0 +1,327 @@
+package com.superjoin.spreadsheet.services;
+
+import com.superjoin.spreadsheet.model.CellNode;
+import com.superjoin.spreadsheet.model.GraphNode;
+import com.superjoin.spreadsheet.model.RangeNode;
+import com.superjoin.spreadsheet.model.SheetNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log of graph mutations.
+ *
+ * Each log belongs to a base checkpoint (the creation time of a {@link GraphSnapshot})
+ * and records the mutations made since: added or replaced nodes, added and removed
+ * edges and clears. Records are length-prefixed and carry a CRC32, so a record torn
+ * by a crash is detected on replay; replay stops there and the tail is truncated
+ * before new records are appended. Writes are buffered; {@link #sync} forces them
+ * to disk.
+ *
+ * A log found with a different base is stale (a later checkpoint already covers
+ * it) and is discarded.
+ */
+public final class MutationLog implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(MutationLog.class);
+
+    private static final int MAGIC = 0x5342474C; // "SBGL"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+
+    private static final byte ADD_NODE = 1;
+    private static final byte ADD_EDGE = 2;
+    private static final byte REMOVE_EDGE = 3;
+    private static final byte CLEAR = 4;
+
+    private static final byte SHEET = 0;
+    private static final byte RANGE = 1;
+    private static final byte CELL = 2;
+
+    private final FileChannel channel;
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream(64);
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    private final CRC32 crc = new CRC32();
+    private final long base;
+    private final long replayed;
+    private long records;
+
+    private MutationLog(FileChannel channel, long base, long replayed) {
+        this.channel = channel;
+        this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+        this.base = base;
+        this.replayed = replayed;
+        this.records = replayed;
+    }
+
+    /**
+     * Starts an empty log for the given base checkpoint, replacing any existing file
+     */
+    public static MutationLog create(Path file, long base) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            DataOutputStream header = new DataOutputStream(Channels.newOutputStream(channel));
+            header.writeInt(MAGIC);
+            header.writeInt(FORMAT_VERSION);
+            header.writeLong(base);
+            header.flush();
+            channel.force(true);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new MutationLog(channel, base, 0);
+    }
+
+    /**
+     * Replays the log for the given base into a graph and reopens it for appending.
+     * A missing, unreadable or stale log is replaced by an empty one.
+     */
+    public static MutationLog open(Path file, long base, KnowledgeGraphService graph) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return create(file, base);
+        }
+        long applied = 0;
+        long validLength;
+        long fileLength = Files.size(file);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readLong() != base) {
+                logger.info("Discarding write-ahead log {}: it does not follow the current checkpoint", file);
+                return create(file, base);
+            }
+            validLength = HEADER_BYTES;
+            CRC32 check = new CRC32();
+            while (true) {
+                byte[] payload;
+                try {
+                    int length = in.readInt();
+                    if (length <= 0 || length > fileLength) {
+                        break;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    check.reset();
+                    check.update(payload);
+                    if (in.readInt() != (int) check.getValue()) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                apply(payload, graph);
+                applied++;
+                validLength += 8 + payload.length;
+            }
+        } catch (EOFException e) {
+            logger.info("Discarding truncated write-ahead log {}", file);
+            return create(file, base);
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+        if (channel.size() > validLength) {
+            logger.warn("Truncating {} bytes of torn records from {}", channel.size() - validLength, file);
+            channel.truncate(validLength);
+        }
+        channel.position(validLength);
+        logger.info("Replayed {} mutations from {}", applied, file);
+        return new MutationLog(channel, base, applied);
+    }
+
+    private static void apply(byte[] payload, KnowledgeGraphService graph) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte op = in.readByte();
+        switch (op) {
+            case ADD_NODE:
+                graph.addNode(readNode(in));
+                break;
+            case ADD_EDGE:
+                graph.addEdge(in.readInt(), in.readInt(), in.readByte());
+                break;
+            case REMOVE_EDGE:
+                graph.removeEdge(in.readInt(), in.readInt());
+                break;
+            case CLEAR:
+                graph.clear();
+                break;
+            default:
+                throw new IOException("Unknown write-ahead log record " + op);
+        }
+    }
+
+    public synchronized void addNode(GraphNode node) {
+        try {
+            recordOut.writeByte(ADD_NODE);
+            writeNode(recordOut, node);
+        } catch (IOException e) {
+            record.reset();
+            throw new UncheckedIOException(e);
+        }
+        append();
+    }
+
+    public synchronized void addEdge(int source, int target, byte edgeType) {
+        try {
+            recordOut.writeByte(ADD_EDGE);
+            recordOut.writeInt(source);
+            recordOut.writeInt(target);
+            recordOut.writeByte(edgeType);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        append();
+    }
+
+    public synchronized void removeEdge(int source, int target) {
+        try {
+            recordOut.writeByte(REMOVE_EDGE);
+            recordOut.writeInt(source);
+            recordOut.writeInt(target);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        append();
+    }
+
+    public synchronized void clear() {
+        try {
+            recordOut.writeByte(CLEAR);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        append();
+    }
+
+    /**
+     * Writes the buffered record as length, payload, CRC32
+     */
+    private void append() {
+        try {
+            crc.reset();
+            crc.update(record.toByteArray());
+            out.writeInt(record.size());
+            record.writeTo(out);
+            out.writeInt((int) crc.getValue());
+            records++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            record.reset();
+        }
+    }
+
+    /**
+     * Forces every record appended so far to disk
+     */
+    public synchronized void sync() throws IOException {
+        out.flush();
+        channel.force(false);
+    }
+
+    /**
+     * Base checkpoint the records apply to
+     */
+    public long base() {
+        return base;
+    }
+
+    /**
+     * Records in the log, including replayed ones
+     */
+    public synchronized long records() {
+        return records;
+    }
+
+    /**
+     * Records applied when the log was opened
+     */
+    public long replayed() {
+        return replayed;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static void writeNode(DataOutputStream out, GraphNode node) throws IOException {
+        if (node instanceof CellNode) {
+            CellNode cell = (CellNode) node;
+            out.writeByte(CELL);
+            writeString(out, cell.getSheetId());
+            out.writeInt(cell.getRow());
+            out.writeInt(cell.getColumn());
+            writeString(out, cell.getValue());
+            writeString(out, cell.getFormula());
+        } else if (node instanceof RangeNode) {
+            RangeNode range = (RangeNode) node;
+            out.writeByte(RANGE);
+            writeString(out, range.getSheetId());
+            out.writeInt(range.getFirstRow());
+            out.writeInt(range.getFirstColumn());
+            out.writeInt(range.getLastRow());
+            out.writeInt(range.getLastColumn());
+        } else if (node instanceof SheetNode) {
+            SheetNode sheet = (SheetNode) node;
+            out.writeByte(SHEET);
+            writeString(out, sheet.getSheetId());
+            writeString(out, sheet.getName());
+        } else {
+            throw new IOException("Cannot log node type " + node.getType());
+        }
+    }
+
+    private static GraphNode readNode(DataInputStream in) throws IOException {
+        byte kind = in.readByte();
+        switch (kind) {
+            case CELL:
+                return new CellNode(readString(in), in.readInt(), in.readInt(), readString(in), readString(in));
+            case RANGE:
+                return new RangeNode(readString(in), in.readInt(), in.readInt(), in.readInt(), in.readInt());
+            case SHEET:
+                return new SheetNode(readString(in), readString(in));
+            default:
+                throw new IOException("Unknown node kind " + kind);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
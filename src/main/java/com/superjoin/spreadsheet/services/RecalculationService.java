@@ -0,0 +1,397 @@
+package com.superjoin.spreadsheet.services;
+
+import com.superjoin.spreadsheet.formula.EvaluationContext;
+import com.superjoin.spreadsheet.formula.FormulaCache;
+import com.superjoin.spreadsheet.formula.FormulaError;
+import com.superjoin.spreadsheet.formula.FormulaEvaluator;
+import com.superjoin.spreadsheet.formula.FormulaParseException;
+import com.superjoin.spreadsheet.formula.ReferenceNode;
+import com.superjoin.spreadsheet.formula.ValueGrid;
+import com.superjoin.spreadsheet.formula.Values;
+import com.superjoin.spreadsheet.graph.GraphStore;
+import com.superjoin.spreadsheet.graph.IntList;
+import com.superjoin.spreadsheet.graph.NodeIdSet;
+import com.superjoin.spreadsheet.model.A1Notation;
+import com.superjoin.spreadsheet.model.CellNode;
+import com.superjoin.spreadsheet.model.GraphNode;
+import com.superjoin.spreadsheet.model.RangeNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Local what-if recalculation over the knowledge graph.
+ *
+ * Given edited cells, only the edited cells and their transitive dependents are
+ * evaluated, in dependency order, with {@link FormulaEvaluator}. Every other cell
+ * keeps the value Google Sheets computed. Edits are applied to an overlay, so the
+ * graph itself is never modified.
+ */
+public class RecalculationService {
+    private static final Logger logger = LoggerFactory.getLogger(RecalculationService.class);
+
+    private final KnowledgeGraphService graphService;
+    private final FormulaCache formulaCache;
+
+    public RecalculationService(KnowledgeGraphService graphService, FormulaCache formulaCache) {
+        this.graphService = graphService;
+        this.formulaCache = formulaCache;
+    }
+
+    /**
+     * Recalculates the graph as if the given cells held the given input.
+     *
+     * @param edits full cell references ("Sheet1!B2") mapped to a value, or to a formula starting with '='
+     * @return the new value of every edited cell and every formula cell depending on one, in evaluation order
+     */
+    public Map<String, Object> recalculate(Map<String, String> edits) {
+        long start = System.nanoTime();
+        Recalculation run = new Recalculation(graphService.getStore());
+        for (Map.Entry<String, String> edit : edits.entrySet()) {
+            Position position = Position.parse(edit.getKey());
+            if (position == null) {
+                logger.warn("Ignoring edit of invalid cell reference: {}", edit.getKey());
+                continue;
+            }
+            run.edit(position, edit.getValue());
+        }
+        run.markDirty();
+        run.linkEditedFormulas();
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        FormulaEvaluator evaluator = new FormulaEvaluator(run.overlay);
+        int evaluated = 0;
+        for (int encoded : run.dependencyOrder()) {
+            boolean onCycle = encoded < 0;
+            int node = onCycle ? -encoded - 1 : encoded;
+            Position position = run.positionOf(node);
+            if (position == null) {
+                continue;
+            }
+            String formula = run.formulaOf(node, position);
+            if (formula != null) {
+                Object value = onCycle ? FormulaError.REF
+                        : evaluate(evaluator, formula, position.sheet, position.row, position.column);
+                run.overlay.values.put(position.id, value);
+                results.put(position.id, value);
+                evaluated++;
+            } else if (run.overlay.values.containsKey(position.id)) {
+                results.put(position.id, run.overlay.values.get(position.id));
+            }
+        }
+        logger.info("Recalculated {} formulas for {} edits in {} ms",
+                evaluated, edits.size(), (System.nanoTime() - start) / 1_000_000);
+        return results;
+    }
+
+    /**
+     * State of one recalculation. Nodes are graph indices; edited cells that are not
+     * in the graph get indices from {@code store.nodeCount()} upwards.
+     */
+    private final class Recalculation {
+        final GraphStore store;
+        final int nodeCount;
+        final Overlay overlay = new Overlay();
+        final Map<String, Integer> editedNodes = new HashMap<>();
+        final List<Position> newCells = new ArrayList<>();
+        final BitSet edited = new BitSet();
+        final BitSet dirty = new BitSet();
+        // Dependencies introduced by edited formulas: referenced node -> edited node
+        final Map<Integer, IntList> extraDependents = new HashMap<>();
+        final IntList scratch = new IntList();
+
+        Recalculation(GraphStore store) {
+            this.store = store;
+            this.nodeCount = store.nodeCount();
+        }
+
+        void edit(Position position, String input) {
+            if (input != null && input.startsWith("=")) {
+                overlay.formulas.put(position.id, input);
+                overlay.values.remove(position.id);
+            } else {
+                overlay.formulas.remove(position.id);
+                overlay.values.put(position.id, Values.parse(input));
+            }
+            if (editedNodes.containsKey(position.id)) {
+                return;
+            }
+            int node = store.indexOf(position.id);
+            if (node == GraphStore.NO_NODE) {
+                node = nodeCount + newCells.size();
+                newCells.add(position);
+                overlay.positions.computeIfAbsent(position.sheet, k -> new ArrayList<>()).add(position);
+            }
+            editedNodes.put(position.id, node);
+            edited.set(node);
+        }
+
+        /**
+         * Marks the edited cells and everything that transitively depends on them
+         */
+        void markDirty() {
+            for (int node = edited.nextSetBit(0); node >= 0; node = edited.nextSetBit(node + 1)) {
+                dirty.set(node);
+                IntList seeds = new IntList();
+                if (node < nodeCount) {
+                    seeds.add(node);
+                } else {
+                    appendReaders(newCells.get(node - nodeCount), seeds);
+                }
+                for (int i = 0; i < seeds.size(); i++) {
+                    dirty.set(seeds.get(i));
+                    NodeIdSet dependents = graphService.transitiveDependents(seeds.get(i));
+                    for (int k = 0; k < dependents.size(); k++) {
+                        dirty.set(dependents.get(k));
+                    }
+                }
+            }
+        }
+
+        /**
+         * Ranges containing a cell that is not in the graph yet, and formulas that
+         * reference it directly
+         */
+        private void appendReaders(Position position, IntList out) {
+            graphService.appendRangesContaining(position.sheet, position.row, position.column, out);
+            graphService.appendUnresolvedReferrers(position.sheet, position.row, position.column, out);
+        }
+
+        /**
+         * Orders edited formulas after the dirty cells they now reference. Clean
+         * cells need no ordering since their values do not change.
+         */
+        void linkEditedFormulas() {
+            for (Map.Entry<String, String> entry : overlay.formulas.entrySet()) {
+                int node = editedNodes.get(entry.getKey());
+                Position position = positionOf(node);
+                List<ReferenceNode> references;
+                try {
+                    references = formulaCache.references(entry.getValue(), position.row, position.column);
+                } catch (FormulaParseException e) {
+                    continue;
+                }
+                for (ReferenceNode reference : references) {
+                    String sheet = reference.resolveSheet(position.sheet);
+                    if (!reference.isRange()) {
+                        String id = sheet + "!" + A1Notation.format(reference.getFirstRow(), reference.getFirstColumn());
+                        Integer target = editedNodes.get(id);
+                        int referenced = target != null ? target : store.indexOf(id);
+                        if (referenced != GraphStore.NO_NODE && dirty.get(referenced)) {
+                            extraDependents.computeIfAbsent(referenced, k -> new IntList()).add(node);
+                        }
+                        continue;
+                    }
+                    RangeNode range = reference.toRangeNode(position.sheet);
+                    for (int other = dirty.nextSetBit(0); other >= 0; other = dirty.nextSetBit(other + 1)) {
+                        Position candidate = positionOf(other);
+                        if (candidate != null && candidate.sheet.equals(range.getSheetId())
+                                && range.contains(candidate.row, candidate.column)) {
+                            extraDependents.computeIfAbsent(other, k -> new IntList()).add(node);
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Nodes whose value is computed from the given one. Edited cells no longer
+         * read their old references, so graph edges into them are dropped.
+         */
+        void appendDependents(int node, IntList out) {
+            int before = out.size();
+            if (node < nodeCount) {
+                graphService.appendValueDependents(node, out);
+            } else {
+                appendReaders(newCells.get(node - nodeCount), out);
+            }
+            int kept = before;
+            for (int i = before; i < out.size(); i++) {
+                if (!edited.get(out.get(i))) {
+                    out.set(kept++, out.get(i));
+                }
+            }
+            out.truncate(kept);
+            IntList extra = extraDependents.get(node);
+            for (int i = 0; extra != null && i < extra.size(); i++) {
+                out.add(extra.get(i));
+            }
+        }
+
+        /**
+         * Orders the dirty cells and ranges so every node comes after the dirty nodes it
+         * reads (Kahn's algorithm). Nodes on or behind a cycle are appended at the end
+         * encoded as {@code -node - 1}.
+         */
+        int[] dependencyOrder() {
+            IntList candidates = new IntList();
+            for (int node = dirty.nextSetBit(0); node >= 0; node = dirty.nextSetBit(node + 1)) {
+                GraphNode graphNode = node < nodeCount ? store.nodeAt(node) : null;
+                if (node >= nodeCount || graphNode instanceof CellNode || graphNode instanceof RangeNode) {
+                    candidates.add(node);
+                }
+            }
+            int[] nodes = candidates.toArray();
+            int[] indegree = new int[nodes.length];
+            for (int node : nodes) {
+                scratch.clear();
+                appendDependents(node, scratch);
+                for (int k = 0; k < scratch.size(); k++) {
+                    int position = Arrays.binarySearch(nodes, scratch.get(k));
+                    if (position >= 0) {
+                        indegree[position]++;
+                    }
+                }
+            }
+
+            int[] order = new int[nodes.length];
+            int head = 0;
+            int tail = 0;
+            for (int i = 0; i < nodes.length; i++) {
+                if (indegree[i] == 0) {
+                    order[tail++] = nodes[i];
+                }
+            }
+            while (head < tail) {
+                int node = order[head++];
+                scratch.clear();
+                appendDependents(node, scratch);
+                for (int k = 0; k < scratch.size(); k++) {
+                    int position = Arrays.binarySearch(nodes, scratch.get(k));
+                    if (position >= 0 && --indegree[position] == 0) {
+                        order[tail++] = nodes[position];
+                    }
+                }
+            }
+            for (int i = 0; i < nodes.length; i++) {
+                if (indegree[i] > 0) {
+                    order[tail++] = -nodes[i] - 1;
+                }
+            }
+            return order;
+        }
+
+        /**
+         * The cell a node stands for, or null for ranges
+         */
+        Position positionOf(int node) {
+            if (node >= nodeCount) {
+                return newCells.get(node - nodeCount);
+            }
+            GraphNode graphNode = store.nodeAt(node);
+            if (!(graphNode instanceof CellNode)) {
+                return null;
+            }
+            CellNode cell = (CellNode) graphNode;
+            return new Position(cell.getSheetId(), cell.getRow(), cell.getColumn());
+        }
+
+        /**
+         * The formula to evaluate for a cell, or null if its value is given
+         */
+        String formulaOf(int node, Position position) {
+            if (edited.get(node)) {
+                return overlay.formulas.get(position.id);
+            }
+            CellNode cell = (CellNode) store.nodeAt(node);
+            return cell.hasFormula() ? cell.getFormula() : null;
+        }
+    }
+
+    private Object evaluate(FormulaEvaluator evaluator, String formula, String sheet, int row, int column) {
+        try {
+            return evaluator.evaluate(formulaCache.lookup(formula, row, column), sheet, row, column);
+        } catch (FormulaParseException e) {
+            return FormulaError.ERROR;
+        }
+    }
+
+    private static final class Position {
+        final String id;
+        final String sheet;
+        final int row;
+        final int column;
+
+        private Position(String sheet, int row, int column) {
+            this.sheet = sheet;
+            this.row = row;
+            this.column = column;
+            this.id = sheet + "!" + A1Notation.format(row, column);
+        }
+
+        static Position parse(String reference) {
+            int bang = reference.lastIndexOf('!');
+            if (bang <= 0) {
+                return null;
+            }
+            int[] cell = A1Notation.parseCell(reference.substring(bang + 1));
+            return cell != null ? new Position(reference.substring(0, bang), cell[0], cell[1]) : null;
+        }
+    }
+
+    /**
+     * Edited and recalculated values layered over the values stored in the graph
+     */
+    private final class Overlay implements EvaluationContext {
+        final Map<String, Object> values = new HashMap<>();
+        final Map<String, String> formulas = new HashMap<>();
+        final Map<String, List<Position>> positions = new HashMap<>();
+
+        @Override
+        public Object cellValue(String sheet, int row, int column) {
+            String id = sheet + "!" + A1Notation.format(row, column);
+            if (values.containsKey(id)) {
+                return values.get(id);
+            }
+            GraphNode node = graphService.getNode(id);
+            return node instanceof CellNode ? Values.parse(((CellNode) node).getValue()) : null;
+        }
+
+        @Override
+        public ValueGrid rangeValues(String sheet, int firstRow, int firstColumn, int lastRow, int lastColumn) {
+            List<CellNode> cells = graphService.getCellsInRange(new RangeNode(sheet, firstRow, firstColumn, lastRow, lastColumn));
+            List<Position> edited = positions.getOrDefault(sheet, List.of());
+            int maxRow = firstRow - 1;
+            int maxColumn = firstColumn - 1;
+            for (CellNode cell : cells) {
+                maxRow = Math.max(maxRow, cell.getRow());
+                maxColumn = Math.max(maxColumn, cell.getColumn());
+            }
+            for (Position position : edited) {
+                if (inside(position, firstRow, firstColumn, lastRow, lastColumn)) {
+                    maxRow = Math.max(maxRow, position.row);
+                    maxColumn = Math.max(maxColumn, position.column);
+                }
+            }
+            ValueGrid grid = new ValueGrid(maxRow - firstRow + 1, maxColumn - firstColumn + 1,
+                    span(firstRow, lastRow), span(firstColumn, lastColumn));
+            for (CellNode cell : cells) {
+                String id = cell.getId();
+                Object value = values.containsKey(id) ? values.get(id) : Values.parse(cell.getValue());
+                grid.set(cell.getRow() - firstRow, cell.getColumn() - firstColumn, value);
+            }
+            for (Position position : edited) {
+                if (inside(position, firstRow, firstColumn, lastRow, lastColumn)) {
+                    grid.set(position.row - firstRow, position.column - firstColumn, values.get(position.id));
+                }
+            }
+            return grid;
+        }
+
+        private boolean inside(Position position, int firstRow, int firstColumn, int lastRow, int lastColumn) {
+            return position.row >= firstRow && position.row <= lastRow
+                    && position.column >= firstColumn && position.column <= lastColumn;
+        }
+
+        private int span(int first, int last) {
+            return (int) Math.min(Integer.MAX_VALUE, (long) last - first + 1);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.superjoin.spreadsheet;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestBatchImpact {
+
+    private SpreadsheetGraph graph;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        graph = new SpreadsheetGraph();
+        Map<String, List<Cell>> sheets = new LinkedHashMap<>();
+        sheets.put("Data", List.of(
+                new Cell(1, 1, "10", null),
+                new Cell(2, 1, "20", null),
+                new Cell(3, 1, "30", null),
+                new Cell(1, 2, "60", "=SUM(A:A)"),
+                new Cell(2, 2, "40", "=A2*2"),
+                new Cell(3, 2, "0", "=C3"),
+                new Cell(3, 3, "0", "=B3+A3")));
+        sheets.put("Summary", List.of(
+                new Cell(1, 1, "100", "=Data!B1+Data!B2"),
+                new Cell(2, 1, "0", "=Data!C3")));
+        graph.buildGraph(sheets);
+    }
+
+    @Test
+    void testUnionMatchesSingleCellAnalysis() {
+        List<String> inputs = List.of("Data!A1", "Data!A2", "Data!A3", "Data!Z99");
+        Set<String> expected = new HashSet<>();
+        for (String input : inputs) {
+            expected.addAll(graph.analyzeImpact(input));
+        }
+        assertEquals(expected, Set.copyOf(graph.analyzeImpact(inputs)));
+        // A cell of the block that another cell of the block feeds is reported too
+        assertTrue(graph.analyzeImpact(List.of("Data!A2", "Data!B2")).contains("Data!B2"));
+        assertFalse(graph.analyzeImpact(List.of("Data!A1", "Data!A2")).contains("Data!A1"));
+    }
+
+    @Test
+    void testReportsCellsButNotRanges() {
+        assertEquals(Set.of("Data!B1", "Summary!A1"), graph.analyzeImpact("Data!A1"));
+        assertEquals(Set.of("Data!B1", "Summary!A1"), graph.analyzeImpact(List.of("Data!A1")));
+        assertEquals(Set.of("Data!B1", "Summary!A1"), graph.attributeImpact(List.of("Data!A1", "Data!B1")).keySet());
+        assertEquals(Set.of("Data!A1", "Data!A2", "Data!A3"), graph.findDependencies("Data!B1"));
+    }
+
+    @Test
+    void testAttributionMatchesPerInputImpact() {
+        List<String> inputs = List.of("Data!A1", "Data!A2", "Data!A3", "Data!C3");
+        Map<String, Set<String>> attribution = graph.attributeImpact(inputs);
+        assertEquals(Set.copyOf(graph.analyzeImpact(inputs)), attribution.keySet());
+        for (String input : inputs) {
+            Set<String> impact = graph.analyzeImpact(input);
+            for (Map.Entry<String, Set<String>> entry : attribution.entrySet()) {
+                assertEquals(impact.contains(entry.getKey()), entry.getValue().contains(input),
+                        input + " -> " + entry.getKey());
+            }
+        }
+        assertEquals(Set.of("Data!A2"), attribution.get("Data!B2"));
+        assertEquals(Set.of("Data!A3", "Data!C3"), attribution.get("Summary!A2"));
+    }
+}
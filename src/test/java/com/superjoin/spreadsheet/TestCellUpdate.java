@@ -0,0 +1,115 @@
+package com.superjoin.spreadsheet;
+
+import com.superjoin.spreadsheet.graph.ComponentIndex;
+import com.superjoin.spreadsheet.model.CellNode;
+import com.superjoin.spreadsheet.services.KnowledgeGraphService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestCellUpdate {
+
+    private SpreadsheetGraph graph;
+    private KnowledgeGraphService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        graph = new SpreadsheetGraph();
+        service = graph.getGraphService();
+        Map<String, List<Cell>> sheets = new LinkedHashMap<>();
+        sheets.put("Data", List.of(
+                new Cell(1, 1, "10", null),
+                new Cell(2, 1, "20", null),
+                new Cell(3, 1, "30", null),
+                new Cell(1, 2, "30", "=A1+A2"),
+                new Cell(2, 2, "60", "=B1*2")));
+        sheets.put("Summary", List.of(new Cell(1, 1, "60", "=Data!B2")));
+        graph.buildGraph(sheets);
+    }
+
+    @Test
+    void testFormulaEditRebuildsOnlyItsOwnEdges() {
+        int nodesBefore = service.getNodeCount();
+        graph.applyCellUpdate("Data", "B1", "=A3*2");
+
+        CellNode b1 = service.findCellByA1Notation("Data", "B1");
+        assertEquals("=A3*2", b1.getFormula());
+        assertEquals(Set.of("Data!A3"), service.getDependencies("Data!B1"));
+        // Dependents of B1 are untouched
+        assertEquals(Set.of("Data", "Data!B2"), service.getDependents("Data!B1"));
+        assertTrue(service.getTransitiveDependents("Data!A3").contains("Summary!A1"));
+        assertFalse(service.getTransitiveDependents("Data!A1").contains("Summary!A1"));
+        assertEquals(nodesBefore, service.getNodeCount());
+    }
+
+    @Test
+    void testValueEditDropsDependencies() {
+        graph.applyCellUpdate("Data", "B1", "5");
+        CellNode b1 = service.findCellByA1Notation("Data", "B1");
+        assertEquals("5", b1.getValue());
+        assertFalse(b1.hasFormula());
+        assertTrue(service.getDependencies("Data!B1").isEmpty());
+    }
+
+    @Test
+    void testValueEditKeepsComponentIndex() {
+        ComponentIndex components = service.componentIndex();
+        graph.applyCellUpdate("Data", "A1", "15");
+        assertEquals("15", service.findCellByA1Notation("Data", "A1").getValue());
+        assertSame(components, service.componentIndex());
+
+        // Changing edges does rebuild it
+        graph.applyCellUpdate("Data", "A1", "=A3");
+        assertNotSame(components, service.componentIndex());
+        assertTrue(service.reaches("Data!A3", "Summary!A1"));
+    }
+
+    @Test
+    void testNewCellJoinsExistingRanges() {
+        graph.applyCellUpdate("Data", "C1", "=SUM(A:A)");
+        assertTrue(service.getDependencies("Data!C1").contains("Data!A:A"));
+        assertFalse(service.getTransitiveDependents("Data!A4").contains("Data!C1"));
+
+        graph.applyCellUpdate("Data", "A4", "40");
+        assertTrue(service.getDependents("Data!A4").contains("Data!A:A"));
+        assertTrue(service.getTransitiveDependents("Data!A4").contains("Data!C1"));
+    }
+
+    @Test
+    void testNewCellLinksFormulasWaitingOnIt() throws Exception {
+        SpreadsheetGraph graph = new SpreadsheetGraph();
+        KnowledgeGraphService service = graph.getGraphService();
+        Map<String, List<Cell>> sheets = new LinkedHashMap<>();
+        sheets.put("Data", List.of(
+                new Cell(1, 1, "1", null),
+                new Cell(1, 2, "1", "=A1+A5"),
+                new Cell(2, 2, "0", "=A6")));
+        sheets.put("Summary", List.of(new Cell(1, 1, "0", "=Data!A5*2")));
+        graph.buildGraph(sheets);
+        assertFalse(service.getDependencies("Data!B1").contains("Data!A5"));
+
+        // B2 stops reading A6 before it is created, so A6 must not pick it up
+        graph.applyCellUpdate("Data", "B2", "=A1");
+        graph.applyCellUpdate("Data", "A5", "7");
+        graph.applyCellUpdate("Data", "A6", "8");
+
+        assertEquals(Set.of("Data", "Data!B1", "Summary!A1"), service.getDependents("Data!A5"));
+        assertEquals(Set.of("Data"), service.getDependents("Data!A6"));
+        assertTrue(graph.analyzeImpact("Data!A5").contains("Data!B1"));
+        assertEquals(Set.of("Data!A1", "Data!A5"), service.getDependencies("Data!B1"));
+    }
+
+    @Test
+    void testFormulaEditKeepsLastValue() {
+        graph.applyCellUpdate("Data", "B1", "=A3*2");
+        assertEquals("30", service.findCellByA1Notation("Data", "B1").getValue());
+        graph.applyCellUpdate("Data", "C9", "=A1");
+        assertNull(service.findCellByA1Notation("Data", "C9").getValue());
+    }
+}
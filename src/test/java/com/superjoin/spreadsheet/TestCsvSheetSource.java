@@ -0,0 +1,67 @@
+package com.superjoin.spreadsheet;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestCsvSheetSource {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testParsesQuotedFieldsAndFormulas() throws Exception {
+        Path file = dir.resolve("Data.csv");
+        Files.writeString(file, "\uFEFFName,Amount,Note\r\n"
+                + "\"Smith, J\",10,\"said \"\"hi\"\"\nthen left\"\r\n"
+                + ",20,\n"
+                + "Total,=SUM(B2:B3)", StandardCharsets.UTF_8);
+
+        Map<String, List<Cell>> sheets = new CsvSheetSource().readAllSheets(file.toString());
+        List<Cell> cells = sheets.get("Data");
+        assertEquals(List.of("Data"), List.copyOf(sheets.keySet()));
+        assertEquals(List.of("Name", "Amount", "Note", "Smith, J", "10", "said \"hi\"\nthen left", "20", "Total"),
+                cells.stream().map(Cell::getValue).filter(value -> value != null).toList());
+        Cell total = cells.get(cells.size() - 1);
+        assertEquals(4, total.getRow());
+        assertEquals(2, total.getColumn());
+        assertEquals("=SUM(B2:B3)", total.getFormula());
+        assertEquals(2, cells.stream().filter(cell -> cell.getRow() == 3).findFirst().orElseThrow().getColumn());
+    }
+
+    @Test
+    void testLoneCarriageReturnEndsRow() throws Exception {
+        Path file = dir.resolve("Mac.csv");
+        Files.writeString(file, "a,1\rb,2\r\rc,=B1+B2\r", StandardCharsets.UTF_8);
+
+        List<Cell> cells = new CsvSheetSource().readAllSheets(file.toString()).get("Mac");
+        assertEquals(List.of(1, 1, 2, 2, 4, 4), cells.stream().map(Cell::getRow).toList());
+        assertEquals("2", cells.get(3).getValue());
+        assertEquals("=B1+B2", cells.get(5).getFormula());
+    }
+
+    @Test
+    void testDirectoryIsOneSheetPerFile() throws Exception {
+        Files.writeString(dir.resolve("b_Summary.csv"), "=a_Data!A1*2\n");
+        Files.writeString(dir.resolve("a_Data.csv"), "5\n");
+        Files.writeString(dir.resolve("readme.txt"), "not a sheet\n");
+
+        SpreadsheetGraph graph = new SpreadsheetGraph(SheetSource.forFile(dir));
+        graph.loadAllSheets(dir.toString());
+        assertEquals(Set.of("a_Data", "b_Summary"), Set.copyOf(graph.getSheetNames()));
+        assertEquals("a_Data", graph.getCurrentSheetName());
+        assertEquals(Set.of("a_Data!A1"), graph.getGraphService().getDependencies("b_Summary!A1"));
+
+        // Edits to local workbooks live in the graph only
+        assertTrue(graph.updateCell("a_Data!A2", "7"));
+        assertEquals("7", graph.getGraphService().findCellByA1Notation("a_Data", "A2").getValue());
+    }
+}
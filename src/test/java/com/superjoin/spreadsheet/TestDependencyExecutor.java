@@ -0,0 +1,144 @@
+package com.superjoin.spreadsheet;
+
+import com.superjoin.spreadsheet.graph.GraphStore;
+import com.superjoin.spreadsheet.graph.IntList;
+import com.superjoin.spreadsheet.graph.NodeIdSet;
+import com.superjoin.spreadsheet.services.DependencyExecutor;
+import com.superjoin.spreadsheet.services.KnowledgeGraphService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestDependencyExecutor {
+
+    private static KnowledgeGraphService build(List<Cell> cells) throws Exception {
+        SpreadsheetGraph graph = new SpreadsheetGraph();
+        Map<String, List<Cell>> sheets = new LinkedHashMap<>();
+        sheets.put("S", cells);
+        graph.buildGraph(sheets);
+        return graph.getGraphService();
+    }
+
+    private static List<String> ids(KnowledgeGraphService graph, int[] nodes) {
+        List<String> ids = new ArrayList<>();
+        for (int node : nodes) {
+            ids.add(graph.getStore().nodeAt(node).getId());
+        }
+        return ids;
+    }
+
+    @Test
+    void testParallelRunMatchesSequentialOrder() throws Exception {
+        List<Cell> cells = new ArrayList<>();
+        cells.add(new Cell(1, 1, "1", null));
+        for (int row = 2; row <= 40; row++) {
+            // Two interleaved chains from A1 that meet in a SUM over column A
+            cells.add(new Cell(row, 1, "", "=A" + (row - 1) + "+1"));
+            cells.add(new Cell(row, 2, "", "=A1*" + row));
+        }
+        cells.add(new Cell(1, 3, "", "=SUM(A1:A40)+B40"));
+        KnowledgeGraphService graph = build(cells);
+        GraphStore store = graph.getStore();
+        int a1 = store.indexOf("S!A1");
+
+        DependencyExecutor executor = DependencyExecutor.plan(graph, graph.transitiveDependents(a1));
+        assertEquals(0, executor.cyclicNodes().length);
+        assertEquals("S!C1", ids(graph, executor.order()).get(executor.order().length - 1));
+
+        AtomicInteger clock = new AtomicInteger();
+        AtomicIntegerArray finishedAt = new AtomicIntegerArray(store.nodeCount());
+        List<String> sequential = executor.runSequential(node -> store.nodeAt(node).getId());
+        List<String> parallel = executor.run(new ForkJoinPool(4), node -> {
+            IntList precedents = new IntList();
+            for (int other : executor.order()) {
+                IntList dependents = new IntList();
+                graph.appendValueDependents(other, dependents);
+                for (int i = 0; i < dependents.size(); i++) {
+                    if (dependents.get(i) == node) {
+                        precedents.add(other);
+                    }
+                }
+            }
+            for (int i = 0; i < precedents.size(); i++) {
+                assertTrue(finishedAt.get(precedents.get(i)) > 0, "precedent still running");
+            }
+            finishedAt.set(node, clock.incrementAndGet());
+            return store.nodeAt(node).getId();
+        });
+        assertEquals(sequential, parallel);
+        assertEquals(executor.order().length, clock.get());
+    }
+
+    @Test
+    void testCyclesAreReportedAndNotRun() throws Exception {
+        KnowledgeGraphService graph = build(List.of(
+                new Cell(1, 1, "1", null),
+                new Cell(1, 2, "", "=A1+C1"),
+                new Cell(1, 3, "", "=B1"),
+                new Cell(1, 4, "", "=C1"),
+                new Cell(1, 5, "", "=A1")));
+        GraphStore store = graph.getStore();
+        int[] nodes = {store.indexOf("S!A1"), store.indexOf("S!B1"), store.indexOf("S!C1"),
+                store.indexOf("S!D1"), store.indexOf("S!E1")};
+        Arrays.sort(nodes);
+
+        DependencyExecutor executor = DependencyExecutor.plan(graph, NodeIdSet.of(nodes));
+        assertEquals(List.of("S!A1", "S!E1"), ids(graph, executor.order()));
+        assertEquals(2, executor.levelCount());
+        assertEquals(List.of("S!B1", "S!C1", "S!D1"), ids(graph, executor.cyclicNodes()));
+        assertEquals(List.of("S!A1", "S!E1"), executor.run(ForkJoinPool.commonPool(), node -> store.nodeAt(node).getId()));
+    }
+
+    @Test
+    void testFailureSkipsDependentsWhateverFinishesLast() throws Exception {
+        // Diamond A1 -> B1, C1 -> D1 -> E1 where B1 fails
+        KnowledgeGraphService graph = build(List.of(
+                new Cell(1, 1, "1", null),
+                new Cell(1, 2, "", "=A1*2"),
+                new Cell(1, 3, "", "=A1+1"),
+                new Cell(1, 4, "", "=B1+C1"),
+                new Cell(1, 5, "", "=D1")));
+        GraphStore store = graph.getStore();
+        int b1 = store.indexOf("S!B1");
+        int c1 = store.indexOf("S!C1");
+        int[] nodes = {b1, c1, store.indexOf("S!D1"), store.indexOf("S!E1")};
+        Arrays.sort(nodes);
+        DependencyExecutor executor = DependencyExecutor.plan(graph, NodeIdSet.of(nodes));
+
+        for (int attempt = 0; attempt < 20; attempt++) {
+            CountDownLatch b1Failed = new CountDownLatch(1);
+            List<String> ran = Collections.synchronizedList(new ArrayList<>());
+            IllegalStateException thrown = assertThrows(IllegalStateException.class, () ->
+                    executor.run(new ForkJoinPool(4), node -> {
+                        if (node == b1) {
+                            b1Failed.countDown();
+                            throw new IllegalStateException("B1 failed");
+                        }
+                        if (node == c1) {
+                            // Let the healthy branch be the last precedent of D1 to finish
+                            try {
+                                b1Failed.await();
+                                Thread.sleep(5);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                        ran.add(store.nodeAt(node).getId());
+                        return null;
+                    }));
+            assertEquals("B1 failed", thrown.getMessage());
+            assertEquals(List.of("S!C1"), ran);
+        }
+    }
+}
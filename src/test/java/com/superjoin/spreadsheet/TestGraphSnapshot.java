@@ -0,0 +1,102 @@
+package com.superjoin.spreadsheet;
+
+import com.superjoin.spreadsheet.services.GraphSnapshot;
+import com.superjoin.spreadsheet.services.KnowledgeGraphService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestGraphSnapshot {
+
+    @TempDir
+    Path dir;
+
+    private SpreadsheetGraph buildSample() throws Exception {
+        SpreadsheetGraph graph = new SpreadsheetGraph();
+        Map<String, List<Cell>> sheets = new LinkedHashMap<>();
+        sheets.put("Data", List.of(
+                new Cell(1, 1, "10", null),
+                new Cell(2, 1, "Open", null),
+                new Cell(1, 2, "30", "=SUM(A1:A2)"),
+                new Cell(2, 2, "Open", "=A2")));
+        sheets.put("Summary", List.of(
+                new Cell(1, 1, "31", "=Data!B1+1"),
+                new Cell(2, 1, "0", "=B2"),
+                new Cell(2, 2, "0", "=A2")));
+        graph.buildGraph(sheets);
+        return graph;
+    }
+
+    @Test
+    void testRoundTripAnswersTheSameQueries() throws Exception {
+        SpreadsheetGraph original = buildSample();
+        Path file = dir.resolve("graph.snapshot");
+        GraphSnapshot.write(original.getGraphService(), file, "sheet-1", "Data", 1234L);
+
+        SpreadsheetGraph restored = new SpreadsheetGraph();
+        assertEquals(-1, restored.loadSnapshot(file, "other-sheet"));
+        assertEquals(1234L, restored.loadSnapshot(file, "sheet-1"));
+        assertEquals("sheet-1", restored.getCurrentSpreadsheetId());
+        assertEquals("Data", restored.getCurrentSheetName());
+
+        KnowledgeGraphService before = original.getGraphService();
+        KnowledgeGraphService after = restored.getGraphService();
+        assertEquals(before.getNodeCount(), after.getNodeCount());
+        assertEquals(before.getEdgeCount(), after.getEdgeCount());
+        for (String cell : List.of("Data!A1", "Data!A2", "Summary!A2")) {
+            assertEquals(original.analyzeImpact(cell), restored.analyzeImpact(cell), cell);
+            assertEquals(original.findDependencies(cell), restored.findDependencies(cell), cell);
+        }
+        assertEquals(before.getCycles(), after.getCycles());
+        assertEquals("=SUM(A1:A2)", after.findCellByA1Notation("Data", "B1").getFormula());
+        assertEquals("Open", after.findCellByA1Notation("Data", "B2").getValue());
+        assertEquals(Set.of("Data", "Summary"), Set.copyOf(restored.getSheetNames()));
+    }
+
+    @Test
+    void testEditsAfterCheckpointAreRecoveredFromTheLog() throws Exception {
+        SpreadsheetGraph original = buildSample();
+        Path file = dir.resolve("graph.snapshot");
+        GraphSnapshot.write(original.getGraphService(), file, "sheet-1", "Data", 99L);
+        assertEquals(99L, original.loadSnapshot(file, "sheet-1"));
+        original.applyCellUpdate("Data", "C1", "=B2&\"!\"");
+        original.applyCellUpdate("Data", "A1", "12");
+
+        // No new checkpoint was written; the edits come back from the write-ahead log
+        SpreadsheetGraph restored = new SpreadsheetGraph();
+        assertEquals(99L, restored.loadSnapshot(file, "sheet-1"));
+        assertTrue(Files.size(SpreadsheetGraph.logFileOf(file)) > 16);
+        KnowledgeGraphService after = restored.getGraphService();
+        assertEquals("12", after.findCellByA1Notation("Data", "A1").getValue());
+        assertEquals(Set.of("Data!B2"), after.getDependencies("Data!C1"));
+        assertEquals(original.analyzeImpact("Data!A2"), restored.analyzeImpact("Data!A2"));
+        assertEquals(original.getGraphService().getEdgeCount(), after.getEdgeCount());
+    }
+
+    @Test
+    void testRejectsDamagedFiles() throws Exception {
+        Path file = dir.resolve("graph.snapshot");
+        GraphSnapshot.write(buildSample().getGraphService(), file, "sheet-1", "Data", 0L);
+        byte[] bytes = Files.readAllBytes(file);
+
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+        assertThrows(IOException.class, () -> GraphSnapshot.open(file));
+
+        bytes[0] ^= 0x7F;
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> GraphSnapshot.open(file));
+
+        // A missing file is not an error, just no snapshot
+        assertEquals(-1, new SpreadsheetGraph().loadSnapshot(dir.resolve("missing"), "sheet-1"));
+    }
+}
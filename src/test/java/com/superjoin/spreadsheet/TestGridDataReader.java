@@ -0,0 +1,46 @@
+package com.superjoin.spreadsheet;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestGridDataReader {
+
+    private static List<String> read(String json, int startRow) throws IOException {
+        List<String> cells = new ArrayList<>();
+        int count = GridDataReader.read(new StringReader(json), startRow, 0,
+                (row, column, value, formula) -> cells.add(row + "," + column + "=" + value + "|" + formula));
+        assertEquals(cells.size(), count);
+        return cells;
+    }
+
+    @Test
+    void testDecodesCellsAtTheirPositions() throws IOException {
+        String json = "{\"spreadsheetId\":\"x\",\"sheets\":[{\"properties\":{\"title\":\"Data\"},\"data\":[{"
+                + "\"startRow\":2000,\"startColumn\":1,\"rowMetadata\":[{\"pixelSize\":21}],\"rowData\":["
+                + "{\"values\":[{\"formattedValue\":\"10\"},{},{\"formattedValue\":\"30\","
+                + "\"userEnteredValue\":{\"formulaValue\":\"=SUM(B2001:C2001)\"},\"effectiveFormat\":{\"wrap\":[1,2]}}]},"
+                + "{},"
+                + "{\"values\":[{\"formattedValue\":\"x\",\"userEnteredValue\":{\"stringValue\":\"x\"}}]}"
+                + "]}]}]}";
+        assertEquals(List.of(
+                "2001,2=10|null",
+                "2001,3=null|null",
+                "2001,4=30|=SUM(B2001:C2001)",
+                "2003,2=x|null"), read(json, 0));
+    }
+
+    @Test
+    void testFallsBackToTheRequestedOffsets() throws IOException {
+        String json = "{\"sheets\":[{\"data\":[{\"rowData\":[{\"values\":[{\"formattedValue\":null,"
+                + "\"userEnteredValue\":null}]}]}]},{\"data\":null}]}";
+        assertEquals(List.of("4001,1=null|null"), read(json, 4000));
+        assertEquals(List.of(), read("{\"sheets\":null}", 0));
+        assertThrows(IOException.class, () -> read("{\"sheets\":[{\"data\":[{\"rowData\":[", 0));
+    }
+}
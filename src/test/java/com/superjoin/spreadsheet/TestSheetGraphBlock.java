@@ -0,0 +1,135 @@
+package com.superjoin.spreadsheet;
+
+import com.superjoin.spreadsheet.formula.FormulaCache;
+import com.superjoin.spreadsheet.graph.CsrAdjacency;
+import com.superjoin.spreadsheet.graph.GraphStore;
+import com.superjoin.spreadsheet.services.KnowledgeGraphService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestSheetGraphBlock {
+
+    private static Map<String, List<Cell>> workbook() {
+        Map<String, List<Cell>> sheets = new LinkedHashMap<>();
+        for (int s = 0; s < 8; s++) {
+            List<Cell> cells = new ArrayList<>();
+            for (int row = 1; row <= 200; row++) {
+                cells.add(new Cell(row, 1, String.valueOf(row), null));
+                // Forward reference to the next row, a same-sheet range and a cross-sheet cell
+                String next = "B" + (row + 1);
+                String previousSheet = "S" + ((s + 7) % 8);
+                cells.add(new Cell(row, 2, "", "=A" + row + "+" + next + "+SUM(A:A)+" + previousSheet + "!A" + row));
+            }
+            cells.add(new Cell(1, 3, "", "=SUM(S" + ((s + 1) % 8) + "!B1:B10)"));
+            sheets.put("S" + s, cells);
+        }
+        return sheets;
+    }
+
+    private static KnowledgeGraphService load(Map<String, List<Cell>> sheets, boolean parallel) {
+        FormulaCache cache = new FormulaCache();
+        List<SheetGraphBlock> blocks;
+        if (parallel) {
+            blocks = sheets.entrySet().parallelStream()
+                    .map(entry -> SheetGraphBlock.build(entry.getKey(), entry.getValue(), cache))
+                    .collect(Collectors.toList());
+        } else {
+            // Build in reverse so the formula cache sees shapes in a different order
+            List<String> names = new ArrayList<>(sheets.keySet());
+            Collections.reverse(names);
+            Map<String, SheetGraphBlock> built = new HashMap<>();
+            for (String name : names) {
+                built.put(name, SheetGraphBlock.build(name, sheets.get(name), cache));
+            }
+            blocks = sheets.keySet().stream().map(built::get).collect(Collectors.toList());
+        }
+        return merge(blocks, parallel);
+    }
+
+    private static KnowledgeGraphService merge(List<SheetGraphBlock> blocks, boolean parallel) {
+        KnowledgeGraphService graph = new KnowledgeGraphService();
+        for (SheetGraphBlock block : blocks) {
+            block.merge(graph);
+        }
+        (parallel ? blocks.parallelStream() : blocks.stream()).forEach(block -> block.resolveCrossSheet(graph));
+        blocks.forEach(block -> block.mergeCrossSheet(graph));
+        return graph;
+    }
+
+    private static void assertSameGraph(GraphStore expected, GraphStore actual) {
+        assertEquals(expected.nodeCount(), actual.nodeCount());
+        for (int i = 0; i < expected.nodeCount(); i++) {
+            assertEquals(expected.nodeAt(i).getId(), actual.nodeAt(i).getId());
+        }
+        CsrAdjacency e = expected.forward();
+        CsrAdjacency a = actual.forward();
+        assertEquals(e.edgeCount(), a.edgeCount());
+        for (int edge = 0; edge < e.edgeCount(); edge++) {
+            assertEquals(e.target(edge), a.target(edge));
+            assertEquals(e.type(edge), a.type(edge));
+        }
+    }
+
+    @Test
+    void testParallelBuildIsDeterministic() {
+        Map<String, List<Cell>> sheets = workbook();
+        GraphStore expected = load(sheets, false).getStore();
+        for (int attempt = 0; attempt < 3; attempt++) {
+            assertSameGraph(expected, load(sheets, true).getStore());
+        }
+    }
+
+    @Test
+    void testChunksInAnyOrderBuildTheSameGraph() {
+        Map<String, List<Cell>> sheets = workbook();
+        GraphStore expected = load(sheets, false).getStore();
+        FormulaCache cache = new FormulaCache();
+        Map<String, SheetGraphBlock> started = new LinkedHashMap<>();
+        List<Runnable> chunks = new ArrayList<>();
+        for (Map.Entry<String, List<Cell>> entry : sheets.entrySet()) {
+            SheetGraphBlock block = SheetGraphBlock.start(entry.getKey());
+            started.put(entry.getKey(), block);
+            List<Cell> cells = entry.getValue();
+            for (int from = 0, chunk = 0; from < cells.size(); from += 37, chunk++) {
+                List<Cell> slice = cells.subList(from, Math.min(cells.size(), from + 37));
+                int number = chunk;
+                chunks.add(() -> block.addChunk(number, slice, cache));
+            }
+        }
+        // Chunks arrive shuffled and from several threads, as they do from concurrent fetches
+        Collections.shuffle(chunks, new Random(7));
+        chunks.parallelStream().forEach(Runnable::run);
+        List<SheetGraphBlock> blocks = started.values().parallelStream()
+                .map(SheetGraphBlock::finish)
+                .collect(Collectors.toList());
+        assertSameGraph(expected, merge(blocks, true).getStore());
+
+        SheetGraphBlock block = SheetGraphBlock.start("S0");
+        block.addChunk(0, List.of(), cache);
+        assertThrows(IllegalStateException.class, () -> block.addChunk(0, List.of(), cache));
+    }
+
+    @Test
+    void testReferencesAreResolved() {
+        KnowledgeGraphService graph = load(workbook(), true);
+        // 8 sheets, 8 * 401 cells, one A:A range per sheet and the cross-sheet B1:B10 ranges
+        assertEquals(8 + 8 * 401 + 8 + 8, graph.getNodeCount());
+        Set<String> dependencies = graph.getDependencies("S3!B5");
+        assertTrue(dependencies.containsAll(Set.of("S3!A5", "S3!B6", "S3!A:A", "S2!A5")));
+        // B201 does not exist, so the last row has no forward edge
+        assertFalse(graph.getDependencies("S3!B200").contains("S3!B201"));
+        assertTrue(graph.getDependencies("S0!C1").contains("S1!B1:B10"));
+        assertTrue(graph.getTransitiveDependents("S1!B3").contains("S0!C1"));
+    }
+}
@@ -0,0 +1,71 @@
+package com.superjoin.spreadsheet;
+
+import com.superjoin.spreadsheet.formula.FormulaError;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestWhatIf {
+
+    private SpreadsheetGraph graph;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        graph = new SpreadsheetGraph();
+        Map<String, List<Cell>> sheets = new LinkedHashMap<>();
+        sheets.put("Data", List.of(
+                new Cell(1, 1, "10", null),
+                new Cell(2, 1, "20", null),
+                new Cell(3, 1, "30", null),
+                new Cell(1, 2, "60", "=SUM(A:A)"),
+                new Cell(2, 2, "120", "=B1*2"),
+                new Cell(3, 2, "1", "=A1/10"),
+                new Cell(1, 3, "5", null)));
+        sheets.put("Summary", List.of(
+                new Cell(1, 1, "125", "=Data!B2+Data!C1"),
+                new Cell(2, 1, "x", "=\"x\"")));
+        graph.buildGraph(sheets);
+    }
+
+    @Test
+    void testRecalculatesOnlyDependentsInOrder() {
+        Map<String, Object> result = graph.whatIf(Map.of("Data!A2", "100"));
+        assertEquals(List.of("Data!A2", "Data!B1", "Data!B2", "Summary!A1"), List.copyOf(result.keySet()));
+        assertEquals(140.0, result.get("Data!B1"));
+        assertEquals(280.0, result.get("Data!B2"));
+        assertEquals(285.0, result.get("Summary!A1"));
+        // The graph keeps the values Sheets computed
+        assertEquals("60", graph.getGraphService().findCellByA1Notation("Data", "B1").getValue());
+    }
+
+    @Test
+    void testFormulaEditsAndNewCells() {
+        Map<String, Object> result = graph.whatIf(Map.of("Data!C1", "=A3*2", "Data!A4", "40"));
+        assertEquals(60.0, result.get("Data!C1"));
+        assertEquals(100.0, result.get("Data!B1"));
+        assertEquals(200.0 + 60.0, result.get("Summary!A1"));
+        assertFalse(result.containsKey("Data!B3"));
+    }
+
+    @Test
+    void testNewCellsReachFormulasReferencingThem() throws Exception {
+        SpreadsheetGraph sparse = new SpreadsheetGraph();
+        Map<String, List<Cell>> sheets = new LinkedHashMap<>();
+        sheets.put("S", List.of(new Cell(1, 3, "0", "=A6*2")));
+        sparse.buildGraph(sheets);
+        Map<String, Object> result = sparse.whatIf(Map.of("S!A6", "5"));
+        assertEquals(10.0, result.get("S!C1"));
+    }
+
+    @Test
+    void testCyclesEvaluateToRef() {
+        Map<String, Object> result = graph.whatIf(Map.of("Data!A1", "=B2"));
+        assertEquals(FormulaError.REF, result.get("Data!A1"));
+        assertEquals(FormulaError.REF, result.get("Data!B1"));
+    }
+}
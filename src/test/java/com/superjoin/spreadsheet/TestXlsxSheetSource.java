@@ -0,0 +1,109 @@
+package com.superjoin.spreadsheet;
+
+import com.superjoin.spreadsheet.model.A1Notation;
+import com.superjoin.spreadsheet.services.KnowledgeGraphService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestXlsxSheetSource {
+
+    private static final String MAIN = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    private static final String RELS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    private static final String PACKAGE_RELS = "http://schemas.openxmlformats.org/package/2006/relationships";
+
+    @TempDir
+    Path dir;
+
+    private Path workbook() throws IOException {
+        Map<String, String> parts = new LinkedHashMap<>();
+        parts.put("_rels/.rels", "<Relationships xmlns=\"" + PACKAGE_RELS + "\">"
+                + "<Relationship Id=\"rId1\" Type=\"" + RELS + "/officeDocument\" Target=\"xl/workbook.xml\"/>"
+                + "</Relationships>");
+        parts.put("xl/workbook.xml", "<workbook xmlns=\"" + MAIN + "\" xmlns:r=\"" + RELS + "\"><sheets>"
+                + "<sheet name=\"Data\" sheetId=\"1\" r:id=\"rId2\"/>"
+                + "<sheet name=\"Q1 Summary\" sheetId=\"2\" r:id=\"rId1\"/>"
+                + "</sheets></workbook>");
+        parts.put("xl/_rels/workbook.xml.rels", "<Relationships xmlns=\"" + PACKAGE_RELS + "\">"
+                + "<Relationship Id=\"rId1\" Type=\"" + RELS + "/worksheet\" Target=\"worksheets/sheet2.xml\"/>"
+                + "<Relationship Id=\"rId2\" Type=\"" + RELS + "/worksheet\" Target=\"/xl/worksheets/sheet1.xml\"/>"
+                + "<Relationship Id=\"rId3\" Type=\"" + RELS + "/sharedStrings\" Target=\"sharedStrings.xml\"/>"
+                + "</Relationships>");
+        parts.put("xl/sharedStrings.xml", "<sst xmlns=\"" + MAIN + "\">"
+                + "<si><t>Region</t></si>"
+                + "<si><r><t>North </t></r><r><t>&amp; East</t></r><rPh><t>x</t></rPh></si>"
+                + "</sst>");
+        parts.put("xl/worksheets/sheet1.xml", "<worksheet xmlns=\"" + MAIN + "\"><sheetData>"
+                + "<row r=\"1\"><c r=\"A1\" t=\"s\"><v>0</v></c><c r=\"B1\"><v>10</v></c></row>"
+                + "<row r=\"2\"><c r=\"A2\" t=\"s\"><v>1</v></c><c r=\"B2\"><v>20</v></c>"
+                + "<c r=\"C2\"><f t=\"shared\" ref=\"C2:C3\" si=\"0\">B2*$B$1</f><v>200</v></c></row>"
+                + "<row r=\"3\"><c r=\"B3\"><v>30</v></c><c r=\"C3\"><f t=\"shared\" si=\"0\"/><v>300</v></c>"
+                + "<c r=\"D3\" t=\"b\"><v>1</v></c><c r=\"E3\" t=\"inlineStr\"><is><t>note</t></is></c></row>"
+                + "<row r=\"4\"><c r=\"F4\"><f t=\"shared\" ref=\"F4:F5\" si=\"1\">Table1[@Qty]*2</f><v>8</v></c></row>"
+                + "<row r=\"5\"><c r=\"F5\"><f t=\"shared\" si=\"1\"/><v>12</v></c></row>"
+                + "</sheetData></worksheet>");
+        parts.put("xl/worksheets/sheet2.xml", "<worksheet xmlns=\"" + MAIN + "\"><sheetData>"
+                + "<row r=\"1\"><c r=\"A1\"><f>SUM(Data!C2:C3)</f><v>500</v></c>"
+                + "<c r=\"B1\" t=\"str\"><f>Data!A2&amp;\"!\"</f><v>North &amp; East!</v></c></row>"
+                + "</sheetData></worksheet>");
+
+        Path file = dir.resolve("book.xlsx");
+        try (OutputStream out = Files.newOutputStream(file); ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (Map.Entry<String, String> part : parts.entrySet()) {
+                zip.putNextEntry(new ZipEntry(part.getKey()));
+                zip.write(part.getValue().getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return file;
+    }
+
+    @Test
+    void testReadsCachedValuesAndFormulas() throws Exception {
+        Map<String, List<Cell>> sheets = new XlsxSheetSource().readAllSheets(workbook().toString());
+        assertEquals(List.of("Data", "Q1 Summary"), List.copyOf(sheets.keySet()));
+
+        Map<String, Cell> data = new LinkedHashMap<>();
+        sheets.get("Data").forEach(cell -> data.put(A1Notation.format(cell.getRow(), cell.getColumn()), cell));
+        assertEquals("Region", data.get("A1").getValue());
+        assertEquals("North & East", data.get("A2").getValue());
+        assertEquals("=B2*$B$1", data.get("C2").getFormula());
+        assertEquals("200", data.get("C2").getValue());
+        assertEquals("=B3*$B$1", data.get("C3").getFormula());
+        assertEquals("TRUE", data.get("D3").getValue());
+        assertEquals("note", data.get("E3").getValue());
+        assertEquals("Data", data.get("E3").getSheetName());
+        assertEquals("12", data.get("F5").getValue());
+        assertNull(data.get("F5").getFormula());
+
+        Cell summary = sheets.get("Q1 Summary").get(1);
+        assertEquals("=Data!A2&\"!\"", summary.getFormula());
+        assertEquals("North & East!", summary.getValue());
+    }
+
+    @Test
+    void testLoadsIntoTheGraph() throws Exception {
+        Path file = workbook();
+        SpreadsheetGraph graph = new SpreadsheetGraph(SheetSource.forFile(file));
+        graph.loadAllSheets(file.toString());
+        assertEquals("Data", graph.getCurrentSheetName());
+
+        KnowledgeGraphService graphService = graph.getGraphService();
+        assertTrue(graphService.getDependencies("Data!C3").containsAll(Set.of("Data!B3", "Data!B1")));
+        assertTrue(graphService.getTransitiveDependents("Data!B1").contains("Q1 Summary!A1"));
+        assertEquals(Files.getLastModifiedTime(file).toMillis(), graph.getSource().getLastModifiedTime(file.toString()));
+    }
+}
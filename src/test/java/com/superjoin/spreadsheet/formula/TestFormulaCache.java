@@ -0,0 +1,66 @@
+package com.superjoin.spreadsheet.formula;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestFormulaCache {
+
+    private static List<String> refs(FormulaCache cache, String formula, int row, int column) {
+        return cache.references(formula, row, column).stream()
+                .map(ReferenceNode::toString)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void testFilledDownFormulasShareOneShape() {
+        FormulaCache cache = new FormulaCache();
+        for (int row = 2; row <= 1000; row++) {
+            List<String> refs = refs(cache, "=B" + row + "*C" + row + "+$E$1+SUM(Data!A:A)", row, 4);
+            assertEquals(List.of("B" + row, "C" + row, "E1", "Data!A:A"), refs);
+        }
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.misses());
+        assertEquals(998, cache.hits());
+    }
+
+    @Test
+    void testShapesThatOnlyLookAlikeAreKeptApart() {
+        FormulaCache cache = new FormulaCache();
+        // Same relative form, different absolute marker
+        assertEquals(List.of("A1"), refs(cache, "=$A1", 1, 2));
+        assertEquals(List.of("A2"), refs(cache, "=$A2", 2, 2));
+        assertEquals(List.of("B1"), refs(cache, "=B1", 1, 3));
+        // Names and function calls are not shifted
+        assertEquals(List.of(), refs(cache, "=ABC+1", 1, 1));
+        assertEquals(List.of(), refs(cache, "=ABD+1", 1, 2));
+        assertEquals(List.of("A1"), refs(cache, "=LOG10(A1)", 1, 2));
+        assertEquals(List.of("A2"), refs(cache, "=LOG10(A2)", 2, 2));
+        // Row ranges shift; plain numbers do not
+        assertEquals(List.of("3:3"), refs(cache, "=SUM(3:3)*3", 3, 1));
+        assertEquals(List.of("4:4"), refs(cache, "=SUM(4:4)*3", 4, 1));
+        assertEquals(List.of("4:4"), refs(cache, "=SUM(4:4)*4", 5, 1));
+        // String literals are part of the shape
+        assertEquals(List.of("A1"), refs(cache, "=A1&\"x\"", 1, 2));
+        assertEquals(List.of("A1"), refs(cache, "=A1&\"y\"", 1, 2));
+        assertEquals(9, cache.size());
+    }
+
+    @Test
+    void testMalformedFormulaThrows() {
+        FormulaCache cache = new FormulaCache();
+        assertThrows(FormulaParseException.class, () -> cache.lookup("=SUM(A1", 1, 1));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testMoveShiftsOnlyRelativeParts() {
+        assertEquals("=B3*$C$1+SUM(D:D)+'Q1 Data'!B$2&\"A1\"",
+                FormulaCache.move("=A2*$C$1+SUM(C:C)+'Q1 Data'!A$2&\"A1\"", 1, 1));
+        assertEquals("=LOG10(B5)+SUM(4:$9)", FormulaCache.move("=LOG10(B2)+SUM(1:$9)", 3, 0));
+        assertEquals("=#REF!+A$1", FormulaCache.move("=A2+A$1", -2, 0));
+    }
+}
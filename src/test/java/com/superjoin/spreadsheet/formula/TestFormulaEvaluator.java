@@ -0,0 +1,110 @@
+package com.superjoin.spreadsheet.formula;
+
+import com.superjoin.spreadsheet.model.A1Notation;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestFormulaEvaluator {
+
+    /**
+     * Cells of a single sheet keyed by A1 reference
+     */
+    private static final class MapContext implements EvaluationContext {
+        final Map<String, Object> cells = new HashMap<>();
+
+        @Override
+        public Object cellValue(String sheet, int row, int column) {
+            return cells.get(sheet + "!" + A1Notation.format(row, column));
+        }
+
+        @Override
+        public ValueGrid rangeValues(String sheet, int firstRow, int firstColumn, int lastRow, int lastColumn) {
+            int rows = Math.min(lastRow, 10) - firstRow + 1;
+            int columns = Math.min(lastColumn, 5) - firstColumn + 1;
+            ValueGrid grid = new ValueGrid(rows, columns);
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < columns; c++) {
+                    grid.set(r, c, cellValue(sheet, firstRow + r, firstColumn + c));
+                }
+            }
+            return grid;
+        }
+    }
+
+    private final MapContext context = new MapContext();
+    private final FormulaEvaluator evaluator = new FormulaEvaluator(context);
+
+    private Object eval(String formula) {
+        return evaluator.evaluate(FormulaParser.parse(formula), "S");
+    }
+
+    private void put(String a1, Object value) {
+        context.cells.put("S!" + a1, value);
+    }
+
+    @Test
+    void testArithmeticAndComparison() {
+        put("A1", 10.0);
+        put("A2", "4");
+        assertEquals(19.0, eval("=A1*2-A2/4%/100"));
+        assertEquals(1024.0, eval("=2^A1"));
+        assertEquals(FormulaError.DIV0, eval("=A1/0"));
+        assertEquals(FormulaError.VALUE, eval("=A1+\"x\""));
+        assertEquals(Boolean.TRUE, eval("=\"abc\"=\"ABC\""));
+        assertEquals("10-4", eval("=A1&\"-\"&A2"));
+        assertEquals(FormulaError.NAME, eval("=NOSUCH(1)"));
+    }
+
+    @Test
+    void testAggregatesAndConditionals() {
+        put("A1", 1.0);
+        put("A2", 2.0);
+        put("A3", "text");
+        put("A4", 4.0);
+        assertEquals(7.0, eval("=SUM(A1:A4)"));
+        assertEquals(7.0 / 3, eval("=AVERAGE(A:A)"));
+        assertEquals(3.0, eval("=COUNT(A1:A4)"));
+        assertEquals(4.0, eval("=COUNTA(A1:A4)"));
+        assertEquals(4.0, eval("=MAX(A1:A4,-1)"));
+        assertEquals(6.0, eval("=SUMIF(A1:A4,\">1\")"));
+        assertEquals(1.0, eval("=COUNTIF(A1:A4,\"TEXT\")"));
+        assertEquals("big", eval("=IF(SUM(A1:A2)>2,\"big\",\"small\")"));
+        assertEquals("n/a", eval("=IFERROR(1/0,\"n/a\")"));
+        assertEquals(Boolean.FALSE, eval("=AND(A1>0,A2>5)"));
+    }
+
+    @Test
+    void testLookupsAndText() {
+        put("A1", "apple");
+        put("B1", 3.0);
+        put("A2", "banana");
+        put("B2", 5.0);
+        put("C1", 10.0);
+        put("C2", 20.0);
+        put("C3", 30.0);
+        assertEquals(5.0, eval("=VLOOKUP(\"Banana\",A1:B2,2,FALSE)"));
+        assertEquals(FormulaError.NA, eval("=VLOOKUP(\"cherry\",A1:B2,2,FALSE)"));
+        assertEquals(20.0, eval("=VLOOKUP(25,C1:C3,1)"));
+        assertEquals(20.0, eval("=INDEX(C1:C3,MATCH(20,C1:C3,0))"));
+        assertEquals(2.0, eval("=MATCH(29,C1:C3)"));
+        assertEquals("ban", eval("=LEFT(A2,3)"));
+        assertEquals("APPLE!", eval("=UPPER(CONCATENATE(A1,\"!\"))"));
+        assertEquals("a b", eval("=TRIM(\"  a   b \")"));
+        assertEquals(3.0, eval("=LEN(MID(A2,2,3))"));
+    }
+
+    @Test
+    void testShapeEvaluationOffsetsReferences() {
+        put("A5", 7.0);
+        put("B5", 6.0);
+        FormulaCache cache = new FormulaCache();
+        cache.lookup("=A2*B2", 2, 3);
+        FormulaShape shape = cache.lookup("=A5*B5", 5, 3);
+        assertEquals(2, shape.getAnchorRow());
+        assertEquals(42.0, evaluator.evaluate(shape, "S", 5, 3));
+    }
+}
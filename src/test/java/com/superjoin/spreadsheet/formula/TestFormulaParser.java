@@ -0,0 +1,56 @@
+package com.superjoin.spreadsheet.formula;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestFormulaParser {
+
+    private static List<String> refs(String formula) {
+        return FormulaParser.parse(formula).references().stream()
+                .map(ReferenceNode::toString)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void testReferenceForms() {
+        assertEquals(List.of("Q1 Data!A1", "B2"), refs("='Q1 Data'!A1+$B$2"));
+        assertEquals(List.of("A1:B10", "Sales!C:C", "3:3"), refs("=SUM(A1:B10)+SUM(Sales!C:C)+SUM(3:3)"));
+        assertEquals(List.of("It's!A1"), refs("='It''s'!A1"));
+        assertEquals(List.of("Data!A1:B2"), refs("=SUM(Data!A1:Data!B2)"));
+
+        ReferenceNode absolute = FormulaParser.parse("=$A1").references().get(0);
+        assertTrue(absolute.isFirstColumnAbsolute());
+        assertFalse(absolute.isFirstRowAbsolute());
+    }
+
+    @Test
+    void testNonReferencesAreIgnored() {
+        assertEquals(List.of("A2"), refs("=LOG10(A2)"));
+        assertEquals(List.of("C1"), refs("=IF(C1>0,\"see A1\",#REF!)"));
+        assertEquals(List.of(), refs("=TRUE+MyRange+ABCD1"));
+        assertEquals(List.of("A1"), refs("=IF(A1,,0)"));
+    }
+
+    @Test
+    void testPrecedence() {
+        FormulaNode root = FormulaParser.parse("=1+2*3^2&\"x\"");
+        FormulaNode.BinaryNode concat = (FormulaNode.BinaryNode) root;
+        assertEquals("&", concat.getOperator());
+        FormulaNode.BinaryNode sum = (FormulaNode.BinaryNode) concat.getLeft();
+        assertEquals("+", sum.getOperator());
+        FormulaNode.BinaryNode product = (FormulaNode.BinaryNode) sum.getRight();
+        assertEquals("*", product.getOperator());
+        assertEquals("^", ((FormulaNode.BinaryNode) product.getRight()).getOperator());
+    }
+
+    @Test
+    void testMalformedFormulaThrows() {
+        assertThrows(FormulaParseException.class, () -> FormulaParser.parse("=SUM(A1"));
+        assertThrows(FormulaParseException.class, () -> FormulaParser.parse("=\"open"));
+        assertThrows(FormulaParseException.class, () -> FormulaParser.parse("=A1 B1"));
+    }
+}
@@ -0,0 +1,58 @@
+package com.superjoin.spreadsheet.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestColumnIndex {
+
+    @Test
+    void testMatchesBruteForce() {
+        Random random = new Random(11);
+        int n = 3000;
+        int[] rows = new int[n];
+        int[] cols = new int[n];
+        ColumnIndex index = new ColumnIndex();
+        for (int i = 0; i < n; i++) {
+            // Unsorted insertion order and columns past Z
+            rows[i] = 1 + random.nextInt(500);
+            cols[i] = 1 + random.nextInt(40);
+            index.add(rows[i], cols[i], i);
+        }
+        assertEquals(n, index.size());
+
+        for (int q = 0; q < 300; q++) {
+            int r1 = 1 + random.nextInt(500);
+            int r2 = q % 5 == 0 ? Integer.MAX_VALUE : r1 + random.nextInt(100);
+            int c1 = 1 + random.nextInt(40);
+            int c2 = q % 7 == 0 ? Integer.MAX_VALUE : c1 + random.nextInt(5);
+            IntList out = new IntList();
+            index.cellsIn(r1, r2, c1, c2, out);
+            int[] actual = out.toArray();
+            Arrays.sort(actual);
+
+            IntList expected = new IntList();
+            for (int i = 0; i < n; i++) {
+                if (rows[i] >= r1 && rows[i] <= r2 && cols[i] >= c1 && cols[i] <= c2) {
+                    expected.add(i);
+                }
+            }
+            assertArrayEquals(expected.toArray(), actual);
+        }
+    }
+
+    @Test
+    void testRowsComeOutSortedWithinAColumn() {
+        ColumnIndex index = new ColumnIndex();
+        index.add(30, 2, 0);
+        index.add(10, 2, 1);
+        index.add(20, 2, 2);
+        index.add(5, 1, 3);
+        IntList out = new IntList();
+        index.cellsIn(1, Integer.MAX_VALUE, 1, 2, out);
+        assertArrayEquals(new int[]{3, 1, 2, 0}, out.toArray());
+    }
+}
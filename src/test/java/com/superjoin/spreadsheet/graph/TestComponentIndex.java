@@ -0,0 +1,69 @@
+package com.superjoin.spreadsheet.graph;
+
+import com.superjoin.spreadsheet.model.CellNode;
+import com.superjoin.spreadsheet.model.RangeNode;
+import com.superjoin.spreadsheet.model.SheetNode;
+import com.superjoin.spreadsheet.services.KnowledgeGraphService;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestComponentIndex {
+
+    @Test
+    void testLongChainIsStackSafeAndOrderedByDependency() {
+        KnowledgeGraphService graph = new KnowledgeGraphService();
+        int rows = 50_000;
+        for (int row = 1; row <= rows; row++) {
+            graph.addNode(new CellNode("Sheet1", row, 1, String.valueOf(row), row > 1 ? "=A" + (row - 1) + "+1" : null));
+        }
+        for (int row = 2; row <= rows; row++) {
+            graph.getStore().addEdge(row - 1, row - 2, EdgeTypes.DEPENDS_ON);
+        }
+
+        ComponentIndex index = graph.componentIndex();
+        assertEquals(rows, index.componentCount());
+        assertTrue(index.cycles().isEmpty());
+        // A component is numbered after everything it depends on
+        assertTrue(index.componentOf(0) < index.componentOf(1));
+        assertTrue(index.componentOf(rows - 2) < index.componentOf(rows - 1));
+        assertEquals(rows - 1, graph.transitiveValueDependents(0).size());
+    }
+
+    @Test
+    void testCyclesThroughRangesAndCondensedQueries() {
+        KnowledgeGraphService graph = new KnowledgeGraphService();
+        graph.addNode(new SheetNode("Sheet1", "Sheet1"));
+        graph.addNode(new CellNode("Sheet1", 1, 1, null, null));
+        graph.addNode(new CellNode("Sheet1", 2, 1, null, "=B1"));
+        graph.addNode(new CellNode("Sheet1", 1, 2, null, "=SUM(A1:A2)"));
+        graph.addNode(new CellNode("Sheet1", 1, 3, null, "=B1+C1"));
+        graph.addNode(new CellNode("Sheet1", 1, 4, null, "=C1"));
+        graph.getOrAddRange(new RangeNode("Sheet1", 1, 1, 2, 1));
+        graph.addEdge("Sheet1", "Sheet1!A1", KnowledgeGraphService.CONTAINS_EDGE);
+        graph.addEdge("Sheet1!A2", "Sheet1!B1", KnowledgeGraphService.DEPENDS_ON_EDGE);
+        graph.addEdge("Sheet1!B1", "Sheet1!A1:A2", KnowledgeGraphService.DEPENDS_ON_EDGE);
+        graph.addEdge("Sheet1!C1", "Sheet1!B1", KnowledgeGraphService.DEPENDS_ON_EDGE);
+        graph.addEdge("Sheet1!C1", "Sheet1!C1", KnowledgeGraphService.DEPENDS_ON_EDGE);
+        graph.addEdge("Sheet1!D1", "Sheet1!C1", KnowledgeGraphService.DEPENDS_ON_EDGE);
+
+        assertEquals(List.of(List.of("Sheet1!A2", "Sheet1!B1", "Sheet1!A1:A2"), List.of("Sheet1!C1")),
+                graph.getCycles());
+        assertTrue(graph.isInCycle("Sheet1!C1"));
+        assertFalse(graph.isInCycle("Sheet1!A1"));
+        assertFalse(graph.isInCycle("Sheet1!D1"));
+
+        GraphStore store = graph.getStore();
+        Set<String> dependents = graph.transitiveValueDependents(store.indexOf("Sheet1!A1")).asNodeIds(store);
+        assertEquals(Set.of("Sheet1!A1:A2", "Sheet1!A2", "Sheet1!B1", "Sheet1!C1", "Sheet1!D1"), Set.copyOf(dependents));
+        assertEquals(Set.copyOf(graph.transitiveValueDependents(store.indexOf("Sheet1!B1")).asNodeIds(store)),
+                Set.of("Sheet1!A1:A2", "Sheet1!A2", "Sheet1!B1", "Sheet1!C1", "Sheet1!D1"));
+
+        // Breaking the loop is picked up on the next query
+        graph.removeEdge("Sheet1!A2", "Sheet1!B1");
+        assertEquals(List.of(List.of("Sheet1!C1")), graph.getCycles());
+    }
+}
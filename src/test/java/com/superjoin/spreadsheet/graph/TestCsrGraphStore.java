@@ -0,0 +1,81 @@
+package com.superjoin.spreadsheet.graph;
+
+import com.superjoin.spreadsheet.model.CellNode;
+import com.superjoin.spreadsheet.model.SheetNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestCsrGraphStore {
+
+    private CsrGraphStore store;
+    private int sheet;
+    private int a1;
+    private int b1;
+    private int c1;
+
+    @BeforeEach
+    void setUp() {
+        store = new CsrGraphStore();
+        sheet = store.addNode(new SheetNode("Sheet1", "Sheet1"));
+        a1 = store.addNode(new CellNode("Sheet1", 1, 1, "1", null));
+        b1 = store.addNode(new CellNode("Sheet1", 1, 2, "2", "=A1"));
+        c1 = store.addNode(new CellNode("Sheet1", 1, 3, "3", "=A1+B1"));
+    }
+
+    @Test
+    void testDenseIndicesAndLookup() {
+        assertEquals(0, sheet);
+        assertEquals(3, c1);
+        assertEquals(b1, store.indexOf("Sheet1!B1"));
+        assertEquals(GraphStore.NO_NODE, store.indexOf("Sheet1!Z99"));
+        assertEquals(a1, store.addNode(new CellNode("Sheet1", 1, 1, "10", null)));
+        assertEquals("10", ((CellNode) store.nodeAt(a1)).getValue());
+    }
+
+    @Test
+    void testForwardAndReverseRows() {
+        store.addEdge(c1, b1, EdgeTypes.DEPENDS_ON);
+        store.addEdge(c1, a1, EdgeTypes.DEPENDS_ON);
+        store.addEdge(b1, a1, EdgeTypes.DEPENDS_ON);
+        store.addEdge(c1, a1, EdgeTypes.DEPENDS_ON);
+
+        CsrAdjacency forward = store.forward();
+        assertEquals(3, store.edgeCount());
+        assertEquals(2, forward.degree(c1));
+        assertEquals(a1, forward.target(forward.start(c1)));
+        assertEquals(EdgeTypes.DEPENDS_ON, forward.type(forward.start(c1)));
+
+        CsrAdjacency reverse = store.reverse();
+        assertEquals(2, reverse.degree(a1));
+        assertTrue(reverse.hasEdge(a1, b1));
+        assertTrue(reverse.hasEdge(a1, c1));
+    }
+
+    @Test
+    void testRemoveThenReAdd() {
+        store.addEdge(c1, a1, EdgeTypes.DEPENDS_ON);
+        store.addEdge(b1, a1, EdgeTypes.DEPENDS_ON);
+        assertEquals(2, store.edgeCount());
+
+        store.removeEdge(c1, a1);
+        assertFalse(store.forward().hasEdge(c1, a1));
+        assertFalse(store.reverse().hasEdge(a1, c1));
+
+        store.addEdge(c1, a1, EdgeTypes.DEPENDS_ON);
+        store.removeEdge(b1, a1);
+        assertTrue(store.forward().hasEdge(c1, a1));
+        assertFalse(store.forward().hasEdge(b1, a1));
+        assertEquals(1, store.edgeCount());
+    }
+
+    @Test
+    void testNodesAddedAfterCompactionHaveNoEdges() {
+        store.addEdge(sheet, a1, EdgeTypes.CONTAINS);
+        store.forward();
+        int d1 = store.addNode(new CellNode("Sheet1", 1, 4, "4", null));
+        assertEquals(0, store.forward().degree(d1));
+        assertEquals(0, store.reverse().degree(d1));
+    }
+}
@@ -0,0 +1,64 @@
+package com.superjoin.spreadsheet.graph;
+
+import com.superjoin.spreadsheet.model.RangeNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestRangeIndex {
+
+    @Test
+    void testMatchesBruteForceStabbing() {
+        Random random = new Random(42);
+        int count = 500;
+        int[] firstRow = new int[count];
+        int[] lastRow = new int[count];
+        int[] firstColumn = new int[count];
+        int[] lastColumn = new int[count];
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            firstColumn[i] = 1 + random.nextInt(40);
+            lastColumn[i] = firstColumn[i] + random.nextInt(10);
+            if (random.nextInt(3) == 0) {
+                // Whole-column range
+                firstRow[i] = 1;
+                lastRow[i] = RangeNode.UNBOUNDED;
+            } else {
+                firstRow[i] = 1 + random.nextInt(1000);
+                lastRow[i] = firstRow[i] + random.nextInt(200);
+            }
+            ids[i] = 1000 + i;
+        }
+        RangeIndex index = new RangeIndex(firstRow, lastRow, firstColumn, lastColumn, ids, count);
+
+        IntList hits = new IntList();
+        for (int probe = 0; probe < 2000; probe++) {
+            int row = 1 + random.nextInt(1300);
+            int column = 1 + random.nextInt(55);
+            hits.clear();
+            index.containing(row, column, hits);
+
+            int[] expected = new int[count];
+            int expectedCount = 0;
+            for (int i = 0; i < count; i++) {
+                if (row >= firstRow[i] && row <= lastRow[i] && column >= firstColumn[i] && column <= lastColumn[i]) {
+                    expected[expectedCount++] = ids[i];
+                }
+            }
+            int[] actual = hits.toArray();
+            Arrays.sort(actual);
+            assertArrayEquals(Arrays.copyOf(expected, expectedCount), actual, "cell (" + row + ", " + column + ")");
+        }
+    }
+
+    @Test
+    void testEmptyIndex() {
+        RangeIndex index = new RangeIndex(new int[0], new int[0], new int[0], new int[0], new int[0], 0);
+        IntList hits = new IntList();
+        index.containing(1, 1, hits);
+        assertTrue(hits.isEmpty());
+    }
+}
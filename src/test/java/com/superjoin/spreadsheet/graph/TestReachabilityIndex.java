@@ -0,0 +1,64 @@
+package com.superjoin.spreadsheet.graph;
+
+import com.superjoin.spreadsheet.model.CellNode;
+import com.superjoin.spreadsheet.model.RangeNode;
+import com.superjoin.spreadsheet.model.SheetNode;
+import com.superjoin.spreadsheet.services.KnowledgeGraphService;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestReachabilityIndex {
+
+    @Test
+    void testMatchesTraversalOnRandomGraph() {
+        KnowledgeGraphService graph = new KnowledgeGraphService();
+        int cells = 200;
+        for (int i = 0; i < cells; i++) {
+            graph.addNode(new CellNode("Sheet1", i + 1, 1, "0", null));
+        }
+        Random random = new Random(7);
+        for (int k = 0; k < 400; k++) {
+            int a = random.nextInt(cells);
+            int b = random.nextInt(cells);
+            // Mostly forward edges with the occasional loop
+            if (a < b || random.nextInt(20) == 0) {
+                graph.addEdge(a, b, EdgeTypes.DEPENDS_ON);
+            }
+        }
+        graph.indexReachability();
+
+        for (int from = 0; from < cells; from++) {
+            NodeIdSet dependents = graph.transitiveValueDependents(from);
+            for (int to = 0; to < cells; to++) {
+                assertEquals(dependents.contains(to), graph.reaches(from, to), from + " -> " + to);
+            }
+        }
+    }
+
+    @Test
+    void testRangesAndRebuildAfterEdit() {
+        KnowledgeGraphService graph = new KnowledgeGraphService();
+        graph.addNode(new SheetNode("Sheet1", "Sheet1"));
+        graph.addNode(new CellNode("Sheet1", 1, 1, "1", null));
+        graph.addNode(new CellNode("Sheet1", 2, 1, "2", null));
+        graph.addNode(new CellNode("Sheet1", 1, 2, "", "=SUM(A1:A2)"));
+        graph.addNode(new CellNode("Sheet1", 1, 3, "", "=7"));
+        graph.getOrAddRange(new RangeNode("Sheet1", 1, 1, 2, 1));
+        graph.addEdge("Sheet1", "Sheet1!A2", KnowledgeGraphService.CONTAINS_EDGE);
+        graph.addEdge("Sheet1!B1", "Sheet1!A1:A2", KnowledgeGraphService.DEPENDS_ON_EDGE);
+
+        assertTrue(graph.reaches("Sheet1!A2", "Sheet1!B1"));
+        assertTrue(graph.reaches("Sheet1!A2", "Sheet1!A1:A2"));
+        assertFalse(graph.reaches("Sheet1!B1", "Sheet1!A2"));
+        assertFalse(graph.reaches("Sheet1!A2", "Sheet1"));
+        assertFalse(graph.reaches("Sheet1!A1", "Sheet1!C1"));
+        assertFalse(graph.reaches("Sheet1!A1", "Sheet1!A1"));
+        assertFalse(graph.reaches("Sheet1!A1", "Sheet1!Z9"));
+
+        graph.addEdge("Sheet1!C1", "Sheet1!B1", KnowledgeGraphService.DEPENDS_ON_EDGE);
+        assertTrue(graph.reaches("Sheet1!A1", "Sheet1!C1"));
+    }
+}
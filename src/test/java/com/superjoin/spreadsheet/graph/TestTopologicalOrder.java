@@ -0,0 +1,121 @@
+package com.superjoin.spreadsheet.graph;
+
+import com.superjoin.spreadsheet.model.CellNode;
+import com.superjoin.spreadsheet.model.RangeNode;
+import com.superjoin.spreadsheet.services.KnowledgeGraphService;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestTopologicalOrder {
+
+    private static void assertValid(KnowledgeGraphService graph) {
+        GraphStore store = graph.getStore();
+        TopologicalOrder order = graph.topologicalOrder();
+        CsrAdjacency forward = store.forward();
+        for (int node = 0; node < store.nodeCount(); node++) {
+            assertEquals(node, order.nodeAt(order.positionOf(node)));
+            for (int e = forward.start(node); e < forward.end(node); e++) {
+                assertTrue(order.positionOf(forward.target(e)) < order.positionOf(node),
+                        store.nodeAt(node).getId() + " placed before " + store.nodeAt(forward.target(e)).getId());
+            }
+            // Implicit edges too: the ranges containing a cell are computed from it
+            IntList dependents = new IntList();
+            graph.appendValueDependents(node, dependents);
+            for (int i = 0; i < dependents.size(); i++) {
+                assertTrue(order.positionOf(node) < order.positionOf(dependents.get(i)),
+                        store.nodeAt(dependents.get(i)).getId() + " placed before " + store.nodeAt(node).getId());
+            }
+        }
+    }
+
+    @Test
+    void testIncrementalEdgesKeepOrderValid() {
+        KnowledgeGraphService graph = new KnowledgeGraphService();
+        int cells = 300;
+        for (int i = 0; i < cells; i++) {
+            graph.addNode(new CellNode("Sheet1", i + 1, 1, "0", null));
+        }
+        graph.indexTopology();
+
+        // Only add edges from higher to lower rows so the graph stays acyclic,
+        // in random order so many of them contradict the current order
+        Random random = new Random(42);
+        for (int k = 0; k < 2_000; k++) {
+            int a = random.nextInt(cells);
+            int b = random.nextInt(cells);
+            if (a != b) {
+                graph.addEdge(Math.min(a, b), Math.max(a, b), EdgeTypes.DEPENDS_ON);
+            }
+        }
+        assertValid(graph);
+        assertTrue(graph.getCycles().isEmpty());
+    }
+
+    @Test
+    void testDepthHeightAndOrderedDependents() {
+        KnowledgeGraphService graph = new KnowledgeGraphService();
+        graph.addNode(new CellNode("Sheet1", 1, 1, "1", null));
+        graph.addNode(new CellNode("Sheet1", 2, 1, "2", null));
+        graph.addNode(new CellNode("Sheet1", 1, 2, "", "=A1*2"));
+        graph.addNode(new CellNode("Sheet1", 1, 3, "", "=B1+SUM(A1:A3)"));
+        graph.getOrAddRange(new RangeNode("Sheet1", 1, 1, 3, 1));
+        graph.indexTopology();
+
+        // Edges added after the order exists, against index order
+        graph.addEdge("Sheet1!C1", "Sheet1!A1:A3", KnowledgeGraphService.DEPENDS_ON_EDGE);
+        graph.addEdge("Sheet1!C1", "Sheet1!B1", KnowledgeGraphService.DEPENDS_ON_EDGE);
+        graph.addEdge("Sheet1!B1", "Sheet1!A1", KnowledgeGraphService.DEPENDS_ON_EDGE);
+        // A new cell inside the range has to move in front of it
+        graph.addNode(new CellNode("Sheet1", 3, 1, "", "=C1"));
+        assertValid(graph);
+
+        assertEquals(0, graph.getDepth("Sheet1!A1"));
+        assertEquals(2, graph.getDepth("Sheet1!C1"));
+        assertEquals(2, graph.getHeight("Sheet1!A1"));
+        assertEquals(0, graph.getHeight("Sheet1!C1"));
+        assertEquals(2, graph.getHeight("Sheet1!A3"));
+        assertEquals(-1, graph.getDepth("Sheet1!Z9"));
+        assertEquals(List.of("Sheet1!B1", "Sheet1!A1:A3", "Sheet1!C1"), graph.getOrderedDependents("Sheet1!A1"));
+
+        // Closing a loop falls back to the component order
+        graph.addEdge("Sheet1!A3", "Sheet1!C1", KnowledgeGraphService.DEPENDS_ON_EDGE);
+        assertEquals(List.of(List.of("Sheet1!C1", "Sheet1!A1:A3", "Sheet1!A3")), graph.getCycles());
+        TopologicalOrder order = graph.topologicalOrder();
+        GraphStore store = graph.getStore();
+        assertTrue(order.positionOf(store.indexOf("Sheet1!B1")) < order.positionOf(store.indexOf("Sheet1!C1")));
+
+        // Removing the loop edge lowers the depths again
+        graph.removeEdge("Sheet1!A3", "Sheet1!C1");
+        assertEquals(0, graph.getDepth("Sheet1!A3"));
+    }
+
+    @Test
+    void testBreakingCycleRebuildsOrder() {
+        KnowledgeGraphService graph = new KnowledgeGraphService();
+        graph.addNode(new CellNode("S", 1, 1, "", "=B1"));
+        graph.addNode(new CellNode("S", 1, 2, "", "=A1"));
+        graph.addEdge("S!A1", "S!B1", KnowledgeGraphService.DEPENDS_ON_EDGE);
+        graph.addEdge("S!B1", "S!A1", KnowledgeGraphService.DEPENDS_ON_EDGE);
+        graph.indexTopology();
+        assertTrue(graph.isInCycle("S!A1"));
+
+        // B1 no longer reads A1, so A1 is computed from B1 and has to follow it
+        graph.removeEdge("S!B1", "S!A1");
+        assertValid(graph);
+        assertEquals(0, graph.getDepth("S!B1"));
+        assertEquals(1, graph.getDepth("S!A1"));
+        assertEquals(1, graph.getHeight("S!B1"));
+
+        // Same through a formula update that drops the back reference
+        graph.addEdge("S!B1", "S!A1", KnowledgeGraphService.DEPENDS_ON_EDGE);
+        graph.indexTopology();
+        graph.removeOutgoingEdges("S!A1", KnowledgeGraphService.DEPENDS_ON_EDGE);
+        assertValid(graph);
+        assertEquals(1, graph.getDepth("S!B1"));
+        assertEquals(0, graph.getDepth("S!A1"));
+    }
+}
@@ -0,0 +1,47 @@
+package com.superjoin.spreadsheet.graph;
+
+import com.superjoin.spreadsheet.model.CellNode;
+import com.superjoin.spreadsheet.services.KnowledgeGraphService;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestTraversal {
+
+    @Test
+    void testLongRunningTotalChainIsStackSafe() {
+        KnowledgeGraphService graph = new KnowledgeGraphService();
+        int rows = 50_000;
+        for (int row = 1; row <= rows; row++) {
+            graph.addNode(new CellNode("Sheet1", row, 1, String.valueOf(row), row > 1 ? "=A" + (row - 1) + "+1" : null));
+        }
+        GraphStore store = graph.getStore();
+        for (int row = 2; row <= rows; row++) {
+            store.addEdge(row - 1, row - 2, EdgeTypes.DEPENDS_ON);
+        }
+
+        assertEquals(rows - 1, graph.transitiveDependents(0).size());
+        assertEquals(rows - 1, graph.transitiveDependencies(rows - 1).size());
+        assertEquals(0, graph.transitiveDependencies(0).size());
+    }
+
+    @Test
+    void testCycleIncludesStartAndBitsetIsReset() {
+        KnowledgeGraphService graph = new KnowledgeGraphService();
+        graph.addNode(new CellNode("Sheet1", 1, 1, null, "=B1"));
+        graph.addNode(new CellNode("Sheet1", 1, 2, null, "=A1"));
+        graph.addNode(new CellNode("Sheet1", 1, 3, null, "=A1"));
+        graph.addEdge("Sheet1!A1", "Sheet1!B1", KnowledgeGraphService.DEPENDS_ON_EDGE);
+        graph.addEdge("Sheet1!B1", "Sheet1!A1", KnowledgeGraphService.DEPENDS_ON_EDGE);
+        graph.addEdge("Sheet1!C1", "Sheet1!A1", KnowledgeGraphService.DEPENDS_ON_EDGE);
+
+        Set<String> dependents = graph.getTransitiveDependents("Sheet1!A1");
+        assertEquals(Set.of("Sheet1!A1", "Sheet1!B1", "Sheet1!C1"), Set.copyOf(dependents));
+        assertTrue(dependents.contains("Sheet1!C1"));
+
+        // A second query on the same thread must not see marks left by the first
+        assertEquals(Set.of("Sheet1!A1", "Sheet1!B1"), Set.copyOf(graph.getTransitiveDependencies("Sheet1!C1")));
+    }
+}
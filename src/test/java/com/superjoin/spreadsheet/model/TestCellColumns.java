@@ -0,0 +1,63 @@
+package com.superjoin.spreadsheet.model;
+
+import com.superjoin.spreadsheet.graph.CsrGraphStore;
+import com.superjoin.spreadsheet.graph.GraphStore;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestCellColumns {
+
+    @Test
+    void testValuesRoundTripExactly() {
+        CellColumns columns = new CellColumns();
+        String[] values = {"10", "1.5", "-3", "0.1", "1,234", "007", "-0", "1.50", "1e5", "12%", "", null,
+                "Open", "1234567890123456", "NaN", "-"};
+        for (int i = 0; i < values.length; i++) {
+            columns.put(i, new CellNode("Data", i + 1, 2, values[i], i % 2 == 0 ? "=A" + (i + 1) : null));
+        }
+        for (int i = 0; i < values.length; i++) {
+            CellNode view = columns.view(i);
+            assertEquals(values[i], view.getValue(), "row " + (i + 1));
+            assertEquals(i % 2 == 0 ? "=A" + (i + 1) : null, view.getFormula());
+            assertEquals("Data!B" + (i + 1), view.getId());
+            assertEquals(i, columns.indexOf("Data!B" + (i + 1)));
+        }
+        assertEquals(-1, columns.indexOf("Data!b1"));
+        assertEquals(-1, columns.indexOf("Data!$B$1"));
+        assertEquals(-1, columns.indexOf("Other!B1"));
+        assertEquals(-1, columns.indexOf("Data!B1:B2"));
+
+        // Repeated strings share one dictionary entry; numbers need none
+        int distinct = columns.distinctStrings();
+        columns.put(values.length, new CellNode("Data", 100, 1, "Open", "=A1"));
+        columns.put(values.length + 1, new CellNode("Data", 101, 1, "42", null));
+        assertEquals(distinct, columns.distinctStrings());
+    }
+
+    @Test
+    void testStoreHandsOutWriteThroughViews() {
+        GraphStore store = new CsrGraphStore();
+        int sheet = store.addNode(new SheetNode("Data", "Data"));
+        int a1 = store.addNode(new CellNode("Data", 1, 1, "10", null));
+        int b1 = store.addNode(new CellNode("Data", 1, 2, "20", "=A1*2"));
+        assertEquals(sheet, store.indexOf("Data"));
+        assertEquals(b1, store.indexOf("Data!B1"));
+        assertTrue(store.nodeAt(sheet) instanceof SheetNode);
+
+        CellNode view = (CellNode) store.nodeAt(a1);
+        view.setValue("Total");
+        assertEquals("Total", ((CellNode) store.nodeAt(a1)).getValue());
+        assertEquals(new CellNode("Data", 1, 1, null, null), view);
+
+        // Re-adding a cell keeps its index and replaces its contents
+        assertEquals(b1, store.addNode(new CellNode("Data", 1, 2, "5", null)));
+        CellNode replaced = (CellNode) store.nodeAt(b1);
+        assertEquals("5", replaced.getValue());
+        assertFalse(replaced.hasFormula());
+        assertEquals(3, store.nodeCount());
+
+        store.clear();
+        assertEquals(GraphStore.NO_NODE, store.indexOf("Data!A1"));
+    }
+}
@@ -0,0 +1,52 @@
+package com.superjoin.spreadsheet.model;
+
+import com.superjoin.spreadsheet.graph.CsrGraphStore;
+import com.superjoin.spreadsheet.graph.GraphStore;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestCellKey {
+
+    @Test
+    void testPackAndUnpack() {
+        long key = CellKey.of(3, 1_048_576, 16_384);
+        assertEquals(3, CellKey.sheet(key));
+        assertEquals(1_048_576, CellKey.row(key));
+        assertEquals(16_384, CellKey.column(key));
+        assertEquals("XFD1048576", CellKey.toA1(key));
+
+        long max = CellKey.of(CellKey.MAX_SHEETS - 1, Integer.MAX_VALUE, CellKey.MAX_COLUMN);
+        assertEquals(CellKey.MAX_SHEETS - 1, CellKey.sheet(max));
+        assertEquals(Integer.MAX_VALUE, CellKey.row(max));
+        assertEquals(CellKey.MAX_COLUMN, CellKey.column(max));
+
+        assertNotEquals(CellKey.NONE, CellKey.of(0, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> CellKey.of(0, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> CellKey.of(0, 1, CellKey.MAX_COLUMN + 1));
+        assertThrows(IllegalArgumentException.class, () -> CellKey.of(CellKey.MAX_SHEETS, 1, 1));
+    }
+
+    @Test
+    void testStoreAddressesCellsByKey() {
+        GraphStore store = new CsrGraphStore();
+        int sheet = store.addNode(new SheetNode("Data", "Data"));
+        int b2 = store.addNode(new CellNode("Data", 2, 2, "1", null));
+        int c1 = store.addNode(new CellNode("Other", 1, 3, "2", null));
+
+        long key = store.cellKey(b2);
+        assertEquals(2, CellKey.row(key));
+        assertEquals(2, CellKey.column(key));
+        assertEquals("Data", store.sheetOf(key));
+        assertEquals(CellKey.NONE, store.cellKey(sheet));
+
+        assertEquals(b2, store.indexOfCell("Data", 2, 2));
+        assertEquals(c1, store.indexOfCell("Other", 1, 3));
+        assertEquals(GraphStore.NO_NODE, store.indexOfCell("Data", 1, 3));
+        assertEquals(GraphStore.NO_NODE, store.indexOfCell("Missing", 2, 2));
+
+        assertEquals("Data!B2", store.idAt(b2));
+        assertEquals("Other!C1", store.idAt(c1));
+        assertEquals("Data", store.idAt(sheet));
+    }
+}
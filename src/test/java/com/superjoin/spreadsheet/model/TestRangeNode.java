@@ -0,0 +1,47 @@
+package com.superjoin.spreadsheet.model;
+
+import com.superjoin.spreadsheet.services.KnowledgeGraphService;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestRangeNode {
+
+    @Test
+    void testParseAndCanonicalIds() {
+        assertEquals("Data!A:Z", RangeNode.parse("Data", "a:z").getId());
+        assertEquals("Data!B2:D10", RangeNode.parse("Data", "$D$10:B2").getId());
+        assertEquals("Data!3:5", RangeNode.parse("Data", "3:5").getId());
+        assertEquals("Data!A2:B", RangeNode.parse("Data", "A2:B").getId());
+        assertNull(RangeNode.parse("Data", "A1"));
+        assertNull(RangeNode.parse("Data", "A1:B2:C3"));
+
+        RangeNode columns = RangeNode.parse("Data", "B:AA");
+        assertTrue(columns.contains(100_000, 2));
+        assertTrue(columns.contains(1, 27));
+        assertFalse(columns.contains(1, 28));
+    }
+
+    @Test
+    void testSharedRangeKeepsEdgeCountLinearInFormulas() {
+        KnowledgeGraphService graph = new KnowledgeGraphService();
+        for (int row = 1; row <= 100; row++) {
+            graph.addNode(new CellNode("Data", row, 1, String.valueOf(row), null));
+        }
+        for (int row = 1; row <= 10; row++) {
+            CellNode summary = new CellNode("Summary", row, 1, null, "=SUM(Data!A:A)");
+            graph.addNode(summary);
+            RangeNode range = graph.getOrAddRange(RangeNode.parse("Data", "A:A"));
+            graph.addEdge(summary.getId(), range.getId(), KnowledgeGraphService.DEPENDS_ON_EDGE);
+        }
+        graph.indexRanges();
+
+        assertEquals(1, graph.getRangeNodes().size());
+        assertEquals(10, graph.getEdgeCount());
+        assertEquals(Set.of("Data!A:A"), graph.getDependents("Data!A50"));
+        assertTrue(graph.getTransitiveDependents("Data!A50").contains("Summary!A7"));
+        assertTrue(graph.getTransitiveDependencies("Summary!A1").contains("Data!A100"));
+    }
+}
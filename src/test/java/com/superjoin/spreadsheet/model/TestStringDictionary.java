@@ -0,0 +1,62 @@
+package com.superjoin.spreadsheet.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestStringDictionary {
+
+    @Test
+    void testRepeatedStringsShareIdsAndInstances() {
+        StringDictionary dictionary = new StringDictionary();
+        int open = dictionary.idOf(new String("Open"));
+        String first = dictionary.intern(new String("=SUM(B1:B9)"));
+        String second = dictionary.intern(new String("=SUM(B1:B9)"));
+
+        assertEquals(open, dictionary.idOf(new String("Open")));
+        assertSame(first, second);
+        assertEquals(StringDictionary.NO_ID, dictionary.idOf(null));
+        assertEquals(2, dictionary.size());
+        assertEquals(StringDictionary.NO_ID, dictionary.find("Pending"));
+        assertEquals("Open", dictionary.get(dictionary.find("Open")));
+    }
+
+    @Test
+    void testColumnsEncodeRepeatedStringsOnce() {
+        CellColumns columns = new CellColumns();
+        for (int i = 0; i < 100; i++) {
+            columns.put(i, new CellNode("Data", i + 1, 1, i % 2 == 0 ? "Open" : "12", "=B1"));
+        }
+        // Numbers are stored unboxed, so only "Open" and the formula are interned
+        assertEquals(2, columns.distinctStrings());
+
+        CellNode first = columns.view(0);
+        first.setValue("Closed");
+        assertEquals("Closed", columns.view(0).getValue());
+        assertEquals("=B1", columns.view(0).getFormula());
+        assertEquals(3, columns.distinctStrings());
+    }
+
+    @Test
+    void testViewsCompareByDictionaryId() {
+        CellColumns columns = new CellColumns();
+        columns.put(0, new CellNode("Data", 1, 1, "Open", "=B1"));
+        columns.put(1, new CellNode("Data", 2, 1, "Open", "=B1"));
+        columns.put(2, new CellNode("Data", 3, 1, "12", null));
+        CellNode first = columns.view(0);
+        CellNode second = columns.view(1);
+        CellNode number = columns.view(2);
+
+        assertEquals(first.getValueId(), second.getValueId());
+        assertEquals(first.getFormulaId(), second.getFormulaId());
+        assertEquals(StringDictionary.NO_ID, number.getValueId());
+        assertEquals(StringDictionary.NO_ID, number.getFormulaId());
+        assertTrue(first.sameContent(second));
+        assertFalse(first.sameContent(number));
+        assertTrue(number.sameContent(new CellNode("Data", 3, 1, "12", null)));
+
+        second.setValue("Closed");
+        assertNotEquals(first.getValueId(), second.getValueId());
+        assertFalse(first.sameContent(second));
+    }
+}
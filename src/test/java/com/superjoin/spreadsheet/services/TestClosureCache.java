@@ -0,0 +1,71 @@
+package com.superjoin.spreadsheet.services;
+
+import com.superjoin.spreadsheet.graph.CsrGraphStore;
+import com.superjoin.spreadsheet.model.CellNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestClosureCache {
+
+    private static KnowledgeGraphService twoSheets(ClosureCache cache) {
+        KnowledgeGraphService graph = new KnowledgeGraphService(new CsrGraphStore(), cache);
+        graph.addNode(new CellNode("Data", 1, 1, "1", null));
+        graph.addNode(new CellNode("Data", 1, 2, "", "=A1"));
+        graph.addNode(new CellNode("Other", 1, 1, "1", null));
+        graph.addNode(new CellNode("Other", 1, 2, "", "=A1"));
+        graph.addEdge("Data!B1", "Data!A1", KnowledgeGraphService.DEPENDS_ON_EDGE);
+        graph.addEdge("Other!B1", "Other!A1", KnowledgeGraphService.DEPENDS_ON_EDGE);
+        return graph;
+    }
+
+    @Test
+    void testEditsInvalidateOnlyClosuresOnTheirSheets() {
+        ClosureCache cache = new ClosureCache();
+        KnowledgeGraphService graph = twoSheets(cache);
+
+        assertEquals(Set.of("Data!B1"), Set.copyOf(graph.getTransitiveDependents("Data!A1")));
+        assertEquals(Set.of("Data!B1"), Set.copyOf(graph.getTransitiveDependents("Data!A1")));
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+
+        // An edit on another sheet keeps the entry
+        graph.addNode(new CellNode("Other", 1, 3, "", "=B1"));
+        graph.addEdge("Other!C1", "Other!B1", KnowledgeGraphService.DEPENDS_ON_EDGE);
+        graph.getTransitiveDependents("Data!A1");
+        assertEquals(2, cache.hits());
+
+        // A new dependent on the same sheet is picked up
+        graph.addNode(new CellNode("Data", 1, 3, "", "=B1"));
+        graph.addEdge("Data!C1", "Data!B1", KnowledgeGraphService.DEPENDS_ON_EDGE);
+        assertEquals(Set.of("Data!B1", "Data!C1"), Set.copyOf(graph.getTransitiveDependents("Data!A1")));
+        assertEquals(1, cache.invalidations());
+
+        // So is a cross-sheet dependent that reaches in from the other sheet
+        graph.addEdge("Other!C1", "Data!C1", KnowledgeGraphService.DEPENDS_ON_EDGE);
+        assertEquals(Set.of("Data!B1", "Data!C1", "Other!C1"), Set.copyOf(graph.getTransitiveDependents("Data!A1")));
+
+        graph.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.hits());
+    }
+
+    @Test
+    void testEntriesAreBounded() {
+        ClosureCache cache = new ClosureCache(2);
+        KnowledgeGraphService graph = twoSheets(cache);
+        graph.getTransitiveDependents("Data!A1");
+        graph.getTransitiveDependents("Other!A1");
+        graph.getTransitiveDependents("Data!A1");
+        graph.getTransitiveDependencies("Data!B1");
+        assertEquals(2, cache.size());
+
+        // Other!A1 was least recently used and has been evicted
+        graph.getTransitiveDependents("Data!A1");
+        graph.getTransitiveDependents("Other!A1");
+        assertEquals(2, cache.hits());
+        assertEquals(4, cache.misses());
+    }
+}
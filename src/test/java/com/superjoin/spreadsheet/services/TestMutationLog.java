@@ -0,0 +1,91 @@
+package com.superjoin.spreadsheet.services;
+
+import com.superjoin.spreadsheet.model.CellNode;
+import com.superjoin.spreadsheet.model.RangeNode;
+import com.superjoin.spreadsheet.model.SheetNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestMutationLog {
+
+    @TempDir
+    Path dir;
+
+    private static void edit(KnowledgeGraphService graph) {
+        graph.addNode(new SheetNode("Data", "Data"));
+        graph.addNode(new CellNode("Data", 1, 1, "10", null));
+        graph.addNode(new CellNode("Data", 2, 1, "20", null));
+        graph.addNode(new CellNode("Data", 1, 2, "30", "=SUM(A1:A2)"));
+        graph.addNode(new RangeNode("Data", 1, 1, 2, 1));
+        graph.addEdge("Data", "Data!A1", KnowledgeGraphService.CONTAINS_EDGE);
+        graph.addEdge("Data", "Data!A2", KnowledgeGraphService.CONTAINS_EDGE);
+        graph.addEdge("Data", "Data!B1", KnowledgeGraphService.CONTAINS_EDGE);
+        graph.addEdge("Data!B1", "Data!A1:A2", KnowledgeGraphService.DEPENDS_ON_EDGE);
+        graph.addEdge("Data!B1", "Data!A1", KnowledgeGraphService.DEPENDS_ON_EDGE);
+        graph.removeEdge("Data!B1", "Data!A1");
+        graph.addNode(new CellNode("Data", 2, 1, "Total", null));
+    }
+
+    @Test
+    void testReplayRebuildsTheLoggedGraph() throws Exception {
+        Path file = dir.resolve("graph.wal");
+        KnowledgeGraphService original = new KnowledgeGraphService();
+        MutationLog log = MutationLog.create(file, 7L);
+        original.setMutationLog(log);
+        edit(original);
+        log.close();
+        assertEquals(12, log.records());
+
+        KnowledgeGraphService replayed = new KnowledgeGraphService();
+        try (MutationLog reopened = MutationLog.open(file, 7L, replayed)) {
+            assertEquals(12, reopened.replayed());
+        }
+        assertEquals(original.getNodeCount(), replayed.getNodeCount());
+        assertEquals(original.getEdgeCount(), replayed.getEdgeCount());
+        assertEquals(original.getDependencies("Data!B1"), replayed.getDependencies("Data!B1"));
+        assertEquals(original.getTransitiveDependents("Data!A2"), replayed.getTransitiveDependents("Data!A2"));
+        assertEquals("Total", replayed.findCellByA1Notation("Data", "A2").getValue());
+
+        // A log written for another checkpoint is discarded, not replayed
+        KnowledgeGraphService other = new KnowledgeGraphService();
+        try (MutationLog stale = MutationLog.open(file, 8L, other)) {
+            assertEquals(0, stale.replayed());
+        }
+        assertEquals(0, other.getNodeCount());
+    }
+
+    @Test
+    void testTornTailIsDroppedAndOverwritten() throws Exception {
+        Path file = dir.resolve("graph.wal");
+        KnowledgeGraphService original = new KnowledgeGraphService();
+        MutationLog log = MutationLog.create(file, 1L);
+        original.setMutationLog(log);
+        original.addNode(new SheetNode("Data", "Data"));
+        original.addNode(new CellNode("Data", 1, 1, "10", null));
+        log.close();
+
+        // Simulate a crash halfway through the second record
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 5));
+
+        KnowledgeGraphService recovered = new KnowledgeGraphService();
+        try (MutationLog reopened = MutationLog.open(file, 1L, recovered)) {
+            assertEquals(1, reopened.replayed());
+            recovered.setMutationLog(reopened);
+            recovered.addNode(new CellNode("Data", 1, 2, "20", null));
+        }
+
+        KnowledgeGraphService again = new KnowledgeGraphService();
+        try (MutationLog reopened = MutationLog.open(file, 1L, again)) {
+            assertEquals(2, reopened.replayed());
+        }
+        assertNotNull(again.getNode("Data!B1"));
+        assertNull(again.getNode("Data!A1"));
+    }
+}